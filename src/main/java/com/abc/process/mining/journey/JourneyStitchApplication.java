@@ -1,30 +1,73 @@
 package com.abc.process.mining.journey;
-import co.elastic.clients.elasticsearch.ElasticsearchClient;
-import com.abc.process.mining.journey.es.CkMapService;
-import com.abc.process.mining.journey.es.JourneyService;
-import com.abc.process.mining.journey.es.RedirectService;
+import com.abc.process.mining.journey.es.CkJourneyCache;
+import com.abc.process.mining.journey.es.KnownCkFilter;
+import com.abc.process.mining.journey.kafka.JourneyChangePublisher;
+import com.abc.process.mining.journey.stitch.EventDeduplicator;
+import com.abc.process.mining.journey.stitch.JourneyIdGenerator;
+import com.abc.process.mining.journey.stitch.JourneyStitcher;
+import com.abc.process.mining.journey.stitch.SuperNodeGuard;
+import com.abc.process.mining.journey.store.CkMapStore;
+import com.abc.process.mining.journey.store.JourneyStore;
+import com.abc.process.mining.journey.store.RedirectStore;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.time.Clock;
+import java.time.Duration;
 
 @SpringBootApplication
+@EnableScheduling
 public class JourneyStitchApplication {
     public static void main(String[] args) {
         SpringApplication.run(JourneyStitchApplication.class, args);
     }
 
     @Bean
-    public CkMapService ckMapService(ElasticsearchClient es) {
-        return new CkMapService(es, "ckmap");
+    public CkJourneyCache ckJourneyCache(@Value("${app.ckcache.max-size:500000}") int maxSize,
+                                         @Value("${app.ckcache.ttl:10m}") Duration ttl) {
+        return new CkJourneyCache(maxSize, ttl, Clock.systemUTC());
+    }
+
+    @Bean
+    public KnownCkFilter knownCkFilter(@Value("${app.ckbloom.initial-capacity:1000000}") long initialCapacity,
+                                       @Value("${app.ckbloom.fpp:0.01}") double fpp,
+                                       @Value("${app.ckbloom.max-bytes:67108864}") long maxBytes) {
+        return new KnownCkFilter(initialCapacity, fpp, maxBytes);
+    }
+
+    @Bean
+    public EventDeduplicator eventDeduplicator(@Value("${app.dedup.window:24h}") Duration window,
+                                               @Value("${app.dedup.recent-capacity:500000}") int recentCapacity,
+                                               @Value("${app.dedup.expected-events:5000000}") long expectedEvents) {
+        return new EventDeduplicator(window, recentCapacity, expectedEvents, Clock.systemUTC());
+    }
+
+    @Bean
+    public SuperNodeGuard superNodeGuard(@Value("${app.supernode.threshold:1000}") int threshold,
+                                         @Value("${app.supernode.window:1h}") Duration window,
+                                         @Value("${app.supernode.sketch-width:65536}") int width,
+                                         @Value("${app.supernode.sketch-depth:4}") int depth,
+                                         @Value("${app.supernode.max-listed:1000}") int maxListed) {
+        return new SuperNodeGuard(threshold, window, width, depth, maxListed, Clock.systemUTC());
     }
 
     @Bean
-    public JourneyService journeyService(ElasticsearchClient es) {
-        return new JourneyService(es, "journeys-v1");
+    public JourneyIdGenerator journeyIdGenerator(@Value("${app.journey-ids.mode:random}") String mode) {
+        return JourneyIdGenerator.of(mode);
     }
 
     @Bean
-    public RedirectService redirectService(ElasticsearchClient es) {
-        return new RedirectService(es, "redirects");
+    public JourneyStitcher journeyStitcher(CkMapStore ckMapStore,
+                                           JourneyStore journeyStore,
+                                           RedirectStore redirectStore,
+                                           EventDeduplicator eventDeduplicator,
+                                           SuperNodeGuard superNodeGuard,
+                                           JourneyIdGenerator journeyIdGenerator,
+                                           JourneyChangePublisher journeyChangePublisher) {
+        return new JourneyStitcher(ckMapStore, journeyStore, redirectStore, eventDeduplicator, superNodeGuard,
+                journeyIdGenerator, journeyChangePublisher);
     }
 }
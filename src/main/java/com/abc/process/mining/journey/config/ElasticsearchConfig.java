@@ -3,6 +3,11 @@ package com.abc.process.mining.journey.config;
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
 import co.elastic.clients.transport.ElasticsearchTransport;
 import co.elastic.clients.transport.rest_client.RestClientTransport;
+import com.abc.process.mining.journey.es.ElasticsearchLoad;
+import com.abc.process.mining.journey.es.MonitoredTransport;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import org.apache.http.HttpHost;
 import org.elasticsearch.client.RestClient;
 import org.springframework.beans.factory.annotation.Value;
@@ -44,12 +49,27 @@ public class ElasticsearchConfig {
     @Value("${app.elastic.scheme:http}")
     private String esScheme;
 
+    /**
+     * Creates the {@link com.abc.process.mining.journey.es.ElasticsearchLoad} bean tracking
+     * in-flight requests, latency and rejections of the Elasticsearch client.
+     *
+     * @return A new {@link com.abc.process.mining.journey.es.ElasticsearchLoad} instance.
+     */
+    @Bean
+    public ElasticsearchLoad elasticsearchLoad() {
+        return new ElasticsearchLoad();
+    }
+
     /**
      * Creates and configures an {@link co.elastic.clients.elasticsearch.ElasticsearchClient} bean.
      * <p>
      * This method builds a {@link org.elasticsearch.client.RestClient} using the configured
      * host, port, and scheme. It then initializes an {@link co.elastic.clients.transport.ElasticsearchTransport}
      * with the RestClient and a JSON mapper, which is used to create the final ElasticsearchClient.
+     * The mapper writes {@code java.time} values as ISO-8601 strings so typed documents such as
+     * {@link com.abc.process.mining.journey.model.EventRecord} can be indexed directly.
+     * The transport is wrapped in a {@link com.abc.process.mining.journey.es.MonitoredTransport}
+     * reporting to {@code elasticsearchLoad()}, which drives consumer backpressure.
      * </p>
      * @return A fully configured {@link co.elastic.clients.elasticsearch.ElasticsearchClient} instance.
      */
@@ -59,10 +79,13 @@ public class ElasticsearchConfig {
                 new HttpHost(esHost, esPort, esScheme)
         ).build();
 
+        ObjectMapper json = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
         ElasticsearchTransport transport = new RestClientTransport(
-                restClient, new co.elastic.clients.json.jackson.JacksonJsonpMapper()
+                restClient, new co.elastic.clients.json.jackson.JacksonJsonpMapper(json)
         );
 
-        return new ElasticsearchClient(transport);
+        return new ElasticsearchClient(new MonitoredTransport(transport, elasticsearchLoad()));
     }
 }
\ No newline at end of file
@@ -1,16 +1,48 @@
 package com.abc.process.mining.journey.config;
 
+import com.abc.process.mining.journey.es.CkCacheWarmer;
+import com.abc.process.mining.journey.kafka.BackpressurePolicy;
+import com.abc.process.mining.journey.kafka.CompositeRebalanceListener;
+import com.abc.process.mining.journey.kafka.CorrelationKeyPartitioner;
+import com.abc.process.mining.journey.kafka.EventRecordDeserializer;
+import com.abc.process.mining.journey.kafka.FailedEventRouter;
+import com.abc.process.mining.journey.kafka.JourneyChangePublisher;
+import com.abc.process.mining.journey.kafka.OffsetTracker;
+import com.abc.process.mining.journey.model.EventRecord;
+import org.apache.kafka.clients.admin.NewTopic;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.log.LogAccessor;
 import org.springframework.kafka.annotation.EnableKafka;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.config.TopicBuilder;
 import org.springframework.kafka.core.*;
+import org.springframework.kafka.KafkaException;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.kafka.listener.ContainerPartitionPausingBackOffManager;
+import org.springframework.kafka.listener.ContainerPausingBackOffHandler;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.kafka.listener.KafkaConsumerBackoffManager;
+import org.springframework.kafka.listener.ListenerContainerPauseService;
+import org.springframework.kafka.listener.ListenerContainerRegistry;
+import org.springframework.kafka.listener.SeekUtils;
+import org.springframework.kafka.support.KafkaUtils;
+import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
+import org.springframework.scheduling.TaskScheduler;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -26,23 +58,37 @@ import java.util.Map;
 @Configuration
 public class KafkaConfig {
 
+    private static final LogAccessor LOG = new LogAccessor(KafkaConfig.class);
+
+    /**
+     * Warms the correlation key cache on partition assignment; absent when disabled or when the
+     * storage engine keeps no cache in front of {@code ckmap}. Fed with the correlation keys of every
+     * event consumed by the {@code events.raw} listener factories.
+     */
+    @Autowired(required = false)
+    private CkCacheWarmer ckCacheWarmer;
+
     /**
      * Creates and configures a {@link org.springframework.kafka.core.ConsumerFactory} bean.
      * <p>
      * This factory is used to create Kafka consumer instances. It is configured with
-     * a hardcoded bootstrap server address, a consumer group ID, and
-     * {@link org.apache.kafka.common.serialization.StringDeserializer} for keys and values.
+     * a hardcoded bootstrap server address, a consumer group ID,
+     * {@link org.apache.kafka.common.serialization.StringDeserializer} for keys and
+     * {@link com.abc.process.mining.journey.kafka.EventRecordDeserializer} for values, wrapped in an
+     * {@link org.springframework.kafka.support.serializer.ErrorHandlingDeserializer} so that an
+     * unreadable payload reaches the listener as a failed record instead of failing the poll.
      * Automatic committing of offsets is disabled.
      * </p>
      * @return A {@link org.springframework.kafka.core.DefaultKafkaConsumerFactory} instance.
      */
     @Bean
-    public ConsumerFactory<String, String> consumerFactory() {
+    public ConsumerFactory<String, EventRecord> consumerFactory() {
         Map<String, Object> props = new HashMap<>();
         props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
         props.put(ConsumerConfig.GROUP_ID_CONFIG, "journey-consumer-group");
         props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
-        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ErrorHandlingDeserializer.class);
+        props.put(ErrorHandlingDeserializer.VALUE_DESERIALIZER_CLASS, EventRecordDeserializer.class);
         props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
         return new DefaultKafkaConsumerFactory<>(props);
     }
@@ -57,20 +103,214 @@ public class KafkaConfig {
      * @return A {@link org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory} instance.
      */
     @Bean
-    public ConcurrentKafkaListenerContainerFactory<String, String> kafkaListenerContainerFactory() {
-        ConcurrentKafkaListenerContainerFactory<String, String> factory =
+    public ConcurrentKafkaListenerContainerFactory<String, EventRecord> kafkaListenerContainerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, EventRecord> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory());
+        factory.setBatchListener(false);
+        if (ckCacheWarmer != null) {
+            factory.getContainerProperties().setConsumerRebalanceListener(ckCacheWarmer);
+            factory.setRecordInterceptor((record, consumer) -> {
+                touched(record);
+                return record;
+            });
+        }
+        return factory;
+    }
+
+    /**
+     * Creates a listener container factory for batch consumption.
+     * <p>
+     * Uses the same {@code consumerFactory()} as the single-message factory but hands the
+     * listener the whole poll as a {@code List<ConsumerRecord>}, so the stitch path can
+     * group its Elasticsearch work per poll. Used by the batch consumer mode. The listener returns
+     * only after the poll's bulk writes, so the offsets committed after it are always written;
+     * they are committed asynchronously to keep the commit round trip off the poll loop.
+     * </p>
+     * @return A batch-enabled {@link org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory} instance.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, EventRecord> batchKafkaListenerContainerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, EventRecord> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory());
+        factory.setBatchListener(true);
+        factory.getContainerProperties().setSyncCommits(false);
+        if (ckCacheWarmer != null) {
+            factory.getContainerProperties().setConsumerRebalanceListener(ckCacheWarmer);
+            factory.setBatchInterceptor((records, consumer) -> {
+                for (ConsumerRecord<String, EventRecord> record : records) touched(record);
+                return records;
+            });
+        }
+        return factory;
+    }
+
+    /**
+     * Creates the {@link com.abc.process.mining.journey.kafka.OffsetTracker} bean shared by the
+     * listeners that complete records asynchronously.
+     *
+     * @return A new {@link com.abc.process.mining.journey.kafka.OffsetTracker} instance.
+     */
+    @Bean
+    public OffsetTracker offsetTracker() {
+        return new OffsetTracker();
+    }
+
+    /**
+     * Creates a batch listener container factory whose offsets are committed by the listener.
+     * <p>
+     * The container never commits on its own ({@code AckMode.MANUAL} without acknowledging);
+     * the listener commits the watermark of {@code offsetTracker()}, which also acts as the
+     * rebalance listener so completed work is committed before partitions are revoked, ahead of the
+     * cache warmer if there is one. Idle events let the listener commit late completions while no
+     * records arrive or the container is paused. Used by the parallel consumer mode.
+     * </p>
+     * @param idleInterval How often, in milliseconds, an idle container publishes an idle event.
+     * @return A batch-enabled, listener-committed {@link org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory} instance.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, EventRecord> trackedKafkaListenerContainerFactory(
+            @Value("${app.consumer.commit-interval-ms:1000}") long idleInterval) {
+        ConcurrentKafkaListenerContainerFactory<String, EventRecord> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory());
+        factory.setBatchListener(true);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        factory.getContainerProperties().setIdleEventInterval(idleInterval);
+        if (ckCacheWarmer != null) {
+            factory.getContainerProperties().setConsumerRebalanceListener(new CompositeRebalanceListener(
+                    List.<ConsumerAwareRebalanceListener>of(offsetTracker(), ckCacheWarmer)));
+            factory.setBatchInterceptor((records, consumer) -> {
+                for (ConsumerRecord<String, EventRecord> record : records) touched(record);
+                return records;
+            });
+        } else {
+            factory.getContainerProperties().setConsumerRebalanceListener(offsetTracker());
+        }
+        return factory;
+    }
+
+    private void touched(ConsumerRecord<String, EventRecord> record) {
+        // null for payloads that could not be deserialized
+        if (record.value() != null) {
+            ckCacheWarmer.touched(new TopicPartition(record.topic(), record.partition()),
+                    record.value().getCorrelationKeys());
+        }
+    }
+
+    /**
+     * Creates the listener container factory for the retry topics.
+     * <p>
+     * Record listener with manual acknowledgment. A record that is not due yet makes the
+     * {@link #retryBackoffManager} pause its partition until it is and throw a
+     * {@link org.springframework.kafka.listener.KafkaBackoffException}; the error handler then seeks
+     * the partition back to the record instead of giving up on it, so it is redelivered once the
+     * partition resumes. Other partitions, and so the other retry tiers, keep being consumed.
+     * Records failing otherwise are retried 9 times and then logged and skipped, as with the
+     * default error handler.
+     * </p>
+     * @return A manual-ack {@link org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory} instance.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, EventRecord> retryKafkaListenerContainerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, EventRecord> factory =
                 new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(consumerFactory());
         factory.setBatchListener(false);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        DefaultErrorHandler errorHandler = new DefaultErrorHandler((record, e) -> {
+            // not due yet: keep the record, its partition resumes when it is
+            if (SeekUtils.isBackoffException(e)) throw new KafkaException("retry not due yet", e);
+            LOG.error(e, () -> "giving up on retry record " + KafkaUtils.format(record));
+        });
+        errorHandler.setLogLevel(KafkaException.Level.DEBUG);
+        factory.setCommonErrorHandler(errorHandler);
         return factory;
     }
 
+    /**
+     * Creates the back-off manager the retry consumer delays records with.
+     * <p>
+     * Pauses only the partition of a record that is not due yet and resumes it with the
+     * application's task scheduler at the record's due time.
+     * </p>
+     * @param registry The registry holding the retry listener container.
+     * @param taskScheduler The scheduler resuming paused partitions.
+     * @return A partition-pausing {@link KafkaConsumerBackoffManager}.
+     */
+    @Bean
+    public KafkaConsumerBackoffManager retryBackoffManager(ListenerContainerRegistry registry,
+                                                          TaskScheduler taskScheduler) {
+        return new ContainerPartitionPausingBackOffManager(registry,
+                new ContainerPausingBackOffHandler(new ListenerContainerPauseService(registry, taskScheduler)));
+    }
+
+    /**
+     * Declares the retry tier topics and the dead-letter topic.
+     * <p>
+     * Created by the application's {@code KafkaAdmin} on startup if they do not exist yet.
+     * </p>
+     * @param router The router defining the retry tiers.
+     * @return The topics used by {@link FailedEventRouter}.
+     */
+    @Bean
+    public KafkaAdmin.NewTopics failedEventTopics(FailedEventRouter router) {
+        List<NewTopic> topics = new ArrayList<>();
+        for (String name : router.retryTopics()) {
+            topics.add(TopicBuilder.name(name).partitions(6).replicas(1).build());
+        }
+        topics.add(TopicBuilder.name(FailedEventRouter.DLQ_TOPIC).partitions(6).replicas(1).build());
+        return new KafkaAdmin.NewTopics(topics.toArray(NewTopic[]::new));
+    }
+
+    /**
+     * Declares the compacted topic journey changes are published to.
+     * <p>
+     * Only declared when {@code app.changes.enabled} is set. Records are keyed per event and per
+     * merged journey, so compaction only drops records superseded by a redelivery, and the topic
+     * has no time-based retention: a view rebuilt from the start needs every record.
+     * </p>
+     * @param topic The topic name.
+     * @return The topic used by {@link com.abc.process.mining.journey.kafka.JourneyChangePublisher}.
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "app.changes", name = "enabled", havingValue = "true")
+    public NewTopic journeyChangesTopic(
+            @Value("${app.changes.topic:" + JourneyChangePublisher.DEFAULT_TOPIC + "}") String topic) {
+        return TopicBuilder.name(topic).partitions(6).replicas(1).compact().build();
+    }
+
+    /**
+     * Creates the policy deciding when listeners are paused because Elasticsearch is overloaded.
+     * <p>
+     * Applied by {@link com.abc.process.mining.journey.kafka.BackpressureController}. Every threshold
+     * is read from {@code app.backpressure.*}; each pause threshold has a lower resume threshold.
+     * </p>
+     * @return A {@link com.abc.process.mining.journey.kafka.BackpressurePolicy} instance.
+     */
+    @Bean
+    public BackpressurePolicy backpressurePolicy(
+            @Value("${app.backpressure.pause.in-flight:64}") int pauseInFlight,
+            @Value("${app.backpressure.resume.in-flight:16}") int resumeInFlight,
+            @Value("${app.backpressure.pause.latency-ms:2000}") long pauseLatencyMillis,
+            @Value("${app.backpressure.resume.latency-ms:500}") long resumeLatencyMillis,
+            @Value("${app.backpressure.pause.throttled-ratio:0.05}") double pauseThrottledRatio,
+            @Value("${app.backpressure.resume.throttled-ratio:0.0}") double resumeThrottledRatio) {
+        return new BackpressurePolicy(pauseInFlight, resumeInFlight, pauseLatencyMillis, resumeLatencyMillis,
+                pauseThrottledRatio, resumeThrottledRatio);
+    }
+
     /**
      * Creates and configures a {@link org.springframework.kafka.core.ProducerFactory} bean.
      * <p>
      * This factory is used to create Kafka producer instances. It is configured with
      * a hardcoded bootstrap server address and {@link org.apache.kafka.common.serialization.StringSerializer}
-     * for both keys and values.
+     * for both keys and values. Records are placed by
+     * {@link com.abc.process.mining.journey.kafka.CorrelationKeyPartitioner}, so events sharing their
+     * canonical correlation key are stitched on the same partition. Sends are batched for throughput:
+     * the producer lingers up to 10 ms to fill batches of up to 256 KiB, compressed with LZ4, which
+     * matters for the HTTP ingest path publishing many small events.
      * </p>
      * @return A {@link org.springframework.kafka.core.DefaultKafkaProducerFactory} instance.
      */
@@ -80,6 +320,10 @@ public class KafkaConfig {
         props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
         props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
         props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        props.put(ProducerConfig.PARTITIONER_CLASS_CONFIG, CorrelationKeyPartitioner.class);
+        props.put(ProducerConfig.LINGER_MS_CONFIG, 10);
+        props.put(ProducerConfig.BATCH_SIZE_CONFIG, 256 * 1024);
+        props.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, "lz4");
         return new DefaultKafkaProducerFactory<>(props);
     }
 
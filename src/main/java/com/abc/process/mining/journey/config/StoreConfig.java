@@ -0,0 +1,193 @@
+package com.abc.process.mining.journey.config;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import com.abc.process.mining.journey.es.CkCacheWarmer;
+import com.abc.process.mining.journey.es.CkJourneyCache;
+import com.abc.process.mining.journey.es.CkMapMirror;
+import com.abc.process.mining.journey.es.CkMapRetention;
+import com.abc.process.mining.journey.es.CkMapService;
+import com.abc.process.mining.journey.es.CoalescingJourneyWriter;
+import com.abc.process.mining.journey.es.EmbeddedCkMapService;
+import com.abc.process.mining.journey.es.JourneyCompactor;
+import com.abc.process.mining.journey.es.JourneyService;
+import com.abc.process.mining.journey.es.KnownCkFilter;
+import com.abc.process.mining.journey.es.KnownCkFilterLoader;
+import com.abc.process.mining.journey.es.MonitoredTransport;
+import com.abc.process.mining.journey.es.RedirectService;
+import com.abc.process.mining.journey.es.UnionFindRedirectStore;
+import com.abc.process.mining.journey.kafka.BackpressureController;
+import com.abc.process.mining.journey.store.InMemoryCkMapStore;
+import com.abc.process.mining.journey.store.InMemoryJourneyStore;
+import com.abc.process.mining.journey.store.InMemoryRedirectStore;
+import com.abc.process.mining.journey.store.MappedCkIndex;
+import com.abc.process.mining.journey.store.RedirectStore;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+
+/**
+ * Configuration of the storage engine behind the stitch path.
+ * <p>
+ * {@code app.store.engine} selects one group of {@link com.abc.process.mining.journey.store.CkMapStore},
+ * {@link com.abc.process.mining.journey.store.JourneyStore} and
+ * {@link com.abc.process.mining.journey.store.RedirectStore} beans:
+ * </p>
+ * <ul>
+ * <li>{@code elasticsearch} (default): the {@code ckmap}, {@code journeys-v1} and {@code redirects}
+ * indices, optionally with the embedded memory-mapped CK index ({@code app.ckstore.engine=mmap}).</li>
+ * <li>{@code memory}: concurrent in-process maps. Nothing survives a restart; meant for embedded
+ * single-node use and for benchmarking the stitch logic without a cluster.</li>
+ * </ul>
+ * In both cases merges rewrite the {@link CkJourneyCache} through a redirect listener.
+ */
+@Configuration
+public class StoreConfig {
+
+    /**
+     * Stores backed by Elasticsearch.
+     */
+    @Configuration
+    @ConditionalOnProperty(prefix = "app.store", name = "engine", havingValue = "elasticsearch", matchIfMissing = true)
+    public static class ElasticsearchStores {
+
+        @Bean
+        @ConditionalOnProperty(prefix = "app.ckstore", name = "engine", havingValue = "mmap")
+        public MappedCkIndex mappedCkIndex(@Value("${app.ckstore.dir:data/ckstore}") Path dir,
+                                           @Value("${app.ckstore.initial-slots:1048576}") long initialSlots,
+                                           @Value("${app.ckstore.sync:true}") boolean sync) throws IOException {
+            return new MappedCkIndex(dir, initialSlots, sync);
+        }
+
+        @Bean
+        @ConditionalOnProperty(prefix = "app.ckstore", name = "engine", havingValue = "mmap")
+        public CkMapMirror ckMapMirror(ElasticsearchClient es, MappedCkIndex mappedCkIndex,
+                                       @Value("${app.ckstore.mirror-batch-size:5000}") int batchSize) {
+            return new CkMapMirror(es, "ckmap", mappedCkIndex, batchSize);
+        }
+
+        @Bean
+        public CkMapService ckMapService(ElasticsearchClient es, CkJourneyCache ckJourneyCache,
+                                         KnownCkFilter knownCkFilter, ObjectProvider<MappedCkIndex> mappedCkIndex,
+                                         @Value("${app.ckretention.enabled:false}") boolean retention) {
+            MappedCkIndex local = mappedCkIndex.getIfAvailable();
+            if (local != null) return new EmbeddedCkMapService(es, "ckmap", local);
+            // retention expires by updatedAt, which claims answered from the cache do not refresh
+            return new CkMapService(es, "ckmap", ckJourneyCache, knownCkFilter, retention);
+        }
+
+        @Bean
+        @ConditionalOnExpression("${app.ckbloom.enabled:true} and '${app.ckstore.engine:es}' != 'mmap'")
+        public KnownCkFilterLoader knownCkFilterLoader(KnownCkFilter knownCkFilter, CkMapService ckMapService,
+                                                       @Value("${app.ckbloom.snapshot:}") String snapshot) {
+            return new KnownCkFilterLoader(knownCkFilter, ckMapService, snapshot.isBlank() ? null : Path.of(snapshot));
+        }
+
+        @Bean
+        @ConditionalOnExpression("${app.ckwarmup.enabled:true} and '${app.ckstore.engine:es}' != 'mmap'")
+        public CkCacheWarmer ckCacheWarmer(ElasticsearchClient es, CkJourneyCache ckJourneyCache,
+                                           @Value("${app.ckwarmup.keys-per-partition:20000}") int keysPerPartition,
+                                           @Value("${app.ckwarmup.page-size:1000}") int pageSize) {
+            return new CkCacheWarmer(es, "ckmap", "ckrecent", "events.raw", ckJourneyCache,
+                    keysPerPartition, pageSize, Clock.systemUTC());
+        }
+
+        @Bean
+        @ConditionalOnExpression("${app.ckretention.enabled:false} and '${app.ckstore.engine:es}' != 'mmap'")
+        public CkMapRetention ckMapRetention(ElasticsearchClient es, ObjectProvider<BackpressureController> backpressure,
+                                             @Value("${app.ckretention.horizon:90d}") Duration horizon,
+                                             @Value("${app.ckcache.ttl:10m}") Duration cacheTtl,
+                                             @Value("${app.ckcache.touch-interval-ms:60000}") long touchIntervalMs,
+                                             @Value("${app.ckretention.slices:4}") int slices,
+                                             @Value("${app.ckretention.requests-per-second:2000}") float requestsPerSecond,
+                                             @Value("${app.ckretention.batch-size:100000}") long batchSize) {
+            if (horizon.compareTo(cacheTtl.plusMillis(touchIntervalMs)) <= 0) {
+                throw new IllegalArgumentException("app.ckretention.horizon " + horizon
+                        + " must exceed app.ckcache.ttl plus its touch interval");
+            }
+            return new CkMapRetention(MonitoredTransport.maintenance(es), "ckmap", horizon, slices, requestsPerSecond, batchSize, () -> {
+                BackpressureController controller = backpressure.getIfAvailable();
+                return controller != null && controller.isPaused();
+            }, Clock.systemUTC());
+        }
+
+        @Bean
+        @ConditionalOnProperty(prefix = "app.journeys.coalesce", name = "enabled", havingValue = "true")
+        public CoalescingJourneyWriter journeyStore(ElasticsearchClient es,
+                                                    @Value("${app.journeys.coalesce.window:20ms}") Duration window,
+                                                    @Value("${app.journeys.coalesce.max-events:2000}") int maxEvents) {
+            return new CoalescingJourneyWriter(new JourneyService(es, "journeys-v1"), window, maxEvents);
+        }
+
+        @Bean
+        @ConditionalOnProperty(prefix = "app.journeys.coalesce", name = "enabled", havingValue = "false", matchIfMissing = true)
+        public JourneyService journeyService(ElasticsearchClient es) {
+            return new JourneyService(es, "journeys-v1");
+        }
+
+        @Bean
+        @ConditionalOnExpression("${app.compactor.enabled:false} and '${app.ckstore.engine:es}' != 'mmap'")
+        public JourneyCompactor journeyCompactor(ElasticsearchClient es, RedirectStore redirectStore,
+                                                 CkJourneyCache ckJourneyCache,
+                                                 ObjectProvider<BackpressureController> backpressure,
+                                                 @Value("${app.compactor.batch-size:500}") int batchSize,
+                                                 @Value("${app.compactor.min-age:10m}") Duration minAge,
+                                                 @Value("${app.compactor.ops-per-second:1000}") int opsPerSecond) {
+            return new JourneyCompactor(MonitoredTransport.maintenance(es), redirectStore, "journeys-v1", "redirects", "ckmap", ckJourneyCache,
+                    batchSize, minAge, opsPerSecond, () -> {
+                BackpressureController controller = backpressure.getIfAvailable();
+                return controller != null && controller.isPaused();
+            }, Clock.systemUTC());
+        }
+
+        @Bean
+        @ConditionalOnProperty(prefix = "app.redirects", name = "resolver", havingValue = "union-find", matchIfMissing = true)
+        public UnionFindRedirectStore redirectStore(ElasticsearchClient es, CkJourneyCache ckJourneyCache) {
+            UnionFindRedirectStore redirectStore = new UnionFindRedirectStore(
+                    new RedirectService(es, "redirects", MonitoredTransport.maintenance(es)), Clock.systemUTC());
+            redirectStore.addListener(ckJourneyCache::redirected);
+            return redirectStore;
+        }
+
+        @Bean
+        @ConditionalOnProperty(prefix = "app.redirects", name = "resolver", havingValue = "es")
+        public RedirectService redirectService(ElasticsearchClient es, CkJourneyCache ckJourneyCache) {
+            RedirectService redirectService = new RedirectService(es, "redirects");
+            // keep cached keys of merged journeys pointing at the surviving journey
+            redirectService.addListener(ckJourneyCache::redirected);
+            return redirectService;
+        }
+    }
+
+    /**
+     * Stores kept in memory.
+     */
+    @Configuration
+    @ConditionalOnProperty(prefix = "app.store", name = "engine", havingValue = "memory")
+    public static class MemoryStores {
+
+        @Bean
+        public InMemoryCkMapStore ckMapStore() {
+            return new InMemoryCkMapStore();
+        }
+
+        @Bean
+        public InMemoryJourneyStore journeyStore() {
+            return new InMemoryJourneyStore();
+        }
+
+        @Bean
+        public InMemoryRedirectStore redirectStore(CkJourneyCache ckJourneyCache) {
+            InMemoryRedirectStore redirectStore = new InMemoryRedirectStore();
+            redirectStore.addListener(ckJourneyCache::redirected);
+            return redirectStore;
+        }
+    }
+}
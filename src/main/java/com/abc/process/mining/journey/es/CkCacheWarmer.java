@@ -0,0 +1,355 @@
+package com.abc.process.mining.journey.es;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.MgetResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.elasticsearch.core.mget.MultiGetResponseItem;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.core.log.LogAccessor;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Warms the {@link CkJourneyCache} with the correlation keys of partitions assigned in a rebalance.
+ * <p>
+ * Every instance keeps, per assigned partition, the most recently seen correlation keys of the
+ * events it consumed, and writes that list to a small index ({@code ckrecent}, one document per
+ * partition) periodically and whenever the partition is revoked. When a partition is assigned,
+ * its list is read back and the owners of those keys are loaded from {@code ckmap} into the cache
+ * with Multi-Get requests of {@code pageSize} keys, in the background so the poll loop is not
+ * held up. On revocation the partition's keys are dropped from the cache, unless another partition
+ * still assigned here has seen them too.
+ * </p>
+ * Progress is reported by {@link #stats()}: keys to load and loaded per warming partition, and
+ * whether every assigned partition is warm.
+ */
+public class CkCacheWarmer implements ConsumerAwareRebalanceListener {
+
+    private static final LogAccessor LOG = new LogAccessor(CkCacheWarmer.class);
+
+    private final ElasticsearchClient es;
+    private final String ckmapIndex;
+    private final String recentIndex;
+    private final String topic;
+    private final CkJourneyCache cache;
+    private final int keysPerPartition;
+    private final int pageSize;
+    private final Clock clock;
+
+    private final Map<TopicPartition, RecentCks> recent = new ConcurrentHashMap<>();
+    private final Map<TopicPartition, Warmup> warmups = new ConcurrentHashMap<>();
+    private final AtomicLong warmedPartitions = new AtomicLong();
+    private final AtomicLong warmedKeys = new AtomicLong();
+    private final AtomicLong droppedKeys = new AtomicLong();
+
+    /**
+     * Constructs a {@code CkCacheWarmer}.
+     *
+     * @param es The Elasticsearch client.
+     * @param ckmapIndex The index mapping correlation keys to journey IDs.
+     * @param recentIndex The index holding the recent correlation keys of every partition.
+     * @param topic The topic whose partitions are tracked; partitions of other topics are ignored.
+     * @param cache The cache to warm.
+     * @param keysPerPartition How many recent correlation keys are remembered per partition.
+     * @param pageSize How many correlation keys are loaded per Multi-Get request.
+     * @param clock The clock used to time warm-ups.
+     */
+    public CkCacheWarmer(ElasticsearchClient es, String ckmapIndex, String recentIndex, String topic,
+                         CkJourneyCache cache, int keysPerPartition, int pageSize, Clock clock) {
+        this.es = es;
+        this.ckmapIndex = ckmapIndex;
+        this.recentIndex = recentIndex;
+        this.topic = topic;
+        this.cache = cache;
+        this.keysPerPartition = keysPerPartition;
+        this.pageSize = pageSize;
+        this.clock = clock;
+    }
+
+    /**
+     * Remembers the correlation keys of an event consumed from a partition.
+     *
+     * @param tp The partition the event was consumed from.
+     * @param cks The event's correlation keys.
+     */
+    public void touched(TopicPartition tp, Collection<String> cks) {
+        if (cks == null || cks.isEmpty() || !tp.topic().equals(topic)) return;
+        recent.computeIfAbsent(tp, p -> new RecentCks(keysPerPartition)).add(cks);
+    }
+
+    @Override
+    public void onPartitionsAssigned(Consumer<?, ?> consumer, Collection<TopicPartition> assigned) {
+        List<TopicPartition> tps = tracked(assigned);
+        if (tps.isEmpty()) return;
+        Thread.ofVirtual().name("ckcache-warmup").start(() -> {
+            try {
+                warm(tps);
+            } catch (IOException | RuntimeException e) {
+                // the cache fills up from regular traffic instead
+                LOG.warn(e, () -> "could not warm the correlation key cache for " + tps);
+            }
+        });
+    }
+
+    @Override
+    public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> revoked) {
+        List<TopicPartition> tps = tracked(revoked);
+        if (tps.isEmpty()) return;
+        try {
+            // hand the freshest list to the next owner
+            flush(tps);
+        } catch (IOException | RuntimeException e) {
+            LOG.warn(e, () -> "could not write the recent correlation keys of " + tps);
+        }
+        drop(tps);
+    }
+
+    @Override
+    public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> lost) {
+        drop(tracked(lost));
+    }
+
+    /**
+     * Loads the recent correlation keys of partitions and their owners into the cache.
+     *
+     * @param tps The partitions to warm.
+     * @throws IOException if the recent keys or their owners cannot be read.
+     */
+    void warm(Collection<TopicPartition> tps) throws IOException {
+        Map<TopicPartition, List<String>> keys = readRecent(tps);
+        for (TopicPartition tp : tps) {
+            List<String> cks = keys.getOrDefault(tp, List.of());
+            Warmup warmup = new Warmup(cks.size(), clock.millis());
+            warmups.put(tp, warmup);
+            // keep the keys so a revocation can drop them again
+            RecentCks local = recent.computeIfAbsent(tp, p -> new RecentCks(keysPerPartition));
+            local.addOlder(cks);
+        }
+        for (TopicPartition tp : tps) {
+            Warmup warmup = warmups.get(tp);
+            if (warmup == null) continue;
+            List<String> cks = keys.getOrDefault(tp, List.of());
+            for (int from = 0; from < cks.size() && !warmup.cancelled; from += pageSize) {
+                List<String> page = cks.subList(from, Math.min(from + pageSize, cks.size()));
+                load(page);
+                warmup.loaded.addAndGet(page.size());
+                warmedKeys.addAndGet(page.size());
+            }
+            long millis = clock.millis() - warmup.startedAt;
+            warmup.done = true;
+            if (!warmup.cancelled) warmedPartitions.incrementAndGet();
+            LOG.debug(() -> "warmed " + warmup.loaded.get() + " correlation keys of " + tp + " in " + millis + " ms");
+        }
+    }
+
+    /**
+     * Writes the recent correlation keys of every partition that saw new ones since the last write.
+     */
+    @Scheduled(fixedDelayString = "${app.ckwarmup.flush-interval-ms:30000}",
+            initialDelayString = "${app.ckwarmup.flush-interval-ms:30000}")
+    public void flush() {
+        try {
+            flush(new ArrayList<>(recent.keySet()));
+        } catch (IOException | RuntimeException e) {
+            LOG.warn(e, "could not write the recent correlation keys");
+        }
+    }
+
+    /**
+     * Writes the recent correlation keys of some partitions in one {@code _bulk} request, skipping
+     * those without new keys since the last write.
+     *
+     * @param tps The partitions to write.
+     * @throws IOException if an I/O error occurs or any bulk item fails.
+     */
+    void flush(Collection<TopicPartition> tps) throws IOException {
+        String now = Instant.ofEpochMilli(clock.millis()).toString();
+        List<BulkOperation> ops = new ArrayList<>();
+        Map<RecentCks, Long> written = new HashMap<>();
+        for (TopicPartition tp : tps) {
+            RecentCks cks = recent.get(tp);
+            if (cks == null) continue;
+            long version = cks.version();
+            if (version == cks.flushed) continue;
+            List<String> snapshot = cks.snapshot();
+            written.put(cks, version);
+            ops.add(BulkOperation.of(b -> b.index(i -> i
+                    .index(recentIndex)
+                    .id(id(tp))
+                    .document(Map.of(
+                            "topic", tp.topic(),
+                            "partition", tp.partition(),
+                            "cks", snapshot,
+                            "updatedAt", now
+                    )))));
+        }
+        if (ops.isEmpty()) return;
+
+        BulkResponse resp = es.bulk(b -> b.operations(ops));
+        if (resp.errors()) {
+            for (BulkResponseItem item : resp.items()) {
+                if (item.error() != null) {
+                    throw new IOException("recent CK write failed for " + item.id() + ": " + item.error().reason());
+                }
+            }
+        }
+        written.forEach((cks, version) -> cks.flushed = version);
+    }
+
+    /**
+     * @return Warm-up progress: keys to load and loaded, per partition still warming and in total,
+     * and whether every assigned partition is warm.
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        Map<String, Object> warming = new TreeMap<>();
+        long total = 0;
+        long loaded = 0;
+        for (Map.Entry<TopicPartition, Warmup> e : warmups.entrySet()) {
+            Warmup warmup = e.getValue();
+            total += warmup.total;
+            loaded += warmup.loaded.get();
+            if (!warmup.done) {
+                warming.put(e.getKey().toString(), Map.of("keys", warmup.total, "loaded", warmup.loaded.get()));
+            }
+        }
+        stats.put("warm", warming.isEmpty());
+        stats.put("progress", total == 0 ? 1.0 : (double) loaded / total);
+        stats.put("keys", total);
+        stats.put("loaded", loaded);
+        stats.put("warming", warming);
+        stats.put("partitionsWarmed", warmedPartitions.get());
+        stats.put("keysWarmed", warmedKeys.get());
+        stats.put("keysDropped", droppedKeys.get());
+        return stats;
+    }
+
+    /**
+     * Writes the recent correlation keys of all partitions; called when the application context closes.
+     */
+    public void close() {
+        flush();
+    }
+
+    private Map<TopicPartition, List<String>> readRecent(Collection<TopicPartition> tps) throws IOException {
+        Map<String, TopicPartition> byId = new HashMap<>();
+        for (TopicPartition tp : tps) byId.put(id(tp), tp);
+        MgetResponse<Map> resp = es.mget(m -> m.index(recentIndex).ids(new ArrayList<>(byId.keySet())), Map.class);
+
+        Map<TopicPartition, List<String>> out = new HashMap<>();
+        for (MultiGetResponseItem<Map> item : resp.docs()) {
+            if (item.isFailure() || !item.result().found()) continue;
+            Object cks = item.result().source().get("cks");
+            if (!(cks instanceof List<?> list)) continue;
+            List<String> keys = new ArrayList<>(list.size());
+            for (Object ck : list) keys.add(ck.toString());
+            out.put(byId.get(item.result().id()), keys);
+        }
+        return out;
+    }
+
+    private void load(List<String> cks) throws IOException {
+        MgetResponse<Map> resp = es.mget(m -> m.index(ckmapIndex).ids(cks), Map.class);
+        for (MultiGetResponseItem<Map> item : resp.docs()) {
+            if (item.isFailure() || !item.result().found()) continue;
+            Object jid = item.result().source().get("journeyId");
+            if (jid != null) cache.put(item.result().id(), jid.toString());
+        }
+    }
+
+    private void drop(Collection<TopicPartition> tps) {
+        List<String> cks = new ArrayList<>();
+        for (TopicPartition tp : tps) {
+            Warmup warmup = warmups.remove(tp);
+            if (warmup != null) warmup.cancelled = true;
+            RecentCks removed = recent.remove(tp);
+            if (removed != null) cks.addAll(removed.snapshot());
+        }
+        if (cks.isEmpty()) return;
+        // keys also seen on a partition that stays here remain useful
+        Set<String> kept = new HashSet<>();
+        for (RecentCks other : recent.values()) kept.addAll(other.snapshot());
+        cks.removeIf(kept::contains);
+        droppedKeys.addAndGet(cache.invalidate(cks));
+    }
+
+    private List<TopicPartition> tracked(Collection<TopicPartition> tps) {
+        List<TopicPartition> out = new ArrayList<>(tps.size());
+        for (TopicPartition tp : tps) if (tp.topic().equals(topic)) out.add(tp);
+        return out;
+    }
+
+    private static String id(TopicPartition tp) {
+        return tp.topic() + "-" + tp.partition();
+    }
+
+    /**
+     * Bounded set of correlation keys, most recently seen last.
+     */
+    private static final class RecentCks {
+        private final int capacity;
+        private final LinkedHashMap<String, Boolean> keys = new LinkedHashMap<>(16, 0.75f, true);
+        private long version;
+        private volatile long flushed;
+
+        RecentCks(int capacity) {
+            this.capacity = capacity;
+        }
+
+        synchronized void add(Collection<String> cks) {
+            for (String ck : cks) keys.put(ck, Boolean.TRUE);
+            trim();
+            version++;
+        }
+
+        /**
+         * Adds keys seen before any key already held, without marking the set as changed.
+         */
+        synchronized void addOlder(List<String> cks) {
+            LinkedHashMap<String, Boolean> newer = new LinkedHashMap<>(keys);
+            keys.clear();
+            for (String ck : cks) keys.put(ck, Boolean.TRUE);
+            keys.putAll(newer);
+            trim();
+        }
+
+        synchronized long version() {
+            return version;
+        }
+
+        synchronized List<String> snapshot() {
+            return new ArrayList<>(keys.keySet());
+        }
+
+        private void trim() {
+            Iterator<String> eldest = keys.keySet().iterator();
+            while (keys.size() > capacity) {
+                eldest.next();
+                eldest.remove();
+            }
+        }
+    }
+
+    private static final class Warmup {
+        final long total;
+        final long startedAt;
+        final AtomicLong loaded = new AtomicLong();
+        volatile boolean done;
+        volatile boolean cancelled;
+
+        Warmup(long total, long startedAt) {
+            this.total = total;
+            this.startedAt = startedAt;
+        }
+    }
+}
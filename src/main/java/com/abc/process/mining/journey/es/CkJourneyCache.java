@@ -0,0 +1,245 @@
+package com.abc.process.mining.journey.es;
+
+import com.abc.process.mining.journey.util.Hashing;
+import com.abc.process.mining.journey.util.LongObjectHashMap;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * In-process cache of correlation key to journey ID mappings, bounded in size and age.
+ * <p>
+ * Claims never move a correlation key in the {@code ckmap} index to another journey, so a cached
+ * mapping can answer both lookups and claims locally. Owners change in the background only:
+ * {@link JourneyCompactor} rewrites the keys of a merged journey to the journey it was merged into,
+ * and {@link CkMapRetention} deletes keys not claimed within its horizon.
+ * </p>
+ * <p>
+ * When journeys are merged, {@link #redirected(String, String)} rewrites every cached key of the
+ * merged journey to its target, so the stitch path stops resolving the old ID and the cached owner
+ * is the one the compactor writes later; the compactor also drops the keys it rewrites with
+ * {@link #invalidate(Collection)}. Merges made by other instances reach the cache when the
+ * redirects are read back, and are otherwise caught by redirect resolution and bounded by the
+ * time-to-live. Keys claimed from the cache are touched in the index by
+ * {@link CkMapService#touch()}, so retention does not delete keys in use, and a key found deleted
+ * by its touch is dropped.
+ * </p>
+ * <p>
+ * Keys are not retained: an entry is stored under the key's 64-bit {@link Hashing#hash64(String)}
+ * and checked against its 32-bit {@link String#hashCode()}, so a lookup colliding on the first
+ * hash is a miss instead of a wrong answer. Entries are nodes of an access-ordered list and of a
+ * per-journey list, and all entries of a journey share one journey ID string.
+ * </p>
+ * Entries are evicted least recently used first. Hits, misses, evictions, expirations, merge
+ * rewrites and the age of served entries are counted for {@link #stats()}.
+ */
+public class CkJourneyCache {
+
+    private final int capacity;
+    private final long ttlMillis;
+    private final Clock clock;
+
+    private final LongObjectHashMap<Entry> entries = new LongObjectHashMap<>();
+    private final Map<String, Entry> firstByJourney = new HashMap<>();
+    private final Entry lru = new Entry(0, 0); // sentinel: lru.next is the eldest entry, lru.prev the newest
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+    private long rewrites;
+    private long hitAgeMillisTotal;
+
+    /**
+     * Constructs a {@code CkJourneyCache}.
+     *
+     * @param capacity The maximum number of cached keys; 0 disables the cache.
+     * @param ttl How long a mapping is served before it is read from Elasticsearch again.
+     * @param clock The clock used to age entries.
+     */
+    public CkJourneyCache(int capacity, Duration ttl, Clock clock) {
+        this.capacity = capacity;
+        this.ttlMillis = ttl.toMillis();
+        this.clock = clock;
+        lru.prev = lru;
+        lru.next = lru;
+    }
+
+    /**
+     * @return A cache that never holds anything.
+     */
+    public static CkJourneyCache disabled() {
+        return new CkJourneyCache(0, Duration.ZERO, Clock.systemUTC());
+    }
+
+    /**
+     * @param ck A correlation key.
+     * @return The cached journey ID, or {@code null} if the key is not cached or its entry expired.
+     */
+    public synchronized String get(String ck) {
+        if (capacity == 0) return null;
+        Entry entry = entries.get(Hashing.hash64(ck));
+        if (entry == null || entry.check != ck.hashCode()) {
+            misses++;
+            return null;
+        }
+        long age = clock.millis() - entry.cachedAt;
+        if (age >= ttlMillis) {
+            remove(entry);
+            expirations++;
+            misses++;
+            return null;
+        }
+        unlinkLru(entry);
+        linkLru(entry);
+        hits++;
+        hitAgeMillisTotal += age;
+        return entry.journeyId;
+    }
+
+    /**
+     * Caches the owner of a correlation key as confirmed by Elasticsearch.
+     *
+     * @param ck The correlation key.
+     * @param journeyId The journey owning it.
+     */
+    public synchronized void put(String ck, String journeyId) {
+        if (capacity == 0) return;
+        long id = Hashing.hash64(ck);
+        Entry entry = entries.get(id);
+        if (entry != null) {
+            unlinkLru(entry);
+            unlinkJourney(entry);
+            entry.check = ck.hashCode();
+        } else {
+            entry = new Entry(id, ck.hashCode());
+            entries.put(id, entry);
+        }
+        entry.cachedAt = clock.millis();
+        linkJourney(entry, journeyId);
+        linkLru(entry);
+        if (entries.size() > capacity) {
+            remove(lru.next);
+            evictions++;
+        }
+    }
+
+    /**
+     * Drops correlation keys from the cache.
+     *
+     * @param cks The keys to drop; keys that are not cached are ignored.
+     * @return The number of entries dropped.
+     */
+    public synchronized int invalidate(Collection<String> cks) {
+        if (capacity == 0) return 0;
+        int dropped = 0;
+        for (String ck : cks) {
+            Entry entry = entries.get(Hashing.hash64(ck));
+            if (entry == null || entry.check != ck.hashCode()) continue;
+            remove(entry);
+            dropped++;
+        }
+        return dropped;
+    }
+
+    /**
+     * Rewrites the cached keys of a merged journey to the journey it now redirects to.
+     *
+     * @param from The merged journey ID.
+     * @param to The journey it was merged into.
+     */
+    public synchronized void redirected(String from, String to) {
+        if (from.equals(to)) return;
+        Entry first = firstByJourney.remove(from);
+        if (first == null) return;
+        Entry target = firstByJourney.get(to);
+        String journeyId = target != null ? target.journeyId : to;
+        // keep the original age: the rewrite is local knowledge, not a fresh read
+        Entry last = first;
+        for (Entry e = first; e != null; e = e.journeyNext) {
+            e.journeyId = journeyId;
+            last = e;
+            rewrites++;
+        }
+        last.journeyNext = target;
+        if (target != null) target.journeyPrev = last;
+        firstByJourney.put(journeyId, first);
+    }
+
+    /**
+     * @return Hit rate, eviction and expiration counts, merge rewrites and the mean age of served entries.
+     */
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long lookups = hits + misses;
+        stats.put("size", entries.size());
+        stats.put("capacity", capacity);
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("hitRate", lookups == 0 ? 0.0 : (double) hits / lookups);
+        stats.put("evictions", evictions);
+        stats.put("expirations", expirations);
+        stats.put("mergeRewrites", rewrites);
+        stats.put("avgHitAgeMillis", hits == 0 ? 0 : hitAgeMillisTotal / hits);
+        return stats;
+    }
+
+    private void remove(Entry entry) {
+        entries.remove(entry.id);
+        unlinkLru(entry);
+        unlinkJourney(entry);
+    }
+
+    private void linkLru(Entry entry) {
+        entry.prev = lru.prev;
+        entry.next = lru;
+        lru.prev.next = entry;
+        lru.prev = entry;
+    }
+
+    private static void unlinkLru(Entry entry) {
+        entry.prev.next = entry.next;
+        entry.next.prev = entry.prev;
+        entry.prev = null;
+        entry.next = null;
+    }
+
+    private void linkJourney(Entry entry, String journeyId) {
+        Entry first = firstByJourney.get(journeyId);
+        entry.journeyId = first != null ? first.journeyId : journeyId;
+        entry.journeyPrev = null;
+        entry.journeyNext = first;
+        if (first != null) first.journeyPrev = entry;
+        firstByJourney.put(entry.journeyId, entry);
+    }
+
+    private void unlinkJourney(Entry entry) {
+        if (entry.journeyPrev != null) {
+            entry.journeyPrev.journeyNext = entry.journeyNext;
+        } else if (entry.journeyNext != null) {
+            firstByJourney.put(entry.journeyId, entry.journeyNext);
+        } else {
+            firstByJourney.remove(entry.journeyId);
+        }
+        if (entry.journeyNext != null) entry.journeyNext.journeyPrev = entry.journeyPrev;
+        entry.journeyPrev = null;
+        entry.journeyNext = null;
+    }
+
+    private static final class Entry {
+        final long id;
+        int check;
+        String journeyId;
+        long cachedAt;
+        Entry prev;
+        Entry next;
+        Entry journeyPrev;
+        Entry journeyNext;
+
+        Entry(long id, int check) {
+            this.id = id;
+            this.check = check;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.abc.process.mining.journey.es;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import com.abc.process.mining.journey.store.MappedCkIndex;
+import org.springframework.core.log.LogAccessor;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replicates claims of the embedded {@link MappedCkIndex} to the {@code ckmap} index.
+ * <p>
+ * Claims are read from the index's log, starting where the last replication stopped, and written
+ * in bulk requests of up to {@code batchSize} documents. The replicated position is only advanced
+ * after a bulk request fully succeeded, so after a failure or a restart claims are written again;
+ * documents are indexed by correlation key, which makes that harmless.
+ * </p>
+ * Runs every {@code app.ckstore.mirror-interval-ms} and once more on shutdown.
+ */
+public class CkMapMirror {
+
+    private static final LogAccessor LOG = new LogAccessor(CkMapMirror.class);
+
+    private final ElasticsearchClient es;
+    private final String index;
+    private final MappedCkIndex local;
+    private final int batchSize;
+
+    /**
+     * Constructs a {@code CkMapMirror}.
+     *
+     * @param es The Elasticsearch client.
+     * @param index The name of the ckmap index to write to.
+     * @param local The index whose claims are replicated.
+     * @param batchSize The maximum number of documents per bulk request.
+     */
+    public CkMapMirror(ElasticsearchClient es, String index, MappedCkIndex local, int batchSize) {
+        this.es = es;
+        this.index = index;
+        this.local = local;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${app.ckstore.mirror-interval-ms:500}")
+    public void run() {
+        try {
+            flush();
+        } catch (IOException | RuntimeException e) {
+            // retried from the same position on the next run
+            LOG.warn(e, () -> "could not mirror correlation keys to " + index);
+        }
+    }
+
+    /**
+     * Replicates every claim not replicated yet.
+     *
+     * @return The number of claims written.
+     * @throws IOException if a bulk request fails.
+     */
+    public long flush() throws IOException {
+        long written = 0;
+        long position = local.mirroredPosition();
+        while (position < local.logEnd()) {
+            String now = Instant.now().toString();
+            List<BulkOperation> ops = new ArrayList<>(batchSize);
+            long next = local.readLog(position, batchSize, (ck, journeyId) ->
+                    ops.add(BulkOperation.of(b -> b.index(i -> i
+                            .index(index)
+                            .id(ck)
+                            .document(Map.of("ck", ck, "journeyId", journeyId, "updatedAt", now))))));
+            BulkResponse resp = es.bulk(b -> b.operations(ops));
+            if (resp.errors()) {
+                for (BulkResponseItem item : resp.items()) {
+                    if (item.error() != null) {
+                        throw new IOException("ckmap mirror failed for " + item.id() + ": " + item.error().reason());
+                    }
+                }
+            }
+            local.markMirrored(next);
+            written += ops.size();
+            position = next;
+        }
+        return written;
+    }
+
+    /**
+     * Replicates the remaining claims; called when the application context closes.
+     */
+    public void close() {
+        run();
+    }
+}
@@ -0,0 +1,173 @@
+package com.abc.process.mining.journey.es;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.Conflicts;
+import co.elastic.clients.elasticsearch.core.DeleteByQueryResponse;
+import co.elastic.clients.json.JsonData;
+import org.springframework.core.log.LogAccessor;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Expires correlation key mappings of inactive journeys from the {@code ckmap} index.
+ * <p>
+ * Every claim of a key that reaches Elasticsearch refreshes its {@code updatedAt}, and
+ * {@link CkMapService#touch()} refreshes the keys whose claims were answered from the
+ * {@link CkJourneyCache}, so a mapping not touched for longer than the horizon belongs to a journey
+ * that has gone quiet. Such mappings are removed in the
+ * background with sliced delete-by-query requests of at most {@code batchSize} documents, each
+ * throttled to {@code requestsPerSecond}, until a batch comes back short. A mapping claimed again
+ * while its batch runs changes version and is skipped. A later event for an expired key starts a
+ * new journey.
+ * </p>
+ * <p>
+ * A run stops between batches while {@code overloaded} reports that ingest is being held back,
+ * and the rest waits for the next run. Its client should be a
+ * {@link MonitoredTransport#maintenance(co.elastic.clients.elasticsearch.ElasticsearchClient)
+ * maintenance} one, so its long-running batches do not count towards that overload. A key cached when it was deleted is dropped from the cache
+ * by its next touch; the horizon must be longer than the cache's time-to-live plus the touch
+ * interval, so no key in use can reach it.
+ * </p>
+ * Runs, deleted mappings and deferred runs are counted for {@link #stats()}.
+ */
+public class CkMapRetention {
+
+    private static final LogAccessor LOG = new LogAccessor(CkMapRetention.class);
+
+    private final ElasticsearchClient es;
+    private final String index;
+    private final Duration horizon;
+    private final int slices;
+    private final float requestsPerSecond;
+    private final long batchSize;
+    private final BooleanSupplier overloaded;
+    private final Clock clock;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private long runs;
+    private long deferred;
+    private long deleted;
+    private long lastDeleted;
+    private long lastRunMillis;
+    private Instant lastCutoff;
+
+    /**
+     * Constructs a {@code CkMapRetention}.
+     *
+     * @param es The Elasticsearch client.
+     * @param index The index mapping correlation keys to journey IDs.
+     * @param horizon How long a mapping is kept after it was last claimed.
+     * @param slices How many slices each delete-by-query runs in parallel.
+     * @param requestsPerSecond The documents deleted per second per request; 0 or less is unthrottled.
+     * @param batchSize The maximum number of mappings deleted per request.
+     * @param overloaded Whether ingest is held back; checked before every batch.
+     * @param clock The clock the horizon is measured with.
+     */
+    public CkMapRetention(ElasticsearchClient es, String index, Duration horizon, int slices,
+                          float requestsPerSecond, long batchSize, BooleanSupplier overloaded, Clock clock) {
+        this.es = es;
+        this.index = index;
+        this.horizon = horizon;
+        this.slices = slices;
+        this.requestsPerSecond = requestsPerSecond;
+        this.batchSize = batchSize;
+        this.overloaded = overloaded;
+        this.clock = clock;
+    }
+
+    /**
+     * Starts a run on its own thread, unless the previous one is still going; throttled requests
+     * can take minutes and must not hold up the scheduler.
+     */
+    @Scheduled(fixedDelayString = "${app.ckretention.interval-ms:3600000}",
+            initialDelayString = "${app.ckretention.interval-ms:3600000}")
+    public void run() {
+        if (!running.compareAndSet(false, true)) return;
+        Thread.ofVirtual().name("ckmap-retention").start(() -> {
+            try {
+                long n = expire();
+                LOG.info(() -> "expired " + n + " ckmap entries not claimed since " + stats().get("lastCutoff"));
+            } catch (IOException | RuntimeException e) {
+                LOG.warn(e, "ckmap retention run failed");
+            } finally {
+                running.set(false);
+            }
+        });
+    }
+
+    /**
+     * Deletes the mappings not claimed within the horizon, batch by batch.
+     *
+     * @return The number of mappings deleted.
+     * @throws IOException if a delete-by-query request fails or reports failures.
+     */
+    public long expire() throws IOException {
+        long started = clock.millis();
+        Instant cutoff = Instant.ofEpochMilli(started).minus(horizon);
+        long total = 0;
+        boolean stopped = false;
+        try {
+            while (true) {
+                if (overloaded.getAsBoolean()) {
+                    stopped = true;
+                    break;
+                }
+                long n = deleteBatch(cutoff);
+                total += n;
+                if (n < batchSize) break;
+            }
+        } finally {
+            record(cutoff, total, stopped, clock.millis() - started);
+        }
+        return total;
+    }
+
+    /**
+     * @return Horizon, runs, deleted mappings, deferred runs and the last run's cutoff, count and duration.
+     */
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("horizon", horizon.toString());
+        stats.put("runs", runs);
+        stats.put("deferred", deferred);
+        stats.put("deleted", deleted);
+        stats.put("lastCutoff", lastCutoff == null ? null : lastCutoff.toString());
+        stats.put("lastDeleted", lastDeleted);
+        stats.put("lastRunMillis", lastRunMillis);
+        return stats;
+    }
+
+    private long deleteBatch(Instant cutoff) throws IOException {
+        DeleteByQueryResponse resp = es.deleteByQuery(d -> {
+            d.index(index)
+                    .query(q -> q.range(r -> r.field("updatedAt").lt(JsonData.of(cutoff.toString()))))
+                    .maxDocs(batchSize)
+                    .conflicts(Conflicts.Proceed)
+                    .slices(s -> s.value(slices))
+                    .waitForCompletion(true);
+            if (requestsPerSecond > 0) d.requestsPerSecond(requestsPerSecond);
+            return d;
+        });
+        if (!resp.failures().isEmpty()) {
+            throw new IOException("ckmap expiry failed: " + resp.failures().get(0).cause().reason());
+        }
+        return resp.deleted() == null ? 0 : resp.deleted();
+    }
+
+    private synchronized void record(Instant cutoff, long n, boolean stopped, long millis) {
+        runs++;
+        if (stopped) deferred++;
+        deleted += n;
+        lastDeleted = n;
+        lastCutoff = cutoff;
+        lastRunMillis = millis;
+    }
+}
@@ -1,35 +1,124 @@
 package com.abc.process.mining.journey.es;
 
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
 import co.elastic.clients.elasticsearch.core.MgetResponse;
+import co.elastic.clients.elasticsearch.core.ScrollResponse;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
 import co.elastic.clients.elasticsearch.core.mget.MultiGetResponseItem;
+import co.elastic.clients.elasticsearch.core.search.Hit;
 import co.elastic.clients.json.JsonData;
+import com.abc.process.mining.journey.store.CkClaim;
+import com.abc.process.mining.journey.store.CkMapStore;
+import org.springframework.core.log.LogAccessor;
+import org.springframework.scheduling.annotation.Scheduled;
 
 import java.io.IOException;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
 /**
- * Service for managing the mapping from correlation keys to journey IDs in Elasticsearch.
+ * {@link CkMapStore} keeping the mapping from correlation keys to journey IDs in Elasticsearch.
  * <p>
  * This service provides methods for efficiently retrieving journey IDs for a list of
  * correlation keys and for atomically claiming a correlation key for a specific journey,
  * which is a critical operation for managing user sessions or journeys.
  * </p>
+ * <p>
+ * Claims return the owner of each key from the update itself, so deciding merges costs a single
+ * {@code _bulk} request per event or poll.
+ * </p>
+ * <p>
+ * Lookups and claims are answered from a {@link CkJourneyCache} when it holds the key, since
+ * claims never move a key to another journey; only uncached keys reach Elasticsearch, and every
+ * owner read back from it is cached. Owners rewritten or deleted in the background are handled by
+ * the cache, see there.
+ * </p>
+ * <p>
+ * Claims answered from the cache never refresh {@code updatedAt} in the index, so with
+ * {@code touchCached} the keys claimed that way are collected and their {@code updatedAt} is
+ * refreshed by {@link #touch()} in bulk once per interval, however often they were claimed.
+ * {@link CkMapRetention} therefore sees a key as claimed for as long as it is in use. A key found
+ * deleted by the touch is dropped from the cache.
+ * </p>
+ * <p>
+ * Keys a {@link KnownCkFilter} rules out are certainly not in the index and are not looked up
+ * at all; every key claimed or found is added to it.
+ * </p>
  */
-public class CkMapService {
+public class CkMapService implements CkMapStore {
+
+    private static final LogAccessor LOG = new LogAccessor(CkMapService.class);
+
+    private static final String CLAIM_SCRIPT =
+            "def j = ctx._source.containsKey('journeyId') ? ctx._source.journeyId : null; " +
+                    "if (j == null) { ctx._source.journeyId = params.j; } " +
+                    "else if (j != params.j) { ctx.op = 'none'; } " +
+                    "ctx._source.updatedAt = params.now;";
+
+    static final int SCAN_PAGE_SIZE = 5000;
+    private static final String SCAN_KEEP_ALIVE = "1m";
 
     private final ElasticsearchClient es;
     private final String index; // typically "ckmap"
+    private final CkJourneyCache cache;
+    private final KnownCkFilter knownCks;
+    private final boolean touchCached;
+    private final Set<String> touched = ConcurrentHashMap.newKeySet();
 
     /**
-     * Constructs a {@code CkMapService}.
+     * Constructs a {@code CkMapService} without a cache.
      *
      * @param es The Elasticsearch client.
      * @param index The name of the index where the CK-to-journey ID mapping documents are stored.
      */
     public CkMapService(ElasticsearchClient es, String index) {
+        this(es, index, CkJourneyCache.disabled());
+    }
+
+    /**
+     * Constructs a {@code CkMapService}.
+     *
+     * @param es The Elasticsearch client.
+     * @param index The name of the index where the CK-to-journey ID mapping documents are stored.
+     * @param cache The cache answering lookups and claims of recently seen keys.
+     */
+    public CkMapService(ElasticsearchClient es, String index, CkJourneyCache cache) {
+        this(es, index, cache, KnownCkFilter.disabled());
+    }
+
+    /**
+     * Constructs a {@code CkMapService}.
+     *
+     * @param es The Elasticsearch client.
+     * @param index The name of the index where the CK-to-journey ID mapping documents are stored.
+     * @param cache The cache answering lookups and claims of recently seen keys.
+     * @param knownCks The filter ruling out keys that are not in the index.
+     */
+    public CkMapService(ElasticsearchClient es, String index, CkJourneyCache cache, KnownCkFilter knownCks) {
+        this(es, index, cache, knownCks, false);
+    }
+
+    /**
+     * Constructs a {@code CkMapService}.
+     *
+     * @param es The Elasticsearch client.
+     * @param index The name of the index where the CK-to-journey ID mapping documents are stored.
+     * @param cache The cache answering lookups and claims of recently seen keys.
+     * @param knownCks The filter ruling out keys that are not in the index.
+     * @param touchCached Whether keys claimed from the cache have their {@code updatedAt} refreshed.
+     */
+    public CkMapService(ElasticsearchClient es, String index, CkJourneyCache cache, KnownCkFilter knownCks,
+                        boolean touchCached) {
         this.es = es;
         this.index = index;
+        this.cache = cache;
+        this.knownCks = knownCks;
+        this.touchCached = touchCached;
     }
 
     /**
@@ -44,11 +133,20 @@ public class CkMapService {
      * @return A map where the key is the correlation key and the value is the journey ID.
      * @throws IOException if an I/O error occurs during the Elasticsearch operation.
      */
+    @Override
     public Map<String, String> mgetJourneyIds(Collection<String> cks) throws IOException {
         if (cks == null || cks.isEmpty()) return Collections.emptyMap();
-        MgetResponse<Map> resp = es.mget(m -> m.index(index).ids(new ArrayList<>(cks)), Map.class);
 
         Map<String, String> out = new HashMap<>();
+        List<String> misses = new ArrayList<>(cks.size());
+        for (String ck : cks) {
+            String cached = cache.get(ck);
+            if (cached != null) out.put(ck, cached);
+            else if (knownCks.mightExist(ck)) misses.add(ck);
+        }
+        if (misses.isEmpty()) return out;
+
+        MgetResponse<Map> resp = es.mget(m -> m.index(index).ids(misses), Map.class);
         for (MultiGetResponseItem<Map> item : resp.docs()) {
             if (item.result().found()) {
                 @SuppressWarnings("unchecked")
@@ -56,6 +154,8 @@ public class CkMapService {
                 Object jid = src.get("journeyId");
                 if (jid != null) {
                     out.put(item.result().id(), jid.toString());
+                    cache.put(item.result().id(), jid.toString());
+                    knownCks.add(item.result().id());
                 }
             }
         }
@@ -63,55 +163,179 @@ public class CkMapService {
     }
 
     /**
-     * Attempts to claim a correlation key for a specific target journey ID.
+     * Claims many correlation keys in a single request and reports the outcome per key.
      * <p>
-     * This method uses an Elasticsearch painless script to perform an atomic update operation.
-     * The script logic is as follows:
+     * All claims are sent as scripted upserts in one {@code _bulk} request. The script works as
+     * follows:
      * <ul>
      * <li>If the document does not exist or has no {@code journeyId}, it sets the {@code journeyId} to the target.</li>
-     * <li>If the {@code journeyId} is already the target, it performs no action.</li>
-     * <li>If the {@code journeyId} is different from the target, the script does nothing, effectively
-     * preventing the claim.</li>
+     * <li>If the {@code journeyId} is already the target, it only refreshes {@code updatedAt}.</li>
+     * <li>If the {@code journeyId} is different from the target, the update is a no-op, preventing the claim.</li>
      * </ul>
-     * The method then verifies the claim by performing a subsequent GET request and returns the result.
+     * Every update returns the {@code journeyId} of the document after the script ran, so the
+     * owner of each key is known without reading it back. A key whose owner differs from the
+     * requested journey was claimed by someone else first and must be merged by the caller. Keys
+     * with a cached owner are answered locally and left out of the request.
      * </p>
      *
-     * @param ck The correlation key to claim.
-     * @param targetJourneyId The journey ID to associate with the correlation key.
-     * @return {@code true} if the claim was successful, {@code false} otherwise.
-     * @throws IOException if an I/O error occurs during the Elasticsearch operation.
+     * @param ckToJourney The journey ID each correlation key should be claimed for.
+     * @return The outcome of every claim, keyed by correlation key.
+     * @throws IOException if an I/O error occurs or any bulk item fails.
      */
-    public boolean claimCk(String ck, String targetJourneyId) throws IOException {
-        String script =
-                "def j = ctx._source.containsKey('journeyId') ? ctx._source.journeyId : null; " +
-                        "if (j == null) { ctx._source.journeyId = params.j; } " +
-                        "else if (j != params.j) { ctx.op = 'none'; } " +
-                        "ctx._source.updatedAt = params.now;";
-
-        es.update(u -> u
+    @Override
+    public Map<String, CkClaim> claimAll(Map<String, String> ckToJourney) throws IOException {
+        if (ckToJourney == null || ckToJourney.isEmpty()) return Collections.emptyMap();
+        String now = Instant.now().toString();
+
+        Map<String, CkClaim> outcomes = new HashMap<>();
+        List<BulkOperation> ops = new ArrayList<>(ckToJourney.size());
+        for (Map.Entry<String, String> claim : ckToJourney.entrySet()) {
+            String ck = claim.getKey();
+            String journeyId = claim.getValue();
+            String cached = cache.get(ck);
+            if (cached != null) {
+                outcomes.put(ck, new CkClaim(ck, journeyId, cached));
+                if (touchCached) touched.add(ck);
+                continue;
+            }
+            ops.add(BulkOperation.of(b -> b.update(u -> u
+                    .index(index)
+                    .id(ck)
+                    .action(a -> a
+                            .script(s -> s.inline(i -> i
+                                    .lang("painless")
+                                    .source(CLAIM_SCRIPT)
+                                    .params("j",   JsonData.of(journeyId))
+                                    .params("now", JsonData.of(now))
+                            ))
+                            .scriptedUpsert(true)
+                            .upsert(Map.of(
+                                    "ck", ck,
+                                    "journeyId", journeyId,
+                                    "updatedAt", now
+                            ))
+                            .source(src -> src.filter(f -> f.includes("journeyId")))
+                    )
+            )));
+        }
+
+        if (ops.isEmpty()) return outcomes;
+
+        BulkResponse resp = es.bulk(b -> b.operations(ops));
+        for (BulkResponseItem item : resp.items()) {
+            if (item.error() != null) {
+                throw new IOException("ckmap claim failed for " + item.id() + ": " + item.error().reason());
+            }
+            String ck = item.id();
+            JsonData owner = item.get() == null || item.get().source() == null
+                    ? null : item.get().source().get("journeyId");
+            if (owner == null) {
+                throw new IOException("ckmap claim for " + ck + " returned no owner");
+            }
+            String jid = owner.to(String.class);
+            cache.put(ck, jid);
+            knownCks.add(ck);
+            outcomes.put(ck, new CkClaim(ck, ckToJourney.get(ck), jid));
+        }
+        return outcomes;
+    }
+
+    /**
+     * Refreshes {@code updatedAt} of the keys claimed from the cache since the last touch.
+     * <p>
+     * Keys are written in bulk requests of {@value #SCAN_PAGE_SIZE} partial updates, which never
+     * recreate a deleted key. Keys found deleted are dropped from the cache; keys that failed
+     * otherwise, or were not sent because a request failed, are kept for the next touch.
+     * </p>
+     *
+     * @return The number of keys refreshed.
+     * @throws IOException if a bulk request fails.
+     */
+    public int touch() throws IOException {
+        if (touched.isEmpty()) return 0;
+        List<String> keys = new ArrayList<>(touched);
+        touched.removeAll(keys);
+        String now = Instant.now().toString();
+        int refreshed = 0;
+        for (int from = 0; from < keys.size(); from += SCAN_PAGE_SIZE) {
+            List<String> page = keys.subList(from, Math.min(from + SCAN_PAGE_SIZE, keys.size()));
+            List<BulkOperation> ops = new ArrayList<>(page.size());
+            for (String ck : page) {
+                ops.add(BulkOperation.of(b -> b.update(u -> u
                         .index(index)
                         .id(ck)
-                        .script(s -> s.inline(i -> i
-                                .lang("painless")
-                                .source(script)
-                                .params("j",   JsonData.of(targetJourneyId))
-                                .params("now", JsonData.of(Instant.now().toString()))
-                        ))
-                        .scriptedUpsert(true)
-                        .upsert(Map.of(
-                                "ck", ck,
-                                "journeyId", targetJourneyId,
-                                "updatedAt", Instant.now().toString()
-                        )),
-                Map.class
-        );
-
-        var get = es.get(g -> g.index(index).id(ck), Map.class);
-        if (!get.found()) return false;
-        @SuppressWarnings("unchecked")
-        Map<String, Object> src = (Map<String, Object>) get.source();
-        Object jid = src.get("journeyId");
-        return targetJourneyId.equals(jid);
+                        .action(a -> a.doc(Map.of("updatedAt", now))))));
+            }
+            BulkResponse resp;
+            try {
+                resp = es.bulk(b -> b.operations(ops));
+            } catch (IOException | RuntimeException e) {
+                touched.addAll(keys.subList(from, keys.size()));
+                throw e;
+            }
+            List<String> deleted = new ArrayList<>();
+            for (BulkResponseItem item : resp.items()) {
+                if (item.error() == null) refreshed++;
+                else if (item.status() == 404) deleted.add(item.id());
+                else touched.add(item.id());
+            }
+            // expired meanwhile: the cached owner no longer exists in the index
+            if (!deleted.isEmpty()) cache.invalidate(deleted);
+        }
+        return refreshed;
     }
-}
 
+    @Scheduled(fixedDelayString = "${app.ckcache.touch-interval-ms:60000}")
+    public void touchCached() {
+        try {
+            int n = touch();
+            if (n > 0) LOG.debug(() -> "refreshed updatedAt of " + n + " cached ckmap entries");
+        } catch (IOException | RuntimeException e) {
+            LOG.warn(e, "could not refresh cached ckmap entries; retrying on the next run");
+        }
+    }
+
+    /**
+     * Reads the IDs of all correlation keys in the index, or of those updated since a point in time.
+     * <p>
+     * Scrolls through the index in pages of {@value #SCAN_PAGE_SIZE} without fetching sources.
+     * Used to rebuild the {@link KnownCkFilter}.
+     * </p>
+     *
+     * @param since Only keys whose {@code updatedAt} is at or after this instant; {@code null} for all keys.
+     * @param keys Receives every key read.
+     * @return The number of keys read.
+     * @throws IOException if an I/O error occurs during the Elasticsearch operation.
+     */
+    public long scanKeys(Instant since, Consumer<String> keys) throws IOException {
+        SearchResponse<Map> page = es.search(s -> s
+                        .index(index)
+                        .size(SCAN_PAGE_SIZE)
+                        .scroll(t -> t.time(SCAN_KEEP_ALIVE))
+                        .source(src -> src.fetch(false))
+                        .query(q -> since == null
+                                ? q.matchAll(m -> m)
+                                : q.range(r -> r.field("updatedAt").gte(JsonData.of(since.toString())))),
+                Map.class);
+        String scrollId = page.scrollId();
+        List<Hit<Map>> hits = page.hits().hits();
+        long count = 0;
+        try {
+            while (!hits.isEmpty()) {
+                for (Hit<Map> hit : hits) keys.accept(hit.id());
+                count += hits.size();
+                String current = scrollId;
+                ScrollResponse<Map> next = es.scroll(s -> s.scrollId(current).scroll(t -> t.time(SCAN_KEEP_ALIVE)),
+                        Map.class);
+                scrollId = next.scrollId();
+                hits = next.hits().hits();
+            }
+        } finally {
+            if (scrollId != null) {
+                String last = scrollId;
+                es.clearScroll(c -> c.scrollId(last));
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,208 @@
+package com.abc.process.mining.journey.es;
+
+import com.abc.process.mining.journey.model.EventRecord;
+import com.abc.process.mining.journey.store.JourneyStore;
+import org.springframework.core.log.LogAccessor;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * {@link JourneyStore} coalescing the writes of concurrent stitch threads into micro-batches.
+ * <p>
+ * Events to index and journey upserts are queued, and a background thread writes what has queued
+ * up within {@code window} of the first pending write, or as soon as {@code maxEvents} are pending,
+ * with one {@link JourneyService#bulkWrite(Map, Map)} request. All events of a journey in a batch
+ * are applied by a single scripted update, so a hot journey is rewritten once per window instead
+ * of once per event, and concurrent threads no longer conflict on its version.
+ * </p>
+ * <p>
+ * Every write blocks until the batch holding it is written and fails with that batch, so callers
+ * commit offsets only for written events. {@link #indexAndUpsert(String, EventRecord, String)}
+ * queues the event and its journey update as one pending write, so both go out in the same
+ * {@code _bulk} request and the call fails if either one failed. Batches already grouped by the
+ * caller go through {@link #bulkIndexAndUpsert(Map, String)} directly.
+ * </p>
+ * <p>
+ * Each write waits up to {@code window} for others to join it, so coalescing only pays off when
+ * many threads stitch at once, as with the parallel consumer; a single listener thread is merely
+ * slowed down by it. It is therefore off unless {@code app.journeys.coalesce.enabled} is set.
+ * </p>
+ * Flushes, events and journey updates written are counted for {@link #stats()}.
+ */
+public class CoalescingJourneyWriter implements JourneyStore {
+
+    private static final LogAccessor LOG = new LogAccessor(CoalescingJourneyWriter.class);
+
+    private final JourneyService delegate;
+    private final long windowNanos;
+    private final int maxEvents;
+    private final Thread flusher;
+
+    private List<Pending> pending = new ArrayList<>();
+    private CompletableFuture<Void> batch = new CompletableFuture<>();
+    private boolean closed;
+    private long flushes;
+    private long events;
+    private long upserts;
+    private long journeyUpdates;
+    private long failures;
+
+    /**
+     * Constructs a {@code CoalescingJourneyWriter} and starts its flusher thread.
+     *
+     * @param delegate The service writing to Elasticsearch.
+     * @param window How long a write may wait for others to join its batch.
+     * @param maxEvents The number of pending writes that triggers a write without waiting.
+     */
+    public CoalescingJourneyWriter(JourneyService delegate, Duration window, int maxEvents) {
+        this.delegate = delegate;
+        this.windowNanos = window.toNanos();
+        this.maxEvents = maxEvents;
+        this.flusher = Thread.ofVirtual().name("journey-writer").start(this::flushLoop);
+    }
+
+    @Override
+    public void indexEvent(EventRecord event, String eventsIndex) throws IOException {
+        if (event.getEventId() == null) throw new IllegalArgumentException("event must have an eventId");
+        await(enqueue(new Pending(eventsIndex, null, event)));
+    }
+
+    @Override
+    public void upsertJourney(String journeyId, EventRecord event) throws IOException {
+        await(enqueue(new Pending(null, journeyId, event)));
+    }
+
+    @Override
+    public void indexAndUpsert(String journeyId, EventRecord event, String eventsIndex) throws IOException {
+        if (event.getEventId() == null) throw new IllegalArgumentException("event must have an eventId");
+        await(enqueue(new Pending(eventsIndex, journeyId, event)));
+    }
+
+    @Override
+    public void bulkIndexAndUpsert(Map<String, List<EventRecord>> eventsByJourney,
+                                   String eventsIndex) throws IOException {
+        delegate.bulkIndexAndUpsert(eventsByJourney, eventsIndex);
+    }
+
+    /**
+     * Writes what is pending and stops the flusher; called when the application context closes.
+     */
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return Flushes, events indexed, upserts received, journey updates sent, failed flushes and
+     * the mean number of upserts folded into one journey update.
+     */
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("flushes", flushes);
+        stats.put("events", events);
+        stats.put("upserts", upserts);
+        stats.put("journeyUpdates", journeyUpdates);
+        stats.put("failures", failures);
+        stats.put("coalescing", journeyUpdates == 0 ? 0.0 : (double) upserts / journeyUpdates);
+        stats.put("pending", pending.size());
+        return stats;
+    }
+
+    private synchronized CompletableFuture<Void> enqueue(Pending write) {
+        if (closed) throw new IllegalStateException("journey writer is closed");
+        pending.add(write);
+        if (pending.size() == 1 || pending.size() >= maxEvents) notifyAll();
+        return batch;
+    }
+
+    private static void await(CompletableFuture<Void> written) throws IOException {
+        try {
+            written.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for the journey write");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            List<Pending> writes;
+            CompletableFuture<Void> written;
+            synchronized (this) {
+                try {
+                    while (pending.isEmpty() && !closed) wait();
+                    long deadline = System.nanoTime() + windowNanos;
+                    long remaining;
+                    while (pending.size() < maxEvents && !closed
+                            && (remaining = deadline - System.nanoTime()) > 0) {
+                        wait(remaining / 1_000_000, (int) (remaining % 1_000_000));
+                    }
+                } catch (InterruptedException e) {
+                    closed = true;
+                }
+                if (pending.isEmpty()) return;
+                writes = pending;
+                written = batch;
+                pending = new ArrayList<>();
+                batch = new CompletableFuture<>();
+            }
+            write(writes, written);
+        }
+    }
+
+    private void write(List<Pending> writes, CompletableFuture<Void> written) {
+        Map<String, List<EventRecord>> eventsByIndex = new LinkedHashMap<>();
+        Map<String, List<EventRecord>> eventsByJourney = new LinkedHashMap<>();
+        int indexed = 0;
+        int upserted = 0;
+        for (Pending write : writes) {
+            if (write.eventsIndex() != null) {
+                eventsByIndex.computeIfAbsent(write.eventsIndex(), k -> new ArrayList<>()).add(write.event());
+                indexed++;
+            }
+            if (write.journeyId() != null) {
+                eventsByJourney.computeIfAbsent(write.journeyId(), k -> new ArrayList<>()).add(write.event());
+                upserted++;
+            }
+        }
+        try {
+            delegate.bulkWrite(eventsByIndex, eventsByJourney);
+            record(indexed, upserted, eventsByJourney.size(), false);
+            written.complete(null);
+        } catch (IOException | RuntimeException e) {
+            LOG.warn(e, () -> "journey write of " + writes.size() + " pending writes failed");
+            record(0, 0, 0, true);
+            written.completeExceptionally(e);
+        }
+    }
+
+    private synchronized void record(int indexed, int upserted, int journeys, boolean failed) {
+        flushes++;
+        if (failed) {
+            failures++;
+            return;
+        }
+        events += indexed;
+        upserts += upserted;
+        journeyUpdates += journeys;
+    }
+
+    private record Pending(String eventsIndex, String journeyId, EventRecord event) {
+    }
+}
@@ -0,0 +1,74 @@
+package com.abc.process.mining.journey.es;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live view of the load this application puts on Elasticsearch.
+ * <p>
+ * Fed by {@link MonitoredTransport} for every request sent through the client: the number of
+ * requests currently in flight, and per sampling window the request count, summed latency and
+ * the number of requests rejected with {@code 429 Too Many Requests}. Counters are lock-free so
+ * recording stays cheap on the stitch path.
+ * </p>
+ * {@link #sample()} is meant for a single periodic reader; each call closes the current window.
+ */
+public class ElasticsearchLoad {
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder latencyNanos = new LongAdder();
+
+    /**
+     * Records that a request has been sent.
+     */
+    public void started() {
+        inFlight.incrementAndGet();
+    }
+
+    /**
+     * Records that a request has completed, successfully or not.
+     *
+     * @param nanos How long the request took.
+     * @param rejected Whether Elasticsearch rejected (part of) it with status 429.
+     */
+    public void finished(long nanos, boolean rejected) {
+        inFlight.decrementAndGet();
+        requests.increment();
+        latencyNanos.add(nanos);
+        if (rejected) throttled.increment();
+    }
+
+    /**
+     * @return The number of requests currently waiting for Elasticsearch.
+     */
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Closes the current window and returns its statistics.
+     *
+     * @return The load observed since the previous call.
+     */
+    public Sample sample() {
+        long count = requests.sumThenReset();
+        long rejected = throttled.sumThenReset();
+        long nanos = latencyNanos.sumThenReset();
+        double avgMillis = count == 0 ? 0 : nanos / 1_000_000.0 / count;
+        double rejectedRatio = count == 0 ? 0 : (double) rejected / count;
+        return new Sample(inFlight.get(), count, avgMillis, rejectedRatio);
+    }
+
+    /**
+     * Load statistics of one sampling window.
+     *
+     * @param inFlight Requests in flight when the window closed.
+     * @param requests Requests completed during the window.
+     * @param avgLatencyMillis Their mean latency; 0 if none completed.
+     * @param throttledRatio The fraction of them rejected with status 429.
+     */
+    public record Sample(int inFlight, long requests, double avgLatencyMillis, double throttledRatio) {
+    }
+}
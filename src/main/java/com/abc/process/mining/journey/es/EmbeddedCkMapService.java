@@ -0,0 +1,53 @@
+package com.abc.process.mining.journey.es;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import com.abc.process.mining.journey.store.CkClaim;
+import com.abc.process.mining.journey.store.MappedCkIndex;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * {@link CkMapService} answering lookups and claims from an embedded {@link MappedCkIndex}.
+ * <p>
+ * Stitch decisions no longer wait for Elasticsearch: the local index is the authoritative
+ * correlation key map and the {@code ckmap} index becomes a copy for querying, kept up to date
+ * asynchronously by {@link CkMapMirror}. Because claims are only serialized within this process,
+ * all events sharing correlation keys must be stitched by the same instance, e.g. a single
+ * stitching node, or every partition of {@code events.raw} assigned to one node.
+ * </p>
+ * Enabled with {@code app.ckstore.engine=mmap}.
+ */
+public class EmbeddedCkMapService extends CkMapService {
+
+    private final MappedCkIndex local;
+
+    /**
+     * Constructs an {@code EmbeddedCkMapService}.
+     *
+     * @param es The Elasticsearch client, used to scan the mirrored index.
+     * @param index The name of the mirrored ckmap index.
+     * @param local The authoritative correlation key index.
+     */
+    public EmbeddedCkMapService(ElasticsearchClient es, String index, MappedCkIndex local) {
+        super(es, index);
+        this.local = local;
+    }
+
+    @Override
+    public Map<String, String> mgetJourneyIds(Collection<String> cks) throws IOException {
+        if (cks == null || cks.isEmpty()) return Collections.emptyMap();
+        return local.getAll(cks);
+    }
+
+    @Override
+    public Map<String, CkClaim> claimAll(Map<String, String> ckToJourney) throws IOException {
+        if (ckToJourney == null || ckToJourney.isEmpty()) return Collections.emptyMap();
+        Map<String, CkClaim> outcomes = new HashMap<>();
+        for (Map.Entry<String, String> owner : local.claimAll(ckToJourney).entrySet()) {
+            String ck = owner.getKey();
+            outcomes.put(ck, new CkClaim(ck, ckToJourney.get(ck), owner.getValue()));
+        }
+        return outcomes;
+    }
+}
@@ -0,0 +1,388 @@
+package com.abc.process.mining.journey.es;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.Script;
+import co.elastic.clients.elasticsearch._types.SortOrder;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.MgetResponse;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.elasticsearch.core.mget.MultiGetResponseItem;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.json.JsonData;
+import com.abc.process.mining.journey.store.RedirectStore;
+import org.springframework.core.log.LogAccessor;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Folds merged journeys into the journey they were redirected to.
+ * <p>
+ * A merge only records a redirect, so the merged journey's document stays behind with part of the
+ * events and keys. The compactor reads redirects not compacted yet from the {@code redirects}
+ * index, oldest first and {@code batchSize} at a time, resolves each source to the end of its chain
+ * and folds the source document into that root with one scripted bulk update per batch: keys,
+ * event IDs and timeline entries the root lacks are added, {@code firstSeenAt}/{@code lastSeenAt}
+ * are widened, the event counter grows by the events added and the distinct activities are
+ * recounted from the merged timeline. A root that does not exist yet is
+ * created. The fold is idempotent, so a batch interrupted half-way is simply repeated.
+ * </p>
+ * <p>
+ * Once a root is updated, the source document is deleted and every {@code ckmap} entry of the
+ * source's keys still owned by the source is rewritten to the root, in a second bulk request, and
+ * the rewritten keys are dropped from the local {@link CkJourneyCache}. Other instances have
+ * already rewritten their cached keys of the source to the root when they read the redirect back.
+ * A third marks the redirects with {@code compactedAt}; redirects whose source failed a step stay
+ * unmarked and are retried by the next run. The redirects themselves are kept, so the old journey
+ * IDs still resolve.
+ * </p>
+ * <p>
+ * Only redirects older than {@code minAge} are compacted, so every instance has applied them
+ * before the source disappears. Bulk operations are throttled to {@code opsPerSecond} over a run,
+ * and a run stops between batches while {@code overloaded} reports that ingest is being held back;
+ * requests sent through a {@link MonitoredTransport#maintenance(ElasticsearchClient) maintenance}
+ * client do not count towards it.
+ * </p>
+ * Runs, merged and deleted journeys, rewritten keys and deferred runs are counted for {@link #stats()}.
+ */
+public class JourneyCompactor {
+
+    private static final LogAccessor LOG = new LogAccessor(JourneyCompactor.class);
+
+    private static final String MERGE_SCRIPT =
+            "boolean changed = false; " +
+            "if (ctx._source.cks == null) { ctx._source.cks = new java.util.ArrayList(); } " +
+            "if (ctx._source.eventIds == null) { ctx._source.eventIds = new java.util.ArrayList(); } " +
+            "if (ctx._source.timeline == null) { ctx._source.timeline = new java.util.ArrayList(); } " +
+            "def known = ctx._source.eventIds; " +
+            // timeline entries first, while eventIds still tells which events the root lacks
+            "for (def t : params.timeline) { if (!known.contains(t.eventId)) { ctx._source.timeline.add(t); changed = true; } } " +
+            "long added = 0; " +
+            "for (def e : params.eids) { if (!known.contains(e)) { known.add(e); added++; } } " +
+            "for (def k : params.cks) { if (!ctx._source.cks.contains(k)) { ctx._source.cks.add(k); changed = true; } } " +
+            "if (ctx._source.counters == null) { ctx._source.counters = ['events':0L,'distinctActivities':0L]; } " +
+            "if (added > 0) { ctx._source.counters.events += added; changed = true; } " +
+            "if (params.first != null && (ctx._source.firstSeenAt == null || java.time.Instant.parse(params.first)" +
+            "  .isBefore(java.time.Instant.parse(ctx._source.firstSeenAt)))) { ctx._source.firstSeenAt = params.first; changed = true; } " +
+            "if (params.last != null && (ctx._source.lastSeenAt == null || java.time.Instant.parse(params.last)" +
+            "  .isAfter(java.time.Instant.parse(ctx._source.lastSeenAt)))) { ctx._source.lastSeenAt = params.last; changed = true; } " +
+            "if (!changed) { ctx.op = 'noop'; return; } " +
+            // recounted from the merged timeline, which holds every activity of both journeys
+            "def activities = new java.util.HashSet(); " +
+            "for (def t : ctx._source.timeline) { if (t.activity != null) { activities.add(t.activity); } } " +
+            "ctx._source.counters.distinctActivities = activities.size();";
+
+    private static final String REOWN_SCRIPT =
+            "if (ctx._source.journeyId == params.from) { ctx._source.journeyId = params.to; } else { ctx.op = 'noop'; }";
+
+    private final ElasticsearchClient es;
+    private final RedirectStore redirects;
+    private final String journeysIndex;
+    private final String redirectsIndex;
+    private final String ckmapIndex;
+    private final CkJourneyCache cache;
+    private final int batchSize;
+    private final Duration minAge;
+    private final int opsPerSecond;
+    private final BooleanSupplier overloaded;
+    private final Clock clock;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private long runs;
+    private long deferred;
+    private long merged;
+    private long deleted;
+    private long rewritten;
+    private long failures;
+    private long lastCompacted;
+    private long lastRunMillis;
+
+    /**
+     * Constructs a {@code JourneyCompactor}.
+     *
+     * @param es The Elasticsearch client.
+     * @param redirects The store resolving sources to the end of their redirect chains.
+     * @param journeysIndex The index where journey documents are stored.
+     * @param redirectsIndex The index where redirect documents are stored.
+     * @param ckmapIndex The index mapping correlation keys to journey IDs.
+     * @param cache The cache dropping the keys whose owner is rewritten.
+     * @param batchSize The number of redirects compacted per batch.
+     * @param minAge How old a redirect must be before its source is compacted.
+     * @param opsPerSecond The bulk operations per second a run may issue; 0 or less is unthrottled.
+     * @param overloaded Whether ingest is held back; checked before every batch.
+     * @param clock The clock ages and the throttle are measured with.
+     */
+    public JourneyCompactor(ElasticsearchClient es, RedirectStore redirects, String journeysIndex,
+                            String redirectsIndex, String ckmapIndex, CkJourneyCache cache,
+                            int batchSize, Duration minAge,
+                            int opsPerSecond, BooleanSupplier overloaded, Clock clock) {
+        this.es = es;
+        this.redirects = redirects;
+        this.journeysIndex = journeysIndex;
+        this.redirectsIndex = redirectsIndex;
+        this.ckmapIndex = ckmapIndex;
+        this.cache = cache;
+        this.batchSize = batchSize;
+        this.minAge = minAge;
+        this.opsPerSecond = opsPerSecond;
+        this.overloaded = overloaded;
+        this.clock = clock;
+    }
+
+    /**
+     * Starts a run on its own thread, unless the previous one is still going.
+     */
+    @Scheduled(fixedDelayString = "${app.compactor.interval-ms:600000}",
+            initialDelayString = "${app.compactor.interval-ms:600000}")
+    public void run() {
+        if (!running.compareAndSet(false, true)) return;
+        Thread.ofVirtual().name("journey-compactor").start(() -> {
+            try {
+                long n = compact();
+                LOG.info(() -> "compacted " + n + " redirected journeys");
+            } catch (IOException | RuntimeException e) {
+                LOG.warn(e, "journey compaction run failed");
+            } finally {
+                running.set(false);
+            }
+        });
+    }
+
+    /**
+     * Compacts redirects batch by batch until a batch comes back short or fails in part.
+     *
+     * @return The number of redirects compacted.
+     * @throws IOException if a request fails.
+     */
+    public long compact() throws IOException {
+        long started = clock.millis();
+        Instant cutoff = Instant.ofEpochMilli(started).minus(minAge);
+        long total = 0;
+        long ops = 0;
+        boolean stopped = false;
+        try {
+            while (true) {
+                if (overloaded.getAsBoolean()) {
+                    stopped = true;
+                    break;
+                }
+                List<String> sources = pendingRedirects(cutoff);
+                if (sources.isEmpty()) break;
+                Batch batch = compactBatch(sources);
+                total += batch.compacted;
+                ops += batch.ops;
+                if (sources.size() < batchSize || batch.compacted < sources.size()) break;
+                if (!throttle(started, ops)) break;
+            }
+        } finally {
+            record(total, stopped, clock.millis() - started);
+        }
+        return total;
+    }
+
+    /**
+     * @return Runs, merged and deleted journeys, rewritten ckmap entries, failed items, deferred runs
+     * and the last run's count and duration.
+     */
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("minAge", minAge.toString());
+        stats.put("runs", runs);
+        stats.put("deferred", deferred);
+        stats.put("merged", merged);
+        stats.put("deleted", deleted);
+        stats.put("ckRewritten", rewritten);
+        stats.put("failures", failures);
+        stats.put("lastCompacted", lastCompacted);
+        stats.put("lastRunMillis", lastRunMillis);
+        return stats;
+    }
+
+    private List<String> pendingRedirects(Instant cutoff) throws IOException {
+        SearchResponse<Map> resp = es.search(s -> s
+                        .index(redirectsIndex)
+                        .size(batchSize)
+                        .source(src -> src.fetch(false))
+                        .sort(o -> o.field(f -> f.field("updatedAt").order(SortOrder.Asc)))
+                        .query(q -> q.bool(b -> b
+                                .mustNot(m -> m.exists(e -> e.field("compactedAt")))
+                                .filter(f -> f.range(r -> r.field("updatedAt").lt(JsonData.of(cutoff.toString())))))),
+                Map.class);
+        List<String> sources = new ArrayList<>();
+        for (Hit<Map> hit : resp.hits().hits()) sources.add(hit.id());
+        return sources;
+    }
+
+    private Batch compactBatch(List<String> sources) throws IOException {
+        Map<String, String> roots = redirects.resolveAll(sources);
+        MgetResponse<Map> docs = es.mget(m -> m.index(journeysIndex).ids(sources), Map.class);
+
+        // 1. fold every source document found into its root
+        Map<String, Map<String, Object>> found = new LinkedHashMap<>();
+        for (MultiGetResponseItem<Map> item : docs.docs()) {
+            if (item.result() == null || !item.result().found()) continue;
+            String source = item.result().id();
+            if (source.equals(roots.getOrDefault(source, source))) continue;
+            @SuppressWarnings("unchecked")
+            Map<String, Object> doc = (Map<String, Object>) item.result().source();
+            found.put(source, doc);
+        }
+        List<BulkOperation> merges = new ArrayList<>();
+        List<String> mergeSources = new ArrayList<>();
+        for (Map.Entry<String, Map<String, Object>> source : found.entrySet()) {
+            String root = roots.get(source.getKey());
+            merges.add(BulkOperation.of(b -> b.update(u -> u
+                    .index(journeysIndex)
+                    .id(root)
+                    .retryOnConflict(3)
+                    .action(a -> a
+                            .script(mergeScript(source.getValue()))
+                            .scriptedUpsert(true)
+                            .upsert(Map.of(
+                                    "journeyId", root,
+                                    "status", "OPEN",
+                                    "cks", List.of(),
+                                    "eventIds", List.of(),
+                                    "counters", Map.of("events", 0, "distinctActivities", 0)))))));
+            mergeSources.add(source.getKey());
+        }
+        Set<String> failed = new HashSet<>(failedItems(merges, mergeSources, false));
+        long folded = mergeSources.size() - failed.size();
+
+        // 2. delete the folded sources and hand their keys to the roots
+        List<BulkOperation> cleanups = new ArrayList<>();
+        List<String> cleanupSources = new ArrayList<>();
+        List<String> reowned = new ArrayList<>();
+        long rewrites = 0;
+        for (Map.Entry<String, Map<String, Object>> source : found.entrySet()) {
+            String id = source.getKey();
+            if (failed.contains(id)) continue;
+            cleanups.add(BulkOperation.of(b -> b.delete(d -> d.index(journeysIndex).id(id))));
+            cleanupSources.add(id);
+            for (String ck : strings(source.getValue().get("cks"))) {
+                cleanups.add(BulkOperation.of(b -> b.update(u -> u
+                        .index(ckmapIndex)
+                        .id(ck)
+                        .action(a -> a.script(Script.of(s -> s.inline(i -> i
+                                .lang("painless")
+                                .source(REOWN_SCRIPT)
+                                .params("from", JsonData.of(id))
+                                .params("to", JsonData.of(roots.get(id))))))))));
+                cleanupSources.add(id);
+                reowned.add(ck);
+                rewrites++;
+            }
+        }
+        Set<String> notCleaned;
+        try {
+            notCleaned = new HashSet<>(failedItems(cleanups, cleanupSources, true));
+        } finally {
+            // rewritten or not, a cached owner of these keys may be stale now
+            cache.invalidate(reowned);
+        }
+        long cleaned = cleanupSources.stream().distinct().filter(id -> !notCleaned.contains(id)).count();
+        failed.addAll(notCleaned);
+
+        // 3. mark what is done
+        List<BulkOperation> marks = new ArrayList<>();
+        String now = clock.instant().toString();
+        for (String source : sources) {
+            if (failed.contains(source)) continue;
+            marks.add(BulkOperation.of(b -> b.update(u -> u
+                    .index(redirectsIndex)
+                    .id(source)
+                    .action(a -> a.doc(Map.of("compactedAt", now))))));
+        }
+        if (!marks.isEmpty()) bulk(marks);
+
+        synchronized (this) {
+            merged += folded;
+            deleted += cleaned;
+            rewritten += rewrites;
+            failures += failed.size();
+        }
+        return new Batch(marks.size(), merges.size() + cleanups.size() + marks.size());
+    }
+
+    /**
+     * Sends a bulk request and returns the sources of the items that failed.
+     *
+     * @param ops The operations.
+     * @param sources The source journey each operation belongs to, by position.
+     * @param missingOk Whether a document missing (404) counts as success.
+     */
+    private List<String> failedItems(List<BulkOperation> ops, List<String> sources, boolean missingOk)
+            throws IOException {
+        if (ops.isEmpty()) return List.of();
+        BulkResponse resp = bulk(ops);
+        List<String> failed = new ArrayList<>();
+        if (!resp.errors()) return failed;
+        List<BulkResponseItem> items = resp.items();
+        for (int i = 0; i < items.size(); i++) {
+            BulkResponseItem item = items.get(i);
+            if (item.error() == null || (missingOk && item.status() == 404)) continue;
+            String source = sources.get(i);
+            LOG.warn(() -> "could not compact " + source + ": " + item.error().reason());
+            failed.add(source);
+        }
+        return failed;
+    }
+
+    private BulkResponse bulk(List<BulkOperation> ops) throws IOException {
+        return es.bulk(b -> b.operations(ops));
+    }
+
+    private static Script mergeScript(Map<String, Object> source) {
+        return Script.of(s -> s.inline(i -> i
+                .lang("painless")
+                .source(MERGE_SCRIPT)
+                .params("cks", JsonData.of(strings(source.get("cks"))))
+                .params("eids", JsonData.of(strings(source.get("eventIds"))))
+                .params("timeline", JsonData.of(source.getOrDefault("timeline", List.of())))
+                .params("first", JsonData.of(source.get("firstSeenAt")))
+                .params("last", JsonData.of(source.get("lastSeenAt")))));
+    }
+
+    private static List<String> strings(Object values) {
+        if (!(values instanceof Collection<?> c)) return List.of();
+        List<String> out = new ArrayList<>(c.size());
+        for (Object v : c) if (v != null) out.add(v.toString());
+        return out;
+    }
+
+    /**
+     * Sleeps until {@code ops} operations since {@code started} are within the budget.
+     *
+     * @return {@code false} if interrupted.
+     */
+    private boolean throttle(long started, long ops) {
+        if (opsPerSecond <= 0) return true;
+        long wait = started + ops * 1000 / opsPerSecond - clock.millis();
+        if (wait <= 0) return true;
+        try {
+            Thread.sleep(wait);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private synchronized void record(long n, boolean stopped, long millis) {
+        runs++;
+        if (stopped) deferred++;
+        lastCompacted = n;
+        lastRunMillis = millis;
+    }
+
+    private record Batch(long compacted, long ops) {
+    }
+}
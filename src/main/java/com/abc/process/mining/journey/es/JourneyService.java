@@ -1,12 +1,22 @@
 package com.abc.process.mining.journey.es;
 
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.Script;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.json.JsonData;
+import com.abc.process.mining.journey.model.EventRecord;
+import com.abc.process.mining.journey.store.JourneyStore;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
- * Service for managing journeys and events in Elasticsearch.
+ * {@link JourneyStore} keeping journeys and events in Elasticsearch.
  * <p>
  * This service provides methods for indexing individual events and for upserting
  * journey documents based on incoming events. The upsert logic uses an Elasticsearch
@@ -14,29 +24,39 @@ import java.util.Map;
  * event counts, and collecting unique event IDs and correlation keys.
  * </p>
  */
-public class JourneyService {
+public class JourneyService implements JourneyStore {
+
+    // Journeys are updated concurrently by parallel consumers; scripted updates are safe to re-run
+    private static final int RETRY_ON_CONFLICT = 3;
 
     private final ElasticsearchClient es;
     private final String journeysIndex;
     private final String script =
-            // firstSeenAt: keep the earliest
+            "if (ctx._source.counters == null) { ctx._source.counters = ['events':0L,'distinctActivities':0L]; } " +
+            // sets (use java.util.* to avoid class resolution issues)
+            "if (ctx._source.cks == null) { ctx._source.cks = new java.util.HashSet(); } " +
+            "if (ctx._source.eventIds == null) { ctx._source.eventIds = new java.util.HashSet(); } " +
+            "if (ctx._source.timeline == null) { ctx._source.timeline = new java.util.ArrayList(); } " +
             "def curFirst = (ctx._source.containsKey('firstSeenAt') && ctx._source.firstSeenAt != null) " +
-                    "  ? java.time.Instant.parse(ctx._source.firstSeenAt).toEpochMilli() : null; " +
-                    "if (curFirst == null || params.tsEpoch < curFirst) { ctx._source.firstSeenAt = params.ts; } " +
+            "  ? java.time.Instant.parse(ctx._source.firstSeenAt).toEpochMilli() : null; " +
+            "def curLast = (ctx._source.containsKey('lastSeenAt') && ctx._source.lastSeenAt != null) " +
+            "  ? java.time.Instant.parse(ctx._source.lastSeenAt).toEpochMilli() : null; " +
+            "boolean changed = false; " +
+            "for (def e : params.events) { " +
+                    // replayed or redelivered event: already part of this journey, skip it
+                    "if (ctx._source.eventIds.contains(e.eid)) { continue; } " +
+                    // firstSeenAt: keep the earliest
+                    "if (curFirst == null || e.tsEpoch < curFirst) { ctx._source.firstSeenAt = e.ts; curFirst = e.tsEpoch; } " +
                     // lastSeenAt: keep the latest
-                    "def curLast = (ctx._source.containsKey('lastSeenAt') && ctx._source.lastSeenAt != null) " +
-                    "  ? java.time.Instant.parse(ctx._source.lastSeenAt).toEpochMilli() : null; " +
-                    "if (curLast == null || params.tsEpoch > curLast) { ctx._source.lastSeenAt = params.ts; } " +
-                    // counters
-                    "if (ctx._source.counters == null) { ctx._source.counters = ['events':0L,'distinctActivities':0L]; } " +
+                    "if (curLast == null || e.tsEpoch > curLast) { ctx._source.lastSeenAt = e.ts; curLast = e.tsEpoch; } " +
                     "ctx._source.counters.events += 1; " +
-                    // sets (use java.util.* to avoid class resolution issues)
-                    "if (ctx._source.cks == null) { ctx._source.cks = new java.util.HashSet(); } " +
-                    "ctx._source.cks.addAll(params.cks); " +
-                    "if (ctx._source.eventIds == null) { ctx._source.eventIds = new java.util.HashSet(); } " +
-                    "ctx._source.eventIds.add(params.eid); " +
-                    "if (ctx._source.timeline == null) { ctx._source.timeline = new java.util.ArrayList(); } " +
-                    "ctx._source.timeline.add(['eventId':params.eid,'activity':params.act,'timestamp':params.ts]);";
+                    "ctx._source.cks.addAll(e.cks); " +
+                    "ctx._source.eventIds.add(e.eid); " +
+                    "ctx._source.timeline.add(['eventId':e.eid,'activity':e.act,'timestamp':e.ts]); " +
+                    "changed = true; } " +
+            // every event was known already: leave the document untouched
+            "if (!changed) { ctx.op = 'noop'; }";
+
     /**
      * Constructs a {@code JourneyService}.
      *
@@ -51,25 +71,28 @@ public class JourneyService {
     /**
      * Indexes a single event document into the specified events index.
      * <p>
-     * The document's ID is derived from the "eventId" field within the provided map.
+     * The document's ID is the event's {@code eventId}.
      * </p>
-     * @param eventDoc The map representing the event document. It must contain an "eventId" key.
+     * @param event The event to store. It must have an eventId.
      * @param eventsIndex The name of the index where event documents are stored.
      * @throws IOException if an I/O error occurs during the Elasticsearch operation.
-     * @throws IllegalArgumentException if the "eventId" field is missing from the eventDoc.
+     * @throws IllegalArgumentException if the event has no eventId.
      */
-    public void indexEvent(Map<String, Object> eventDoc, String eventsIndex) throws IOException {
-        String id = (String) eventDoc.get("eventId");
-        if (id == null) throw new IllegalArgumentException("eventDoc must contain eventId");
-        es.index(i -> i.index(eventsIndex).id(id).document(eventDoc));
+    @Override
+    public void indexEvent(EventRecord event, String eventsIndex) throws IOException {
+        String id = event.getEventId();
+        if (id == null) throw new IllegalArgumentException("event must have an eventId");
+        es.index(i -> i.index(eventsIndex).id(id).document(event));
     }
 
     /**
      * Upserts a journey document by processing a new event.
      * <p>
      * The method uses a painless script to update an existing journey document or create a new one.
-     * The script performs the following actions:
+     * The script applies a list of events in order, here just one, and for each event performs the
+     * following actions:
      * <ul>
+     * <li>Skips the event if the journey already contains its ID, so replays do not double count.</li>
      * <li>Updates the {@code firstSeenAt} timestamp if the new event is older.</li>
      * <li>Updates the {@code lastSeenAt} timestamp if the new event is newer.</li>
      * <li>Increments the event counter.</li>
@@ -79,35 +102,119 @@ public class JourneyService {
      * The {@code scriptedUpsert} option is used to ensure the script runs even if the journey document does not yet exist.
      * </p>
      * @param journeyId The unique identifier of the journey.
-     * @param eventDoc The map representing the event document to be incorporated into the journey.
+     * @param event The event to be incorporated into the journey.
      * @throws IOException if an I/O error occurs during the Elasticsearch operation.
      */
-    public void upsertJourney(String journeyId, Map<String, Object> eventDoc) throws IOException {
-        String ts = (String) eventDoc.get("timestamp");
-        long tsEpoch = java.time.Instant.parse(ts).toEpochMilli();
+    @Override
+    public void upsertJourney(String journeyId, EventRecord event) throws IOException {
         es.update(u -> u
                         .index(journeysIndex)
                         .id(journeyId)
-                        .script(s -> s.inline(i -> i
-                                .lang("painless")
-                                .source(script)
-                                .params("eid",   co.elastic.clients.json.JsonData.of((String) eventDoc.get("eventId")))
-                                .params("act",   co.elastic.clients.json.JsonData.of((String) eventDoc.get("activity")))
-                                .params("ts",    co.elastic.clients.json.JsonData.of(ts))
-                                .params("tsEpoch", co.elastic.clients.json.JsonData.of(tsEpoch))
-                                .params("cks",   co.elastic.clients.json.JsonData.of((java.util.List<String>) eventDoc.get("correlationKeys")))
-                        ))
+                        .script(upsertScript(List.of(event)))
                         .scriptedUpsert(true)
-                        .upsert(java.util.Map.of(
-                                "journeyId", journeyId,
-                                "firstSeenAt", ts,
-                                "lastSeenAt",  ts,
-                                "status", "OPEN",
-                                "cks", java.util.List.of(),
-                                "eventIds", java.util.List.of(),
-                                "counters", java.util.Map.of("events", 0, "distinctActivities", 0)
-                        )),
-                java.util.Map.class
+                        .upsert(emptyJourney(journeyId, event.getTimestamp().toString()))
+                        .retryOnConflict(RETRY_ON_CONFLICT),
+                Map.class
+        );
+    }
+
+    /**
+     * Indexes a batch of events and applies their journey upserts in a single {@code _bulk} request.
+     * <p>
+     * For every event an index operation into {@code eventsIndex} is emitted, and for every journey
+     * one scripted upsert applying all of its events at once, using the same script as
+     * {@link #upsertJourney(String, EventRecord)}. A journey receiving many events is thus rewritten
+     * once per batch rather than once per event. Events of one journey are applied in the order given.
+     * </p>
+     * @param eventsByJourney The events to write, grouped by the journey ID they were stitched to.
+     * @param eventsIndex The name of the index where event documents are stored.
+     * @throws IOException if an I/O error occurs or any bulk item fails.
+     * @throws IllegalArgumentException if an event has no eventId.
+     */
+    @Override
+    public void bulkIndexAndUpsert(Map<String, List<EventRecord>> eventsByJourney,
+                                   String eventsIndex) throws IOException {
+        if (eventsByJourney == null || eventsByJourney.isEmpty()) return;
+        List<EventRecord> events = new ArrayList<>();
+        for (List<EventRecord> journey : eventsByJourney.values()) events.addAll(journey);
+        bulkWrite(Map.of(eventsIndex, events), eventsByJourney);
+    }
+
+    /**
+     * Indexes events and applies journey upserts in a single {@code _bulk} request.
+     * <p>
+     * Like {@link #bulkIndexAndUpsert(Map, String)}, but the events indexed need not be those
+     * upserted and may go to several indices; used by {@link CoalescingJourneyWriter}.
+     * </p>
+     * @param eventsByIndex The events to index, grouped by the index they go to.
+     * @param eventsByJourney The events to add to journeys, grouped by journey ID.
+     * @throws IOException if an I/O error occurs or any bulk item fails.
+     * @throws IllegalArgumentException if an event has no eventId.
+     */
+    void bulkWrite(Map<String, List<EventRecord>> eventsByIndex,
+                   Map<String, List<EventRecord>> eventsByJourney) throws IOException {
+        List<BulkOperation> ops = new ArrayList<>();
+        for (Map.Entry<String, List<EventRecord>> index : eventsByIndex.entrySet()) {
+            for (EventRecord event : index.getValue()) {
+                String id = event.getEventId();
+                if (id == null) throw new IllegalArgumentException("event must have an eventId");
+                ops.add(BulkOperation.of(b -> b.index(i -> i.index(index.getKey()).id(id).document(event))));
+            }
+        }
+        for (Map.Entry<String, List<EventRecord>> journey : eventsByJourney.entrySet()) {
+            String journeyId = journey.getKey();
+            List<EventRecord> events = journey.getValue();
+            ops.add(BulkOperation.of(b -> b.update(u -> u
+                    .index(journeysIndex)
+                    .id(journeyId)
+                    .retryOnConflict(RETRY_ON_CONFLICT)
+                    .action(a -> a
+                            .script(upsertScript(events))
+                            .scriptedUpsert(true)
+                            .upsert(emptyJourney(journeyId, events.get(0).getTimestamp().toString())))
+            )));
+        }
+        if (ops.isEmpty()) return;
+
+        BulkResponse resp = es.bulk(b -> b.operations(ops));
+        if (resp.errors()) {
+            for (BulkResponseItem item : resp.items()) {
+                if (item.error() != null) {
+                    throw new IOException("bulk write failed for " + item.index() + "/" + item.id()
+                            + ": " + item.error().reason());
+                }
+            }
+        }
+    }
+
+    private Script upsertScript(List<EventRecord> events) {
+        List<Map<String, Object>> params = new ArrayList<>(events.size());
+        for (EventRecord event : events) {
+            // not Map.of: the activity may be null
+            Map<String, Object> e = new HashMap<>(8);
+            e.put("eid",     event.getEventId());
+            e.put("act",     event.getActivity());
+            e.put("ts",      event.getTimestamp().toString());
+            e.put("tsEpoch", event.getTimestamp().toEpochMilli());
+            e.put("cks",     event.getCorrelationKeys());
+            params.add(e);
+        }
+        return Script.of(s -> s.inline(i -> i
+                .lang("painless")
+                .source(script)
+                .params("events", JsonData.of(params))
+        ));
+    }
+
+    private static Map<String, Object> emptyJourney(String journeyId, String ts) {
+        return Map.of(
+                "journeyId", journeyId,
+                "firstSeenAt", ts,
+                "lastSeenAt",  ts,
+                "status", "OPEN",
+                "cks", List.of(),
+                "eventIds", List.of(),
+                "counters", Map.of("events", 0, "distinctActivities", 0)
         );
     }
 }
@@ -0,0 +1,139 @@
+package com.abc.process.mining.journey.es;
+
+import com.abc.process.mining.journey.util.ScalableBloomFilter;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Probabilistic set of every correlation key present in the {@code ckmap} index.
+ * <p>
+ * Most correlation keys of a fresh event have never been seen before, and looking them up in
+ * Elasticsearch only to find nothing is the most common ckmap read. A key this filter has never
+ * seen is certainly not in the index, so {@link CkMapService} skips reading it. Keys are added
+ * whenever they are claimed or found, and on startup the filter is rebuilt from a snapshot file
+ * and the index by {@link KnownCkFilterLoader}. Until that rebuild is done, {@link #mightExist(String)}
+ * answers {@code true} for every key, so lookups behave as if there were no filter.
+ * </p>
+ * Keys claimed by other instances are only learnt at the next rebuild; a lookup they miss falls
+ * through to the claim, which still finds the existing owner. Safe for concurrent use.
+ */
+public class KnownCkFilter {
+
+    private final ScalableBloomFilter filter;
+    private final double fpp;
+    private volatile boolean ready;
+
+    private final LongAdder checked = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+
+    /**
+     * Constructs a {@code KnownCkFilter}.
+     *
+     * @param initialCapacity The number of keys the filter is first sized for; it grows beyond that.
+     * @param fpp The target false positive probability.
+     * @param maxBytes The memory the filter may grow to.
+     */
+    public KnownCkFilter(long initialCapacity, double fpp, long maxBytes) {
+        this.filter = new ScalableBloomFilter(initialCapacity, fpp, maxBytes);
+        this.fpp = fpp;
+    }
+
+    /**
+     * @return A filter that is never ready, so every key might exist.
+     */
+    public static KnownCkFilter disabled() {
+        return new KnownCkFilter(1, 0.5, 0);
+    }
+
+    /**
+     * @param ck A correlation key.
+     * @return {@code false} if the key is certainly not in the ckmap index.
+     */
+    public boolean mightExist(String ck) {
+        if (!ready) return true;
+        checked.increment();
+        if (filter.mightContain(ck)) return true;
+        skipped.increment();
+        return false;
+    }
+
+    /**
+     * Records a key as present in the ckmap index.
+     *
+     * @param ck A correlation key.
+     */
+    public void add(String ck) {
+        filter.put(ck);
+    }
+
+    /**
+     * Starts answering lookups from the filter; called once it holds every key of the index.
+     */
+    public void markReady() {
+        ready = true;
+    }
+
+    /**
+     * @return Whether the filter holds every key of the index and is used to skip lookups.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Writes the filter to a file, replacing it atomically.
+     *
+     * @param file The snapshot file.
+     * @param takenAt The time up to which the snapshot holds all keys.
+     * @throws IOException if the file cannot be written.
+     */
+    public void save(Path file, Instant takenAt) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeLong(takenAt.toEpochMilli());
+            filter.writeTo(out);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Replaces the content of the filter with a snapshot written by {@link #save(Path, Instant)}.
+     *
+     * @param file The snapshot file.
+     * @return The time up to which the snapshot holds all keys.
+     * @throws IOException if the file cannot be read or is not a snapshot.
+     */
+    public Instant load(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            Instant takenAt = Instant.ofEpochMilli(in.readLong());
+            filter.readFrom(in);
+            return takenAt;
+        }
+    }
+
+    /**
+     * @return Whether the filter is used, how many keys it holds, its memory use, and how many lookups it skipped.
+     */
+    public Map<String, Object> stats() {
+        long checkedCount = checked.sum();
+        long skippedCount = skipped.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("ready", ready);
+        stats.put("keys", filter.count());
+        stats.put("stages", filter.stageCount());
+        stats.put("bytes", filter.sizeInBytes());
+        stats.put("fpp", fpp);
+        stats.put("checked", checkedCount);
+        stats.put("skipped", skippedCount);
+        stats.put("skipRate", checkedCount == 0 ? 0.0 : (double) skippedCount / checkedCount);
+        return stats;
+    }
+}
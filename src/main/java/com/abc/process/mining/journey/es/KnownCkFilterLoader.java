@@ -0,0 +1,99 @@
+package com.abc.process.mining.journey.es;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.log.LogAccessor;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Rebuilds the {@link KnownCkFilter} on startup and snapshots it while running.
+ * <p>
+ * The rebuild runs in the background once the application is ready, so consumption starts right
+ * away with an unfiltered ckmap. If a snapshot file exists, it is loaded and only the keys updated
+ * since it was taken are read from the index; otherwise every key of the index is scanned. The
+ * snapshot time is taken before the filter is written and moved back by a safety margin on
+ * catch-up, so keys claimed while a snapshot was written or by instances with a skewed clock are
+ * not missed.
+ * </p>
+ * The filter is written to the snapshot file periodically and on shutdown, once it is ready.
+ */
+public class KnownCkFilterLoader {
+
+    private static final LogAccessor LOG = new LogAccessor(KnownCkFilterLoader.class);
+
+    static final Duration CATCH_UP_MARGIN = Duration.ofMinutes(5);
+
+    private final KnownCkFilter filter;
+    private final CkMapService ckMapService;
+    private final Path snapshot;
+
+    /**
+     * Constructs a {@code KnownCkFilterLoader}.
+     *
+     * @param filter The filter to rebuild.
+     * @param ckMapService The service scanning the ckmap index.
+     * @param snapshot The snapshot file; {@code null} to always scan the whole index and never snapshot.
+     */
+    public KnownCkFilterLoader(KnownCkFilter filter, CkMapService ckMapService, Path snapshot) {
+        this.filter = filter;
+        this.ckMapService = ckMapService;
+        this.snapshot = snapshot;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        Thread.ofVirtual().name("ckbloom-rebuild").start(() -> {
+            try {
+                rebuild();
+            } catch (IOException | RuntimeException e) {
+                // stays unready: every lookup keeps going to Elasticsearch
+                LOG.error(e, "could not rebuild the known correlation key filter");
+            }
+        });
+    }
+
+    /**
+     * Fills the filter from the snapshot and the index and marks it ready.
+     *
+     * @throws IOException if the index cannot be scanned.
+     */
+    public void rebuild() throws IOException {
+        Instant since = null;
+        if (snapshot != null && Files.exists(snapshot)) {
+            try {
+                since = filter.load(snapshot).minus(CATCH_UP_MARGIN);
+            } catch (IOException e) {
+                LOG.warn(e, () -> "ignoring unreadable snapshot " + snapshot);
+            }
+        }
+        long scanned = ckMapService.scanKeys(since, filter::add);
+        filter.markReady();
+        Instant from = since;
+        LOG.info(() -> "known correlation key filter ready with " + filter.stats().get("keys") + " keys, "
+                + scanned + " read from ckmap" + (from == null ? "" : " since " + from));
+    }
+
+    @Scheduled(fixedDelayString = "${app.ckbloom.snapshot-interval-ms:300000}",
+            initialDelayString = "${app.ckbloom.snapshot-interval-ms:300000}")
+    public void snapshot() {
+        if (snapshot == null || !filter.isReady()) return;
+        try {
+            filter.save(snapshot, Instant.now());
+        } catch (IOException e) {
+            LOG.warn(e, () -> "could not write snapshot " + snapshot);
+        }
+    }
+
+    /**
+     * Writes a last snapshot; called when the application context closes.
+     */
+    public void close() {
+        snapshot();
+    }
+}
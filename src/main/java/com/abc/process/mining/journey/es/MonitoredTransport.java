@@ -0,0 +1,126 @@
+package com.abc.process.mining.journey.es;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.transport.ElasticsearchTransport;
+import co.elastic.clients.transport.Endpoint;
+import co.elastic.clients.transport.TransportOptions;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * {@link ElasticsearchTransport} decorator that reports every request to an {@link ElasticsearchLoad}.
+ * <p>
+ * Sitting below {@link co.elastic.clients.elasticsearch.ElasticsearchClient}, it sees all calls of the
+ * services without touching them. A request counts as throttled when Elasticsearch answers with
+ * status 429, either for the whole request or for any item of a bulk response, which is how
+ * rejected writes usually show up.
+ * </p>
+ * <p>
+ * Requests of background maintenance (ckmap retention, journey compaction, redirect scans) are
+ * sent through a client from {@link #maintenance(ElasticsearchClient)} and are not reported:
+ * a throttled delete-by-query or a scroll page may take minutes by design, and counting it would
+ * make the load look high enough to pause the listeners, and with them the maintenance itself.
+ * Such requests carry {@value #MAINTENANCE} as their {@code X-Opaque-Id}, so Elasticsearch shows
+ * them as such in its task list and slow logs.
+ * </p>
+ */
+public class MonitoredTransport implements ElasticsearchTransport {
+
+    public static final String OPAQUE_ID_HEADER = "X-Opaque-Id";
+    public static final String MAINTENANCE = "journey-maintenance";
+
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    private final ElasticsearchTransport delegate;
+    private final ElasticsearchLoad load;
+
+    /**
+     * Constructs a {@code MonitoredTransport}.
+     *
+     * @param delegate The transport actually sending the requests.
+     * @param load Where request statistics are recorded.
+     */
+    public MonitoredTransport(ElasticsearchTransport delegate, ElasticsearchLoad load) {
+        this.delegate = delegate;
+        this.load = load;
+    }
+
+    /**
+     * @param es A client sending its requests through a {@code MonitoredTransport}.
+     * @return A client sharing its transport whose requests are tagged as maintenance and left out
+     * of the load.
+     */
+    public static ElasticsearchClient maintenance(ElasticsearchClient es) {
+        return es.withTransportOptions(o -> o.setHeader(OPAQUE_ID_HEADER, MAINTENANCE));
+    }
+
+    @Override
+    public <RequestT, ResponseT, ErrorT> ResponseT performRequest(RequestT request,
+            Endpoint<RequestT, ResponseT, ErrorT> endpoint, TransportOptions options) throws IOException {
+        if (isMaintenance(options)) return delegate.performRequest(request, endpoint, options);
+        load.started();
+        long start = System.nanoTime();
+        boolean rejected = false;
+        try {
+            ResponseT response = delegate.performRequest(request, endpoint, options);
+            rejected = isThrottled(response);
+            return response;
+        } catch (ElasticsearchException e) {
+            rejected = e.status() == TOO_MANY_REQUESTS;
+            throw e;
+        } finally {
+            load.finished(System.nanoTime() - start, rejected);
+        }
+    }
+
+    @Override
+    public <RequestT, ResponseT, ErrorT> CompletableFuture<ResponseT> performRequestAsync(RequestT request,
+            Endpoint<RequestT, ResponseT, ErrorT> endpoint, TransportOptions options) {
+        if (isMaintenance(options)) return delegate.performRequestAsync(request, endpoint, options);
+        load.started();
+        long start = System.nanoTime();
+        return delegate.performRequestAsync(request, endpoint, options).whenComplete((response, error) -> {
+            Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+            load.finished(System.nanoTime() - start, cause == null ? isThrottled(response)
+                    : cause instanceof ElasticsearchException e && e.status() == TOO_MANY_REQUESTS);
+        });
+    }
+
+    @Override
+    public JsonpMapper jsonpMapper() {
+        return delegate.jsonpMapper();
+    }
+
+    @Override
+    public TransportOptions options() {
+        return delegate.options();
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+
+    private static boolean isMaintenance(TransportOptions options) {
+        if (options == null) return false;
+        for (Map.Entry<String, String> header : options.headers()) {
+            if (OPAQUE_ID_HEADER.equalsIgnoreCase(header.getKey()) && MAINTENANCE.equals(header.getValue())) return true;
+        }
+        return false;
+    }
+
+    private static boolean isThrottled(Object response) {
+        if (!(response instanceof BulkResponse bulk) || !bulk.errors()) return false;
+        for (BulkResponseItem item : bulk.items()) {
+            if (item.status() == TOO_MANY_REQUESTS) return true;
+        }
+        return false;
+    }
+}
@@ -1,22 +1,50 @@
 package com.abc.process.mining.journey.es;
 
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.MgetResponse;
+import co.elastic.clients.elasticsearch.core.ScrollResponse;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.elasticsearch.core.mget.MultiGetResponseItem;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.json.JsonData;
+import com.abc.process.mining.journey.store.RedirectStore;
+import org.springframework.core.log.LogAccessor;
 
 import java.io.IOException;
-import java.util.Map;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
 
 /**
- * Service for managing redirects in Elasticsearch.
+ * {@link RedirectStore} keeping redirects in Elasticsearch.
  * <p>
  * This service provides functionality to set and resolve document redirects,
  * which is useful for merging journeys or other documents. It stores redirect
  * information in a dedicated index.
  * </p>
+ * <p>
+ * Resolution follows chains of redirects left by repeated merges to their end, reading the hops of
+ * many IDs per request, and shortens the chains it walks so later lookups take one hop.
+ * </p>
+ * Listeners registered with {@link #addListener(BiConsumer)} are told about every redirect
+ * written, so local caches can follow merges.
  */
-public class RedirectService {
+public class RedirectService implements RedirectStore {
+
+    private static final LogAccessor LOG = new LogAccessor(RedirectService.class);
+
+    static final int MAX_HOPS = 16;
+    static final int SCAN_PAGE_SIZE = 5000;
+    private static final String SCAN_KEEP_ALIVE = "1m";
 
     private final ElasticsearchClient es;
+    private final ElasticsearchClient scans;
     private final String index;
+    private final List<BiConsumer<String, String>> listeners = new CopyOnWriteArrayList<>();
 
     /**
      * Constructs a {@code RedirectService}.
@@ -25,8 +53,31 @@ public class RedirectService {
      * @param index The name of the index where redirect documents are stored.
      */
     public RedirectService(ElasticsearchClient es, String index) {
+        this(es, index, es);
+    }
+
+    /**
+     * Constructs a {@code RedirectService} scanning the index through a client of its own.
+     *
+     * @param es The Elasticsearch client.
+     * @param index The name of the index where redirect documents are stored.
+     * @param scans The client {@link #scan(Instant, BiConsumer)} sends its requests through, such as a
+     * {@link MonitoredTransport#maintenance(ElasticsearchClient) maintenance} client.
+     */
+    public RedirectService(ElasticsearchClient es, String index, ElasticsearchClient scans) {
         this.es = es;
         this.index = index;
+        this.scans = scans;
+    }
+
+    /**
+     * Registers a callback invoked with {@code (from, to)} after each redirect has been written.
+     *
+     * @param listener The callback.
+     */
+    @Override
+    public void addListener(BiConsumer<String, String> listener) {
+        listeners.add(listener);
     }
 
     /**
@@ -39,6 +90,7 @@ public class RedirectService {
      * @param to The target ID to redirect to.
      * @throws IOException if an I/O error occurs during the Elasticsearch operation.
      */
+    @Override
     public void setRedirect(String from, String to) throws IOException {
         es.index(i -> i
                 .index(index)
@@ -48,27 +100,201 @@ public class RedirectService {
                         "to", to,
                         "updatedAt", java.time.Instant.now().toString()
                 )));
+        for (BiConsumer<String, String> listener : listeners) listener.accept(from, to);
     }
 
     /**
      * Resolves the final destination ID for a given journey ID, following redirects.
      * <p>
-     * It performs a get request on the redirects index. If a document is found,
-     * it extracts the "to" field and returns it. If the document is not found,
-     * it returns the original ID, implying no redirect exists.
+     * It performs a get request on the redirects index. If a document is found, the chain
+     * starting at its "to" field is followed like {@link #resolveAll(Collection)} does. If the
+     * document is not found, it returns the original ID, implying no redirect exists.
      * </p>
      * @param journeyId The ID to resolve.
      * @return The final destination ID.
      * @throws IOException if an I/O error occurs during the Elasticsearch operation.
      */
+    @Override
     public String resolve(String journeyId) throws IOException {
         var resp = es.get(g -> g.index(index).id(journeyId), Map.class);
         if (resp.found()) {
             @SuppressWarnings("unchecked")
             Map<String, Object> src = (Map<String, Object>) resp.source();
             Object to = src.get("to");
-            if (to != null) return to.toString();
+            if (to != null) {
+                Map<String, String> hops = new HashMap<>();
+                hops.put(journeyId, to.toString());
+                return follow(List.of(journeyId), hops, List.of(to.toString())).get(journeyId);
+            }
         }
         return journeyId;
     }
+
+    /**
+     * Sets many redirects in a single {@code _bulk} request.
+     * <p>
+     * Each entry is written exactly like {@link #setRedirect(String, String)} would write it.
+     * </p>
+     * @param fromTo A map from source ID to target ID.
+     * @throws IOException if an I/O error occurs or any bulk item fails.
+     */
+    @Override
+    public void setRedirects(Map<String, String> fromTo) throws IOException {
+        if (fromTo == null || fromTo.isEmpty()) return;
+        write(fromTo);
+        for (Map.Entry<String, String> redirect : fromTo.entrySet()) {
+            for (BiConsumer<String, String> listener : listeners) listener.accept(redirect.getKey(), redirect.getValue());
+        }
+    }
+
+    private void write(Map<String, String> fromTo) throws IOException {
+        String now = java.time.Instant.now().toString();
+
+        List<BulkOperation> ops = new ArrayList<>(fromTo.size());
+        for (Map.Entry<String, String> redirect : fromTo.entrySet()) {
+            ops.add(BulkOperation.of(b -> b.index(i -> i
+                    .index(index)
+                    .id(redirect.getKey())
+                    .document(Map.of(
+                            "from", redirect.getKey(),
+                            "to", redirect.getValue(),
+                            "updatedAt", now
+                    )))));
+        }
+
+        BulkResponse resp = es.bulk(b -> b.operations(ops));
+        if (resp.errors()) {
+            for (BulkResponseItem item : resp.items()) {
+                if (item.error() != null) {
+                    throw new IOException("redirect write failed for " + item.id() + ": " + item.error().reason());
+                }
+            }
+        }
+    }
+
+    /**
+     * Resolves many journey IDs to the end of their redirect chains.
+     * <p>
+     * All IDs are looked up with one Multi-Get request, then the targets found are looked up
+     * together in the next one, and so on, so a chain of n hops costs n requests whatever the
+     * number of IDs. At most {@value #MAX_HOPS} rounds are made; a chain still longer than that,
+     * or a cycle, ends at the last ID reached. IDs without a redirect document map to themselves.
+     * </p>
+     * <p>
+     * Every ID found more than one hop away from its destination is then redirected straight to
+     * it in a single {@code _bulk} request, so the next lookup of that chain is one hop. Listeners
+     * are not told about these writes, as they do not merge anything. A failed write is logged and
+     * does not fail the resolution.
+     * </p>
+     * @param journeyIds The IDs to resolve.
+     * @return A map from each requested ID to its destination ID.
+     * @throws IOException if an I/O error occurs during a Multi-Get request.
+     */
+    @Override
+    public Map<String, String> resolveAll(Collection<String> journeyIds) throws IOException {
+        if (journeyIds == null || journeyIds.isEmpty()) return Collections.emptyMap();
+        return follow(journeyIds, new HashMap<>(), journeyIds);
+    }
+
+    /**
+     * Follows redirect chains from some IDs, reading the hops not known yet round by round.
+     *
+     * @param journeyIds The IDs to resolve.
+     * @param hops The hops already known, from ID to its redirect target; filled with the hops read.
+     * @param frontier The IDs whose redirect is to be read first.
+     * @return A map from each requested ID to its destination ID.
+     */
+    private Map<String, String> follow(Collection<String> journeyIds, Map<String, String> hops,
+                                       Collection<String> frontier) throws IOException {
+        Set<String> read = new HashSet<>();
+        List<String> next = new ArrayList<>(new LinkedHashSet<>(frontier));
+        for (int round = 0; round < MAX_HOPS && !next.isEmpty(); round++) {
+            read.addAll(next);
+            List<String> ids = next;
+            MgetResponse<Map> resp = es.mget(m -> m.index(index).ids(ids), Map.class);
+            next = new ArrayList<>();
+            for (MultiGetResponseItem<Map> item : resp.docs()) {
+                if (item.result().found()) {
+                    @SuppressWarnings("unchecked")
+                    Map<String, Object> src = (Map<String, Object>) item.result().source();
+                    Object to = src.get("to");
+                    if (to != null) {
+                        hops.put(item.result().id(), to.toString());
+                        if (read.add(to.toString())) next.add(to.toString());
+                    }
+                }
+            }
+        }
+
+        Map<String, String> out = new HashMap<>();
+        Map<String, String> collapsed = new LinkedHashMap<>();
+        for (String id : journeyIds) {
+            List<String> chain = new ArrayList<>();
+            Set<String> seen = new HashSet<>();
+            String current = id;
+            while (seen.add(current) && hops.containsKey(current)) {
+                chain.add(current);
+                current = hops.get(current);
+            }
+            out.put(id, current);
+            for (String node : chain) {
+                if (!hops.get(node).equals(current) && !node.equals(current)) collapsed.put(node, current);
+            }
+        }
+        if (!collapsed.isEmpty()) {
+            try {
+                write(collapsed);
+            } catch (IOException | RuntimeException e) {
+                LOG.warn(e, () -> "could not collapse " + collapsed.size() + " redirect chains");
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Reads all redirects in the index, or those written since a point in time.
+     * <p>
+     * Scrolls through the index in pages of {@value #SCAN_PAGE_SIZE}, fetching only
+     * {@code from} and {@code to}. Used to load {@link UnionFindRedirectStore}.
+     * </p>
+     *
+     * @param since Only redirects whose {@code updatedAt} is at or after this instant; {@code null} for all.
+     * @param redirects Receives {@code (from, to)} of every redirect read.
+     * @return The number of redirects read.
+     * @throws IOException if an I/O error occurs during the Elasticsearch operation.
+     */
+    public long scan(Instant since, BiConsumer<String, String> redirects) throws IOException {
+        SearchResponse<Map> page = scans.search(s -> s
+                        .index(index)
+                        .size(SCAN_PAGE_SIZE)
+                        .scroll(t -> t.time(SCAN_KEEP_ALIVE))
+                        .source(src -> src.filter(f -> f.includes("from", "to")))
+                        .query(q -> since == null
+                                ? q.matchAll(m -> m)
+                                : q.range(r -> r.field("updatedAt").gte(JsonData.of(since.toString())))),
+                Map.class);
+        String scrollId = page.scrollId();
+        List<Hit<Map>> hits = page.hits().hits();
+        long count = 0;
+        try {
+            while (!hits.isEmpty()) {
+                for (Hit<Map> hit : hits) {
+                    Object to = hit.source() == null ? null : hit.source().get("to");
+                    if (to != null) redirects.accept(hit.id(), to.toString());
+                }
+                count += hits.size();
+                String current = scrollId;
+                ScrollResponse<Map> next = scans.scroll(s -> s.scrollId(current).scroll(t -> t.time(SCAN_KEEP_ALIVE)),
+                        Map.class);
+                scrollId = next.scrollId();
+                hits = next.hits().hits();
+            }
+        } finally {
+            if (scrollId != null) {
+                String last = scrollId;
+                scans.clearScroll(c -> c.scrollId(last));
+            }
+        }
+        return count;
+    }
 }
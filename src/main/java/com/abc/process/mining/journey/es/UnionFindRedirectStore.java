@@ -0,0 +1,287 @@
+package com.abc.process.mining.journey.es;
+
+import com.abc.process.mining.journey.store.RedirectStore;
+import com.abc.process.mining.journey.util.DisjointSets;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.log.LogAccessor;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+
+/**
+ * {@link RedirectStore} resolving redirects in memory with {@link DisjointSets}, mirroring the
+ * {@code redirects} index.
+ * <p>
+ * Every merged journey is in one set with the journeys it was merged with, labelled with the
+ * surviving journey, so resolution follows chains such as A&rarr;B&rarr;C to the end in near-constant
+ * time without any request. A redirect joins the sets of both journeys; when either journey was
+ * already merged, the redirect recorded is from the label of the first set to the label of the
+ * second, so every redirect written points at a surviving journey.
+ * </p>
+ * <p>
+ * Redirects are stored per source journey, so two instances merging the same journey into
+ * different targets overwrite each other in the index. When a redirect read back comes from a
+ * journey already merged here, the two sets are joined into the smaller of both labels and that
+ * label-to-label redirect is written as well, so every instance and every reload resolves both
+ * targets to the same, smallest root.
+ * </p>
+ * <p>
+ * The sets are loaded from the index in the background once the application is ready; until then
+ * IDs not redirected in memory are resolved through Elasticsearch. New redirects apply in memory
+ * and are written to the index asynchronously in batches, at the latest when the application
+ * closes. Redirects written by other instances are read back periodically and applied, catching up
+ * from the previous read minus a safety margin.
+ * </p>
+ * Listeners registered with {@link #addListener(BiConsumer)} are told about every redirect applied,
+ * whether it was set here or read from the index.
+ */
+public class UnionFindRedirectStore implements RedirectStore {
+
+    private static final LogAccessor LOG = new LogAccessor(UnionFindRedirectStore.class);
+
+    static final Duration CATCH_UP_MARGIN = Duration.ofMinutes(1);
+
+    private final RedirectService index;
+    private final Clock clock;
+    private final DisjointSets sets = new DisjointSets();
+    private final List<BiConsumer<String, String>> listeners = new CopyOnWriteArrayList<>();
+    private final Object writeLock = new Object();
+
+    private Map<String, String> pending = new LinkedHashMap<>();
+    private volatile boolean ready;
+    private volatile Instant lastRead;
+    private long fallbacks;
+    private long written;
+    private long writeFailures;
+    private long readBack;
+
+    /**
+     * Constructs a {@code UnionFindRedirectStore}.
+     *
+     * @param index The service reading and writing the {@code redirects} index.
+     * @param clock The clock timing catch-up reads.
+     */
+    public UnionFindRedirectStore(RedirectService index, Clock clock) {
+        this.index = index;
+        this.clock = clock;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        Thread.ofVirtual().name("redirects-load").start(() -> {
+            try {
+                load();
+            } catch (IOException | RuntimeException e) {
+                // stays unready: unknown IDs keep being resolved through Elasticsearch
+                LOG.error(e, "could not load the redirects index");
+            }
+        });
+    }
+
+    /**
+     * Reads every redirect of the index into memory and starts resolving from memory only.
+     *
+     * @throws IOException if the index cannot be scanned.
+     */
+    public void load() throws IOException {
+        Instant started = clock.instant();
+        long n = index.scan(null, (from, to) -> apply(from, to, false));
+        lastRead = started;
+        ready = true;
+        LOG.info(() -> "loaded " + n + " redirects over " + stats().get("journeys") + " journeys");
+    }
+
+    /**
+     * Applies the redirects written to the index since the last read, by this or other instances.
+     */
+    @Scheduled(fixedDelayString = "${app.redirects.refresh-interval-ms:5000}",
+            initialDelayString = "${app.redirects.refresh-interval-ms:5000}")
+    public void refresh() {
+        if (!ready) return;
+        Instant started = clock.instant();
+        try {
+            index.scan(lastRead.minus(CATCH_UP_MARGIN), (from, to) -> apply(from, to, true));
+            lastRead = started;
+        } catch (IOException | RuntimeException e) {
+            LOG.warn(e, "could not read back the redirects index");
+        }
+    }
+
+    @Override
+    public void addListener(BiConsumer<String, String> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void setRedirect(String from, String to) {
+        String[] redirect;
+        synchronized (this) {
+            redirect = union(from, to);
+        }
+        if (redirect == null) return;
+        synchronized (writeLock) {
+            pending.put(redirect[0], redirect[1]);
+        }
+        announce(from, redirect);
+    }
+
+    @Override
+    public String resolve(String journeyId) throws IOException {
+        String resolved;
+        synchronized (this) {
+            resolved = sets.find(journeyId);
+        }
+        if (!resolved.equals(journeyId) || ready) return resolved;
+        synchronized (this) {
+            fallbacks++;
+        }
+        return index.resolve(journeyId);
+    }
+
+    @Override
+    public Map<String, String> resolveAll(Collection<String> journeyIds) throws IOException {
+        if (journeyIds == null || journeyIds.isEmpty()) return Collections.emptyMap();
+        Map<String, String> out = new HashMap<>();
+        List<String> unknown = new ArrayList<>();
+        synchronized (this) {
+            for (String id : journeyIds) {
+                String resolved = sets.find(id);
+                out.put(id, resolved);
+                if (resolved.equals(id)) unknown.add(id);
+            }
+            if (ready || unknown.isEmpty()) return out;
+            fallbacks += unknown.size();
+        }
+        out.putAll(index.resolveAll(unknown));
+        return out;
+    }
+
+    /**
+     * Writes the redirects set since the last write to the index in one request.
+     * <p>
+     * Redirects that could not be written are kept for the next attempt, unless a newer redirect
+     * of the same journey replaced them meanwhile.
+     * </p>
+     *
+     * @return The number of redirects written.
+     * @throws IOException if the write fails.
+     */
+    public int flush() throws IOException {
+        Map<String, String> batch;
+        synchronized (writeLock) {
+            if (pending.isEmpty()) return 0;
+            batch = pending;
+            pending = new LinkedHashMap<>();
+        }
+        try {
+            index.setRedirects(batch);
+        } catch (IOException | RuntimeException e) {
+            synchronized (writeLock) {
+                batch.forEach(pending::putIfAbsent);
+            }
+            synchronized (this) {
+                writeFailures++;
+            }
+            throw e;
+        }
+        synchronized (this) {
+            written += batch.size();
+        }
+        return batch.size();
+    }
+
+    @Scheduled(fixedDelayString = "${app.redirects.flush-interval-ms:200}")
+    public void write() {
+        try {
+            flush();
+        } catch (IOException | RuntimeException e) {
+            LOG.warn(e, "could not write redirects; retrying on the next run");
+        }
+    }
+
+    /**
+     * Writes the remaining redirects; called when the application context closes.
+     */
+    public void close() {
+        write();
+    }
+
+    /**
+     * @return Whether the index is loaded, how many journeys and redirects are held, redirects
+     * waiting to be written, written and read back, and lookups that fell back to Elasticsearch.
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        int pendingWrites;
+        synchronized (writeLock) {
+            pendingWrites = pending.size();
+        }
+        synchronized (this) {
+            stats.put("ready", ready);
+            stats.put("journeys", sets.size());
+            stats.put("redirects", sets.unions());
+            stats.put("pending", pendingWrites);
+            stats.put("written", written);
+            stats.put("writeFailures", writeFailures);
+            stats.put("readBack", readBack);
+            stats.put("fallbacks", fallbacks);
+        }
+        return stats;
+    }
+
+    private void apply(String from, String to, boolean notify) {
+        String[] redirect;
+        boolean conflicting;
+        synchronized (this) {
+            // from was merged elsewhere here: its redirect in the index was overwritten by one of the two
+            conflicting = !sets.find(from).equals(from);
+            redirect = conflicting ? unionSmallest(from, to) : union(from, to);
+            if (redirect != null) readBack++;
+        }
+        if (redirect == null) return;
+        if (conflicting) {
+            synchronized (writeLock) {
+                pending.put(redirect[0], redirect[1]);
+            }
+        }
+        if (notify) announce(from, redirect);
+    }
+
+    /**
+     * @return The redirect to record, from the label of {@code from}'s set to the label of
+     * {@code to}'s set, or {@code null} if both are in the same set already.
+     */
+    private String[] union(String from, String to) {
+        String source = sets.find(from);
+        String target = sets.find(to);
+        if (source.equals(target)) return null;
+        sets.union(from, to);
+        return new String[] {source, target};
+    }
+
+    /**
+     * @return The redirect to record, from the larger to the smaller label of both sets, or
+     * {@code null} if both are in the same set already.
+     */
+    private String[] unionSmallest(String from, String to) {
+        String source = sets.find(from);
+        String target = sets.find(to);
+        if (source.compareTo(target) >= 0) return union(from, to);
+        sets.union(to, from);
+        return new String[] {target, source};
+    }
+
+    private void announce(String from, String[] redirect) {
+        for (BiConsumer<String, String> listener : listeners) {
+            listener.accept(redirect[0], redirect[1]);
+            if (!from.equals(redirect[0])) listener.accept(from, redirect[1]);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.abc.process.mining.journey.kafka;
+
+import com.abc.process.mining.journey.es.ElasticsearchLoad;
+import org.springframework.core.log.LogAccessor;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Pauses and resumes the Kafka listeners based on Elasticsearch load.
+ * <p>
+ * When Elasticsearch slows down, listener threads block on it until {@code max.poll.interval.ms}
+ * is exceeded and the group rebalances. Instead, this controller periodically samples
+ * {@link ElasticsearchLoad} and, when the {@link BackpressurePolicy} says so, pauses all listener
+ * containers. A paused container keeps polling, so the consumer stays in its group, but receives
+ * no records until it is resumed once the load has receded.
+ * </p>
+ * Pause count and pause durations are kept for the admin endpoint.
+ */
+@Component
+public class BackpressureController {
+
+    private static final LogAccessor LOG = new LogAccessor(BackpressureController.class);
+
+    private final KafkaListenerEndpointRegistry registry;
+    private final ElasticsearchLoad load;
+    private final BackpressurePolicy policy;
+
+    private volatile ElasticsearchLoad.Sample lastSample = new ElasticsearchLoad.Sample(0, 0, 0, 0);
+    private volatile long pausedSince;
+    private long pauses;
+    private long pausedMillisTotal;
+    private long longestPauseMillis;
+
+    /**
+     * Constructs a {@code BackpressureController}.
+     *
+     * @param registry The registry holding all listener containers.
+     * @param load The Elasticsearch load statistics.
+     * @param policy When to pause and resume.
+     */
+    public BackpressureController(KafkaListenerEndpointRegistry registry, ElasticsearchLoad load,
+                                  BackpressurePolicy policy) {
+        this.registry = registry;
+        this.load = load;
+        this.policy = policy;
+    }
+
+    /**
+     * Samples the Elasticsearch load and pauses or resumes the listeners accordingly.
+     */
+    @Scheduled(fixedDelayString = "${app.backpressure.check-interval-ms:1000}")
+    public synchronized void check() {
+        ElasticsearchLoad.Sample sample = load.sample();
+        lastSample = sample;
+        if (pausedSince == 0 && policy.shouldPause(sample)) {
+            pausedSince = System.currentTimeMillis();
+            pauses++;
+            LOG.warn(() -> "pausing consumption, elasticsearch load " + sample);
+            registry.getListenerContainers().forEach(MessageListenerContainer::pause);
+        } else if (pausedSince != 0 && policy.canResume(sample)) {
+            long paused = System.currentTimeMillis() - pausedSince;
+            pausedSince = 0;
+            pausedMillisTotal += paused;
+            longestPauseMillis = Math.max(longestPauseMillis, paused);
+            LOG.info(() -> "resuming consumption after " + paused + " ms, elasticsearch load " + sample);
+            registry.getListenerContainers().forEach(MessageListenerContainer::resume);
+        }
+    }
+
+    /**
+     * @return Whether consumption is currently paused.
+     */
+    public boolean isPaused() {
+        return pausedSince != 0;
+    }
+
+    /**
+     * @return The pause metrics and the last load sample.
+     */
+    public synchronized Map<String, Object> metrics() {
+        long current = pausedSince == 0 ? 0 : System.currentTimeMillis() - pausedSince;
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("paused", pausedSince != 0);
+        metrics.put("pauses", pauses);
+        metrics.put("currentPauseMillis", current);
+        metrics.put("totalPausedMillis", pausedMillisTotal + current);
+        metrics.put("longestPauseMillis", Math.max(longestPauseMillis, current));
+        metrics.put("inFlight", lastSample.inFlight());
+        metrics.put("requests", lastSample.requests());
+        metrics.put("avgLatencyMillis", lastSample.avgLatencyMillis());
+        metrics.put("throttledRatio", lastSample.throttledRatio());
+        return metrics;
+    }
+}
@@ -0,0 +1,43 @@
+package com.abc.process.mining.journey.kafka;
+
+import com.abc.process.mining.journey.es.ElasticsearchLoad;
+
+/**
+ * Thresholds deciding when consumption is paused because Elasticsearch is overloaded.
+ * <p>
+ * Consumption pauses as soon as any pause threshold is crossed and resumes only once every
+ * metric is back under its resume threshold. Keeping the resume thresholds below the pause
+ * thresholds stops the listeners from flapping around a single limit.
+ * </p>
+ *
+ * @param pauseInFlight Pause when at least this many ES requests are in flight.
+ * @param resumeInFlight Resume only when at most this many ES requests are in flight.
+ * @param pauseLatencyMillis Pause when the mean ES latency of a window reaches this.
+ * @param resumeLatencyMillis Resume only when the mean ES latency of a window is at most this.
+ * @param pauseThrottledRatio Pause when this fraction of a window's requests were rejected with 429.
+ * @param resumeThrottledRatio Resume only when at most this fraction were rejected.
+ */
+public record BackpressurePolicy(int pauseInFlight, int resumeInFlight,
+                                 long pauseLatencyMillis, long resumeLatencyMillis,
+                                 double pauseThrottledRatio, double resumeThrottledRatio) {
+
+    /**
+     * @param sample The load observed over the last window.
+     * @return Whether consumption should be paused.
+     */
+    public boolean shouldPause(ElasticsearchLoad.Sample sample) {
+        return sample.inFlight() >= pauseInFlight
+                || sample.avgLatencyMillis() >= pauseLatencyMillis
+                || sample.throttledRatio() >= pauseThrottledRatio;
+    }
+
+    /**
+     * @param sample The load observed over the last window.
+     * @return Whether paused consumption may resume.
+     */
+    public boolean canResume(ElasticsearchLoad.Sample sample) {
+        return sample.inFlight() <= resumeInFlight
+                && sample.avgLatencyMillis() <= resumeLatencyMillis
+                && sample.throttledRatio() <= resumeThrottledRatio;
+    }
+}
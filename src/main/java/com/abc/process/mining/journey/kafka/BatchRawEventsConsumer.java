@@ -0,0 +1,223 @@
+package com.abc.process.mining.journey.kafka;
+
+import com.abc.process.mining.journey.model.EventRecord;
+import com.abc.process.mining.journey.stitch.EventDeduplicator;
+import com.abc.process.mining.journey.stitch.JourneyIdGenerator;
+import com.abc.process.mining.journey.stitch.JourneyStitcher;
+import com.abc.process.mining.journey.stitch.SuperNodeGuard;
+import com.abc.process.mining.journey.store.CkMapStore;
+import com.abc.process.mining.journey.store.JourneyStore;
+import com.abc.process.mining.journey.store.RedirectStore;
+import com.abc.process.mining.journey.util.CkDictionary;
+import com.abc.process.mining.journey.util.LongObjectHashMap;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Batch variant of {@link RawEventsConsumer} that stitches a whole poll at once.
+ * <p>
+ * Instead of paying every Elasticsearch round trip per event, each stage of the stitch
+ * path is executed once per poll: one Multi-Get for all correlation keys, one resolution of
+ * their owners to the journeys they were merged into, one bulk claim, one bulk redirect write,
+ * one redirect Multi-Get and one bulk write of events and journey upserts. Merges only redirect
+ * such roots, as the redirect of a journey merged before must not be overwritten. Journey decisions made for earlier records of the poll are visible to later ones,
+ * so related events within a poll converge on the same journey without touching ES.
+ * </p>
+ * <p>
+ * Malformed records are dead-lettered and left out of the poll, as are events the
+ * {@link EventDeduplicator} knows were stitched recently. Keys the {@link SuperNodeGuard} flags
+ * are not stitched on. Merges and the events added to every journey are published through the
+ * {@link JourneyChangePublisher} once written. If an Elasticsearch stage fails,
+ * the whole poll is handed to {@link FailedEventRouter} for a delayed retry, so the listener never
+ * throws and the partition keeps moving.
+ * </p>
+ * Enabled with {@code app.consumer.mode=batch}.
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.consumer", name = "mode", havingValue = "batch")
+public class BatchRawEventsConsumer {
+
+    private final CkMapStore ckMapService;
+    private final JourneyStore journeyService;
+    private final RedirectStore redirectService;
+    private final FailedEventRouter router;
+    private final EventDeduplicator deduplicator;
+    private final SuperNodeGuard superNodes;
+    private final JourneyIdGenerator journeyIds;
+    private final JourneyChangePublisher changes;
+
+    public BatchRawEventsConsumer(CkMapStore ckMapService,
+                                  JourneyStore journeyService,
+                                  RedirectStore redirectService,
+                                  FailedEventRouter router,
+                                  EventDeduplicator deduplicator,
+                                  SuperNodeGuard superNodes,
+                                  JourneyIdGenerator journeyIds,
+                                  JourneyChangePublisher changes) {
+        this.ckMapService = ckMapService;
+        this.journeyService = journeyService;
+        this.redirectService = redirectService;
+        this.router = router;
+        this.deduplicator = deduplicator;
+        this.superNodes = superNodes;
+        this.journeyIds = journeyIds;
+        this.changes = changes;
+    }
+
+    @KafkaListener(topics = "events.raw", groupId = "journey-consumer-group",
+            containerFactory = "batchKafkaListenerContainerFactory")
+    public void consume(List<ConsumerRecord<String, EventRecord>> records) {
+        if (records.isEmpty()) return;
+
+        // Malformed records go to the dead-letter topic; the rest of the poll carries on without them
+        List<CompletableFuture<?>> rerouted = new ArrayList<>();
+        List<ConsumerRecord<String, EventRecord>> valid = new ArrayList<>(records.size());
+        Set<String> pollIds = new HashSet<>();
+        for (ConsumerRecord<String, EventRecord> record : records) {
+            try {
+                if (record.value() == null) throw new IllegalArgumentException("undeserializable event");
+                JourneyStitcher.validate(record.value());
+            } catch (IllegalArgumentException e) {
+                rerouted.add(router.deadLetter(record, e));
+                continue;
+            }
+            // Redelivered or replayed events, and repeats within the poll, are already stitched
+            String eventId = record.value().getEventId();
+            if (pollIds.add(eventId) && !deduplicator.isDuplicate(eventId)) valid.add(record);
+        }
+
+        try {
+            stitch(valid);
+            for (ConsumerRecord<String, EventRecord> record : valid) deduplicator.markSeen(record.value().getEventId());
+        } catch (Exception e) {
+            // The poll's ES work failed as a whole; hand every record to the first retry tier
+            for (ConsumerRecord<String, EventRecord> record : valid) rerouted.add(router.route(record, e));
+        }
+        CompletableFuture.allOf(rerouted.toArray(CompletableFuture[]::new)).join();
+    }
+
+    private void stitch(List<ConsumerRecord<String, EventRecord>> records) throws IOException {
+        if (records.isEmpty()) return;
+        // Correlation keys are handled as interned IDs within the poll and as strings only towards ES
+        List<EventRecord> events = new ArrayList<>(records.size());
+        CkDictionary cks = new CkDictionary(records.size() * 2);
+        long[][] eventCks = new long[records.size()][];
+        List<List<String>> stitchKeys = new ArrayList<>(records.size());
+        for (int idx = 0; idx < records.size(); idx++) {
+            events.add(records.get(idx).value());
+            stitchKeys.add(superNodes.stitchKeys(events.get(idx).getCorrelationKeys()));
+            eventCks[idx] = cks.intern(stitchKeys.get(idx));
+        }
+
+        // Stage 1: one lookup for every CK in the poll, owners resolved to their roots in one more,
+        // so merges only ever redirect roots and never overwrite an earlier redirect
+        Map<String, String> found = ckMapService.mgetJourneyIds(cks.keys());
+        Map<String, String> ownerRoots = found.isEmpty()
+                ? Map.of() : redirectService.resolveAll(new HashSet<>(found.values()));
+        LongObjectHashMap<String> owners = new LongObjectHashMap<>(cks.size());
+        for (Map.Entry<String, String> owner : found.entrySet()) {
+            owners.put(cks.intern(owner.getKey()), ownerRoots.getOrDefault(owner.getValue(), owner.getValue()));
+        }
+        Map<String, String> redirects = new LinkedHashMap<>();
+        Set<String> created = new HashSet<>();
+
+        // Decide journeys locally, in record order, merging into the smallest ID like the single path
+        String[] assigned = new String[events.size()];
+        for (int idx = 0; idx < events.size(); idx++) {
+            TreeSet<String> candidates = new TreeSet<>();
+            Map<String, String> keyOwners = new HashMap<>();
+            for (long ck : eventCks[idx]) {
+                String owner = owners.get(ck);
+                if (owner == null) continue;
+                String root = root(owner, redirects);
+                candidates.add(root);
+                keyOwners.put(cks.key(ck), root);
+            }
+            superNodes.linked(events.get(idx).getCorrelationKeys(), keyOwners::get);
+            String journeyId;
+            if (candidates.isEmpty()) {
+                journeyId = journeyIds.newJourneyId(events.get(idx), stitchKeys.get(idx));
+                created.add(journeyId);
+            } else {
+                journeyId = candidates.first();
+            }
+            for (String other : candidates) {
+                if (!other.equals(journeyId)) redirects.put(other, journeyId);
+            }
+            for (long ck : eventCks[idx]) owners.put(ck, journeyId);
+            assigned[idx] = journeyId;
+        }
+
+        // Stage 2: claim every CK in one bulk; owners that differ were claimed concurrently and get merged
+        Map<String, String> claims = new HashMap<>();
+        owners.forEach((journeyId, ck) -> claims.put(cks.key(ck), root(journeyId, redirects)));
+        Map<String, String> actual = ckMapService.claimCks(claims);
+        Map<String, String> conflicts = new LinkedHashMap<>();
+        for (Map.Entry<String, String> claim : claims.entrySet()) {
+            String winner = actual.get(claim.getKey());
+            if (winner == null) continue;
+            String mine = root(claim.getValue(), redirects);
+            String theirs = root(winner, redirects);
+            if (!mine.equals(theirs)) conflicts.put(mine, theirs);
+        }
+        if (!conflicts.isEmpty()) {
+            // The winners may have been merged elsewhere already: only their roots are redirected
+            Set<String> conflicting = new HashSet<>(conflicts.keySet());
+            conflicting.addAll(conflicts.values());
+            Map<String, String> resolved = redirectService.resolveAll(conflicting);
+            for (Map.Entry<String, String> conflict : conflicts.entrySet()) {
+                String mine = root(resolved.getOrDefault(conflict.getKey(), conflict.getKey()), redirects);
+                String theirs = root(resolved.getOrDefault(conflict.getValue(), conflict.getValue()), redirects);
+                if (mine.equals(theirs)) continue;
+                String target = mine.compareTo(theirs) < 0 ? mine : theirs;
+                String source = mine.equals(target) ? theirs : mine;
+                redirects.put(source, target);
+            }
+        }
+
+        // Stage 3: persist merges, pointing every source straight at its final root
+        Map<String, String> flattened = new LinkedHashMap<>();
+        for (String from : redirects.keySet()) flattened.put(from, root(from, redirects));
+        redirectService.setRedirects(flattened);
+        changes.merged(flattened);
+
+        // Stage 4: resolve redirects written by other consumers, to the end of their chains
+        Set<String> journeyIds = new LinkedHashSet<>();
+        for (int idx = 0; idx < assigned.length; idx++) {
+            assigned[idx] = root(assigned[idx], redirects);
+            journeyIds.add(assigned[idx]);
+        }
+        Map<String, String> resolved = redirectService.resolveAll(journeyIds);
+
+        // Stage 5: store events and upsert journeys in one bulk
+        Map<String, List<EventRecord>> eventsByJourney = new LinkedHashMap<>();
+        for (int idx = 0; idx < events.size(); idx++) {
+            String journeyId = resolved.getOrDefault(assigned[idx], assigned[idx]);
+            eventsByJourney.computeIfAbsent(journeyId, k -> new ArrayList<>()).add(events.get(idx));
+        }
+        journeyService.bulkIndexAndUpsert(eventsByJourney, "events-" + java.time.LocalDate.now());
+        for (Map.Entry<String, List<EventRecord>> journey : eventsByJourney.entrySet()) {
+            if (created.contains(journey.getKey())) {
+                changes.created(journey.getKey(), journey.getValue());
+            } else {
+                changes.appended(journey.getKey(), journey.getValue());
+            }
+        }
+    }
+
+    /**
+     * Follows redirects decided within this poll. Targets are always the smaller ID, so chains terminate.
+     */
+    private static String root(String journeyId, Map<String, String> redirects) {
+        String current = journeyId;
+        String next;
+        while ((next = redirects.get(current)) != null) current = next;
+        return current;
+    }
+}
@@ -0,0 +1,43 @@
+package com.abc.process.mining.journey.kafka;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Rebalance listener calling several listeners in order, since a container takes only one.
+ */
+public class CompositeRebalanceListener implements ConsumerAwareRebalanceListener {
+
+    private final List<ConsumerAwareRebalanceListener> listeners;
+
+    /**
+     * @param listeners The listeners to call, in this order.
+     */
+    public CompositeRebalanceListener(List<ConsumerAwareRebalanceListener> listeners) {
+        this.listeners = List.copyOf(listeners);
+    }
+
+    @Override
+    public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        for (ConsumerAwareRebalanceListener listener : listeners) listener.onPartitionsRevokedBeforeCommit(consumer, partitions);
+    }
+
+    @Override
+    public void onPartitionsRevokedAfterCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        for (ConsumerAwareRebalanceListener listener : listeners) listener.onPartitionsRevokedAfterCommit(consumer, partitions);
+    }
+
+    @Override
+    public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        for (ConsumerAwareRebalanceListener listener : listeners) listener.onPartitionsLost(consumer, partitions);
+    }
+
+    @Override
+    public void onPartitionsAssigned(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        for (ConsumerAwareRebalanceListener listener : listeners) listener.onPartitionsAssigned(consumer, partitions);
+    }
+}
@@ -0,0 +1,66 @@
+package com.abc.process.mining.journey.kafka;
+
+import com.abc.process.mining.journey.model.EventRecord;
+import com.abc.process.mining.journey.util.Hashing;
+import org.apache.kafka.clients.producer.Partitioner;
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.utils.Utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Producer partitioner placing events by their canonical correlation key.
+ * <p>
+ * Events published by this application are keyed by {@link Hashing#canonicalKey}, and the key is
+ * hashed with the same murmur2 function as Kafka's default partitioner, so partitioning stays
+ * compatible with records keyed elsewhere. A record without a key is partitioned by the canonical
+ * key of its payload when the payload is an event, so related events never scatter across
+ * partitions; anything else goes to a random partition.
+ * </p>
+ */
+public class CorrelationKeyPartitioner implements Partitioner {
+
+    @Override
+    public int partition(String topic, Object key, byte[] keyBytes, Object value, byte[] valueBytes,
+                         Cluster cluster) {
+        int partitions = cluster.partitionsForTopic(topic).size();
+        if (keyBytes == null) {
+            String ck = canonicalKey(value, valueBytes);
+            if (ck == null) return ThreadLocalRandom.current().nextInt(partitions);
+            keyBytes = ck.getBytes(StandardCharsets.UTF_8);
+        }
+        return partition(keyBytes, partitions);
+    }
+
+    /**
+     * @param keyBytes The serialized record key.
+     * @param partitions The number of partitions of the topic.
+     * @return The partition Kafka's default partitioner would choose for this key.
+     */
+    public static int partition(byte[] keyBytes, int partitions) {
+        return Utils.toPositive(Utils.murmur2(keyBytes)) % partitions;
+    }
+
+    private static String canonicalKey(Object value, byte[] valueBytes) {
+        if (value instanceof EventRecord event) return Hashing.canonicalKey(event.getCorrelationKeys());
+        if (valueBytes == null) return null;
+        try {
+            // Called from any producing thread, so no shared deserializer; only key-less records get here
+            EventRecord event = new EventRecordDeserializer().deserialize(null, valueBytes);
+            return Hashing.canonicalKey(event.getCorrelationKeys());
+        } catch (SerializationException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs) {
+    }
+
+    @Override
+    public void close() {
+    }
+}
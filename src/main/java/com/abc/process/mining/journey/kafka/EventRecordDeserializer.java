@@ -0,0 +1,100 @@
+package com.abc.process.mining.journey.kafka;
+
+import com.abc.process.mining.journey.model.EventRecord;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Kafka deserializer that reads raw event JSON straight into an {@link EventRecord}.
+ * <p>
+ * The payload is streamed through Jackson's token parser instead of being turned into a
+ * {@code String} and then a {@code Map}: only the four known fields are materialized, the
+ * timestamp is parsed once into an {@link Instant}, the correlation key list is backed by an
+ * array of exactly the right size, and unknown fields are skipped without being built.
+ * Deserializer instances are used by a single consumer thread, so the scratch buffer is not shared.
+ * </p>
+ */
+public class EventRecordDeserializer implements Deserializer<EventRecord> {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private String[] scratch = new String[8];
+
+    @Override
+    public EventRecord deserialize(String topic, byte[] data) {
+        if (data == null) return null;
+        try (JsonParser parser = JSON.createParser(data)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new SerializationException("event is not a JSON object");
+            }
+            return read(parser);
+        } catch (IOException | DateTimeParseException e) {
+            throw new SerializationException("unreadable event on " + topic, e);
+        }
+    }
+
+    /**
+     * Reads one event from a parser positioned on its {@code START_OBJECT} token.
+     * <p>
+     * On return the parser is positioned on the matching {@code END_OBJECT}, so callers can
+     * keep reading further events from the same stream.
+     * </p>
+     * @param parser The parser positioned at the start of an event object.
+     * @return The event; fields absent from the JSON are left {@code null}.
+     * @throws IOException if the JSON is malformed.
+     */
+    public EventRecord read(JsonParser parser) throws IOException {
+        EventRecord event = new EventRecord();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "eventId" -> event.setEventId(textOrNull(parser, value));
+                case "activity" -> event.setActivity(textOrNull(parser, value));
+                case "timestamp" -> {
+                    String ts = textOrNull(parser, value);
+                    event.setTimestamp(ts == null ? null : Instant.parse(ts));
+                }
+                case "correlationKeys" -> event.setCorrelationKeys(readKeys(parser, value));
+                default -> parser.skipChildren();
+            }
+        }
+        return event;
+    }
+
+    private List<String> readKeys(JsonParser parser, JsonToken value) throws IOException {
+        if (value != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return null;
+        }
+        int n = 0;
+        JsonToken t;
+        while ((t = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (t != JsonToken.VALUE_STRING) {
+                parser.skipChildren();
+                continue;
+            }
+            if (n == scratch.length) scratch = Arrays.copyOf(scratch, n * 2);
+            scratch[n++] = parser.getText();
+        }
+        List<String> keys = Arrays.asList(Arrays.copyOf(scratch, n));
+        Arrays.fill(scratch, 0, n, null);
+        return keys;
+    }
+
+    private static String textOrNull(JsonParser parser, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_NULL) return null;
+        if (value.isScalarValue()) return parser.getText();
+        parser.skipChildren();
+        return null;
+    }
+}
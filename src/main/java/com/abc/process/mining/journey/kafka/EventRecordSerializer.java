@@ -0,0 +1,56 @@
+package com.abc.process.mining.journey.kafka;
+
+import com.abc.process.mining.journey.model.EventRecord;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Kafka serializer writing an {@link EventRecord} in the raw event JSON layout.
+ * <p>
+ * The output is exactly what {@link EventRecordDeserializer} reads, so events re-published
+ * to retry or dead-letter topics can be consumed again without any conversion.
+ * </p>
+ */
+public class EventRecordSerializer implements Serializer<EventRecord> {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    @Override
+    public byte[] serialize(String topic, EventRecord event) {
+        if (event == null) return null;
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        try (JsonGenerator gen = JSON.createGenerator(out)) {
+            gen.writeStartObject();
+            gen.writeStringField("eventId", event.getEventId());
+            gen.writeStringField("activity", event.getActivity());
+            if (event.getCorrelationKeys() != null) {
+                gen.writeArrayFieldStart("correlationKeys");
+                for (String ck : event.getCorrelationKeys()) gen.writeString(ck);
+                gen.writeEndArray();
+            }
+            if (event.getTimestamp() != null) {
+                gen.writeStringField("timestamp", event.getTimestamp().toString());
+            }
+            gen.writeEndObject();
+        } catch (IOException e) {
+            throw new SerializationException("cannot serialize event " + event.getEventId(), e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Serializes an event to its JSON text.
+     *
+     * @param event The event to write.
+     * @return The event as a JSON string.
+     */
+    public String toJson(EventRecord event) {
+        return new String(serialize(null, event), StandardCharsets.UTF_8);
+    }
+}
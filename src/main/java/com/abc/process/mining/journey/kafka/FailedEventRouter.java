@@ -0,0 +1,156 @@
+package com.abc.process.mining.journey.kafka;
+
+import com.abc.process.mining.journey.model.EventRecord;
+import com.abc.process.mining.journey.util.Hashing;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.log.LogAccessor;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.kafka.support.serializer.DeserializationException;
+import org.springframework.kafka.support.serializer.SerializationUtils;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Routes events that could not be stitched to retry or dead-letter topics.
+ * <p>
+ * Consumers never rethrow stitch failures, because that makes the container re-seek and retry the
+ * record inline, stalling its whole partition. Instead, malformed events (undeserializable payloads,
+ * missing eventId or correlation keys) go straight to the dead-letter topic, and every other failure
+ * (typically Elasticsearch being slow or unavailable) is re-published to the next tiered delay topic,
+ * {@code events.raw.retry-1}, {@code events.raw.retry-2}, ..., which {@link RetryEventsConsumer}
+ * processes once the delay has elapsed. An event failing on the last tier is dead-lettered.
+ * </p>
+ * Both paths publish through the shared {@link KafkaTemplate}; the source offset must only be
+ * committed once the returned future completes.
+ */
+@Component
+public class FailedEventRouter {
+
+    public static final String DLQ_TOPIC = "events.raw.dlq";
+    public static final String RETRY_TOPIC_PREFIX = "events.raw.retry-";
+
+    public static final String ATTEMPT_HEADER = "x-retry-attempt";
+    public static final String DUE_AT_HEADER = "x-retry-due-at";
+    public static final String ERROR_HEADER = "x-error";
+    public static final String ORIGIN_HEADER = "x-origin";
+
+    private static final LogAccessor LOG = new LogAccessor(FailedEventRouter.class);
+
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final List<Duration> delays;
+    private final EventRecordSerializer serializer = new EventRecordSerializer();
+
+    /**
+     * Constructs a {@code FailedEventRouter}.
+     *
+     * @param kafkaTemplate The template used to publish retries and dead letters.
+     * @param delays The delay of each retry tier, in order; tier {@code n} is topic {@code events.raw.retry-n}.
+     */
+    public FailedEventRouter(KafkaTemplate<String, String> kafkaTemplate,
+                             @Value("${app.retry.delays:1s,10s,60s}") List<Duration> delays) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.delays = List.copyOf(delays);
+    }
+
+    /**
+     * @return The names of all retry tier topics, in tier order.
+     */
+    public List<String> retryTopics() {
+        List<String> topics = new ArrayList<>(delays.size());
+        for (int tier = 1; tier <= delays.size(); tier++) topics.add(RETRY_TOPIC_PREFIX + tier);
+        return topics;
+    }
+
+    /**
+     * Sends a failed record to the next retry tier, or to the dead-letter topic if it is malformed
+     * or has exhausted all tiers.
+     *
+     * @param record The record that failed.
+     * @param cause Why it failed.
+     * @return A future completing once the record has been re-published.
+     */
+    public CompletableFuture<SendResult<String, String>> route(ConsumerRecord<String, EventRecord> record,
+                                                               Throwable cause) {
+        if (record.value() == null || cause instanceof IllegalArgumentException) {
+            return deadLetter(record, cause);
+        }
+        int attempt = attempt(record);
+        if (attempt >= delays.size()) {
+            return deadLetter(record, cause);
+        }
+        long dueAt = System.currentTimeMillis() + delays.get(attempt).toMillis();
+        Headers headers = headers(record, cause);
+        headers.add(ATTEMPT_HEADER, ByteBuffer.allocate(Integer.BYTES).putInt(attempt + 1).array());
+        headers.add(DUE_AT_HEADER, ByteBuffer.allocate(Long.BYTES).putLong(dueAt).array());
+        return kafkaTemplate.send(new ProducerRecord<>(RETRY_TOPIC_PREFIX + (attempt + 1), null,
+                key(record), payload(record), headers));
+    }
+
+    /**
+     * Sends a record straight to the dead-letter topic.
+     *
+     * @param record The record to park.
+     * @param cause Why it cannot be processed.
+     * @return A future completing once the record has been published.
+     */
+    public CompletableFuture<SendResult<String, String>> deadLetter(ConsumerRecord<String, EventRecord> record,
+                                                                    Throwable cause) {
+        LOG.warn(() -> "dead-lettering " + record.topic() + "-" + record.partition() + "@" + record.offset()
+                + ": " + cause);
+        return kafkaTemplate.send(new ProducerRecord<>(DLQ_TOPIC, null, key(record), payload(record),
+                headers(record, cause)));
+    }
+
+    /**
+     * @param record A record from the raw topic or a retry topic.
+     * @return The number of retry tiers the record has already been through.
+     */
+    public static int attempt(ConsumerRecord<?, ?> record) {
+        Header h = record.headers().lastHeader(ATTEMPT_HEADER);
+        return h == null ? 0 : ByteBuffer.wrap(h.value()).getInt();
+    }
+
+    /**
+     * @param record A record from a retry topic.
+     * @return The epoch millis at which the record may be retried; 0 if it carries no due time.
+     */
+    public static long dueAt(ConsumerRecord<?, ?> record) {
+        Header h = record.headers().lastHeader(DUE_AT_HEADER);
+        return h == null ? 0L : ByteBuffer.wrap(h.value()).getLong();
+    }
+
+    private static String key(ConsumerRecord<String, EventRecord> record) {
+        // Keep related events together on the retry topics too
+        String ck = record.value() == null ? null : Hashing.canonicalKey(record.value().getCorrelationKeys());
+        return ck != null ? ck : record.key();
+    }
+
+    private String payload(ConsumerRecord<String, EventRecord> record) {
+        if (record.value() != null) return serializer.toJson(record.value());
+        DeserializationException ex = SerializationUtils.getExceptionFromHeader(record,
+                SerializationUtils.VALUE_DESERIALIZER_EXCEPTION_HEADER, LOG);
+        return ex == null || ex.getData() == null ? null : new String(ex.getData(), StandardCharsets.UTF_8);
+    }
+
+    private static Headers headers(ConsumerRecord<?, ?> record, Throwable cause) {
+        Headers headers = new RecordHeaders();
+        // keep the first origin when a record moves from tier to tier
+        Header origin = record.headers().lastHeader(ORIGIN_HEADER);
+        headers.add(ORIGIN_HEADER, origin != null ? origin.value()
+                : (record.topic() + "-" + record.partition() + "@" + record.offset()).getBytes(StandardCharsets.UTF_8));
+        headers.add(ERROR_HEADER, String.valueOf(cause).getBytes(StandardCharsets.UTF_8));
+        return headers;
+    }
+}
@@ -0,0 +1,179 @@
+package com.abc.process.mining.journey.kafka;
+
+import com.abc.process.mining.journey.model.EventRecord;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.log.LogAccessor;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Publishes what the stitcher changed to a compacted topic, so downstream consumers can maintain
+ * their own views of journeys without polling Elasticsearch.
+ * <p>
+ * Every record holds a small JSON object:
+ * </p>
+ * <ul>
+ * <li>{@code {"type":"created","journeyId":..,"eventId":..,"activity":..,"timestamp":..}} for an
+ * event starting a journey, keyed {@code journeyId:eventId};</li>
+ * <li>{@code {"type":"appended",..}} alike for an event added to an existing journey;</li>
+ * <li>{@code {"type":"merged","journeyId":..,"into":..}} for a journey merged into another one,
+ * keyed by the merged journey.</li>
+ * </ul>
+ * <p>
+ * Records are deltas, so each one has a key of its own: compaction only replaces the record of an
+ * event stitched again onto the same journey, or the merge of a journey merged again, and a
+ * consumer reading the topic from the start rebuilds every journey as the events added to it plus
+ * the merges. The topic must therefore keep records without a time limit; with
+ * {@code cleanup.policy=compact,delete}, a rebuild only sees what changed within
+ * {@code retention.ms}. Records of one journey may land on different partitions, and the view
+ * must not depend on their order: events carry their timestamps, and a merge only adds a
+ * redirect.
+ * </p>
+ * <p>
+ * Records go through the shared {@link KafkaTemplate}, whose producer batches and compresses them,
+ * and are published only after the change was written. Sends are not awaited: a failed send is
+ * logged and counted, and the stitch carries on.
+ * </p>
+ * Enabled with {@code app.changes.enabled}; otherwise every call is a no-op.
+ */
+@Component
+public class JourneyChangePublisher {
+
+    public static final String DEFAULT_TOPIC = "journeys.changes";
+
+    private static final LogAccessor LOG = new LogAccessor(JourneyChangePublisher.class);
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final boolean enabled;
+    private final String topic;
+    private final LongAdder published = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    /**
+     * Constructs a {@code JourneyChangePublisher}.
+     *
+     * @param kafkaTemplate The template used to publish changes.
+     * @param enabled Whether changes are published at all.
+     * @param topic The compacted topic changes are published to.
+     */
+    public JourneyChangePublisher(KafkaTemplate<String, String> kafkaTemplate,
+                                  @Value("${app.changes.enabled:false}") boolean enabled,
+                                  @Value("${app.changes.topic:" + DEFAULT_TOPIC + "}") String topic) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.enabled = enabled;
+        this.topic = topic;
+    }
+
+    /**
+     * @return A publisher that publishes nothing.
+     */
+    public static JourneyChangePublisher disabled() {
+        return new JourneyChangePublisher(null, false, DEFAULT_TOPIC);
+    }
+
+    /**
+     * @return Whether changes are published.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Publishes that a journey was started by some events, one record per event.
+     *
+     * @param journeyId The new journey.
+     * @param events The events it was started with.
+     */
+    public void created(String journeyId, List<EventRecord> events) {
+        if (enabled) events("created", journeyId, events);
+    }
+
+    /**
+     * Publishes that events were added to an existing journey, one record per event.
+     *
+     * @param journeyId The journey.
+     * @param events The events added, in stitch order.
+     */
+    public void appended(String journeyId, List<EventRecord> events) {
+        if (enabled) events("appended", journeyId, events);
+    }
+
+    /**
+     * Publishes merges of journeys.
+     *
+     * @param fromTo A map from every merged journey to the journey it was merged into.
+     */
+    public void merged(Map<String, String> fromTo) {
+        if (!enabled) return;
+        for (Map.Entry<String, String> merge : fromTo.entrySet()) {
+            send(merge.getKey(), json(gen -> {
+                gen.writeStringField("type", "merged");
+                gen.writeStringField("journeyId", merge.getKey());
+                gen.writeStringField("into", merge.getValue());
+            }));
+        }
+    }
+
+    /**
+     * @return Whether publishing is enabled, the topic, and how many records were published or failed.
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("topic", topic);
+        stats.put("published", published.sum());
+        stats.put("failed", failed.sum());
+        return stats;
+    }
+
+    private void send(String key, String payload) {
+        kafkaTemplate.send(topic, key, payload).whenComplete((result, e) -> {
+            if (e == null) {
+                published.increment();
+            } else {
+                failed.increment();
+                LOG.warn(e, () -> "could not publish journey change " + key);
+            }
+        });
+    }
+
+    private void events(String type, String journeyId, List<EventRecord> events) {
+        for (EventRecord event : events) {
+            send(journeyId + ":" + event.getEventId(), json(gen -> {
+                gen.writeStringField("type", type);
+                gen.writeStringField("journeyId", journeyId);
+                gen.writeStringField("eventId", event.getEventId());
+                gen.writeStringField("activity", event.getActivity());
+                gen.writeStringField("timestamp", event.getTimestamp().toString());
+            }));
+        }
+    }
+
+    private static String json(Fields fields) {
+        StringWriter out = new StringWriter(128);
+        try (JsonGenerator gen = JSON.createGenerator(out)) {
+            gen.writeStartObject();
+            fields.write(gen);
+            gen.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    @FunctionalInterface
+    private interface Fields {
+        void write(JsonGenerator gen) throws IOException;
+    }
+}
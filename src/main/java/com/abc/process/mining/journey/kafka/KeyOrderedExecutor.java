@@ -0,0 +1,101 @@
+package com.abc.process.mining.journey.kafka;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Runs tasks on virtual threads while keeping tasks that share a key in submission order.
+ * <p>
+ * Every task is submitted with the set of keys it touches (for the stitch path: its correlation
+ * keys). A task starts only after all previously submitted tasks sharing any of its keys have
+ * finished, successfully or not; tasks with disjoint keys run concurrently. The number of tasks
+ * running at the same time is bounded so a burst of unrelated events cannot flood Elasticsearch.
+ * </p>
+ */
+public class KeyOrderedExecutor implements AutoCloseable {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, CompletableFuture<?>> tails = new HashMap<>();
+    private final Semaphore permits;
+
+    /**
+     * Constructs a {@code KeyOrderedExecutor}.
+     *
+     * @param maxInFlight The maximum number of tasks running concurrently.
+     */
+    public KeyOrderedExecutor(int maxInFlight) {
+        this.permits = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * Submits a task ordered behind earlier tasks sharing any of its keys.
+     *
+     * @param keys The keys the task touches.
+     * @param task The work to run.
+     * @return A future completed with the task's result or failure.
+     */
+    public <T> CompletableFuture<T> submit(Collection<String> keys, Callable<T> task) {
+        CompletableFuture<T> result;
+        synchronized (tails) {
+            List<CompletableFuture<?>> predecessors = new ArrayList<>(keys.size());
+            for (String key : keys) {
+                CompletableFuture<?> tail = tails.get(key);
+                if (tail != null) predecessors.add(tail);
+            }
+            CompletableFuture<Void> ready = predecessors.isEmpty()
+                    ? CompletableFuture.completedFuture(null)
+                    // run after predecessors whatever their outcome; ordering, not success, is the contract
+                    : CompletableFuture.allOf(predecessors.toArray(CompletableFuture[]::new))
+                            .handle((ignored, error) -> null);
+            result = ready.thenApplyAsync(ignored -> run(task), executor);
+            for (String key : keys) tails.put(key, result);
+        }
+        result.whenComplete((value, error) -> release(keys, result));
+        return result;
+    }
+
+    /**
+     * @return The number of keys that currently have queued or running tasks.
+     */
+    public int pendingKeys() {
+        synchronized (tails) {
+            return tails.size();
+        }
+    }
+
+    /**
+     * Waits for every submitted task, including tasks still queued behind others, then shuts down.
+     */
+    @Override
+    public void close() {
+        while (true) {
+            CompletableFuture<?>[] open;
+            synchronized (tails) {
+                open = tails.values().toArray(CompletableFuture[]::new);
+            }
+            if (open.length == 0) break;
+            CompletableFuture.allOf(open).handle((ignored, error) -> null).join();
+        }
+        executor.close();
+    }
+
+    private <T> T run(Callable<T> task) {
+        permits.acquireUninterruptibly();
+        try {
+            return task.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void release(Collection<String> keys, CompletableFuture<?> finished) {
+        synchronized (tails) {
+            // only drop the entry if no later task queued behind this one
+            for (String key : keys) tails.remove(key, finished);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.abc.process.mining.journey.kafka;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.core.log.LogAccessor;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Tracks which records have had their Elasticsearch writes completed and commits the contiguous
+ * completed watermark of each partition.
+ * <p>
+ * Records are {@linkplain #track tracked} on the consumer thread in offset order and
+ * {@linkplain #complete completed} from any thread, in any order. The committable offset of a
+ * partition is its lowest still-pending offset, or one past the last tracked offset when nothing is
+ * pending, so a commit never skips a record whose writes are still in flight: at-least-once without
+ * committing per record. Commits are asynchronous and always issued on the consumer thread, which
+ * owns the {@link Consumer}.
+ * </p>
+ * On revocation, the watermark of the revoked partitions is committed synchronously and their
+ * tracking is dropped; records still in flight there are redelivered to the new owner.
+ */
+public class OffsetTracker implements ConsumerAwareRebalanceListener {
+
+    private static final LogAccessor LOG = new LogAccessor(OffsetTracker.class);
+
+    private final Map<TopicPartition, PartitionOffsets> partitions = new ConcurrentHashMap<>();
+
+    /**
+     * Registers a record as pending. Must be called on the consumer thread, in offset order.
+     *
+     * @param record The record about to be processed.
+     */
+    public void track(ConsumerRecord<?, ?> record) {
+        PartitionOffsets offsets = partitions.computeIfAbsent(
+                new TopicPartition(record.topic(), record.partition()), tp -> new PartitionOffsets(record.offset()));
+        offsets.pending.add(record.offset());
+        offsets.next = record.offset() + 1;
+    }
+
+    /**
+     * Marks a record as done; its offset may be committed once all earlier ones are done too.
+     *
+     * @param record A record previously passed to {@link #track}.
+     */
+    public void complete(ConsumerRecord<?, ?> record) {
+        PartitionOffsets offsets = partitions.get(new TopicPartition(record.topic(), record.partition()));
+        // null when the partition was revoked meanwhile; the new owner reprocesses the record
+        if (offsets != null) offsets.pending.remove(record.offset());
+    }
+
+    /**
+     * @return The number of tracked records not completed yet, over all partitions.
+     */
+    public int pending() {
+        int n = 0;
+        for (PartitionOffsets offsets : partitions.values()) n += offsets.pending.size();
+        return n;
+    }
+
+    /**
+     * Computes the offsets to commit for some partitions and records them as committed.
+     *
+     * @param tps The partitions to consider.
+     * @return The partitions whose watermark advanced since the last commit, with the new watermark.
+     */
+    public Map<TopicPartition, OffsetAndMetadata> committable(Collection<TopicPartition> tps) {
+        Map<TopicPartition, OffsetAndMetadata> commits = new HashMap<>();
+        for (TopicPartition tp : tps) {
+            PartitionOffsets offsets = partitions.get(tp);
+            if (offsets == null) continue;
+            long next = offsets.next;
+            Long lowestPending = offsets.pending.ceiling(Long.MIN_VALUE);
+            long watermark = lowestPending != null ? lowestPending : next;
+            if (watermark > offsets.committed) {
+                offsets.committed = watermark;
+                commits.put(tp, new OffsetAndMetadata(watermark));
+            }
+        }
+        return commits;
+    }
+
+    /**
+     * Asynchronously commits the watermark of every partition assigned to the consumer.
+     * Must be called on the consumer thread.
+     *
+     * @param consumer The consumer owning the partitions.
+     */
+    public void commitAsync(Consumer<?, ?> consumer) {
+        Map<TopicPartition, OffsetAndMetadata> commits = committable(consumer.assignment());
+        if (commits.isEmpty()) return;
+        consumer.commitAsync(commits, (offsets, error) -> {
+            // a later commit of the same partition supersedes this one, so only log
+            if (error != null) LOG.warn(error, () -> "offset commit failed for " + offsets.keySet());
+        });
+    }
+
+    @Override
+    public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> revoked) {
+        Map<TopicPartition, OffsetAndMetadata> commits = committable(revoked);
+        if (!commits.isEmpty()) consumer.commitSync(commits);
+        forget(revoked);
+    }
+
+    @Override
+    public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> lost) {
+        forget(lost);
+    }
+
+    private void forget(Collection<TopicPartition> tps) {
+        for (TopicPartition tp : tps) partitions.remove(tp);
+    }
+
+    private static final class PartitionOffsets {
+        private final ConcurrentSkipListSet<Long> pending = new ConcurrentSkipListSet<>();
+        private volatile long next;
+        private long committed;
+
+        private PartitionOffsets(long first) {
+            // everything before the first record seen was committed by the previous owner
+            this.next = first;
+            this.committed = first;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.abc.process.mining.journey.kafka;
+
+import com.abc.process.mining.journey.model.EventRecord;
+import com.abc.process.mining.journey.stitch.JourneyStitcher;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.log.LogAccessor;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.event.ListenerContainerIdleEvent;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Consumer that stitches records concurrently on virtual threads.
+ * <p>
+ * Each record is handed to a {@link KeyOrderedExecutor} keyed by its correlation keys, so events
+ * sharing any key are stitched in offset order while unrelated events overlap their Elasticsearch
+ * latency. The listener does not wait for a poll to finish: completions are reported to the
+ * {@link OffsetTracker}, which commits each partition's contiguous completed watermark after every
+ * poll and whenever the container is idle. Records that failed count as completed once
+ * {@link FailedEventRouter} has re-published them to a retry or dead-letter topic.
+ * </p>
+ * <p>
+ * The number of records polled but not completed is bounded by
+ * {@code app.consumer.parallel.max-pending}; the listener blocks when it is reached.
+ * </p>
+ * Enabled with {@code app.consumer.mode=parallel}.
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.consumer", name = "mode", havingValue = "parallel")
+public class ParallelRawEventsConsumer implements AutoCloseable {
+
+    private static final LogAccessor LOG = new LogAccessor(ParallelRawEventsConsumer.class);
+
+    private final JourneyStitcher stitcher;
+    private final FailedEventRouter router;
+    private final OffsetTracker offsets;
+    private final KeyOrderedExecutor executor;
+    private final Semaphore pending;
+
+    public ParallelRawEventsConsumer(JourneyStitcher stitcher,
+                                     FailedEventRouter router,
+                                     OffsetTracker offsets,
+                                     @Value("${app.consumer.parallel.max-in-flight:256}") int maxInFlight,
+                                     @Value("${app.consumer.parallel.max-pending:2048}") int maxPending) {
+        this.stitcher = stitcher;
+        this.router = router;
+        this.offsets = offsets;
+        this.executor = new KeyOrderedExecutor(maxInFlight);
+        this.pending = new Semaphore(maxPending);
+    }
+
+    @KafkaListener(id = "parallelRawEvents", idIsGroup = false, topics = "events.raw",
+            groupId = "journey-consumer-group", containerFactory = "trackedKafkaListenerContainerFactory")
+    public void consume(List<ConsumerRecord<String, EventRecord>> records, Consumer<?, ?> consumer) {
+        for (ConsumerRecord<String, EventRecord> record : records) {
+            pending.acquireUninterruptibly();
+            offsets.track(record);
+            submit(record.value())
+                    .handle((journeyId, error) -> error == null
+                            ? CompletableFuture.completedFuture(null)
+                            : router.route(record, error instanceof CompletionException ? error.getCause() : error))
+                    .thenCompose(sent -> sent)
+                    .whenComplete((sent, error) -> {
+                        pending.release();
+                        if (error == null) {
+                            offsets.complete(record);
+                        } else {
+                            // left pending: the watermark stops here and the record is redelivered after a restart
+                            LOG.error(error, () -> "could not re-publish failed record " + record.topic() + "-"
+                                    + record.partition() + "@" + record.offset());
+                        }
+                    });
+        }
+        offsets.commitAsync(consumer);
+    }
+
+    /**
+     * Commits completions that arrived after the last poll while no records are coming in.
+     *
+     * @param event The idle event, published on the consumer thread.
+     */
+    @EventListener(condition = "event.listenerId.startsWith('parallelRawEvents')")
+    public void onIdle(ListenerContainerIdleEvent event) {
+        offsets.commitAsync(event.getConsumer());
+    }
+
+    private CompletableFuture<String> submit(EventRecord event) {
+        if (event == null) {
+            // ErrorHandlingDeserializer hands us null for payloads that could not be deserialized
+            return CompletableFuture.failedFuture(new IllegalArgumentException("undeserializable event"));
+        }
+        List<String> cks;
+        try {
+            cks = JourneyStitcher.validate(event);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return executor.submit(cks, () -> stitcher.stitch(event));
+    }
+
+    @Override
+    public void close() {
+        executor.close();
+    }
+}
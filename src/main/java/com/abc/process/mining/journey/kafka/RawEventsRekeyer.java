@@ -0,0 +1,58 @@
+package com.abc.process.mining.journey.kafka;
+
+import com.abc.process.mining.journey.model.EventRecord;
+import com.abc.process.mining.journey.util.Hashing;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Re-publishes events from raw topics we do not produce ourselves to {@code events.raw},
+ * keyed by their canonical correlation key.
+ * <p>
+ * Upstream producers key events arbitrarily, so events sharing correlation keys end up on
+ * different partitions and several listener threads race to claim the same keys. After re-keying,
+ * {@link CorrelationKeyPartitioner} puts most related events on one partition, where they are
+ * stitched in order by a single thread. Events without correlation keys cannot be placed and are
+ * dead-lettered.
+ * </p>
+ * Enabled with {@code app.rekey.enabled=true}; the source topics come from {@code app.rekey.topics}.
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.rekey", name = "enabled", havingValue = "true")
+public class RawEventsRekeyer {
+
+    public static final String TARGET_TOPIC = "events.raw";
+
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final FailedEventRouter router;
+    private final EventRecordSerializer serializer = new EventRecordSerializer();
+
+    public RawEventsRekeyer(KafkaTemplate<String, String> kafkaTemplate, FailedEventRouter router) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.router = router;
+    }
+
+    @KafkaListener(topics = "#{'${app.rekey.topics}'.split(',')}", groupId = "journey-rekey-group",
+            containerFactory = "batchKafkaListenerContainerFactory")
+    public void consume(List<ConsumerRecord<String, EventRecord>> records) {
+        List<CompletableFuture<?>> sends = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, EventRecord> record : records) {
+            EventRecord event = record.value();
+            String ck = event == null ? null : Hashing.canonicalKey(event.getCorrelationKeys());
+            if (ck == null) {
+                sends.add(router.deadLetter(record, new IllegalArgumentException("no correlation key to partition by")));
+            } else {
+                sends.add(kafkaTemplate.send(TARGET_TOPIC, ck, serializer.toJson(event)));
+            }
+        }
+        // The poll is committed only once every event has been re-published
+        CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new)).join();
+    }
+}
@@ -0,0 +1,56 @@
+package com.abc.process.mining.journey.kafka;
+
+import com.abc.process.mining.journey.model.EventRecord;
+import com.abc.process.mining.journey.stitch.JourneyStitcher;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.KafkaConsumerBackoffManager;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+/**
+ * Consumes the tiered retry topics written by {@link FailedEventRouter}.
+ * <p>
+ * Every tier has a fixed delay, so records in a tier partition are ordered by due time. A record
+ * that is not due yet is handed to the {@link KafkaConsumerBackoffManager}, which pauses just that
+ * partition until the record is due and throws; the container's error handler seeks the partition
+ * back, so the record is redelivered once the partition resumes. The consumer keeps polling its
+ * other partitions meanwhile, so a record waiting in a slow tier never holds up a faster one. Due
+ * records are stitched like fresh ones; a failure moves them on to the next tier or the dead-letter
+ * topic.
+ * </p>
+ * Runs in a separate consumer group so a backlog of retries never delays {@code events.raw}.
+ */
+@Component
+public class RetryEventsConsumer {
+
+    static final String LISTENER_ID = "retryEvents";
+
+    private final JourneyStitcher stitcher;
+    private final FailedEventRouter router;
+    private final KafkaConsumerBackoffManager backoff;
+
+    public RetryEventsConsumer(JourneyStitcher stitcher, FailedEventRouter router,
+                               KafkaConsumerBackoffManager backoff) {
+        this.stitcher = stitcher;
+        this.router = router;
+        this.backoff = backoff;
+    }
+
+    @KafkaListener(id = LISTENER_ID, idIsGroup = false, topics = "#{@failedEventRouter.retryTopics()}",
+            groupId = "journey-retry-group", containerFactory = "retryKafkaListenerContainerFactory")
+    public void consume(ConsumerRecord<String, EventRecord> record, Acknowledgment ack, Consumer<?, ?> consumer) {
+        // Throws KafkaBackoffException, having paused the partition, if the record is not due yet
+        backoff.backOffIfNecessary(backoff.createContext(FailedEventRouter.dueAt(record), LISTENER_ID,
+                new TopicPartition(record.topic(), record.partition()), consumer));
+        try {
+            if (record.value() == null) throw new IllegalArgumentException("undeserializable event");
+            stitcher.stitch(record.value());
+        } catch (Exception e) {
+            router.route(record, e).join();
+        }
+        ack.acknowledge();
+    }
+}
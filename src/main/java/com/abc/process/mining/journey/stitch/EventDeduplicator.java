@@ -0,0 +1,114 @@
+package com.abc.process.mining.journey.stitch;
+
+import com.abc.process.mining.journey.util.BloomFilter;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers recently stitched event IDs so redelivered and replayed events can be skipped.
+ * <p>
+ * Two layers answer "was this event stitched within the window?". A pair of Bloom filters
+ * (current and previous window, rotated every window) rejects unseen IDs without touching the
+ * exact set, which is the common case. Only when the filters report a probable hit is the exact
+ * set of recent IDs consulted. That set is bounded in size and age, and only a hit there skips the
+ * event. An event the exact set has already forgotten is stitched again, and the journey upsert
+ * script then ignores its eventId, so correctness never depends on this cache.
+ * </p>
+ * IDs are only recorded once their event was written, so failed events are never skipped on retry.
+ */
+public class EventDeduplicator {
+
+    private final Clock clock;
+    private final long windowMillis;
+    private final int recentCapacity;
+
+    private BloomFilter current;
+    private BloomFilter previous;
+    private long rotatedAt;
+    private final LinkedHashMap<String, Long> recent = new LinkedHashMap<>();
+
+    private long checks;
+    private long duplicates;
+
+    /**
+     * Constructs an {@code EventDeduplicator}.
+     *
+     * @param window How long a stitched event ID is remembered.
+     * @param recentCapacity The maximum number of IDs held in the exact set.
+     * @param expectedPerWindow The number of events expected per window, to size the Bloom filters.
+     * @param clock The clock used to age entries.
+     */
+    public EventDeduplicator(Duration window, int recentCapacity, long expectedPerWindow, Clock clock) {
+        this.clock = clock;
+        this.windowMillis = window.toMillis();
+        this.recentCapacity = recentCapacity;
+        this.current = new BloomFilter(expectedPerWindow, 0.01);
+        this.previous = new BloomFilter(expectedPerWindow, 0.01);
+        this.rotatedAt = clock.millis();
+    }
+
+    /**
+     * @param eventId The ID of an event about to be stitched.
+     * @return Whether the event was already stitched within the window and can be skipped.
+     */
+    public synchronized boolean isDuplicate(String eventId) {
+        long now = clock.millis();
+        rotate(now);
+        checks++;
+        if (!current.mightContain(eventId) && !previous.mightContain(eventId)) return false;
+        Long seenAt = recent.get(eventId);
+        if (seenAt == null || seenAt < now - windowMillis) return false;
+        duplicates++;
+        return true;
+    }
+
+    /**
+     * Records that an event has been written.
+     *
+     * @param eventId The ID of the written event.
+     */
+    public synchronized void markSeen(String eventId) {
+        long now = clock.millis();
+        rotate(now);
+        current.put(eventId);
+        // re-insert so the entry moves to the young end of the insertion order
+        recent.remove(eventId);
+        recent.put(eventId, now);
+        Iterator<Map.Entry<String, Long>> eldest = recent.entrySet().iterator();
+        while (eldest.hasNext()) {
+            Map.Entry<String, Long> e = eldest.next();
+            if (recent.size() <= recentCapacity && e.getValue() >= now - windowMillis) break;
+            eldest.remove();
+        }
+    }
+
+    /**
+     * @return The number of lookups, skipped duplicates and remembered IDs.
+     */
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("checks", checks);
+        stats.put("duplicates", duplicates);
+        stats.put("recent", recent.size());
+        stats.put("bloomCurrent", current.count());
+        stats.put("bloomPrevious", previous.count());
+        return stats;
+    }
+
+    private void rotate(long now) {
+        if (now - rotatedAt < windowMillis) return;
+        if (now - rotatedAt >= 2 * windowMillis) {
+            // idle for more than two windows: everything has aged out
+            current.clear();
+        }
+        BloomFilter recycled = previous;
+        recycled.clear();
+        previous = current;
+        current = recycled;
+        rotatedAt = now;
+    }
+}
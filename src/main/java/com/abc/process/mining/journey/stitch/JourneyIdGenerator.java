@@ -0,0 +1,79 @@
+package com.abc.process.mining.journey.stitch;
+
+import com.abc.process.mining.journey.model.EventRecord;
+import com.abc.process.mining.journey.util.Hashing;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Chooses the ID of a journey started by an event none of whose correlation keys is known yet.
+ * <p>
+ * Selected with {@code app.journey-ids.mode}:
+ * </p>
+ * <ul>
+ * <li>{@code random} (default): a random version 4 UUID drawn from {@link ThreadLocalRandom}, so
+ * listener threads do not contend on the shared {@code SecureRandom} behind
+ * {@link UUID#randomUUID()}. Journey IDs are not secrets.</li>
+ * <li>{@code deterministic}: {@link Hashing#journeyId(String)} of the {@link Hashing#canonicalKey}
+ * of the keys the event is stitched on. Events sharing that key start the same journey whichever
+ * consumer stitches them first, so concurrent first events, and an event stitched again after a
+ * partial failure or a rebalance, claim their keys for one journey instead of racing and merging
+ * two. An event whose keys are all super-nodes falls back to
+ * {@link Hashing#journeyId(List, String)} of its keys and event ID, so it still starts a journey
+ * of its own.</li>
+ * </ul>
+ * <p>
+ * With {@code deterministic}, a key that comes back after its {@code ckmap} entry expired starts
+ * its old journey ID again, so its events are added to the old journey, or to the journey that
+ * was merged into, instead of a new one.
+ * </p>
+ */
+@FunctionalInterface
+public interface JourneyIdGenerator {
+
+    /**
+     * @param event The event starting the journey; validated by {@link JourneyStitcher#validate(EventRecord)}.
+     * @param cks The keys the event is stitched on, without super-nodes; may be empty.
+     * @return The new journey's ID.
+     */
+    String newJourneyId(EventRecord event, List<String> cks);
+
+    /**
+     * @return A generator of random version 4 UUIDs.
+     */
+    static JourneyIdGenerator random() {
+        return (event, cks) -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long msb = (random.nextLong() & ~0xf000L) | 0x4000L;
+            long lsb = (random.nextLong() & ~(0xcL << 60)) | (0x8L << 60);
+            return new UUID(msb, lsb).toString();
+        };
+    }
+
+    /**
+     * @return A generator deriving the ID from the canonical key the event is stitched on.
+     */
+    static JourneyIdGenerator deterministic() {
+        return (event, cks) -> {
+            String canonical = Hashing.canonicalKey(cks);
+            return canonical != null
+                    ? Hashing.journeyId(canonical)
+                    : Hashing.journeyId(event.getCorrelationKeys(), event.getEventId());
+        };
+    }
+
+    /**
+     * @param mode {@code random} or {@code deterministic}.
+     * @return The generator for the mode.
+     * @throws IllegalArgumentException if the mode is unknown.
+     */
+    static JourneyIdGenerator of(String mode) {
+        return switch (mode) {
+            case "random" -> random();
+            case "deterministic" -> deterministic();
+            default -> throw new IllegalArgumentException("unknown journey ID mode: " + mode);
+        };
+    }
+}
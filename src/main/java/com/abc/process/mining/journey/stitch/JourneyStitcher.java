@@ -0,0 +1,245 @@
+package com.abc.process.mining.journey.stitch;
+
+import com.abc.process.mining.journey.kafka.JourneyChangePublisher;
+import com.abc.process.mining.journey.model.EventRecord;
+import com.abc.process.mining.journey.store.CkClaim;
+import com.abc.process.mining.journey.store.CkMapStore;
+import com.abc.process.mining.journey.store.JourneyStore;
+import com.abc.process.mining.journey.store.RedirectStore;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Stitches a single event onto a journey.
+ * <p>
+ * This is the per-event stitch path shared by the consumers that process one event at a time:
+ * look up the event's correlation keys, merge all journeys they belong to into the smallest ID, claim
+ * the keys for it (merging again with journeys that claimed a key meanwhile), resolve redirects and finally store the event and upsert its
+ * journey. It holds no per-event state and is safe to call from many threads at once.
+ * Events already stitched recently are skipped via the {@link EventDeduplicator}, and keys the
+ * {@link SuperNodeGuard} flags as high-cardinality are not stitched on. Journeys created, appended
+ * to and merged are announced through the {@link JourneyChangePublisher}.
+ * </p>
+ */
+public class JourneyStitcher {
+
+    private final CkMapStore ckMapService;
+    private final JourneyStore journeyService;
+    private final RedirectStore redirectService;
+    private final EventDeduplicator deduplicator;
+    private final SuperNodeGuard superNodes;
+    private final JourneyIdGenerator journeyIds;
+    private final JourneyChangePublisher changes;
+
+    /**
+     * Constructs a {@code JourneyStitcher} that stitches on every correlation key.
+     *
+     * @param ckMapService The correlation key to journey mapping store.
+     * @param journeyService The store of events and journeys.
+     * @param redirectService The store of journey redirects.
+     * @param deduplicator The cache of recently stitched event IDs.
+     */
+    public JourneyStitcher(CkMapStore ckMapService,
+                           JourneyStore journeyService,
+                           RedirectStore redirectService,
+                           EventDeduplicator deduplicator) {
+        this(ckMapService, journeyService, redirectService, deduplicator, SuperNodeGuard.disabled());
+    }
+
+    /**
+     * Constructs a {@code JourneyStitcher}.
+     *
+     * @param ckMapService The correlation key to journey mapping store.
+     * @param journeyService The store of events and journeys.
+     * @param redirectService The store of journey redirects.
+     * @param deduplicator The cache of recently stitched event IDs.
+     * @param superNodes The guard excluding high-cardinality correlation keys from stitching.
+     */
+    public JourneyStitcher(CkMapStore ckMapService,
+                           JourneyStore journeyService,
+                           RedirectStore redirectService,
+                           EventDeduplicator deduplicator,
+                           SuperNodeGuard superNodes) {
+        this(ckMapService, journeyService, redirectService, deduplicator, superNodes, JourneyIdGenerator.random());
+    }
+
+    /**
+     * Constructs a {@code JourneyStitcher}.
+     *
+     * @param ckMapService The correlation key to journey mapping store.
+     * @param journeyService The store of events and journeys.
+     * @param redirectService The store of journey redirects.
+     * @param deduplicator The cache of recently stitched event IDs.
+     * @param superNodes The guard excluding high-cardinality correlation keys from stitching.
+     * @param journeyIds The generator of IDs for new journeys.
+     */
+    public JourneyStitcher(CkMapStore ckMapService,
+                           JourneyStore journeyService,
+                           RedirectStore redirectService,
+                           EventDeduplicator deduplicator,
+                           SuperNodeGuard superNodes,
+                           JourneyIdGenerator journeyIds) {
+        this(ckMapService, journeyService, redirectService, deduplicator, superNodes, journeyIds,
+                JourneyChangePublisher.disabled());
+    }
+
+    /**
+     * Constructs a {@code JourneyStitcher}.
+     *
+     * @param ckMapService The correlation key to journey mapping store.
+     * @param journeyService The store of events and journeys.
+     * @param redirectService The store of journey redirects.
+     * @param deduplicator The cache of recently stitched event IDs.
+     * @param superNodes The guard excluding high-cardinality correlation keys from stitching.
+     * @param journeyIds The generator of IDs for new journeys.
+     * @param changes The publisher of journey changes.
+     */
+    public JourneyStitcher(CkMapStore ckMapService,
+                           JourneyStore journeyService,
+                           RedirectStore redirectService,
+                           EventDeduplicator deduplicator,
+                           SuperNodeGuard superNodes,
+                           JourneyIdGenerator journeyIds,
+                           JourneyChangePublisher changes) {
+        this.ckMapService = ckMapService;
+        this.journeyService = journeyService;
+        this.redirectService = redirectService;
+        this.deduplicator = deduplicator;
+        this.superNodes = superNodes;
+        this.journeyIds = journeyIds;
+        this.changes = changes;
+    }
+
+    /**
+     * Extracts and validates the correlation keys of a raw event.
+     *
+     * @param event The deserialized event.
+     * @return The event's correlation keys, never empty.
+     * @throws IllegalArgumentException if the event has no eventId, no timestamp or no correlation keys.
+     */
+    public static List<String> validate(EventRecord event) {
+        String eventId = event.getEventId();
+        if (eventId == null) {
+            throw new IllegalArgumentException("eventId missing in event with activity: " + event.getActivity());
+        }
+        if (event.getTimestamp() == null) {
+            throw new IllegalArgumentException("timestamp missing in event: " + eventId);
+        }
+        List<String> cks = event.getCorrelationKeys();
+        if (cks == null || cks.isEmpty()) {
+            throw new IllegalArgumentException("No correlation keys for event: " + eventId);
+        }
+        return cks;
+    }
+
+    /**
+     * Stitches an event onto its journey and writes it.
+     *
+     * @param event The deserialized event.
+     * @return The journey ID the event was written to, or {@code null} if it was a recent duplicate and skipped.
+     * @throws IOException if an I/O error occurs during an Elasticsearch operation.
+     * @throws IllegalArgumentException if the event has no eventId or no correlation keys.
+     */
+    public String stitch(EventRecord event) throws IOException {
+        validate(event);
+        if (deduplicator.isDuplicate(event.getEventId())) return null;
+        // Super-node keys stay on the event but never link it to other journeys
+        List<String> cks = superNodes.stitchKeys(event.getCorrelationKeys());
+
+        // Step 1: Check if any CK is already mapped to a journey
+        Map<String, String> existing = roots(ckMapService.mgetJourneyIds(cks));
+        superNodes.linked(event.getCorrelationKeys(), existing::get);
+
+        String journeyId;
+        if (!existing.isEmpty()) {
+            // All journeys the event bridges become one
+            journeyId = mergeRoots(new TreeSet<>(existing.values()));
+        } else {
+            journeyId = journeyIds.newJourneyId(event, cks);
+        }
+
+        // Step 2: Claim every CK for this journey in one request
+        Map<String, String> claims = new LinkedHashMap<>();
+        for (String ck : cks) claims.put(ck, journeyId);
+        Map<String, CkClaim> outcomes = ckMapService.claimAll(claims);
+        Set<String> owners = new HashSet<>();
+        for (CkClaim claim : outcomes.values()) {
+            // Claimed concurrently by another journey: merge with it as well
+            if (!claim.claimed() && !claim.owner().equals(journeyId)) owners.add(claim.owner());
+        }
+        if (!owners.isEmpty()) {
+            owners.add(journeyId);
+            journeyId = merge(owners);
+        }
+        boolean created = existing.isEmpty() && owners.isEmpty();
+
+        // Step 3: Resolve redirects to the surviving journey
+        journeyId = redirectService.resolve(journeyId);
+
+        // Step 4: Store event and upsert journey
+        journeyService.indexAndUpsert(journeyId, event, "events-" + java.time.LocalDate.now());
+        if (created) {
+            changes.created(journeyId, List.of(event));
+        } else {
+            changes.appended(journeyId, List.of(event));
+        }
+        deduplicator.markSeen(event.getEventId());
+        return journeyId;
+    }
+
+    /**
+     * Merges journeys into one, however many there are.
+     * <p>
+     * The journeys are resolved to their roots in one lookup and every root is redirected to the
+     * smallest of them in one write, so each redirect points at a surviving journey and an event
+     * bridging many journeys costs the same as one bridging two.
+     * </p>
+     *
+     * @param journeyIds The journeys to merge.
+     * @return The surviving journey.
+     */
+    private String merge(Set<String> journeyIds) throws IOException {
+        if (journeyIds.size() == 1) return journeyIds.iterator().next();
+        Map<String, String> resolved = redirectService.resolveAll(journeyIds);
+        TreeSet<String> roots = new TreeSet<>();
+        for (String id : journeyIds) roots.add(resolved.getOrDefault(id, id));
+        return mergeRoots(roots);
+    }
+
+    /**
+     * Merges journeys already resolved to their roots into the smallest of them.
+     */
+    private String mergeRoots(TreeSet<String> roots) throws IOException {
+        String root = roots.first();
+        Map<String, String> redirects = new LinkedHashMap<>();
+        for (String other : roots.tailSet(root, false)) redirects.put(other, root);
+        if (!redirects.isEmpty()) {
+            redirectService.setRedirects(redirects);
+            changes.merged(redirects);
+        }
+        return root;
+    }
+
+    /**
+     * Resolves the owners of correlation keys to their roots, in one lookup and only if the keys
+     * have more than one owner.
+     *
+     * @param owners The journey owning each key.
+     * @return The root journey owning each key.
+     */
+    private Map<String, String> roots(Map<String, String> owners) throws IOException {
+        Set<String> journeyIds = new HashSet<>(owners.values());
+        if (journeyIds.size() < 2) return owners;
+        Map<String, String> resolved = redirectService.resolveAll(journeyIds);
+        Map<String, String> roots = new HashMap<>(owners.size() * 2);
+        owners.forEach((ck, owner) -> roots.put(ck, resolved.getOrDefault(owner, owner)));
+        return roots;
+    }
+}
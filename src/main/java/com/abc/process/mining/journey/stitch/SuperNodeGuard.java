@@ -0,0 +1,177 @@
+package com.abc.process.mining.journey.stitch;
+
+import com.abc.process.mining.journey.util.CountMinSketch;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Keeps high-cardinality correlation keys out of stitching.
+ * <p>
+ * Some keys, like a shared branch code or a default customer ID, occur on thousands of unrelated
+ * events. Stitching on them would merge all those journeys into one document that grows without
+ * bound. What sets them apart is fan-out, not traffic: a key is counted in a pair of
+ * {@link CountMinSketch}es (current and previous window, rotated every window) only when an event
+ * links it to another key that has no owner yet or belongs to another journey, as reported through
+ * {@link #linked(List, Function)}. Once a key made more than {@code threshold} such links within
+ * the last one to two windows, it is a super-node and is no longer used to look up, claim or merge
+ * journeys. The events still carry it.
+ * </p>
+ * <p>
+ * The order or session ID of a single busy journey is not counted for events whose other keys
+ * already belong to that journey, however many there are, so it stays stitched. An event whose
+ * keys are all super-nodes starts a journey of its own. While a key is a super-node, every event
+ * carrying it next to other keys counts as a link, and it is released again when that drops below
+ * the threshold for a full window. The super-nodes with the most links are listed in
+ * {@link #stats()}, up to {@code maxListed}.
+ * </p>
+ */
+public class SuperNodeGuard {
+
+    private final int threshold;
+    private final long windowMillis;
+    private final int maxListed;
+    private final Clock clock;
+
+    private CountMinSketch current;
+    private CountMinSketch previous;
+    private long rotatedAt;
+    private final Map<String, Long> listed = new HashMap<>();
+
+    private long checked;
+    private long excluded;
+
+    /**
+     * Constructs a {@code SuperNodeGuard}.
+     *
+     * @param threshold The number of links per window above which a key is a super-node; 0 disables the guard.
+     * @param window How long occurrences are counted before the sketches rotate.
+     * @param width The number of counters per sketch row.
+     * @param depth The number of sketch rows.
+     * @param maxListed The maximum number of super-nodes listed in {@link #stats()}.
+     * @param clock The clock used to rotate the sketches.
+     */
+    public SuperNodeGuard(int threshold, Duration window, int width, int depth, int maxListed, Clock clock) {
+        this.threshold = threshold;
+        this.windowMillis = window.toMillis();
+        this.maxListed = maxListed;
+        this.clock = clock;
+        this.current = new CountMinSketch(threshold > 0 ? width : 1, depth);
+        this.previous = new CountMinSketch(threshold > 0 ? width : 1, depth);
+        this.rotatedAt = clock.millis();
+    }
+
+    /**
+     * @return A guard that never excludes a key.
+     */
+    public static SuperNodeGuard disabled() {
+        return new SuperNodeGuard(0, Duration.ofHours(1), 1, 1, 0, Clock.systemUTC());
+    }
+
+    /**
+     * Returns the keys of an event about to be stitched that it may be stitched on.
+     *
+     * @param cks The event's correlation keys.
+     * @return The keys that are not super-nodes, in their original order.
+     */
+    public synchronized List<String> stitchKeys(List<String> cks) {
+        if (threshold <= 0) return cks;
+        rotate(clock.millis());
+        List<String> usable = new ArrayList<>(cks.size());
+        for (String ck : cks) {
+            checked++;
+            if (count(ck) > threshold) {
+                excluded++;
+            } else {
+                usable.add(ck);
+            }
+        }
+        return usable.size() == cks.size() ? cks : usable;
+    }
+
+    /**
+     * Counts the keys of an event that link it to keys outside their own journey.
+     * <p>
+     * A key owned by a journey is counted when another key of the event has no owner or another
+     * one; a key without owner is not counted, and neither are keys next to super-nodes only.
+     * Super-nodes are counted whenever the event has other keys.
+     * </p>
+     *
+     * @param cks The event's correlation keys, super-nodes included.
+     * @param owners The journey owning each key before the event, with redirects known to the caller
+     *               resolved, or {@code null} for keys without owner; not asked for super-nodes.
+     */
+    public synchronized void linked(List<String> cks, Function<String, String> owners) {
+        if (threshold <= 0 || cks.size() < 2) return;
+        rotate(clock.millis());
+        Map<String, String> stitched = new HashMap<>(cks.size() * 2);
+        List<String> superNodes = new ArrayList<>(0);
+        for (String ck : cks) {
+            if (count(ck) > threshold) superNodes.add(ck);
+            else stitched.put(ck, owners.apply(ck));
+        }
+        for (String ck : superNodes) list(ck, current.add(ck) + (long) previous.estimate(ck));
+        for (Map.Entry<String, String> key : stitched.entrySet()) {
+            String owner = key.getValue();
+            if (owner == null) continue;
+            for (Map.Entry<String, String> other : stitched.entrySet()) {
+                if (!other.getKey().equals(key.getKey()) && !owner.equals(other.getValue())) {
+                    long count = current.add(key.getKey()) + (long) previous.estimate(key.getKey());
+                    if (count > threshold) list(key.getKey(), count);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The threshold, how many keys were checked and excluded, and the super-nodes with the most links.
+     */
+    public synchronized Map<String, Object> stats() {
+        rotate(clock.millis());
+        List<Map.Entry<String, Long>> top = new ArrayList<>(listed.entrySet());
+        top.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+        Map<String, Long> superNodes = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> e : top) superNodes.put(e.getKey(), e.getValue());
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("threshold", threshold);
+        stats.put("windowMillis", windowMillis);
+        stats.put("checked", checked);
+        stats.put("excluded", excluded);
+        stats.put("superNodes", superNodes);
+        return stats;
+    }
+
+    private long count(String ck) {
+        return (long) current.estimate(ck) + previous.estimate(ck);
+    }
+
+    private void list(String ck, long count) {
+        if (listed.containsKey(ck) || listed.size() < maxListed) {
+            listed.put(ck, count);
+            return;
+        }
+        // keep the most frequent ones
+        Map.Entry<String, Long> smallest = Collections.min(listed.entrySet(), Map.Entry.comparingByValue());
+        if (smallest.getValue() < count) {
+            listed.remove(smallest.getKey());
+            listed.put(ck, count);
+        }
+    }
+
+    private void rotate(long now) {
+        if (now - rotatedAt < windowMillis) return;
+        // after two idle windows both sketches are stale
+        CountMinSketch recycled = previous;
+        recycled.clear();
+        if (now - rotatedAt >= 2 * windowMillis) current.clear();
+        previous = current;
+        current = recycled;
+        rotatedAt = now;
+        // drop listed keys that fell below the threshold over the last window
+        listed.keySet().removeIf(ck -> previous.estimate(ck) <= threshold);
+    }
+}
@@ -0,0 +1,19 @@
+package com.abc.process.mining.journey.store;
+
+/**
+ * Outcome of claiming a correlation key for a journey.
+ *
+ * @param ck The correlation key.
+ * @param requestedJourneyId The journey the key was claimed for.
+ * @param owner The journey owning the key after the claim; differs from the requested one if the
+ *              key was already owned, in which case the two journeys must be merged.
+ */
+public record CkClaim(String ck, String requestedJourneyId, String owner) {
+
+    /**
+     * @return Whether the key is owned by the requested journey, either newly or already before.
+     */
+    public boolean claimed() {
+        return requestedJourneyId.equals(owner);
+    }
+}
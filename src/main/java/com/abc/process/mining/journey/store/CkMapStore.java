@@ -0,0 +1,62 @@
+package com.abc.process.mining.journey.store;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Storage of the correlation key to journey ID mapping used by the stitch path.
+ * <p>
+ * A correlation key is owned by the first journey that claims it and keeps that owner; a claim
+ * for another journey reports the existing owner so the caller can merge the two journeys.
+ * Implementations must make claims atomic per key and be safe for concurrent use.
+ * </p>
+ * Implemented by {@link com.abc.process.mining.journey.es.CkMapService} on Elasticsearch and by
+ * {@link InMemoryCkMapStore}; selected with {@code app.store.engine}.
+ */
+public interface CkMapStore {
+
+    /**
+     * Looks up the owners of correlation keys.
+     *
+     * @param cks A collection of correlation keys.
+     * @return A map from each key that has an owner to its journey ID; keys without one are omitted.
+     * @throws IOException if the store cannot be read.
+     */
+    Map<String, String> mgetJourneyIds(Collection<String> cks) throws IOException;
+
+    /**
+     * Claims correlation keys for journeys and reports the outcome per key.
+     *
+     * @param ckToJourney The journey ID each correlation key should be claimed for.
+     * @return The outcome of every claim, keyed by correlation key.
+     * @throws IOException if the store cannot be written.
+     */
+    Map<String, CkClaim> claimAll(Map<String, String> ckToJourney) throws IOException;
+
+    /**
+     * Claims one correlation key.
+     *
+     * @param ck The correlation key to claim.
+     * @param targetJourneyId The journey ID to associate with the correlation key.
+     * @return {@code true} if the key is owned by the target journey after the claim, {@code false} otherwise.
+     * @throws IOException if the store cannot be written.
+     */
+    default boolean claimCk(String ck, String targetJourneyId) throws IOException {
+        return claimAll(Map.of(ck, targetJourneyId)).get(ck).claimed();
+    }
+
+    /**
+     * Claims correlation keys and reports who owns each key afterwards.
+     *
+     * @param ckToJourney The journey ID each correlation key should be claimed for.
+     * @return A map from correlation key to the journey ID that owns it after the claim.
+     * @throws IOException if the store cannot be written.
+     */
+    default Map<String, String> claimCks(Map<String, String> ckToJourney) throws IOException {
+        Map<String, String> owners = new HashMap<>();
+        for (CkClaim claim : claimAll(ckToJourney).values()) owners.put(claim.ck(), claim.owner());
+        return owners;
+    }
+}
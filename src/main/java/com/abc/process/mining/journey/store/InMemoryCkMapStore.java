@@ -0,0 +1,46 @@
+package com.abc.process.mining.journey.store;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link CkMapStore} kept in a {@link ConcurrentHashMap}.
+ * <p>
+ * Claims are atomic per key through {@code putIfAbsent}. Nothing is persisted, so the mapping is
+ * lost on restart; meant for small embedded deployments, tests and benchmarks of the stitch logic.
+ * </p>
+ */
+public class InMemoryCkMapStore implements CkMapStore {
+
+    private final ConcurrentHashMap<String, String> owners = new ConcurrentHashMap<>();
+
+    @Override
+    public Map<String, String> mgetJourneyIds(Collection<String> cks) {
+        if (cks == null || cks.isEmpty()) return Collections.emptyMap();
+        Map<String, String> out = new HashMap<>();
+        for (String ck : cks) {
+            String owner = owners.get(ck);
+            if (owner != null) out.put(ck, owner);
+        }
+        return out;
+    }
+
+    @Override
+    public Map<String, CkClaim> claimAll(Map<String, String> ckToJourney) {
+        if (ckToJourney == null || ckToJourney.isEmpty()) return Collections.emptyMap();
+        Map<String, CkClaim> outcomes = new HashMap<>();
+        for (Map.Entry<String, String> claim : ckToJourney.entrySet()) {
+            String previous = owners.putIfAbsent(claim.getKey(), claim.getValue());
+            outcomes.put(claim.getKey(), new CkClaim(claim.getKey(), claim.getValue(),
+                    previous != null ? previous : claim.getValue()));
+        }
+        return outcomes;
+    }
+
+    /**
+     * @return The number of claimed correlation keys.
+     */
+    public int size() {
+        return owners.size();
+    }
+}
@@ -0,0 +1,106 @@
+package com.abc.process.mining.journey.store;
+
+import com.abc.process.mining.journey.model.EventRecord;
+import com.abc.process.mining.journey.model.JourneyProjection;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link JourneyStore} kept in {@link ConcurrentHashMap}s.
+ * <p>
+ * Journeys are updated atomically with {@code compute}, following the same rules as the
+ * Elasticsearch upsert script: an event already in the journey is ignored, {@code firstSeenAt}
+ * and {@code lastSeenAt} widen to the event's timestamp, and the event is appended to the
+ * timeline while its ID and correlation keys are added to the journey's sets. Nothing is
+ * persisted; meant for small embedded deployments, tests and benchmarks of the stitch logic.
+ * </p>
+ */
+public class InMemoryJourneyStore implements JourneyStore {
+
+    private final ConcurrentHashMap<String, EventRecord> events = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Journey> journeys = new ConcurrentHashMap<>();
+
+    @Override
+    public void indexEvent(EventRecord event, String eventsIndex) {
+        String id = event.getEventId();
+        if (id == null) throw new IllegalArgumentException("event must have an eventId");
+        events.put(id, event);
+    }
+
+    @Override
+    public void upsertJourney(String journeyId, EventRecord event) {
+        journeys.compute(journeyId, (id, journey) -> {
+            Journey j = journey != null ? journey : new Journey(id);
+            j.apply(event);
+            return j;
+        });
+    }
+
+    /**
+     * @param journeyId A journey ID.
+     * @return A copy of the journey, or {@code null} if it does not exist.
+     */
+    public JourneyProjection journey(String journeyId) {
+        Journey journey = journeys.get(journeyId);
+        if (journey == null) return null;
+        synchronized (journey) {
+            return journey.toProjection();
+        }
+    }
+
+    /**
+     * @param journeyId A journey ID.
+     * @return The IDs of the journey's events in the order they were added, or an empty list.
+     */
+    public List<String> timeline(String journeyId) {
+        Journey journey = journeys.get(journeyId);
+        if (journey == null) return List.of();
+        synchronized (journey) {
+            return new ArrayList<>(journey.timeline);
+        }
+    }
+
+    /**
+     * @return The number of stored events.
+     */
+    public int eventCount() {
+        return events.size();
+    }
+
+    /**
+     * @return The number of journeys.
+     */
+    public int journeyCount() {
+        return journeys.size();
+    }
+
+    private static final class Journey {
+        final String journeyId;
+        final Set<String> cks = new LinkedHashSet<>();
+        final Set<String> eventIds = new HashSet<>();
+        final List<String> timeline = new ArrayList<>();
+        Instant firstSeenAt;
+        Instant lastSeenAt;
+
+        Journey(String journeyId) {
+            this.journeyId = journeyId;
+        }
+
+        synchronized void apply(EventRecord event) {
+            if (!eventIds.add(event.getEventId())) return;
+            Instant ts = event.getTimestamp();
+            if (firstSeenAt == null || ts.isBefore(firstSeenAt)) firstSeenAt = ts;
+            if (lastSeenAt == null || ts.isAfter(lastSeenAt)) lastSeenAt = ts;
+            cks.addAll(event.getCorrelationKeys());
+            timeline.add(event.getEventId());
+        }
+
+        JourneyProjection toProjection() {
+            return new JourneyProjection(journeyId, new ArrayList<>(cks), new ArrayList<>(timeline),
+                    firstSeenAt, lastSeenAt, "OPEN",
+                    Map.of("events", (long) timeline.size(), "distinctActivities", 0L));
+        }
+    }
+}
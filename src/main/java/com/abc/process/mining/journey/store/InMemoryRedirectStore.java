@@ -0,0 +1,48 @@
+package com.abc.process.mining.journey.store;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+
+/**
+ * {@link RedirectStore} kept in a {@link ConcurrentHashMap}.
+ * <p>
+ * Nothing is persisted; meant for small embedded deployments, tests and benchmarks of the stitch logic.
+ * </p>
+ */
+public class InMemoryRedirectStore implements RedirectStore {
+
+    private final ConcurrentHashMap<String, String> redirects = new ConcurrentHashMap<>();
+    private final List<BiConsumer<String, String>> listeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void addListener(BiConsumer<String, String> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void setRedirect(String from, String to) {
+        redirects.put(from, to);
+        for (BiConsumer<String, String> listener : listeners) listener.accept(from, to);
+    }
+
+    @Override
+    public String resolve(String journeyId) {
+        String current = journeyId;
+        // bounded so a cycle cannot spin forever
+        for (int hops = 0; hops <= redirects.size(); hops++) {
+            String next = redirects.get(current);
+            if (next == null) return current;
+            current = next;
+        }
+        return current;
+    }
+
+    /**
+     * @return The number of redirects.
+     */
+    public int size() {
+        return redirects.size();
+    }
+}
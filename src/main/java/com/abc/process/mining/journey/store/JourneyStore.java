@@ -0,0 +1,77 @@
+package com.abc.process.mining.journey.store;
+
+import com.abc.process.mining.journey.model.EventRecord;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Storage of events and the journeys they are stitched to.
+ * <p>
+ * A journey upsert is idempotent per event: applying an event a journey already contains
+ * changes nothing. Implementations must be safe for concurrent use.
+ * </p>
+ * Implemented by {@link com.abc.process.mining.journey.es.JourneyService} on Elasticsearch and by
+ * {@link InMemoryJourneyStore}; selected with {@code app.store.engine}.
+ */
+public interface JourneyStore {
+
+    /**
+     * Stores an event.
+     *
+     * @param event The event to store. It must have an eventId.
+     * @param eventsIndex The name of the (daily) partition the event belongs to.
+     * @throws IOException if the store cannot be written.
+     * @throws IllegalArgumentException if the event has no eventId.
+     */
+    void indexEvent(EventRecord event, String eventsIndex) throws IOException;
+
+    /**
+     * Adds an event to a journey, creating the journey if needed.
+     *
+     * @param journeyId The unique identifier of the journey.
+     * @param event The event to be incorporated into the journey.
+     * @throws IOException if the store cannot be written.
+     */
+    void upsertJourney(String journeyId, EventRecord event) throws IOException;
+
+    /**
+     * Stores an event and adds it to a journey.
+     * <p>
+     * Returns once both are written, and fails if either one failed. The default implementation
+     * calls {@link #indexEvent(EventRecord, String)} and then {@link #upsertJourney(String, EventRecord)}.
+     * </p>
+     * @param journeyId The unique identifier of the journey.
+     * @param event The event to store. It must have an eventId.
+     * @param eventsIndex The name of the (daily) partition the event belongs to.
+     * @throws IOException if the store cannot be written.
+     * @throws IllegalArgumentException if the event has no eventId.
+     */
+    default void indexAndUpsert(String journeyId, EventRecord event, String eventsIndex) throws IOException {
+        indexEvent(event, eventsIndex);
+        upsertJourney(journeyId, event);
+    }
+
+    /**
+     * Stores a batch of events and adds them to their journeys.
+     * <p>
+     * Events of one journey are applied in the order given. The default implementation writes
+     * them one by one.
+     * </p>
+     * @param eventsByJourney The events to write, grouped by the journey ID they were stitched to.
+     * @param eventsIndex The name of the (daily) partition the events belong to.
+     * @throws IOException if the store cannot be written.
+     * @throws IllegalArgumentException if an event has no eventId.
+     */
+    default void bulkIndexAndUpsert(Map<String, List<EventRecord>> eventsByJourney,
+                                    String eventsIndex) throws IOException {
+        if (eventsByJourney == null) return;
+        for (Map.Entry<String, List<EventRecord>> journey : eventsByJourney.entrySet()) {
+            for (EventRecord event : journey.getValue()) {
+                indexEvent(event, eventsIndex);
+                upsertJourney(journey.getKey(), event);
+            }
+        }
+    }
+}
@@ -0,0 +1,463 @@
+package com.abc.process.mining.journey.store;
+
+import com.abc.process.mining.journey.util.Hashing;
+import org.springframework.core.log.LogAccessor;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * Embedded, disk-backed map from correlation key to journey ID.
+ * <p>
+ * Claims are appended to a log file ({@code ck.log}), the source of truth: each record holds
+ * the key and its journey, prefixed with its length and a CRC32. Lookups go through an
+ * open-addressing hash table in a memory-mapped file ({@code ck.idx}) whose 16-byte slots hold the
+ * 64-bit hash of a key and the log offset of its record; a probe compares hashes and reads the
+ * record only on a hash match, so lookups and claims take microseconds and the heap does not grow
+ * with the number of keys. The table is mapped in 1 GiB segments and doubles when it is 70% full,
+ * so it can hold hundreds of millions of keys.
+ * </p>
+ * <p>
+ * Like the {@code ckmap} index, a key keeps its first owner forever. With {@code sync} enabled,
+ * every batch of claims is forced to disk before it is acknowledged. A clean {@link #close()}
+ * marks the table as consistent with the log; after a crash the table is rebuilt from the log on
+ * open, dropping a torn last record.
+ * </p>
+ * The log also drives replication: {@link #readLog(long, int, BiConsumer)} and
+ * {@link #markMirrored(long)} let a mirror copy claims to Elasticsearch and resume where it
+ * stopped. Safe for concurrent use; lookups run in parallel, claims one at a time.
+ */
+public class MappedCkIndex implements Closeable {
+
+    private static final LogAccessor LOG = new LogAccessor(MappedCkIndex.class);
+
+    private static final long MAGIC = 0x434b494458563031L; // "CKIDXV01"
+    private static final int HEADER_BYTES = 4096;
+    private static final int SLOT_BYTES = 16;
+    private static final int SEGMENT_BITS = 30;
+    private static final double MAX_LOAD = 0.7;
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final int MAX_KEY_BYTES = Short.MAX_VALUE;
+
+    // header fields of ck.idx
+    private static final int H_MAGIC = 0;
+    private static final int H_SLOTS = 8;
+    private static final int H_SIZE = 16;
+    private static final int H_LOG_END = 24;
+    private static final int H_MIRRORED = 32;
+    private static final int H_CLEAN = 40;
+
+    private final Path indexFile;
+    private final boolean sync;
+    private final FileChannel log;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private volatile long logEnd;
+    private MappedByteBuffer[] segments;
+    private long slots;
+    private long size;
+
+    /**
+     * Opens or creates an index.
+     *
+     * @param dir The directory holding {@code ck.log} and {@code ck.idx}.
+     * @param initialSlots The number of table slots of a new index, rounded up to a power of two.
+     * @param sync Whether claims are forced to disk before they are acknowledged.
+     * @throws IOException if the files cannot be opened or created.
+     */
+    public MappedCkIndex(Path dir, long initialSlots, boolean sync) throws IOException {
+        Files.createDirectories(dir);
+        this.indexFile = dir.resolve("ck.idx");
+        this.sync = sync;
+        this.log = FileChannel.open(dir.resolve("ck.log"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        long mirrored = 0;
+        boolean clean = false;
+        if (Files.exists(indexFile) && Files.size(indexFile) >= HEADER_BYTES) {
+            segments = map(indexFile, -1);
+            ByteBuffer header = segments[0];
+            if (header.getLong(H_MAGIC) == MAGIC) {
+                slots = header.getLong(H_SLOTS);
+                size = header.getLong(H_SIZE);
+                mirrored = header.getLong(H_MIRRORED);
+                clean = header.getInt(H_CLEAN) == 1 && header.getLong(H_LOG_END) == log.size();
+            }
+        }
+        if (clean) {
+            logEnd = log.size();
+        } else {
+            rebuild(Long.highestOneBit(Math.max(1L, initialSlots - 1)) << 1, mirrored);
+        }
+        // from now on the table may run ahead of what was last forced; a crash before close() rebuilds it
+        segments[0].putInt(H_CLEAN, 0);
+        segments[0].force();
+    }
+
+    /**
+     * @param ck A correlation key.
+     * @return The journey owning the key, or {@code null} if it was never claimed.
+     * @throws IOException if the log cannot be read.
+     */
+    public String get(String ck) throws IOException {
+        lock.readLock().lock();
+        try {
+            long offset = find(ck, hash(ck));
+            return offset < 0 ? null : readRecord(offset).journeyId;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param cks Correlation keys.
+     * @return The journey owning each key that was ever claimed; other keys are omitted.
+     * @throws IOException if the log cannot be read.
+     */
+    public Map<String, String> getAll(Collection<String> cks) throws IOException {
+        Map<String, String> out = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            for (String ck : cks) {
+                long offset = find(ck, hash(ck));
+                if (offset >= 0) out.put(ck, readRecord(offset).journeyId);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return out;
+    }
+
+    /**
+     * Claims correlation keys for journeys; a key that already has an owner keeps it.
+     *
+     * @param ckToJourney The journey ID each correlation key should be claimed for.
+     * @return The journey owning each key after the claim.
+     * @throws IOException if the log cannot be written.
+     */
+    public Map<String, String> claimAll(Map<String, String> ckToJourney) throws IOException {
+        Map<String, String> owners = new HashMap<>();
+        lock.writeLock().lock();
+        try {
+            boolean appended = false;
+            for (Map.Entry<String, String> claim : ckToJourney.entrySet()) {
+                String ck = claim.getKey();
+                long h = hash(ck);
+                long offset = find(ck, h);
+                if (offset >= 0) {
+                    owners.put(ck, readRecord(offset).journeyId);
+                    continue;
+                }
+                insert(h, append(ck, claim.getValue()));
+                owners.put(ck, claim.getValue());
+                appended = true;
+            }
+            if (appended && sync) log.force(false);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return owners;
+    }
+
+    /**
+     * Reads claims from the log in the order they were made.
+     *
+     * @param from The log position to start at, as returned by a previous call or {@link #mirroredPosition()}.
+     * @param max The maximum number of claims to read.
+     * @param claims Receives each correlation key and its journey.
+     * @return The log position after the last claim read.
+     * @throws IOException if the log cannot be read.
+     */
+    public long readLog(long from, int max, BiConsumer<String, String> claims) throws IOException {
+        long position = from;
+        long end = logEnd;
+        for (int i = 0; i < max && position < end; i++) {
+            Record record = readRecord(position);
+            claims.accept(record.ck, record.journeyId);
+            position = record.next;
+        }
+        return position;
+    }
+
+    /**
+     * @return The log position up to which claims have been replicated.
+     */
+    public long mirroredPosition() {
+        lock.readLock().lock();
+        try {
+            return segments[0].getLong(H_MIRRORED);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Records that all claims before a log position have been replicated.
+     *
+     * @param position The log position returned by {@link #readLog(long, int, BiConsumer)}.
+     */
+    public void markMirrored(long position) {
+        lock.writeLock().lock();
+        try {
+            segments[0].putLong(H_MIRRORED, position);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return The number of log bytes written.
+     */
+    public long logEnd() {
+        return logEnd;
+    }
+
+    /**
+     * @return The number of correlation keys held.
+     */
+    public long size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return Key count, table slots and load, log size and the log bytes not replicated yet.
+     */
+    public Map<String, Object> stats() {
+        lock.readLock().lock();
+        try {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("keys", size);
+            stats.put("slots", slots);
+            stats.put("load", (double) size / slots);
+            stats.put("logBytes", logEnd);
+            stats.put("mirrorLagBytes", logEnd - segments[0].getLong(H_MIRRORED));
+            return stats;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Forces the log and the table to disk and marks the table consistent with the log.
+     *
+     * @throws IOException if the files cannot be written.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (!log.isOpen()) return;
+            log.force(true);
+            for (MappedByteBuffer segment : segments) segment.force();
+            ByteBuffer header = segments[0];
+            header.putLong(H_SIZE, size);
+            header.putLong(H_LOG_END, logEnd);
+            header.putInt(H_CLEAN, 1);
+            segments[0].force();
+            log.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ------------------------------------------------------------------ table
+
+    private long find(String ck, long h) throws IOException {
+        long mask = slots - 1;
+        for (long slot = h & mask; ; slot = (slot + 1) & mask) {
+            long stored = slotHash(slot);
+            if (stored == 0) return -1;
+            if (stored == h) {
+                long offset = slotOffset(slot);
+                if (readRecord(offset).ck.equals(ck)) return offset;
+            }
+        }
+    }
+
+    private void insert(long h, long offset) throws IOException {
+        if (size + 1 > slots * MAX_LOAD) resize();
+        long mask = slots - 1;
+        long slot = h & mask;
+        while (slotHash(slot) != 0) slot = (slot + 1) & mask;
+        putSlot(segments, slot, h, offset);
+        size++;
+        segments[0].putLong(H_SIZE, size);
+    }
+
+    private void resize() throws IOException {
+        long newSlots = slots << 1;
+        Path tmp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+        Files.deleteIfExists(tmp);
+        MappedByteBuffer[] grown = map(tmp, newSlots);
+        long mask = newSlots - 1;
+        for (long slot = 0; slot < slots; slot++) {
+            long h = slotHash(slot);
+            if (h == 0) continue;
+            long target = h & mask;
+            while (grown[segment(target)].getLong(position(target)) != 0) target = (target + 1) & mask;
+            putSlot(grown, target, h, slotOffset(slot));
+        }
+        ByteBuffer header = grown[0];
+        header.putLong(H_MAGIC, MAGIC);
+        header.putLong(H_SLOTS, newSlots);
+        header.putLong(H_SIZE, size);
+        header.putLong(H_MIRRORED, segments[0].getLong(H_MIRRORED));
+        for (MappedByteBuffer segment : grown) segment.force();
+        Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        segments = grown;
+        slots = newSlots;
+    }
+
+    private void rebuild(long initialSlots, long mirrored) throws IOException {
+        Files.deleteIfExists(indexFile);
+        segments = map(indexFile, initialSlots);
+        slots = initialSlots;
+        size = 0;
+        ByteBuffer header = segments[0];
+        header.putLong(H_MAGIC, MAGIC);
+        header.putLong(H_SLOTS, slots);
+
+        long position = 0;
+        long length = log.size();
+        logEnd = length;
+        while (position < length) {
+            Record record = tryReadRecord(position, length);
+            if (record == null) break;
+            long h = hash(record.ck);
+            if (find(record.ck, h) < 0) insert(h, position);
+            position = record.next;
+        }
+        if (position < length) {
+            long torn = length - position;
+            LOG.warn(() -> "dropping " + torn + " torn bytes at the end of the correlation key log");
+            log.truncate(position);
+        }
+        logEnd = position;
+        segments[0].putLong(H_MIRRORED, Math.min(mirrored, position));
+        long keys = size;
+        LOG.info(() -> "rebuilt correlation key index with " + keys + " keys");
+    }
+
+    private long slotHash(long slot) {
+        return segments[segment(slot)].getLong(position(slot));
+    }
+
+    private long slotOffset(long slot) {
+        return segments[segment(slot)].getLong(position(slot) + 8);
+    }
+
+    private static void putSlot(MappedByteBuffer[] segments, long slot, long h, long offset) {
+        MappedByteBuffer segment = segments[segment(slot)];
+        int position = position(slot);
+        segment.putLong(position + 8, offset);
+        segment.putLong(position, h);
+    }
+
+    private static int segment(long slot) {
+        return (int) ((HEADER_BYTES + slot * SLOT_BYTES) >>> SEGMENT_BITS);
+    }
+
+    private static int position(long slot) {
+        return (int) ((HEADER_BYTES + slot * SLOT_BYTES) & ((1L << SEGMENT_BITS) - 1));
+    }
+
+    /**
+     * Maps a table file in segments; with {@code slots >= 0} the file is created with that many empty slots.
+     */
+    private static MappedByteBuffer[] map(Path file, long slots) throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long length = slots >= 0 ? HEADER_BYTES + slots * SLOT_BYTES : channel.size();
+            if (slots >= 0) channel.write(ByteBuffer.allocate(1), length - 1);
+            MappedByteBuffer[] mapped = new MappedByteBuffer[(int) ((length + (1L << SEGMENT_BITS) - 1) >>> SEGMENT_BITS)];
+            for (int i = 0; i < mapped.length; i++) {
+                long start = (long) i << SEGMENT_BITS;
+                mapped[i] = channel.map(FileChannel.MapMode.READ_WRITE, start, Math.min(1L << SEGMENT_BITS, length - start));
+            }
+            return mapped;
+        }
+    }
+
+    private static long hash(String ck) {
+        long h = Hashing.hash64(ck);
+        return h == 0 ? 1 : h; // 0 marks an empty slot
+    }
+
+    // ------------------------------------------------------------------ log
+
+    private record Record(String ck, String journeyId, long next) {
+    }
+
+    private long append(String ck, String journeyId) throws IOException {
+        byte[] key = ck.getBytes(StandardCharsets.UTF_8);
+        byte[] journey = journeyId.getBytes(StandardCharsets.UTF_8);
+        if (key.length > MAX_KEY_BYTES || journey.length > MAX_KEY_BYTES) {
+            throw new IllegalArgumentException("correlation key or journey ID too long: " + ck);
+        }
+        ByteBuffer payload = ByteBuffer.allocate(4 + key.length + journey.length);
+        payload.putShort((short) key.length).put(key).putShort((short) journey.length).put(journey).flip();
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + payload.remaining());
+        record.putInt(payload.remaining()).putInt((int) crc.getValue()).put(payload).flip();
+        long offset = logEnd;
+        long position = offset;
+        while (record.hasRemaining()) position += log.write(record, position);
+        logEnd = position;
+        return offset;
+    }
+
+    private Record readRecord(long offset) throws IOException {
+        Record record = tryReadRecord(offset, logEnd);
+        if (record == null) throw new IOException("corrupt correlation key log record at " + offset);
+        return record;
+    }
+
+    private Record tryReadRecord(long offset, long end) throws IOException {
+        if (offset + RECORD_HEADER_BYTES > end) return null;
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+        readFully(header, offset);
+        int length = header.getInt(0);
+        if (length < 4 || offset + RECORD_HEADER_BYTES + length > end) return null;
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        readFully(payload, offset + RECORD_HEADER_BYTES);
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        if ((int) crc.getValue() != header.getInt(4)) return null;
+
+        byte[] key = new byte[payload.getShort()];
+        payload.get(key);
+        byte[] journey = new byte[payload.getShort()];
+        payload.get(journey);
+        return new Record(new String(key, StandardCharsets.UTF_8), new String(journey, StandardCharsets.UTF_8),
+                offset + RECORD_HEADER_BYTES + length);
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        long p = position;
+        while (buffer.hasRemaining()) {
+            int n = log.read(buffer, p);
+            if (n < 0) throw new IOException("unexpected end of correlation key log at " + p);
+            p += n;
+        }
+        buffer.flip();
+    }
+}
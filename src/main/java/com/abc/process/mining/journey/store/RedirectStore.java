@@ -0,0 +1,71 @@
+package com.abc.process.mining.journey.store;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Storage of journey redirects written when journeys are merged.
+ * <p>
+ * A redirect points a merged journey at the journey it was merged into. Listeners registered
+ * with {@link #addListener(BiConsumer)} are told about every redirect written, so local caches can
+ * follow merges. Implementations must be safe for concurrent use.
+ * </p>
+ * Implemented by {@link com.abc.process.mining.journey.es.RedirectService} on Elasticsearch and by
+ * {@link InMemoryRedirectStore}; selected with {@code app.store.engine}.
+ */
+public interface RedirectStore {
+
+    /**
+     * Registers a callback invoked with {@code (from, to)} after each redirect has been written.
+     *
+     * @param listener The callback.
+     */
+    void addListener(BiConsumer<String, String> listener);
+
+    /**
+     * Sets a redirect from a source ID to a target ID.
+     *
+     * @param from The source ID to redirect from.
+     * @param to The target ID to redirect to.
+     * @throws IOException if the store cannot be written.
+     */
+    void setRedirect(String from, String to) throws IOException;
+
+    /**
+     * Resolves a journey ID to the journey it ended up merged into, following redirect chains to their end.
+     *
+     * @param journeyId The ID to resolve.
+     * @return The last redirect target, or the ID itself if it has no redirect.
+     * @throws IOException if the store cannot be read.
+     */
+    String resolve(String journeyId) throws IOException;
+
+    /**
+     * Sets many redirects. The default implementation writes them one by one.
+     *
+     * @param fromTo A map from source ID to target ID.
+     * @throws IOException if the store cannot be written.
+     */
+    default void setRedirects(Map<String, String> fromTo) throws IOException {
+        if (fromTo == null) return;
+        for (Map.Entry<String, String> redirect : fromTo.entrySet()) setRedirect(redirect.getKey(), redirect.getValue());
+    }
+
+    /**
+     * Resolves many journey IDs like {@link #resolve(String)}. The default implementation resolves them one by one.
+     *
+     * @param journeyIds The IDs to resolve.
+     * @return A map from each requested ID to its destination ID.
+     * @throws IOException if the store cannot be read.
+     */
+    default Map<String, String> resolveAll(Collection<String> journeyIds) throws IOException {
+        if (journeyIds == null || journeyIds.isEmpty()) return Collections.emptyMap();
+        Map<String, String> out = new HashMap<>();
+        for (String id : journeyIds) out.put(id, resolve(id));
+        return out;
+    }
+}
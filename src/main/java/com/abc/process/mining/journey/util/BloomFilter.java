@@ -0,0 +1,150 @@
+package com.abc.process.mining.journey.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Fixed-size Bloom filter over strings.
+ * <p>
+ * Answers "definitely not added" or "probably added" in constant time with a few bits per
+ * element. The {@code k} bit positions are derived from one 64-bit hash by double hashing, so a
+ * lookup hashes the string only once. Not thread-safe; callers synchronize.
+ * </p>
+ * A filter can be written to and read back from a binary stream, so it survives restarts.
+ */
+public class BloomFilter {
+
+    private final long[] bits;
+    private final long numBits;
+    private final int hashes;
+    private final long capacity;
+    private long count;
+
+    /**
+     * Constructs a filter sized for a number of elements and a false positive probability.
+     *
+     * @param expectedInsertions How many elements the filter is expected to hold.
+     * @param fpp The false positive probability once that many elements were added, e.g. {@code 0.01}.
+     */
+    public BloomFilter(long expectedInsertions, double fpp) {
+        long n = Math.max(1, expectedInsertions);
+        this.numBits = bitsFor(n, fpp);
+        this.bits = new long[(int) (numBits / 64)];
+        this.hashes = Math.max(1, (int) Math.round((double) numBits / n * Math.log(2)));
+        this.capacity = n;
+    }
+
+    private BloomFilter(long[] bits, int hashes, long capacity, long count) {
+        this.bits = bits;
+        this.numBits = (long) bits.length * 64;
+        this.hashes = hashes;
+        this.capacity = capacity;
+        this.count = count;
+    }
+
+    /**
+     * Returns the number of bits needed for a number of elements at a false positive probability.
+     *
+     * @param expectedInsertions The number of elements.
+     * @param fpp The false positive probability.
+     * @return The filter size in bits, as the constructor would allocate it.
+     */
+    public static long bitsFor(long expectedInsertions, double fpp) {
+        long n = Math.max(1, expectedInsertions);
+        long m = (long) Math.ceil(-n * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        return Math.max(64, (m + 63) / 64 * 64);
+    }
+
+    /**
+     * Adds an element.
+     *
+     * @param value The element.
+     */
+    public void put(String value) {
+        long hash = Hashing.hash64(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashes; i++) {
+            long bit = Integer.toUnsignedLong(h1 + i * h2) % numBits;
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+        count++;
+    }
+
+    /**
+     * @param value The element.
+     * @return {@code false} if the element was definitely never added, {@code true} if it probably was.
+     */
+    public boolean mightContain(String value) {
+        long hash = Hashing.hash64(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashes; i++) {
+            long bit = Integer.toUnsignedLong(h1 + i * h2) % numBits;
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Removes all elements.
+     */
+    public void clear() {
+        Arrays.fill(bits, 0L);
+        count = 0;
+    }
+
+    /**
+     * @return The number of {@link #put} calls since construction or the last {@link #clear()}.
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * @return The size of the filter in bits.
+     */
+    public long bitSize() {
+        return numBits;
+    }
+
+    /**
+     * @return Whether the filter holds as many elements as it was sized for; adding more raises
+     *         its false positive probability above the target.
+     */
+    public boolean isFull() {
+        return count >= capacity;
+    }
+
+    /**
+     * Writes the filter in a compact binary form.
+     *
+     * @param out The stream to write to.
+     * @throws IOException if writing fails.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(bits.length);
+        out.writeInt(hashes);
+        out.writeLong(capacity);
+        out.writeLong(count);
+        for (long word : bits) out.writeLong(word);
+    }
+
+    /**
+     * Reads a filter written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in The stream to read from.
+     * @return The filter.
+     * @throws IOException if reading fails.
+     */
+    public static BloomFilter readFrom(DataInput in) throws IOException {
+        long[] bits = new long[in.readInt()];
+        int hashes = in.readInt();
+        long capacity = in.readLong();
+        long count = in.readLong();
+        for (int i = 0; i < bits.length; i++) bits[i] = in.readLong();
+        return new BloomFilter(bits, hashes, capacity, count);
+    }
+}
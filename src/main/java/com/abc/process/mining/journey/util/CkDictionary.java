@@ -0,0 +1,91 @@
+package com.abc.process.mining.journey.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Interns correlation keys as 64-bit IDs.
+ * <p>
+ * A key's ID is its {@link Hashing#hash64(String)}, so the same key gets the same ID in every
+ * dictionary and every process. Each ID is checked against the key it was assigned to: if two
+ * different keys of one dictionary hash alike, the later one is moved to the next free ID of a
+ * fixed probe sequence, so IDs are always unique within the dictionary. Stitching logic can then
+ * work on {@code long[]} and {@link LongObjectHashMap} and turn IDs back into strings only where
+ * they are sent to Elasticsearch.
+ * </p>
+ * Holds every interned key; meant to live for one poll or batch. Not thread-safe.
+ */
+public class CkDictionary {
+
+    private static final long PROBE_STEP = 0x9e3779b97f4a7c15L;
+
+    private final LongObjectHashMap<String> keysById;
+    private final List<String> keys;
+
+    public CkDictionary() {
+        this(16);
+    }
+
+    /**
+     * Constructs a {@code CkDictionary}.
+     *
+     * @param expectedKeys The number of keys the dictionary holds without growing.
+     */
+    public CkDictionary(int expectedKeys) {
+        this.keysById = new LongObjectHashMap<>(expectedKeys);
+        this.keys = new ArrayList<>(expectedKeys);
+    }
+
+    /**
+     * @param ck A correlation key.
+     * @return The key's ID, assigned on first use.
+     */
+    public long intern(String ck) {
+        long id = Hashing.hash64(ck);
+        for (;;) {
+            String existing = keysById.get(id);
+            if (existing == null) {
+                keysById.put(id, ck);
+                keys.add(ck);
+                return id;
+            }
+            if (existing.equals(ck)) return id;
+            id += PROBE_STEP; // collision with a different key
+        }
+    }
+
+    /**
+     * @param cks Correlation keys.
+     * @return Their IDs, in the same order.
+     */
+    public long[] intern(Collection<String> cks) {
+        long[] ids = new long[cks.size()];
+        int i = 0;
+        for (String ck : cks) ids[i++] = intern(ck);
+        return ids;
+    }
+
+    /**
+     * @param id An ID returned by {@link #intern(String)}.
+     * @return The correlation key, or {@code null} if the ID was not assigned by this dictionary.
+     */
+    public String key(long id) {
+        return keysById.get(id);
+    }
+
+    /**
+     * @return All interned keys, in the order they were first interned.
+     */
+    public List<String> keys() {
+        return Collections.unmodifiableList(keys);
+    }
+
+    /**
+     * @return The number of interned keys.
+     */
+    public int size() {
+        return keys.size();
+    }
+}
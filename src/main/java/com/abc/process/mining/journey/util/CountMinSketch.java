@@ -0,0 +1,86 @@
+package com.abc.process.mining.journey.util;
+
+import java.util.Arrays;
+
+/**
+ * Count-min sketch estimating how often strings occur in a stream.
+ * <p>
+ * {@code depth} rows of {@code width} counters; an element increments one counter per row and its
+ * estimate is the smallest of them. Estimates never undercount, and with conservative update
+ * (only the counters at the current minimum are raised) they overcount far less than the
+ * classic bound of {@code e / width} times the stream length. Memory is fixed at
+ * {@code depth * width} ints whatever the number of distinct elements. Not thread-safe; callers synchronize.
+ * </p>
+ */
+public class CountMinSketch {
+
+    private final int width;
+    private final int depth;
+    private final int[] counters;
+    private long total;
+
+    /**
+     * Constructs a {@code CountMinSketch}.
+     *
+     * @param width The number of counters per row.
+     * @param depth The number of rows.
+     */
+    public CountMinSketch(int width, int depth) {
+        this.width = width;
+        this.depth = depth;
+        this.counters = new int[width * depth];
+    }
+
+    /**
+     * Counts one occurrence of an element.
+     *
+     * @param value The element.
+     * @return The element's estimated count, including this occurrence.
+     */
+    public int add(String value) {
+        long hash = Hashing.hash64(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) min = Math.min(min, counters[index(row, h1, h2)]);
+        int estimate = min + 1;
+        for (int row = 0; row < depth; row++) {
+            int i = index(row, h1, h2);
+            if (counters[i] < estimate) counters[i] = estimate;
+        }
+        total++;
+        return estimate;
+    }
+
+    /**
+     * @param value The element.
+     * @return The element's estimated count; never lower than the true count.
+     */
+    public int estimate(String value) {
+        long hash = Hashing.hash64(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) min = Math.min(min, counters[index(row, h1, h2)]);
+        return min;
+    }
+
+    /**
+     * @return The number of occurrences counted since construction or the last {@link #clear()}.
+     */
+    public long total() {
+        return total;
+    }
+
+    /**
+     * Resets all counts.
+     */
+    public void clear() {
+        Arrays.fill(counters, 0);
+        total = 0;
+    }
+
+    private int index(int row, int h1, int h2) {
+        return row * width + Integer.remainderUnsigned(h1 + row * h2, width);
+    }
+}
@@ -0,0 +1,110 @@
+package com.abc.process.mining.journey.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Disjoint sets of string IDs with a designated label per set (union-find).
+ * <p>
+ * Sets are trees over int indices held in parallel arrays: a parent and a rank per ID, plus the
+ * index of the label for every root. {@link #union(String, String)} links the lower-ranked root
+ * under the higher-ranked one, and {@link #find(String)} compresses the path it walks, so both run
+ * in amortized near-constant time. Which root survives a union is decided by rank only; the label
+ * of the merged set is always the label of the second argument's set.
+ * </p>
+ * Not thread-safe: {@link #find(String)} restructures the trees it walks.
+ */
+public class DisjointSets {
+
+    private final Map<String, Integer> index = new HashMap<>();
+    private String[] ids = new String[16];
+    private int[] parent = new int[16];
+    private byte[] rank = new byte[16];
+    private int[] label = new int[16];
+    private int size;
+    private int unions;
+
+    /**
+     * @param id An ID.
+     * @return The label of the set containing the ID, or the ID itself if it was never added.
+     */
+    public String find(String id) {
+        Integer i = index.get(id);
+        return i == null ? id : ids[label[root(i)]];
+    }
+
+    /**
+     * Merges the set of {@code from} into the set of {@code to}; IDs not seen yet are added first.
+     *
+     * @param from An ID of the set being merged.
+     * @param to An ID of the set whose label the merged set keeps.
+     * @return {@code false} if both IDs were already in the same set, {@code true} otherwise.
+     */
+    public boolean union(String from, String to) {
+        int rf = root(add(from));
+        int rt = root(add(to));
+        if (rf == rt) return false;
+        int keep = label[rt];
+        int r;
+        if (rank[rf] < rank[rt]) {
+            parent[rf] = rt;
+            r = rt;
+        } else if (rank[rf] > rank[rt]) {
+            parent[rt] = rf;
+            r = rf;
+        } else {
+            parent[rt] = rf;
+            rank[rf]++;
+            r = rf;
+        }
+        label[r] = keep;
+        unions++;
+        return true;
+    }
+
+    /**
+     * @return The number of IDs added.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The number of unions that merged two different sets.
+     */
+    public int unions() {
+        return unions;
+    }
+
+    private int add(String id) {
+        Integer existing = index.get(id);
+        if (existing != null) return existing;
+        if (size == ids.length) grow();
+        int i = size++;
+        ids[i] = id;
+        parent[i] = i;
+        label[i] = i;
+        index.put(id, i);
+        return i;
+    }
+
+    private int root(int i) {
+        int r = i;
+        while (parent[r] != r) r = parent[r];
+        while (parent[i] != r) {
+            int next = parent[i];
+            parent[i] = r;
+            i = next;
+        }
+        return r;
+    }
+
+    private void grow() {
+        int capacity = ids.length * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        parent = Arrays.copyOf(parent, capacity);
+        rank = Arrays.copyOf(rank, capacity);
+        label = Arrays.copyOf(label, capacity);
+    }
+}
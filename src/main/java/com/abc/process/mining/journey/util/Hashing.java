@@ -3,35 +3,114 @@ package com.abc.process.mining.journey.util;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
-import java.util.stream.Collectors;
 
 public final class Hashing {
 
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final byte[] SEPARATOR = {'|'};
+
+    // MessageDigest is not thread-safe and getInstance looks the provider up on every call
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    });
+
     private Hashing() {
     }
 
+    /**
+     * Derives a journey ID from an event.
+     * <p>
+     * The lowercase hex SHA-256 of the sorted correlation keys and the event ID, joined with
+     * {@code |}, so it does not depend on the order of the keys. The digest is reused per thread and
+     * the input is fed to it piecewise, without building the joined string.
+     * </p>
+     * @param correlationKeys The event's correlation keys.
+     * @param eventId The event's ID.
+     * @return 64 hex characters.
+     */
     public static String journeyId(List<String> correlationKeys, String eventId) {
-        // Sort keys for determinism
-        String joined = correlationKeys.stream()
-                .sorted()
-                .collect(Collectors.joining("|")) + "|" + eventId;
-        return sha256Hex(joined);
+        String[] sorted = correlationKeys.toArray(new String[0]);
+        if (sorted.length > 1) Arrays.sort(sorted);
+        MessageDigest digest = SHA256.get();
+        for (String ck : sorted) {
+            digest.update(ck.getBytes(StandardCharsets.UTF_8));
+            digest.update(SEPARATOR);
+        }
+        if (sorted.length == 0) digest.update(SEPARATOR);
+        digest.update(eventId.getBytes(StandardCharsets.UTF_8));
+        return hex(digest.digest());
     }
 
-    private static String sha256Hex(String input) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(input.getBytes(StandardCharsets.UTF_8));
-            StringBuilder hex = new StringBuilder();
-            for (byte b : hash) {
-                String h = Integer.toHexString(0xff & b);
-                if (h.length() == 1) hex.append('0');
-                hex.append(h);
+    /**
+     * Derives a journey ID from a single correlation key: the lowercase hex SHA-256 of the key.
+     *
+     * @param correlationKey The correlation key.
+     * @return 64 hex characters.
+     */
+    public static String journeyId(String correlationKey) {
+        MessageDigest digest = SHA256.get();
+        return hex(digest.digest(correlationKey.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Picks the correlation key an event is partitioned by.
+     * <p>
+     * The key with the smallest hash wins, ties broken by natural order, so the choice depends only on
+     * the set of keys and not on their order. Events sharing their canonical key land on the same
+     * partition and are stitched by the same listener thread.
+     * </p>
+     * @param correlationKeys The event's correlation keys.
+     * @return The canonical key, or {@code null} if there is none.
+     */
+    public static String canonicalKey(Collection<String> correlationKeys) {
+        String best = null;
+        if (correlationKeys == null) return null;
+        for (String ck : correlationKeys) {
+            if (ck == null) continue;
+            if (best == null || ck.hashCode() < best.hashCode()
+                    || (ck.hashCode() == best.hashCode() && ck.compareTo(best) < 0)) {
+                best = ck;
             }
-            return hex.toString();
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("SHA-256 not available", e);
         }
+        return best;
+    }
+
+    /**
+     * 64-bit FNV-1a over the UTF-16 code units, finished with the MurmurHash3 avalanche step.
+     * <p>
+     * Cheap, well-mixed and stable across JVMs, so it can be stored on disk; used by Bloom filters
+     * and the embedded correlation key index.
+     * </p>
+     * @param value The string to hash.
+     * @return The 64-bit hash.
+     */
+    public static long hash64(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static String hex(byte[] bytes) {
+        char[] out = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            out[2 * i] = HEX[(bytes[i] >> 4) & 0xf];
+            out[2 * i + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(out);
     }
 }
@@ -0,0 +1,206 @@
+package com.abc.process.mining.journey.util;
+
+import java.util.Arrays;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Hash map from primitive {@code long} keys to objects.
+ * <p>
+ * Open addressing with linear probing over parallel key and value arrays, kept at most half full,
+ * so neither keys nor entries are boxed or allocated per mapping. Removal shifts following entries
+ * back instead of leaving tombstones. Not thread-safe; callers synchronize.
+ * </p>
+ * Used with 64-bit correlation key IDs from {@link CkDictionary}, which are already well mixed.
+ *
+ * @param <V> The value type.
+ */
+public class LongObjectHashMap<V> {
+
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+
+    // key 0 marks an empty slot, so its mapping is kept aside
+    private boolean hasZero;
+    private V zeroValue;
+
+    public LongObjectHashMap() {
+        this(16);
+    }
+
+    /**
+     * Constructs a {@code LongObjectHashMap}.
+     *
+     * @param expectedSize The number of mappings the map holds without growing.
+     */
+    public LongObjectHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        this.keys = new long[capacity];
+        this.values = new Object[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * @param key The key.
+     * @return The value mapped to the key, or {@code null}.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        if (key == 0) return hasZero ? zeroValue : null;
+        for (int i = slot(key); ; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == key) return (V) values[i];
+            if (k == 0) return null;
+        }
+    }
+
+    /**
+     * @param key The key.
+     * @return Whether the key is mapped.
+     */
+    public boolean containsKey(long key) {
+        if (key == 0) return hasZero;
+        for (int i = slot(key); ; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == key) return true;
+            if (k == 0) return false;
+        }
+    }
+
+    /**
+     * Maps a key to a value.
+     *
+     * @param key The key.
+     * @param value The value, not {@code null}.
+     * @return The value previously mapped to the key, or {@code null}.
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (key == 0) {
+            V previous = hasZero ? zeroValue : null;
+            if (!hasZero) size++;
+            hasZero = true;
+            zeroValue = value;
+            return previous;
+        }
+        for (int i = slot(key); ; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == key) {
+                V previous = (V) values[i];
+                values[i] = value;
+                return previous;
+            }
+            if (k == 0) {
+                keys[i] = key;
+                values[i] = value;
+                if (++size * 2 > keys.length) grow();
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Removes the mapping of a key.
+     *
+     * @param key The key.
+     * @return The value that was mapped to the key, or {@code null}.
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        if (key == 0) {
+            if (!hasZero) return null;
+            V previous = zeroValue;
+            hasZero = false;
+            zeroValue = null;
+            size--;
+            return previous;
+        }
+        for (int i = slot(key); ; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == 0) return null;
+            if (k == key) {
+                V previous = (V) values[i];
+                shiftBack(i);
+                size--;
+                return previous;
+            }
+        }
+    }
+
+    /**
+     * @return The number of mappings.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return Whether the map holds no mappings.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all mappings.
+     */
+    public void clear() {
+        Arrays.fill(keys, 0L);
+        Arrays.fill(values, null);
+        hasZero = false;
+        zeroValue = null;
+        size = 0;
+    }
+
+    /**
+     * Calls an action for every mapping, in no particular order.
+     *
+     * @param action Receives each value and its key.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(ObjLongConsumer<V> action) {
+        if (hasZero) action.accept(zeroValue, 0L);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) action.accept((V) values[i], keys[i]);
+        }
+    }
+
+    private int slot(long key) {
+        int h = (int) (key ^ (key >>> 32)) * 0x9e3779b9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /**
+     * Closes the gap at {@code gap} by moving back every following entry that may live there.
+     */
+    private void shiftBack(int gap) {
+        for (int i = (gap + 1) & mask; keys[i] != 0; i = (i + 1) & mask) {
+            int ideal = slot(keys[i]);
+            // the entry may move into the gap unless its home slot lies between the gap and itself
+            if (((i - ideal) & mask) >= ((i - gap) & mask)) {
+                keys[gap] = keys[i];
+                values[gap] = values[i];
+                gap = i;
+            }
+        }
+        keys[gap] = 0L;
+        values[gap] = null;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new Object[oldKeys.length * 2];
+        mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            long k = oldKeys[i];
+            if (k == 0) continue;
+            int j = slot(k);
+            while (keys[j] != 0) j = (j + 1) & mask;
+            keys[j] = k;
+            values[j] = oldValues[i];
+        }
+    }
+}
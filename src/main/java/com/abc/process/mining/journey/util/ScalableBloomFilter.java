@@ -0,0 +1,169 @@
+package com.abc.process.mining.journey.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Bloom filter that grows with the number of elements while keeping its false positive rate.
+ * <p>
+ * Elements go into the newest of a series of {@link BloomFilter} stages. When a stage is full,
+ * a stage twice as large with half the false positive probability is added, so the compound
+ * probability stays below the configured one however many stages there are. Growth stops at a
+ * memory budget: from then on the last stage keeps filling and the false positive rate slowly
+ * rises, which only costs extra lookups, never a wrong answer.
+ * </p>
+ * Safe for concurrent use; lookups share a read lock.
+ */
+public class ScalableBloomFilter {
+
+    private static final int FORMAT = 1;
+
+    private final long initialCapacity;
+    private final double fpp;
+    private final long maxBits;
+    private final List<BloomFilter> stages = new ArrayList<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Constructs a {@code ScalableBloomFilter}.
+     *
+     * @param initialCapacity The number of elements the first stage is sized for.
+     * @param fpp The target false positive probability over all stages.
+     * @param maxBytes The memory budget of all stages together.
+     */
+    public ScalableBloomFilter(long initialCapacity, double fpp, long maxBytes) {
+        this.initialCapacity = Math.max(1, initialCapacity);
+        this.fpp = fpp;
+        this.maxBits = maxBytes * 8;
+        // the first stage takes half the error budget, each following stage half of the previous one
+        stages.add(new BloomFilter(initialCapacity, fpp / 2));
+    }
+
+    /**
+     * Adds an element.
+     *
+     * @param value The element.
+     */
+    public void put(String value) {
+        lock.writeLock().lock();
+        try {
+            BloomFilter last = stages.get(stages.size() - 1);
+            if (last.isFull()) last = grow(last);
+            last.put(value);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param value The element.
+     * @return {@code false} if the element was definitely never added, {@code true} if it probably was.
+     */
+    public boolean mightContain(String value) {
+        lock.readLock().lock();
+        try {
+            for (int i = stages.size() - 1; i >= 0; i--) {
+                if (stages.get(i).mightContain(value)) return true;
+            }
+            return false;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return The number of elements added.
+     */
+    public long count() {
+        lock.readLock().lock();
+        try {
+            long n = 0;
+            for (BloomFilter stage : stages) n += stage.count();
+            return n;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return The memory used by all stages, in bytes.
+     */
+    public long sizeInBytes() {
+        lock.readLock().lock();
+        try {
+            return bits() / 8;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return The number of stages.
+     */
+    public int stageCount() {
+        lock.readLock().lock();
+        try {
+            return stages.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes all stages in a compact binary form.
+     *
+     * @param out The stream to write to.
+     * @throws IOException if writing fails.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        lock.readLock().lock();
+        try {
+            out.writeInt(FORMAT);
+            out.writeInt(stages.size());
+            for (BloomFilter stage : stages) stage.writeTo(out);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the content of this filter with stages written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in The stream to read from.
+     * @throws IOException if reading fails or the data is not a filter snapshot.
+     */
+    public void readFrom(DataInput in) throws IOException {
+        if (in.readInt() != FORMAT) throw new IOException("unknown bloom filter format");
+        int n = in.readInt();
+        List<BloomFilter> loaded = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) loaded.add(BloomFilter.readFrom(in));
+        lock.writeLock().lock();
+        try {
+            stages.clear();
+            stages.addAll(loaded);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private BloomFilter grow(BloomFilter last) {
+        int next = stages.size();
+        long capacity = initialCapacity << Math.min(next, 40);
+        double stageFpp = fpp / Math.pow(2, next + 1);
+        if (bits() + BloomFilter.bitsFor(capacity, stageFpp) > maxBits) return last;
+        BloomFilter stage = new BloomFilter(capacity, stageFpp);
+        stages.add(stage);
+        return stage;
+    }
+
+    private long bits() {
+        long bits = 0;
+        for (BloomFilter stage : stages) bits += stage.bitSize();
+        return bits;
+    }
+}
@@ -0,0 +1,153 @@
+package com.abc.process.mining.journey.web;
+
+import com.abc.process.mining.journey.es.CkCacheWarmer;
+import com.abc.process.mining.journey.es.CkJourneyCache;
+import com.abc.process.mining.journey.es.CkMapRetention;
+import com.abc.process.mining.journey.es.CoalescingJourneyWriter;
+import com.abc.process.mining.journey.es.JourneyCompactor;
+import com.abc.process.mining.journey.es.KnownCkFilter;
+import com.abc.process.mining.journey.es.UnionFindRedirectStore;
+import com.abc.process.mining.journey.kafka.BackpressureController;
+import com.abc.process.mining.journey.kafka.JourneyChangePublisher;
+import com.abc.process.mining.journey.stitch.EventDeduplicator;
+import com.abc.process.mining.journey.stitch.SuperNodeGuard;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * Read-only operational endpoints under {@code /admin}.
+ */
+@RestController
+@RequestMapping("/admin")
+public class AdminController {
+
+    private final BackpressureController backpressure;
+    private final EventDeduplicator deduplicator;
+    private final CkJourneyCache ckJourneyCache;
+    private final KnownCkFilter knownCkFilter;
+    private final SuperNodeGuard superNodeGuard;
+    private final ObjectProvider<CkCacheWarmer> ckCacheWarmer;
+    private final ObjectProvider<CkMapRetention> ckMapRetention;
+    private final ObjectProvider<UnionFindRedirectStore> redirectStore;
+    private final ObjectProvider<JourneyCompactor> journeyCompactor;
+    private final JourneyChangePublisher changes;
+    private final ObjectProvider<CoalescingJourneyWriter> journeyWriter;
+
+    public AdminController(BackpressureController backpressure, EventDeduplicator deduplicator,
+                           CkJourneyCache ckJourneyCache, KnownCkFilter knownCkFilter,
+                           SuperNodeGuard superNodeGuard, ObjectProvider<CkCacheWarmer> ckCacheWarmer,
+                           ObjectProvider<CkMapRetention> ckMapRetention,
+                           ObjectProvider<UnionFindRedirectStore> redirectStore,
+                           ObjectProvider<JourneyCompactor> journeyCompactor,
+                           JourneyChangePublisher changes,
+                           ObjectProvider<CoalescingJourneyWriter> journeyWriter) {
+        this.backpressure = backpressure;
+        this.deduplicator = deduplicator;
+        this.ckJourneyCache = ckJourneyCache;
+        this.knownCkFilter = knownCkFilter;
+        this.superNodeGuard = superNodeGuard;
+        this.ckCacheWarmer = ckCacheWarmer;
+        this.ckMapRetention = ckMapRetention;
+        this.redirectStore = redirectStore;
+        this.journeyCompactor = journeyCompactor;
+        this.changes = changes;
+        this.journeyWriter = journeyWriter;
+    }
+
+    /**
+     * @return Whether consumption is paused, pause counts and durations, and the last Elasticsearch load sample.
+     */
+    @GetMapping("/backpressure")
+    public Map<String, Object> backpressure() {
+        return backpressure.metrics();
+    }
+
+    /**
+     * @return How many events were checked and skipped as duplicates, and how many IDs are remembered.
+     */
+    @GetMapping("/dedup")
+    public Map<String, Object> dedup() {
+        return deduplicator.stats();
+    }
+
+    /**
+     * @return Size, hit rate, evictions, expirations, merge rewrites and mean hit age of the CK cache.
+     */
+    @GetMapping("/ckcache")
+    public Map<String, Object> ckCache() {
+        return ckJourneyCache.stats();
+    }
+
+    /**
+     * @return Whether the CK cache is warm after the last rebalance, and how far the warm-up of each partition got.
+     */
+    @GetMapping("/ckwarmup")
+    public Map<String, Object> ckWarmup() {
+        CkCacheWarmer warmer = ckCacheWarmer.getIfAvailable();
+        return warmer != null ? warmer.stats() : Map.of("enabled", false);
+    }
+
+    /**
+     * @return The retention horizon of ckmap entries, how many were expired, and how the last run went.
+     */
+    @GetMapping("/ckretention")
+    public Map<String, Object> ckRetention() {
+        CkMapRetention retention = ckMapRetention.getIfAvailable();
+        return retention != null ? retention.stats() : Map.of("enabled", false);
+    }
+
+    /**
+     * @return Whether the known CK filter is in use, its size, and how many ckmap lookups it skipped.
+     */
+    @GetMapping("/ckbloom")
+    public Map<String, Object> ckBloom() {
+        return knownCkFilter.stats();
+    }
+
+    /**
+     * @return Whether the in-memory redirect sets are loaded, their size, and redirects waiting to be written.
+     */
+    @GetMapping("/redirects")
+    public Map<String, Object> redirects() {
+        UnionFindRedirectStore store = redirectStore.getIfAvailable();
+        return store != null ? store.stats() : Map.of("enabled", false);
+    }
+
+    /**
+     * @return How many merged journeys were folded into their roots and deleted, and how the last run went.
+     */
+    @GetMapping("/compactor")
+    public Map<String, Object> compactor() {
+        JourneyCompactor compactor = journeyCompactor.getIfAvailable();
+        return compactor != null ? compactor.stats() : Map.of("enabled", false);
+    }
+
+    /**
+     * @return Whether journey changes are published, to which topic, and how many sends succeeded or failed.
+     */
+    @GetMapping("/changes")
+    public Map<String, Object> changes() {
+        return changes.stats();
+    }
+
+    /**
+     * @return How many journey writes were batched, and how many upserts each journey update carried on average.
+     */
+    @GetMapping("/journey-writer")
+    public Map<String, Object> journeyWriter() {
+        CoalescingJourneyWriter writer = journeyWriter.getIfAvailable();
+        return writer != null ? writer.stats() : Map.of("enabled", false);
+    }
+
+    /**
+     * @return The correlation keys excluded from stitching as super-nodes, most links first, with their link counts.
+     */
+    @GetMapping("/supernodes")
+    public Map<String, Object> superNodes() {
+        return superNodeGuard.stats();
+    }
+}
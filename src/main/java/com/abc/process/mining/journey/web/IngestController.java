@@ -0,0 +1,169 @@
+package com.abc.process.mining.journey.web;
+
+import com.abc.process.mining.journey.kafka.EventRecordDeserializer;
+import com.abc.process.mining.journey.kafka.EventRecordSerializer;
+import com.abc.process.mining.journey.model.EventRecord;
+import com.abc.process.mining.journey.stitch.JourneyStitcher;
+import com.abc.process.mining.journey.util.Hashing;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * HTTP ingestion of raw events for sources without a Kafka client.
+ * <p>
+ * The request body is newline-delimited JSON, one event per line, and is parsed as a stream so a
+ * large upload is never held in memory. Valid events are published to {@code events.raw}, keyed by
+ * their canonical correlation key like every other producer of the topic, and batched by the
+ * producer's linger and batch size. Invalid lines are reported back and skipped.
+ * </p>
+ * <p>
+ * Records sent but not yet acknowledged by Kafka are bounded by {@code app.ingest.max-in-flight}.
+ * When no permit frees up in time the request stops with {@code 429 Too Many Requests}; the response
+ * says how many lines were consumed, so the client can resend the rest after the {@code Retry-After}
+ * delay. A response is only sent once every published event has been acknowledged.
+ * </p>
+ */
+@RestController
+@RequestMapping("/ingest")
+public class IngestController {
+
+    public static final String TOPIC = "events.raw";
+    public static final String NDJSON = "application/x-ndjson";
+
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final Semaphore inFlight;
+    private final long acquireTimeoutMillis;
+    private final EventRecordSerializer serializer = new EventRecordSerializer();
+
+    /**
+     * Constructs an {@code IngestController}.
+     *
+     * @param kafkaTemplate The template publishing to {@code events.raw}.
+     * @param maxInFlight The maximum number of published records awaiting acknowledgment.
+     * @param acquireTimeoutMillis How long a request waits for an in-flight permit before answering 429.
+     */
+    public IngestController(KafkaTemplate<String, String> kafkaTemplate,
+                            @Value("${app.ingest.max-in-flight:20000}") int maxInFlight,
+                            @Value("${app.ingest.acquire-timeout-ms:200}") long acquireTimeoutMillis) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+    }
+
+    /**
+     * Publishes the events of an NDJSON body.
+     *
+     * @param body The request body, one JSON event per line.
+     * @return {@code 200} with the number of accepted events and the rejected lines, {@code 400} if
+     *         the body stops being valid JSON, {@code 429} when saturated or {@code 503} if Kafka
+     *         did not acknowledge some events; all with the same counts.
+     * @throws IOException if reading the request body fails.
+     */
+    @PostMapping(path = "/events", consumes = {NDJSON, "application/json"})
+    public ResponseEntity<Map<String, Object>> ingest(InputStream body) throws IOException {
+        EventRecordDeserializer reader = new EventRecordDeserializer();
+        List<CompletableFuture<?>> sends = new ArrayList<>();
+        AtomicInteger failed = new AtomicInteger();
+        List<String> errors = new ArrayList<>();
+        int lines = 0;
+        int rejected = 0;
+        HttpStatus status = HttpStatus.OK;
+
+        try (JsonParser parser = JSON.createParser(body)) {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                lines++;
+                if (token != JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                    rejected++;
+                    report(errors, lines, "not a JSON object");
+                    continue;
+                }
+                EventRecord event;
+                try {
+                    event = reader.read(parser);
+                    JourneyStitcher.validate(event);
+                } catch (IllegalArgumentException | DateTimeParseException e) {
+                    // read() leaves the parser inside the object only for a bad timestamp; skip to its end
+                    if (parser.currentToken() != JsonToken.END_OBJECT) skipToEndOfObject(parser);
+                    rejected++;
+                    report(errors, lines, e.getMessage());
+                    continue;
+                }
+                if (!acquire()) {
+                    lines--;
+                    status = HttpStatus.TOO_MANY_REQUESTS;
+                    break;
+                }
+                sends.add(kafkaTemplate.send(TOPIC, Hashing.canonicalKey(event.getCorrelationKeys()),
+                                serializer.toJson(event))
+                        .whenComplete((result, error) -> {
+                            inFlight.release();
+                            if (error != null) failed.incrementAndGet();
+                        }));
+            }
+        } catch (JsonProcessingException e) {
+            status = HttpStatus.BAD_REQUEST;
+            report(errors, lines, "malformed JSON: " + e.getOriginalMessage());
+        }
+
+        // Answer only once Kafka has acknowledged (or failed) every event of this request
+        CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new)).handle((r, e) -> null).join();
+        if (failed.get() > 0 && status == HttpStatus.OK) status = HttpStatus.SERVICE_UNAVAILABLE;
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("lines", lines);
+        result.put("accepted", sends.size() - failed.get());
+        result.put("rejected", rejected);
+        result.put("failed", failed.get());
+        result.put("errors", errors);
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(status);
+        if (status == HttpStatus.TOO_MANY_REQUESTS) response.header(HttpHeaders.RETRY_AFTER, "1");
+        return response.body(result);
+    }
+
+    private boolean acquire() {
+        try {
+            return inFlight.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static void skipToEndOfObject(JsonParser parser) throws IOException {
+        int depth = 1;
+        while (depth > 0) {
+            JsonToken t = parser.nextToken();
+            if (t == null) return;
+            if (t.isStructStart()) depth++;
+            else if (t.isStructEnd()) depth--;
+        }
+    }
+
+    private static void report(List<String> errors, int line, String message) {
+        if (errors.size() < MAX_REPORTED_ERRORS) errors.add("line " + line + ": " + message);
+    }
+}
@@ -1,11 +1,15 @@
 package com.abc.process.mining.journey.config;
 
+import com.abc.process.mining.journey.kafka.CorrelationKeyPartitioner;
+import com.abc.process.mining.journey.kafka.EventRecordDeserializer;
+import com.abc.process.mining.journey.model.EventRecord;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.*;
+import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
 
 import java.util.Map;
 
@@ -21,20 +25,20 @@ public class KafkaConfigTest {
     @Test
     void consumerFactory_hasExpectedProperties() {
         KafkaConfig cfg = new KafkaConfig();
-        ConsumerFactory<String, String> cf = cfg.consumerFactory();
+        ConsumerFactory<String, EventRecord> cf = cfg.consumerFactory();
         assertNotNull(cf);
 
         // DefaultKafkaConsumerFactory exposes its configuration map
         assertTrue(cf instanceof DefaultKafkaConsumerFactory);
-        Map<String, Object> props = ((DefaultKafkaConsumerFactory<String, String>) cf).getConfigurationProperties();
+        Map<String, Object> props = ((DefaultKafkaConsumerFactory<String, EventRecord>) cf).getConfigurationProperties();
 
         assertEquals("localhost:9092", props.get(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG));
         assertEquals("journey-consumer-group", props.get(ConsumerConfig.GROUP_ID_CONFIG));
         assertEquals(false, props.get(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG));
         assertEquals("org.apache.kafka.common.serialization.StringDeserializer",
                 String.valueOf(props.get(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG)));
-        assertEquals("org.apache.kafka.common.serialization.StringDeserializer",
-                String.valueOf(props.get(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG)));
+        assertEquals(ErrorHandlingDeserializer.class, props.get(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG));
+        assertEquals(EventRecordDeserializer.class, props.get(ErrorHandlingDeserializer.VALUE_DESERIALIZER_CLASS));
     }
 
     @Test
@@ -43,15 +47,26 @@ public class KafkaConfigTest {
 
         // Spy so we can ensure the listener factory uses the same ConsumerFactory
         KafkaConfig spyCfg = Mockito.spy(cfg);
-        ConsumerFactory<String, String> mockCF = mock(ConsumerFactory.class);
+        ConsumerFactory<String, EventRecord> mockCF = mock(ConsumerFactory.class);
         doReturn(mockCF).when(spyCfg).consumerFactory();
 
-        ConcurrentKafkaListenerContainerFactory<String, String> lcf = spyCfg.kafkaListenerContainerFactory();
+        ConcurrentKafkaListenerContainerFactory<String, EventRecord> lcf = spyCfg.kafkaListenerContainerFactory();
         assertNotNull(lcf);
         assertSame(mockCF, lcf.getConsumerFactory(), "Listener factory should use our ConsumerFactory");
         assertFalse(lcf.isBatchListener(), "Factory should be configured for single-message (non-batch) consumption");
     }
 
+    @Test
+    void batchListenerContainerFactory_usesConsumerFactory_andIsBatch() {
+        KafkaConfig spyCfg = Mockito.spy(new KafkaConfig());
+        ConsumerFactory<String, EventRecord> mockCF = mock(ConsumerFactory.class);
+        doReturn(mockCF).when(spyCfg).consumerFactory();
+
+        ConcurrentKafkaListenerContainerFactory<String, EventRecord> lcf = spyCfg.batchKafkaListenerContainerFactory();
+        assertSame(mockCF, lcf.getConsumerFactory());
+        assertTrue(lcf.isBatchListener(), "Batch factory should hand whole polls to the listener");
+    }
+
     @Test
     void producerFactory_hasExpectedProperties() {
         KafkaConfig cfg = new KafkaConfig();
@@ -68,6 +83,14 @@ public class KafkaConfigTest {
                 String.valueOf(props.get(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG)));
     }
 
+    @Test
+    void producerFactory_partitionsByCorrelationKey() {
+        Map<String, Object> props = ((DefaultKafkaProducerFactory<String, String>) new KafkaConfig().producerFactory())
+                .getConfigurationProperties();
+
+        assertEquals(CorrelationKeyPartitioner.class, props.get(ProducerConfig.PARTITIONER_CLASS_CONFIG));
+    }
+
     @Test
     void kafkaTemplate_isConstructedFromProducerFactory() {
         KafkaConfig cfg = new KafkaConfig();
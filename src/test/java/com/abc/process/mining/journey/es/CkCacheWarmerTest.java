@@ -0,0 +1,127 @@
+package com.abc.process.mining.journey.es;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.MgetRequest;
+import co.elastic.clients.elasticsearch.core.MgetResponse;
+import co.elastic.clients.elasticsearch.core.mget.MultiGetResponseItem;
+import co.elastic.clients.util.ObjectBuilder;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link CkCacheWarmer}.
+ */
+class CkCacheWarmerTest {
+
+    private static final TopicPartition P0 = new TopicPartition("events.raw", 0);
+    private static final TopicPartition P1 = new TopicPartition("events.raw", 1);
+
+    private final Map<String, Map<String, Map<String, Object>>> indices = new HashMap<>();
+    private final List<BulkRequest> bulks = new ArrayList<>();
+    private ElasticsearchClient es;
+    private CkJourneyCache cache;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws IOException {
+        es = mock(ElasticsearchClient.class);
+        cache = new CkJourneyCache(100, Duration.ofMinutes(5), Clock.systemUTC());
+        when(es.mget(any(Function.class), eq(Map.class))).thenAnswer(inv -> {
+            Function<MgetRequest.Builder, ObjectBuilder<MgetRequest>> fn = inv.getArgument(0);
+            MgetRequest req = fn.apply(new MgetRequest.Builder()).build();
+            Map<String, Map<String, Object>> docs = indices.getOrDefault(req.index(), Map.of());
+            List<MultiGetResponseItem<Map>> items = new ArrayList<>();
+            for (String id : req.ids()) {
+                Map<String, Object> doc = docs.get(id);
+                items.add(MultiGetResponseItem.<Map>of(i -> i.result(r -> r.index(req.index()).id(id)
+                        .found(doc != null).source(doc))));
+            }
+            return MgetResponse.<Map>of(m -> m.docs(items));
+        });
+        when(es.bulk(any(Function.class))).thenAnswer(inv -> {
+            Function<BulkRequest.Builder, ObjectBuilder<BulkRequest>> fn = inv.getArgument(0);
+            bulks.add(fn.apply(new BulkRequest.Builder()).build());
+            return BulkResponse.of(b -> b.errors(false).took(1).items(List.of()));
+        });
+    }
+
+    @Test
+    void warm_loadsTheRecentKeysOfAssignedPartitions() throws IOException {
+        indices.put("ckrecent", Map.of("events.raw-0", Map.of("cks", List.of("CK1", "CK2", "CK3"))));
+        indices.put("ckmap", Map.of(
+                "CK1", Map.of("journeyId", "J1"),
+                "CK2", Map.of("journeyId", "J2")));
+        CkCacheWarmer warmer = warmer();
+
+        warmer.warm(List.of(P0, P1));
+
+        assertEquals("J1", cache.get("CK1"));
+        assertEquals("J2", cache.get("CK2"));
+        assertNull(cache.get("CK3"));
+        // 3 keys in pages of 2, plus the read of the recent keys
+        verify(es, times(3)).mget(any(Function.class), eq(Map.class));
+        Map<String, Object> stats = warmer.stats();
+        assertEquals(true, stats.get("warm"));
+        assertEquals(1.0, stats.get("progress"));
+        assertEquals(3L, stats.get("keysWarmed"));
+    }
+
+    @Test
+    void revocation_writesTheRecentKeys_andDropsThemFromTheCache() {
+        CkCacheWarmer warmer = warmer();
+        warmer.touched(P0, List.of("CK1", "CK2"));
+        warmer.touched(P1, List.of("CK2"));
+        cache.put("CK1", "J1");
+        cache.put("CK2", "J1");
+
+        warmer.onPartitionsRevokedBeforeCommit(null, List.of(P0));
+
+        assertEquals(1, bulks.size());
+        assertEquals("events.raw-0", bulks.get(0).operations().get(0).index().id());
+        assertNull(cache.get("CK1"));
+        assertEquals("J1", cache.get("CK2"), "still seen on a partition assigned here");
+        assertEquals(1L, warmer.stats().get("keysDropped"));
+    }
+
+    @Test
+    void flush_skipsPartitionsWithoutNewKeys() {
+        CkCacheWarmer warmer = warmer();
+        warmer.touched(P0, List.of("CK1"));
+
+        warmer.flush();
+        warmer.flush();
+        warmer.touched(P0, List.of("CK2"));
+        warmer.flush();
+
+        assertEquals(2, bulks.size());
+    }
+
+    @Test
+    void otherTopics_areIgnored() {
+        CkCacheWarmer warmer = warmer();
+
+        warmer.touched(new TopicPartition("events.raw.external", 0), List.of("CK1"));
+        warmer.onPartitionsAssigned(null, List.of(new TopicPartition("events.raw.external", 0)));
+        warmer.flush();
+
+        verifyNoInteractions(es);
+    }
+
+    private CkCacheWarmer warmer() {
+        return new CkCacheWarmer(es, "ckmap", "ckrecent", "events.raw", cache, 10, 2, Clock.systemUTC());
+    }
+}
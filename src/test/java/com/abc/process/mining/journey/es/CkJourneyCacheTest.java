@@ -0,0 +1,110 @@
+package com.abc.process.mining.journey.es;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link CkJourneyCache}.
+ */
+class CkJourneyCacheTest {
+
+    private MutableClock clock;
+    private CkJourneyCache cache;
+
+    @BeforeEach
+    void setup() {
+        clock = new MutableClock();
+        cache = new CkJourneyCache(2, Duration.ofMinutes(5), clock);
+    }
+
+    @Test
+    void get_servesPutEntries_untilTtl() {
+        cache.put("CK1", "J1");
+        assertEquals("J1", cache.get("CK1"));
+        assertNull(cache.get("CK2"));
+
+        clock.advance(Duration.ofMinutes(5));
+        assertNull(cache.get("CK1"));
+        assertEquals(1L, cache.stats().get("expirations"));
+        assertEquals(1L, cache.stats().get("hits"));
+        assertEquals(2L, cache.stats().get("misses"));
+    }
+
+    @Test
+    void put_evictsLeastRecentlyUsed() {
+        cache.put("CK1", "J1");
+        cache.put("CK2", "J2");
+        cache.get("CK1");
+
+        cache.put("CK3", "J3");
+
+        assertNull(cache.get("CK2"));
+        assertEquals("J1", cache.get("CK1"));
+        assertEquals(1L, cache.stats().get("evictions"));
+    }
+
+    @Test
+    void redirected_rewritesKeysOfMergedJourney() {
+        cache.put("CK1", "J-B");
+        cache.put("CK2", "J-B");
+
+        cache.redirected("J-B", "J-A");
+
+        assertEquals("J-A", cache.get("CK1"));
+        assertEquals("J-A", cache.get("CK2"));
+        assertEquals(2L, cache.stats().get("mergeRewrites"));
+        // Rewritten keys follow later merges of their new journey too
+        cache.redirected("J-A", "J-0");
+        assertEquals("J-0", cache.get("CK1"));
+    }
+
+    @Test
+    void redirected_ignoresKeysCachedForAnotherJourneySince() {
+        cache.put("CK1", "J-B");
+        cache.put("CK1", "J-C");
+
+        cache.redirected("J-B", "J-A");
+
+        assertEquals("J-C", cache.get("CK1"));
+        assertEquals(0L, cache.stats().get("mergeRewrites"));
+    }
+
+    @Test
+    void disabled_neverHoldsAnything() {
+        CkJourneyCache disabled = CkJourneyCache.disabled();
+        disabled.put("CK1", "J1");
+
+        assertNull(disabled.get("CK1"));
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now = Instant.parse("2025-01-01T00:00:00Z");
+
+        void advance(Duration d) {
+            now = now.plus(d);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
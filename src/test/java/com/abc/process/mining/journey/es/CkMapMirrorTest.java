@@ -0,0 +1,66 @@
+package com.abc.process.mining.journey.es;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import com.abc.process.mining.journey.store.MappedCkIndex;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link CkMapMirror} and {@link EmbeddedCkMapService}.
+ */
+class CkMapMirrorTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flush_writesClaimsInBatches_andResumesAfterThem(@TempDir Path dir) throws IOException {
+        ElasticsearchClient es = mock(ElasticsearchClient.class);
+        when(es.bulk(any(Function.class))).thenReturn(BulkResponse.of(b -> b.errors(false).took(1).items(List.of())));
+        try (MappedCkIndex local = new MappedCkIndex(dir, 16, false)) {
+            for (int i = 0; i < 5; i++) local.claimAll(Map.of("ck-" + i, "J1"));
+            CkMapMirror mirror = new CkMapMirror(es, "ckmap", local, 2);
+
+            assertEquals(5, mirror.flush());
+            verify(es, times(3)).bulk(any(Function.class));
+            assertEquals(0, mirror.flush());
+            assertEquals(local.logEnd(), local.mirroredPosition());
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flush_keepsPosition_whenElasticsearchFails(@TempDir Path dir) throws IOException {
+        ElasticsearchClient es = mock(ElasticsearchClient.class);
+        when(es.bulk(any(Function.class))).thenThrow(new IOException("es down"));
+        try (MappedCkIndex local = new MappedCkIndex(dir, 16, false)) {
+            local.claimAll(Map.of("CK1", "J1"));
+            CkMapMirror mirror = new CkMapMirror(es, "ckmap", local, 10);
+
+            assertThrows(IOException.class, mirror::flush);
+            assertEquals(0, local.mirroredPosition());
+        }
+    }
+
+    @Test
+    void embeddedService_answersFromTheLocalIndexOnly(@TempDir Path dir) throws IOException {
+        ElasticsearchClient es = mock(ElasticsearchClient.class);
+        try (MappedCkIndex local = new MappedCkIndex(dir, 16, false)) {
+            CkMapService svc = new EmbeddedCkMapService(es, "ckmap", local);
+
+            assertTrue(svc.claimCk("CK1", "J1"));
+            assertFalse(svc.claimAll(Map.of("CK1", "J2")).get("CK1").claimed());
+            assertEquals(Map.of("CK1", "J1"), svc.mgetJourneyIds(List.of("CK1", "CK2")));
+            verifyNoInteractions(es);
+        }
+    }
+}
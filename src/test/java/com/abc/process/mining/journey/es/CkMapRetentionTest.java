@@ -0,0 +1,70 @@
+package com.abc.process.mining.journey.es;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.DeleteByQueryRequest;
+import co.elastic.clients.elasticsearch.core.DeleteByQueryResponse;
+import co.elastic.clients.util.ObjectBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link CkMapRetention}.
+ */
+class CkMapRetentionTest {
+
+    private static final Clock CLOCK = Clock.fixed(Instant.parse("2024-06-01T00:00:00Z"), ZoneOffset.UTC);
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void expire_deletesInBatches_untilABatchComesBackShort() throws IOException {
+        ElasticsearchClient es = mock(ElasticsearchClient.class);
+        List<DeleteByQueryRequest> requests = new ArrayList<>();
+        long[] deleted = {100, 100, 40};
+        when(es.deleteByQuery(any(Function.class))).thenAnswer(inv -> {
+            Function<DeleteByQueryRequest.Builder, ObjectBuilder<DeleteByQueryRequest>> fn = inv.getArgument(0);
+            requests.add(fn.apply(new DeleteByQueryRequest.Builder()).build());
+            long n = deleted[requests.size() - 1];
+            return DeleteByQueryResponse.of(r -> r.deleted(n));
+        });
+        CkMapRetention retention = new CkMapRetention(es, "ckmap", Duration.ofDays(30), 2, 500f, 100,
+                () -> false, CLOCK);
+
+        assertEquals(240, retention.expire());
+
+        assertEquals(3, requests.size());
+        DeleteByQueryRequest first = requests.get(0);
+        assertEquals(List.of("ckmap"), first.index());
+        assertEquals(100L, first.maxDocs());
+        assertEquals(500f, first.requestsPerSecond());
+        assertEquals("2024-05-02T00:00:00Z", first.query().range().lt().to(String.class));
+        assertEquals(240L, retention.stats().get("deleted"));
+        assertEquals(0L, retention.stats().get("deferred"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void expire_stopsWhileIngestIsHeldBack() throws IOException {
+        ElasticsearchClient es = mock(ElasticsearchClient.class);
+        when(es.deleteByQuery(any(Function.class))).thenReturn(DeleteByQueryResponse.of(r -> r.deleted(100L)));
+        int[] checks = {0};
+        CkMapRetention retention = new CkMapRetention(es, "ckmap", Duration.ofDays(30), 2, 0f, 100,
+                () -> ++checks[0] > 1, CLOCK);
+
+        assertEquals(100, retention.expire());
+
+        verify(es, times(1)).deleteByQuery(any(Function.class));
+        assertEquals(1L, retention.stats().get("deferred"));
+    }
+}
@@ -1,16 +1,31 @@
 package com.abc.process.mining.journey.es;
 
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
-import co.elastic.clients.elasticsearch.core.GetResponse;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
 import co.elastic.clients.elasticsearch.core.MgetResponse;
-import co.elastic.clients.elasticsearch.core.UpdateResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.elasticsearch.core.bulk.OperationType;
 import co.elastic.clients.elasticsearch.core.mget.MultiGetResponseItem;
+import co.elastic.clients.json.JsonData;
+import co.elastic.clients.util.ObjectBuilder;
+import com.abc.process.mining.journey.model.EventRecord;
+import com.abc.process.mining.journey.stitch.EventDeduplicator;
+import com.abc.process.mining.journey.stitch.JourneyStitcher;
+import com.abc.process.mining.journey.store.CkClaim;
+import com.abc.process.mining.journey.store.JourneyStore;
+import com.abc.process.mining.journey.store.RedirectStore;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
+import java.util.function.Function;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -32,6 +47,55 @@ public class CkMapServiceTest {
         verifyNoInteractions(es);
     }
 
+    @Test
+    void cachedKeys_areAnsweredWithoutElasticsearch() throws IOException {
+        ElasticsearchClient es = mock(ElasticsearchClient.class);
+        CkJourneyCache cache = new CkJourneyCache(10, Duration.ofMinutes(5), Clock.systemUTC());
+        cache.put("CK1", "J1");
+        cache.put("CK2", "J2");
+        CkMapService svc = new CkMapService(es, "ckmap", cache);
+
+        assertEquals(Map.of("CK1", "J1", "CK2", "J2"), svc.mgetJourneyIds(List.of("CK1", "CK2")));
+        assertTrue(svc.claimCk("CK1", "J1"));
+        assertFalse(svc.claimCk("CK2", "J1"));
+        assertEquals(Map.of("CK1", "J1", "CK2", "J2"), svc.claimCks(Map.of("CK1", "J1", "CK2", "J1")));
+
+        verifyNoInteractions(es);
+    }
+
+    @Test
+    void unknownKeys_areNotLookedUp() throws IOException {
+        ElasticsearchClient es = mock(ElasticsearchClient.class);
+        KnownCkFilter knownCks = new KnownCkFilter(100, 0.01, 1 << 16);
+        knownCks.markReady();
+        CkMapService svc = new CkMapService(es, "ckmap", CkJourneyCache.disabled(), knownCks);
+
+        assertTrue(svc.mgetJourneyIds(List.of("NEW1", "NEW2")).isEmpty());
+
+        verifyNoInteractions(es);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void claimAll_readsOwnersFromTheBulkResponse() throws IOException {
+        ElasticsearchClient es = mock(ElasticsearchClient.class);
+        BulkResponse bulk = BulkResponse.of(b -> b.errors(false).took(1).items(
+                claimed("CK1", "created", "J1"),
+                claimed("CK2", "noop", "J-OTHER")));
+        when(es.bulk(any(Function.class))).thenReturn(bulk);
+        CkJourneyCache cache = new CkJourneyCache(10, Duration.ofMinutes(5), Clock.systemUTC());
+        CkMapService svc = new CkMapService(es, "ckmap", cache);
+
+        Map<String, CkClaim> out = svc.claimAll(Map.of("CK1", "J1", "CK2", "J1"));
+
+        assertTrue(out.get("CK1").claimed());
+        assertFalse(out.get("CK2").claimed());
+        assertEquals("J-OTHER", out.get("CK2").owner());
+        assertEquals("J-OTHER", cache.get("CK2"));
+        verify(es, times(1)).bulk(any(Function.class));
+        verifyNoMoreInteractions(es);
+    }
+
     @Test
     @SuppressWarnings("unchecked")
     void mgetJourneyIds_mapsOnlyFoundDocs() throws IOException {
@@ -70,46 +134,133 @@ public class CkMapServiceTest {
 
     @Test
     @SuppressWarnings("unchecked")
-    void claimCk_returnsTrue_when_postGet_confirms_target() throws IOException {
+    void claimCk_returnsTrue_whenTheKeyIsNewOrAlreadyOwned() throws IOException {
         ElasticsearchClient es = mock(ElasticsearchClient.class);
+        List<BulkRequest> bulks = new ArrayList<>();
+        when(es.bulk(any(Function.class))).thenAnswer(inv -> {
+            Function<BulkRequest.Builder, ObjectBuilder<BulkRequest>> fn = inv.getArgument(0);
+            bulks.add(fn.apply(new BulkRequest.Builder()).build());
+            return BulkResponse.of(b -> b.errors(false).took(1).items(claimed("CK1", "created", "J-123")));
+        }).thenReturn(BulkResponse.of(b -> b.errors(false).took(1).items(claimed("CK2", "updated", "J-123"))));
         CkMapService svc = new CkMapService(es, "ckmap");
 
-        // We don't inspect UpdateResponse in the code, just ensure call doesn't throw
-        UpdateResponse<Map> upd = mock(UpdateResponse.class);
-       // when(es.update(any(), eq(Map.class))).thenReturn(upd);
+        assertTrue(svc.claimCk("CK1", "J-123"));
+        assertTrue(svc.claimCk("CK2", "J-123"));
 
-        GetResponse<Map> get = mock(GetResponse.class);
-        when(get.found()).thenReturn(true);
-        when(get.source()).thenReturn(Map.of("journeyId", "J-123"));
-        //when(es.get(any(), eq(Map.class))).thenReturn(get);
+        BulkOperation op = bulks.get(0).operations().get(0);
+        assertEquals("ckmap", op.update().index());
+        assertEquals("CK1", op.update().id());
+        assertEquals("J-123", op.update().action().script().inline().params().get("j").to(String.class));
+        verify(es, times(2)).bulk(any(Function.class));
+        verify(es, never()).get(any(Function.class), eq(Map.class));
+    }
 
-        assertTrue(svc.claimCk("CK1", "J-123"));
+    @Test
+    @SuppressWarnings("unchecked")
+    void claimCk_returnsFalse_whenAnotherJourneyOwnsTheKey() throws IOException {
+        ElasticsearchClient es = mock(ElasticsearchClient.class);
+        when(es.bulk(any(Function.class))).thenReturn(
+                BulkResponse.of(b -> b.errors(false).took(1).items(claimed("CKY", "noop", "OTHER"))));
+        CkJourneyCache cache = new CkJourneyCache(10, Duration.ofMinutes(5), Clock.systemUTC());
+        CkMapService svc = new CkMapService(es, "ckmap", cache);
+
+        assertFalse(svc.claimCk("CKY", "J-Y"));
+
+        assertEquals("OTHER", cache.get("CKY"));
     }
 
     @Test
     @SuppressWarnings("unchecked")
-    void claimCk_returnsFalse_when_doc_missing_or_mismatch() throws IOException {
+    void claimCk_fails_whenTheBulkItemFails() throws IOException {
         ElasticsearchClient es = mock(ElasticsearchClient.class);
+        when(es.bulk(any(Function.class))).thenReturn(BulkResponse.of(b -> b.errors(true).took(1).items(
+                BulkResponseItem.of(i -> i.operationType(OperationType.Update).index("ckmap").id("CKX").status(429)
+                        .error(e -> e.type("es_rejected_execution_exception").reason("queue full"))))));
         CkMapService svc = new CkMapService(es, "ckmap");
 
-        // Generic update stub
-        //when(es.update(any(), eq(Map.class))).thenReturn(mock(UpdateResponse.class));
+        IOException e = assertThrows(IOException.class, () -> svc.claimCk("CKX", "J-X"));
 
-        // Case 1: GET not found
-        GetResponse<Map> notFound = mock(GetResponse.class);
-        when(notFound.found()).thenReturn(false);
-       // when(es.get(any(), eq(Map.class))).thenReturn(notFound);
-        assertFalse(svc.claimCk("CKX", "J-X"));
-
-        // Case 2: GET found but journeyId != target
-        GetResponse<Map> mismatch = mock(GetResponse.class);
-        when(mismatch.found()).thenReturn(true);
-        when(mismatch.source()).thenReturn(Map.of("journeyId", "OTHER"));
-        //when(es.get(any(), eq(Map.class))).thenReturn(mismatch);
-        assertFalse(svc.claimCk("CKY", "J-Y"));
+        assertTrue(e.getMessage().contains("CKX"), e.getMessage());
     }
 
     // ------------------ tiny helpers ------------------
+    @Test
+    @SuppressWarnings("unchecked")
+    void touch_refreshesUpdatedAt_ofKeysStitchedFromTheCache() throws IOException {
+        ElasticsearchClient es = mock(ElasticsearchClient.class);
+        Map<String, Object> ck1 = new HashMap<>(Map.of("journeyId", "J1", "updatedAt", "2024-01-01T00:00:00Z"));
+        when(es.mget(any(Function.class), eq(Map.class))).thenAnswer(inv -> MgetResponse.<Map>of(m -> m.docs(
+                MultiGetResponseItem.<Map>of(i -> i.result(r -> r.index("ckmap").id("CK1").found(true).source(ck1))))));
+        List<BulkOperation> touches = new ArrayList<>();
+        when(es.bulk(any(Function.class))).thenAnswer(inv -> {
+            Function<BulkRequest.Builder, ObjectBuilder<BulkRequest>> fn = inv.getArgument(0);
+            List<BulkResponseItem> items = new ArrayList<>();
+            for (BulkOperation op : fn.apply(new BulkRequest.Builder()).build().operations()) {
+                touches.add(op);
+                ck1.putAll((Map<String, Object>) op.update().action().doc());
+                items.add(BulkResponseItem.of(it -> it.operationType(OperationType.Update)
+                        .index("ckmap").id(op.update().id()).status(200).result("updated")));
+            }
+            return BulkResponse.of(b -> b.errors(false).took(1).items(items));
+        });
+        CkJourneyCache cache = new CkJourneyCache(10, Duration.ofMinutes(5), Clock.systemUTC());
+        CkMapService svc = new CkMapService(es, "ckmap", cache, KnownCkFilter.disabled(), true);
+        RedirectStore redirects = mock(RedirectStore.class);
+        when(redirects.resolve(anyString())).thenAnswer(inv -> inv.getArgument(0));
+        JourneyStitcher stitcher = new JourneyStitcher(svc, mock(JourneyStore.class), redirects,
+                new EventDeduplicator(Duration.ofHours(1), 100, 100, Clock.systemUTC()));
+
+        assertEquals("J1", stitcher.stitch(event("E1", "CK1")));
+        assertEquals(1, svc.touch());
+        Instant first = Instant.parse((String) ck1.get("updatedAt"));
+        assertTrue(first.isAfter(Instant.parse("2024-01-01T00:00:00Z")));
+
+        assertEquals("J1", stitcher.stitch(event("E2", "CK1")));
+        assertEquals(1, svc.touch());
+        assertFalse(Instant.parse((String) ck1.get("updatedAt")).isBefore(first));
+
+        // both claims were answered from the cache; only the touches reached the index
+        verify(es, times(1)).mget(any(Function.class), eq(Map.class));
+        assertEquals(2, touches.size());
+        assertEquals(0, svc.touch());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void touch_dropsKeysDeletedMeanwhile_fromTheCache() throws IOException {
+        ElasticsearchClient es = mock(ElasticsearchClient.class);
+        when(es.bulk(any(Function.class))).thenReturn(BulkResponse.of(b -> b.errors(true).took(1).items(
+                BulkResponseItem.of(i -> i.operationType(OperationType.Update).index("ckmap").id("CK1").status(404)
+                        .error(e -> e.type("document_missing_exception").reason("document missing"))))));
+        CkJourneyCache cache = new CkJourneyCache(10, Duration.ofMinutes(5), Clock.systemUTC());
+        cache.put("CK1", "J1");
+        CkMapService svc = new CkMapService(es, "ckmap", cache, KnownCkFilter.disabled(), true);
+
+        assertTrue(svc.claimCk("CK1", "J1"));
+        assertEquals(0, svc.touch());
+
+        assertNull(cache.get("CK1"));
+    }
+
+    private static EventRecord event(String eventId, String ck) {
+        EventRecord event = new EventRecord();
+        event.setEventId(eventId);
+        event.setActivity("Pay");
+        event.setTimestamp(Instant.parse("2025-01-01T00:00:00Z"));
+        event.setCorrelationKeys(List.of(ck));
+        return event;
+    }
+
+    private static BulkResponseItem claimed(String ck, String result, String owner) {
+        return BulkResponseItem.of(i -> i
+                .operationType(OperationType.Update)
+                .index("ckmap")
+                .id(ck)
+                .status(200)
+                .result(result)
+                .get(g -> g.found(true).source(Map.of("journeyId", JsonData.of(owner)))));
+    }
+
     /**
      * The Elasticsearch Java client’s Mget item wraps a result object whose concrete type
      * isn’t referenced directly in our code under test. To keep tests lightweight, we
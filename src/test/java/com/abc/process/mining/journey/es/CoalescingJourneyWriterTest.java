@@ -0,0 +1,137 @@
+package com.abc.process.mining.journey.es;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.elasticsearch.core.bulk.OperationType;
+import co.elastic.clients.util.ObjectBuilder;
+import com.abc.process.mining.journey.model.EventRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link CoalescingJourneyWriter}.
+ */
+class CoalescingJourneyWriterTest {
+
+    private final List<BulkRequest> bulks = Collections.synchronizedList(new ArrayList<>());
+    private ElasticsearchClient es;
+    private CoalescingJourneyWriter writer;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws IOException {
+        es = mock(ElasticsearchClient.class);
+        when(es.bulk(any(Function.class))).thenAnswer(inv -> {
+            Function<BulkRequest.Builder, ObjectBuilder<BulkRequest>> fn = inv.getArgument(0);
+            bulks.add(fn.apply(new BulkRequest.Builder()).build());
+            return BulkResponse.of(b -> b.errors(false).took(1).items(List.of()));
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        writer.close();
+    }
+
+    @Test
+    void concurrentUpserts_ofOneJourney_areWrittenAsOneUpdate() throws Exception {
+        writer = new CoalescingJourneyWriter(new JourneyService(es, "journeys"), Duration.ofMillis(500), 4);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+        for (int i = 0; i < 4; i++) {
+            String journeyId = i < 3 ? "J1" : "J2";
+            EventRecord event = event("E" + i);
+            threads.add(Thread.ofPlatform().start(() -> {
+                try {
+                    start.await();
+                    writer.indexAndUpsert(journeyId, event, "events-x");
+                } catch (Throwable t) {
+                    errors.add(t);
+                }
+            }));
+        }
+        start.countDown();
+        for (Thread thread : threads) thread.join();
+
+        assertEquals(List.of(), errors);
+        // 4 pending writes fill the batch, so it goes out without waiting for the window
+        assertEquals(1, bulks.size());
+        List<BulkOperation> ops = bulks.get(0).operations();
+        assertEquals(4, ops.stream().filter(BulkOperation::isIndex).count());
+        assertEquals(List.of("J1", "J2"), ops.stream().filter(BulkOperation::isUpdate)
+                .map(op -> op.update().id()).sorted().toList());
+        assertEquals(2.0, writer.stats().get("coalescing"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void upsert_failsWithItsBatch() throws IOException {
+        when(es.bulk(any(Function.class))).thenThrow(new IOException("es down"));
+        writer = new CoalescingJourneyWriter(new JourneyService(es, "journeys"), Duration.ofMillis(1), 100);
+
+        IOException e = assertThrows(IOException.class, () -> writer.upsertJourney("J1", event("E1")));
+
+        assertEquals("es down", e.getMessage());
+        assertEquals(1L, writer.stats().get("failures"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void indexAndUpsert_failsWhenTheEventIsNotIndexed() throws IOException {
+        when(es.bulk(any(Function.class))).thenReturn(BulkResponse.of(b -> b.errors(true).took(1).items(List.of(
+                BulkResponseItem.of(i -> i.operationType(OperationType.Index).index("events-x").id("E1").status(429)
+                        .error(e -> e.type("es_rejected_execution_exception").reason("queue full"))),
+                BulkResponseItem.of(i -> i.operationType(OperationType.Update).index("journeys").id("J1")
+                        .status(200))))));
+        writer = new CoalescingJourneyWriter(new JourneyService(es, "journeys"), Duration.ofMillis(1), 100);
+
+        IOException e = assertThrows(IOException.class, () -> writer.indexAndUpsert("J1", event("E1"), "events-x"));
+
+        assertTrue(e.getMessage().contains("events-x/E1"), e.getMessage());
+        verify(es, times(1)).bulk(any(Function.class));
+    }
+
+    @Test
+    void close_writesWhatIsPending() throws Exception {
+        writer = new CoalescingJourneyWriter(new JourneyService(es, "journeys"), Duration.ofHours(1), 100);
+        List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+        Thread stitcher = Thread.ofPlatform().start(() -> {
+            try {
+                writer.indexAndUpsert("J1", event("E1"), "events-x");
+            } catch (Throwable t) {
+                errors.add(t);
+            }
+        });
+        while (writer.stats().get("pending").equals(0)) Thread.sleep(1);
+
+        writer.close();
+        stitcher.join();
+
+        assertEquals(List.of(), errors);
+        assertEquals(1, bulks.size());
+        assertEquals(2, bulks.get(0).operations().size());
+        assertThrows(IllegalStateException.class, () -> writer.indexEvent(event("E2"), "events-x"));
+    }
+
+    private static EventRecord event(String eventId) {
+        return new EventRecord(eventId, "Step", List.of("CK1"), Instant.parse("2025-01-01T00:00:00Z"));
+    }
+}
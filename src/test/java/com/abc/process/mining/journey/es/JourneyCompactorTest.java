@@ -0,0 +1,151 @@
+package com.abc.process.mining.journey.es;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.MgetRequest;
+import co.elastic.clients.elasticsearch.core.MgetResponse;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.elasticsearch.core.bulk.OperationType;
+import co.elastic.clients.elasticsearch.core.mget.MultiGetResponseItem;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.util.ObjectBuilder;
+import com.abc.process.mining.journey.store.InMemoryRedirectStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link JourneyCompactor}.
+ */
+class JourneyCompactorTest {
+
+    private static final Clock CLOCK = Clock.fixed(Instant.parse("2024-06-01T00:00:00Z"), ZoneOffset.UTC);
+
+    private final Map<String, Map<String, Object>> journeys = new HashMap<>();
+    private final List<BulkRequest> bulks = new ArrayList<>();
+    private final List<BulkResponse> responses = new ArrayList<>();
+    private final CkJourneyCache cache = new CkJourneyCache(10, Duration.ofMinutes(5), CLOCK);
+    private ElasticsearchClient es;
+    private JourneyCompactor compactor;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws IOException {
+        es = mock(ElasticsearchClient.class);
+        when(es.search(any(Function.class), eq(Map.class))).thenReturn(hits("J2", "J3"));
+        when(es.mget(any(Function.class), eq(Map.class))).thenAnswer(inv -> {
+            Function<MgetRequest.Builder, ObjectBuilder<MgetRequest>> fn = inv.getArgument(0);
+            MgetRequest req = fn.apply(new MgetRequest.Builder()).build();
+            List<MultiGetResponseItem<Map>> items = new ArrayList<>();
+            for (String id : req.ids()) {
+                Map<String, Object> doc = journeys.get(id);
+                items.add(MultiGetResponseItem.<Map>of(i -> i.result(r -> r.index(req.index()).id(id)
+                        .found(doc != null).source(doc))));
+            }
+            return MgetResponse.<Map>of(m -> m.docs(items));
+        });
+        when(es.bulk(any(Function.class))).thenAnswer(inv -> {
+            Function<BulkRequest.Builder, ObjectBuilder<BulkRequest>> fn = inv.getArgument(0);
+            bulks.add(fn.apply(new BulkRequest.Builder()).build());
+            return responses.isEmpty()
+                    ? BulkResponse.of(b -> b.errors(false).took(1).items(List.of()))
+                    : responses.remove(0);
+        });
+
+        InMemoryRedirectStore redirects = new InMemoryRedirectStore();
+        redirects.setRedirect("J3", "J2");
+        redirects.setRedirect("J2", "J1");
+        journeys.put("J2", Map.of(
+                "journeyId", "J2",
+                "cks", List.of("ck-a", "ck-b"),
+                "eventIds", List.of("e2"),
+                "timeline", List.of(Map.of("eventId", "e2", "activity", "pay", "timestamp", "2024-05-01T00:00:00Z")),
+                "firstSeenAt", "2024-05-01T00:00:00Z",
+                "lastSeenAt", "2024-05-01T00:00:00Z"));
+        compactor = new JourneyCompactor(es, redirects, "journeys-v1", "redirects", "ckmap", cache,
+                500, Duration.ofMinutes(10), 0, () -> false, CLOCK);
+    }
+
+    @Test
+    void compact_foldsSourcesIntoRoots_deletesThem_andMarksRedirects() throws IOException {
+        cache.put("ck-a", "J2");
+        cache.put("ck-z", "J1");
+
+        assertEquals(2, compactor.compact());
+
+        assertEquals(3, bulks.size());
+        List<BulkOperation> merges = bulks.get(0).operations();
+        assertEquals(1, merges.size());
+        assertEquals("J1", merges.get(0).update().id());
+        assertEquals("journeys-v1", merges.get(0).update().index());
+        assertTrue(merges.get(0).update().action().script().inline().source()
+                .contains("counters.distinctActivities = activities.size()"));
+
+        List<BulkOperation> cleanups = bulks.get(1).operations();
+        assertEquals(3, cleanups.size());
+        assertEquals("J2", cleanups.get(0).delete().id());
+        assertEquals("ckmap", cleanups.get(1).update().index());
+        assertEquals(Set.of("ck-a", "ck-b"), Set.of(cleanups.get(1).update().id(), cleanups.get(2).update().id()));
+
+        List<BulkOperation> marks = bulks.get(2).operations();
+        assertEquals(List.of("J2", "J3"), marks.stream().map(op -> op.update().id()).toList());
+        assertEquals("redirects", marks.get(0).update().index());
+
+        assertNull(cache.get("ck-a"), "rewritten keys must be read again");
+        assertEquals("J1", cache.get("ck-z"));
+
+        Map<String, Object> stats = compactor.stats();
+        assertEquals(1L, stats.get("merged"));
+        assertEquals(1L, stats.get("deleted"));
+        assertEquals(2L, stats.get("ckRewritten"));
+    }
+
+    @Test
+    void compact_leavesRedirectUnmarked_whenTheMergeFails() throws IOException {
+        responses.add(BulkResponse.of(b -> b.errors(true).took(1).items(List.of(BulkResponseItem.of(i -> i
+                .operationType(OperationType.Update).index("journeys-v1").id("J1").status(429)
+                .error(e -> e.type("es_rejected_execution_exception").reason("queue full")))))));
+
+        assertEquals(1, compactor.compact());
+
+        assertEquals(2, bulks.size());
+        assertEquals(List.of("J3"), bulks.get(1).operations().stream().map(op -> op.update().id()).toList());
+        assertEquals(0L, compactor.stats().get("merged"));
+        assertEquals(1L, compactor.stats().get("failures"));
+    }
+
+    @Test
+    void compact_doesNothing_whileIngestIsHeldBack() throws IOException {
+        compactor = new JourneyCompactor(es, new InMemoryRedirectStore(), "journeys-v1", "redirects", "ckmap",
+                cache,
+                500, Duration.ofMinutes(10), 0, () -> true, CLOCK);
+
+        assertEquals(0, compactor.compact());
+
+        verifyNoInteractions(es);
+        assertEquals(1L, compactor.stats().get("deferred"));
+    }
+
+    private static SearchResponse<Map> hits(String... ids) {
+        List<Hit<Map>> hits = new ArrayList<>();
+        for (String id : ids) hits.add(Hit.<Map>of(h -> h.index("redirects").id(id)));
+        return SearchResponse.<Map>of(r -> r.took(1).timedOut(false)
+                .shards(s -> s.total(1).successful(1).failed(0))
+                .hits(h -> h.hits(hits)));
+    }
+}
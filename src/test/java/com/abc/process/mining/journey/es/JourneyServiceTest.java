@@ -1,8 +1,13 @@
 package com.abc.process.mining.journey.es;
 
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
 import co.elastic.clients.elasticsearch.core.IndexResponse;
 import co.elastic.clients.elasticsearch.core.UpdateResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.util.ObjectBuilder;
+import com.abc.process.mining.journey.model.EventRecord;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -11,8 +16,10 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.io.IOException;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -35,11 +42,7 @@ class JourneyServiceTest {
 
     @Test
     void indexEvent_success() throws IOException {
-        Map<String, Object> doc = Map.of(
-                "eventId", "E1",
-                "activity", "Start",
-                "timestamp", Instant.now().toString()
-        );
+        EventRecord doc = new EventRecord("E1", "Start", List.of(), Instant.now());
 
         IndexResponse mockResp = mock(IndexResponse.class);
         //when(es.index(any())).thenReturn(mockResp);
@@ -51,10 +54,7 @@ class JourneyServiceTest {
 
     @Test
     void indexEvent_throws_when_eventIdMissing() {
-        Map<String, Object> doc = Map.of(
-                "activity", "Start",
-                "timestamp", Instant.now().toString()
-        );
+        EventRecord doc = new EventRecord(null, "Start", List.of(), Instant.now());
 
         assertThrows(IllegalArgumentException.class,
                 () -> svc.indexEvent(doc, "events"));
@@ -63,12 +63,8 @@ class JourneyServiceTest {
 
     @Test
     void upsertJourney_invokesUpdate_withExpectedParams() throws IOException {
-        Map<String, Object> eventDoc = Map.of(
-                "eventId", "E2",
-                "activity", "Check",
-                "timestamp", "2025-01-01T00:00:00Z",
-                "correlationKeys", List.of("CK1", "CK2")
-        );
+        EventRecord eventDoc = new EventRecord("E2", "Check", List.of("CK1", "CK2"),
+                Instant.parse("2025-01-01T00:00:00Z"));
 
         UpdateResponse<Map> mockResp = mock(UpdateResponse.class);
         //when(es.update(any(), eq(Map.class))).thenReturn(mockResp);
@@ -83,4 +79,28 @@ class JourneyServiceTest {
         // (we don't have the real UpdateRequest.Builder, but the call itself is verified)
         assertNotNull(captor.getValue());
     }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void bulkIndexAndUpsert_sendsOneUpdatePerJourney_withAllItsEvents() throws IOException {
+        List<BulkRequest> bulks = new ArrayList<>();
+        when(es.bulk(any(Function.class))).thenAnswer(inv -> {
+            Function<BulkRequest.Builder, ObjectBuilder<BulkRequest>> fn = inv.getArgument(0);
+            bulks.add(fn.apply(new BulkRequest.Builder()).build());
+            return BulkResponse.of(b -> b.errors(false).took(1).items(List.of()));
+        });
+        Instant ts = Instant.parse("2025-01-01T00:00:00Z");
+
+        svc.bulkIndexAndUpsert(Map.of(
+                "J1", List.of(new EventRecord("E1", "A", List.of("CK1"), ts),
+                        new EventRecord("E2", null, List.of("CK1"), ts.plusSeconds(1)),
+                        new EventRecord("E3", "C", List.of("CK2"), ts.plusSeconds(2)))), "events-x");
+
+        List<BulkOperation> ops = bulks.get(0).operations();
+        assertEquals(4, ops.size());
+        assertEquals(3, ops.stream().filter(BulkOperation::isIndex).count());
+        BulkOperation update = ops.get(3);
+        assertEquals("J1", update.update().id());
+        assertEquals("journeys", update.update().index());
+    }
 }
@@ -0,0 +1,52 @@
+package com.abc.process.mining.journey.es;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link KnownCkFilter}.
+ */
+class KnownCkFilterTest {
+
+    @Test
+    void everyKeyMightExist_untilReady() {
+        KnownCkFilter filter = new KnownCkFilter(1_000, 0.01, 1 << 20);
+        filter.add("CK1");
+
+        assertTrue(filter.mightExist("CK2"));
+
+        filter.markReady();
+        assertTrue(filter.mightExist("CK1"));
+        assertFalse(filter.mightExist("CK2"));
+        assertEquals(1L, filter.stats().get("skipped"));
+    }
+
+    @Test
+    void disabled_neverRulesOutKeys() {
+        KnownCkFilter filter = KnownCkFilter.disabled();
+
+        assertTrue(filter.mightExist("CK1"));
+    }
+
+    @Test
+    void save_load_roundTripsKeysAndSnapshotTime(@TempDir Path dir) throws IOException {
+        KnownCkFilter filter = new KnownCkFilter(1_000, 0.01, 1 << 20);
+        filter.add("CK1");
+        Instant takenAt = Instant.parse("2024-05-01T10:00:00Z");
+        Path file = dir.resolve("ckbloom.bin");
+        filter.save(file, takenAt);
+
+        KnownCkFilter loaded = new KnownCkFilter(1_000, 0.01, 1 << 20);
+        assertEquals(takenAt, loaded.load(file));
+        loaded.markReady();
+
+        assertTrue(loaded.mightExist("CK1"));
+        assertFalse(loaded.mightExist("CK2"));
+    }
+}
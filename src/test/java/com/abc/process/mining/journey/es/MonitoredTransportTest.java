@@ -0,0 +1,94 @@
+package com.abc.process.mining.journey.es;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.ErrorResponse;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.elasticsearch.core.bulk.OperationType;
+import co.elastic.clients.transport.ElasticsearchTransport;
+import co.elastic.clients.transport.rest_client.RestClientOptions;
+import org.elasticsearch.client.RequestOptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link MonitoredTransport} and the {@link ElasticsearchLoad} it feeds.
+ */
+class MonitoredTransportTest {
+
+    private ElasticsearchTransport delegate;
+    private ElasticsearchLoad load;
+    private MonitoredTransport transport;
+
+    @BeforeEach
+    void setup() {
+        delegate = mock(ElasticsearchTransport.class);
+        load = new ElasticsearchLoad();
+        transport = new MonitoredTransport(delegate, load);
+    }
+
+    @Test
+    void performRequest_recordsCompletedRequest() throws Exception {
+        when(delegate.performRequest(any(), any(), any())).thenReturn("ok");
+
+        assertEquals("ok", transport.performRequest("req", null, null));
+
+        ElasticsearchLoad.Sample sample = load.sample();
+        assertEquals(0, sample.inFlight());
+        assertEquals(1, sample.requests());
+        assertEquals(0.0, sample.throttledRatio());
+        // The window is reset by sampling
+        assertEquals(0, load.sample().requests());
+    }
+
+    @Test
+    void performRequest_countsBulkItemRejections() throws Exception {
+        BulkResponse bulk = BulkResponse.of(b -> b.errors(true).took(1).items(
+                BulkResponseItem.of(i -> i.operationType(OperationType.Update).index("ckmap").status(200)),
+                BulkResponseItem.of(i -> i.operationType(OperationType.Update).index("ckmap").status(429))));
+        when(delegate.performRequest(any(), any(), any())).thenReturn(bulk);
+        when(delegate.performRequest(eq("plain"), any(), any())).thenReturn("ok");
+
+        transport.performRequest("bulk", null, null);
+        transport.performRequest("plain", null, null);
+
+        assertEquals(0.5, load.sample().throttledRatio());
+    }
+
+    @Test
+    void performRequest_countsRejectedRequest_andReleasesInFlight() throws Exception {
+        ElasticsearchException rejected = new ElasticsearchException("bulk", ErrorResponse.of(e -> e
+                .status(429).error(c -> c.type("es_rejected_execution_exception").reason("queue full"))));
+        when(delegate.performRequest(any(), any(), any())).thenThrow(rejected).thenThrow(new IOException("down"));
+
+        assertThrows(ElasticsearchException.class, () -> transport.performRequest("a", null, null));
+        assertThrows(IOException.class, () -> transport.performRequest("b", null, null));
+
+        ElasticsearchLoad.Sample sample = load.sample();
+        assertEquals(0, sample.inFlight());
+        assertEquals(2, sample.requests());
+        assertEquals(0.5, sample.throttledRatio());
+    }
+
+    @Test
+    void maintenanceRequests_areLeftOutOfTheLoad() throws Exception {
+        when(delegate.options()).thenReturn(new RestClientOptions(RequestOptions.DEFAULT));
+        when(delegate.performRequest(any(), any(), any())).thenReturn("ok");
+        ElasticsearchClient maintenance = MonitoredTransport.maintenance(new ElasticsearchClient(transport));
+
+        assertSame(transport, maintenance._transport());
+        assertEquals("ok", transport.performRequest("deleteByQuery", null, maintenance._transportOptions()));
+        transport.performRequest("bulk", null, null);
+
+        ElasticsearchLoad.Sample sample = load.sample();
+        assertEquals(1, sample.requests());
+        assertEquals(0, sample.inFlight());
+    }
+}
@@ -1,8 +1,15 @@
 package com.abc.process.mining.journey.es;
 
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
 import co.elastic.clients.elasticsearch.core.GetResponse;
 import co.elastic.clients.elasticsearch.core.IndexResponse;
+import co.elastic.clients.elasticsearch.core.MgetRequest;
+import co.elastic.clients.elasticsearch.core.MgetResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.mget.MultiGetResponseItem;
+import co.elastic.clients.util.ObjectBuilder;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -10,7 +17,7 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.io.IOException;
-import java.util.Map;
+import java.util.*;
 import java.util.function.Function;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -81,4 +88,57 @@ class RedirectServiceTest {
         String out = service.resolve("J1");
         assertEquals("J1", out);
     }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void resolveAll_followsChainsInBatches_andCollapsesThem() throws IOException {
+        Map<String, String> redirects = Map.of("J1", "J2", "J2", "J3", "J3", "J4", "J5", "J4");
+        List<List<String>> rounds = new ArrayList<>();
+        List<BulkRequest> bulks = new ArrayList<>();
+        stubIndex(redirects, rounds, bulks);
+
+        Map<String, String> out = service.resolveAll(List.of("J1", "J5", "J6"));
+
+        assertEquals(Map.of("J1", "J4", "J5", "J4", "J6", "J6"), out);
+        // J1,J5,J6 -> J2,J4 -> J3 -> (J4 already read)
+        assertEquals(3, rounds.size());
+        assertEquals(1, bulks.size());
+        Map<String, String> written = new HashMap<>();
+        for (BulkOperation op : bulks.get(0).operations()) {
+            written.put(op.index().id(), ((Map<String, Object>) op.index().document()).get("to").toString());
+        }
+        assertEquals(Map.of("J1", "J4", "J2", "J4"), written);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void resolveAll_stopsAtCycles_withoutWriting() throws IOException {
+        List<BulkRequest> bulks = new ArrayList<>();
+        stubIndex(Map.of("J1", "J2", "J2", "J1"), new ArrayList<>(), bulks);
+
+        assertEquals(Map.of("J1", "J1"), service.resolveAll(List.of("J1")));
+        assertTrue(bulks.isEmpty());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void stubIndex(Map<String, String> redirects, List<List<String>> rounds, List<BulkRequest> bulks)
+            throws IOException {
+        when(es.mget(any(Function.class), eq(Map.class))).thenAnswer(inv -> {
+            Function<MgetRequest.Builder, ObjectBuilder<MgetRequest>> fn = inv.getArgument(0);
+            MgetRequest req = fn.apply(new MgetRequest.Builder()).build();
+            rounds.add(req.ids());
+            List<MultiGetResponseItem<Map>> items = new ArrayList<>();
+            for (String id : req.ids()) {
+                String to = redirects.get(id);
+                items.add(MultiGetResponseItem.<Map>of(it -> it.result(r -> r.index("redirects").id(id)
+                        .found(to != null).source(to == null ? null : Map.of("from", id, "to", to)))));
+            }
+            return MgetResponse.<Map>of(m -> m.docs(items));
+        });
+        lenient().when(es.bulk(any(Function.class))).thenAnswer(inv -> {
+            Function<BulkRequest.Builder, ObjectBuilder<BulkRequest>> fn = inv.getArgument(0);
+            bulks.add(fn.apply(new BulkRequest.Builder()).build());
+            return BulkResponse.of(b -> b.errors(false).took(1).items(List.of()));
+        });
+    }
 }
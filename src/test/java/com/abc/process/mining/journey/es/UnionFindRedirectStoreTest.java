@@ -0,0 +1,124 @@
+package com.abc.process.mining.journey.es;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.util.*;
+import java.util.function.BiConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link UnionFindRedirectStore}.
+ */
+class UnionFindRedirectStoreTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void resolve_followsChainsLoadedFromTheIndex() throws IOException {
+        RedirectService index = mock(RedirectService.class);
+        when(index.scan(isNull(), any(BiConsumer.class))).thenAnswer(inv -> {
+            BiConsumer<String, String> redirects = inv.getArgument(1);
+            redirects.accept("A", "B");
+            redirects.accept("B", "C");
+            return 2L;
+        });
+        UnionFindRedirectStore store = new UnionFindRedirectStore(index, Clock.systemUTC());
+
+        store.load();
+
+        assertEquals("C", store.resolve("A"));
+        assertEquals(Map.of("A", "C", "B", "C", "X", "X"), store.resolveAll(List.of("A", "B", "X")));
+        verify(index, never()).resolve(anyString());
+        verify(index, never()).resolveAll(anyCollection());
+    }
+
+    @Test
+    void resolve_fallsBackToTheIndex_untilLoaded() throws IOException {
+        RedirectService index = mock(RedirectService.class);
+        when(index.resolve("A")).thenReturn("B");
+        UnionFindRedirectStore store = new UnionFindRedirectStore(index, Clock.systemUTC());
+
+        assertEquals("B", store.resolve("A"));
+        assertEquals(1L, store.stats().get("fallbacks"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void setRedirect_recordsRootToRoot_andWritesAsynchronously() throws IOException {
+        RedirectService index = mock(RedirectService.class);
+        UnionFindRedirectStore store = new UnionFindRedirectStore(index, Clock.systemUTC());
+        List<String> seen = new ArrayList<>();
+        store.addListener((from, to) -> seen.add(from + "->" + to));
+
+        store.setRedirect("A", "B");
+        store.setRedirect("A", "C");  // A already redirects to B: B is the one to redirect
+        store.setRedirect("B", "C");  // nothing new
+
+        assertEquals("C", store.resolve("A"));
+        assertEquals(List.of("A->B", "B->C", "A->C"), seen);
+        verify(index, never()).setRedirects(anyMap());
+
+        assertEquals(2, store.flush());
+        Map<String, String> expected = new LinkedHashMap<>();
+        expected.put("A", "B");
+        expected.put("B", "C");
+        verify(index).setRedirects(expected);
+        assertEquals(0, store.flush());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void refresh_writesTheSmallestRoot_whenInstancesRedirectTheSameJourneyApart() throws IOException {
+        // one document per source journey, as in the redirects index
+        Map<String, String> docs = new LinkedHashMap<>();
+        RedirectService index = mock(RedirectService.class);
+        doAnswer(inv -> {
+            docs.putAll(inv.getArgument(0));
+            return null;
+        }).when(index).setRedirects(anyMap());
+        when(index.scan(any(), any(BiConsumer.class))).thenAnswer(inv -> {
+            BiConsumer<String, String> redirects = inv.getArgument(1);
+            new LinkedHashMap<>(docs).forEach(redirects);
+            return (long) docs.size();
+        });
+        UnionFindRedirectStore first = new UnionFindRedirectStore(index, Clock.systemUTC());
+        UnionFindRedirectStore second = new UnionFindRedirectStore(index, Clock.systemUTC());
+        first.load();
+        second.load();
+
+        first.setRedirect("C", "A");
+        first.flush();
+        second.setRedirect("C", "B");
+        second.flush();  // overwrites C->A
+        first.refresh();
+
+        assertEquals("A", first.resolve("B"));
+        assertEquals(1, first.flush());
+        assertEquals(Map.of("C", "B", "B", "A"), docs);
+
+        second.refresh();
+        assertEquals("A", second.resolve("B"));
+        assertEquals("A", second.resolve("C"));
+        assertEquals(0, second.flush());
+
+        UnionFindRedirectStore restarted = new UnionFindRedirectStore(index, Clock.systemUTC());
+        restarted.load();
+        assertEquals(Map.of("A", "A", "B", "A", "C", "A"), restarted.resolveAll(List.of("A", "B", "C")));
+    }
+
+    @Test
+    void flush_keepsRedirects_whenTheWriteFails() throws IOException {
+        RedirectService index = mock(RedirectService.class);
+        doThrow(new IOException("es down")).doNothing().when(index).setRedirects(anyMap());
+        UnionFindRedirectStore store = new UnionFindRedirectStore(index, Clock.systemUTC());
+        store.setRedirect("A", "B");
+
+        assertThrows(IOException.class, store::flush);
+        assertEquals(1, store.flush());
+        assertEquals(1L, store.stats().get("writeFailures"));
+    }
+}
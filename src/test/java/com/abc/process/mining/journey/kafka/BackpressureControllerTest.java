@@ -0,0 +1,77 @@
+package com.abc.process.mining.journey.kafka;
+
+import com.abc.process.mining.journey.es.ElasticsearchLoad;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link BackpressureController}.
+ */
+class BackpressureControllerTest {
+
+    private ElasticsearchLoad load;
+    private MessageListenerContainer container;
+    private BackpressureController controller;
+
+    @BeforeEach
+    void setup() {
+        load = mock(ElasticsearchLoad.class);
+        container = mock(MessageListenerContainer.class);
+        KafkaListenerEndpointRegistry registry = mock(KafkaListenerEndpointRegistry.class);
+        when(registry.getListenerContainers()).thenReturn(List.of(container));
+        controller = new BackpressureController(registry, load,
+                new BackpressurePolicy(10, 2, 1000, 200, 0.1, 0.0));
+    }
+
+    @Test
+    void check_pausesWhenLatencyCrossesThreshold_andResumesAfterRecovery() {
+        when(load.sample()).thenReturn(
+                new ElasticsearchLoad.Sample(3, 50, 1500, 0),
+                new ElasticsearchLoad.Sample(3, 10, 400, 0),
+                new ElasticsearchLoad.Sample(0, 0, 0, 0));
+
+        controller.check();
+        assertTrue(controller.isPaused());
+        verify(container).pause();
+
+        // Below the pause threshold but above the resume threshold: stay paused
+        controller.check();
+        assertTrue(controller.isPaused());
+        verify(container, never()).resume();
+
+        controller.check();
+        assertFalse(controller.isPaused());
+        verify(container).resume();
+        assertEquals(1L, controller.metrics().get("pauses"));
+    }
+
+    @Test
+    void check_pausesOnThrottlingAndInFlight() {
+        when(load.sample()).thenReturn(new ElasticsearchLoad.Sample(0, 100, 10, 0.2));
+        controller.check();
+        assertTrue(controller.isPaused());
+
+        // Already paused: no second pause call
+        when(load.sample()).thenReturn(new ElasticsearchLoad.Sample(12, 100, 10, 0));
+        controller.check();
+        verify(container, times(1)).pause();
+    }
+
+    @Test
+    void check_staysRunning_underThresholds() {
+        when(load.sample()).thenReturn(new ElasticsearchLoad.Sample(5, 100, 300, 0.01));
+
+        controller.check();
+
+        assertFalse(controller.isPaused());
+        verifyNoInteractions(container);
+        assertEquals(300.0, controller.metrics().get("avgLatencyMillis"));
+    }
+}
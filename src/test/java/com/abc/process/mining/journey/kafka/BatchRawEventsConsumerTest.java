@@ -0,0 +1,205 @@
+package com.abc.process.mining.journey.kafka;
+
+import com.abc.process.mining.journey.es.CkMapService;
+import com.abc.process.mining.journey.es.JourneyService;
+import com.abc.process.mining.journey.es.RedirectService;
+import com.abc.process.mining.journey.model.EventRecord;
+import com.abc.process.mining.journey.stitch.EventDeduplicator;
+import com.abc.process.mining.journey.stitch.JourneyIdGenerator;
+import com.abc.process.mining.journey.stitch.SuperNodeGuard;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link BatchRawEventsConsumer}.
+ */
+class BatchRawEventsConsumerTest {
+
+    private CkMapService ckMapService;
+    private JourneyService journeyService;
+    private RedirectService redirectService;
+    private FailedEventRouter router;
+    private EventDeduplicator deduplicator;
+    private JourneyChangePublisher changes;
+    private BatchRawEventsConsumer consumer;
+
+    @BeforeEach
+    void setup() throws Exception {
+        ckMapService = mock(CkMapService.class);
+        journeyService = mock(JourneyService.class);
+        redirectService = mock(RedirectService.class);
+        router = mock(FailedEventRouter.class);
+        deduplicator = new EventDeduplicator(Duration.ofHours(1), 100, 100, Clock.systemUTC());
+        changes = mock(JourneyChangePublisher.class);
+        consumer = new BatchRawEventsConsumer(ckMapService, journeyService, redirectService, router, deduplicator,
+                SuperNodeGuard.disabled(), JourneyIdGenerator.random(), changes);
+
+        // Claims succeed as requested and no foreign redirects exist
+        when(ckMapService.claimCks(anyMap())).thenAnswer(inv -> new HashMap<>(inv.<Map<String, String>>getArgument(0)));
+        when(redirectService.resolveAll(anyCollection())).thenAnswer(inv -> {
+            Map<String, String> out = new HashMap<>();
+            for (Object id : inv.<Collection<?>>getArgument(0)) out.put((String) id, (String) id);
+            return out;
+        });
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void consume_looksUpAllCksOnce_andWritesOneBulk() throws Exception {
+        when(ckMapService.mgetJourneyIds(anyCollection())).thenReturn(Map.of("CK1", "J-1"));
+
+        consumer.consume(List.of(
+                record(0, "E1", "CK1", "CK2"),
+                record(1, "E2", "CK2", "CK3"),
+                record(2, "E3", "CK9")));
+
+        ArgumentCaptor<Collection<String>> lookup = ArgumentCaptor.forClass(Collection.class);
+        verify(ckMapService, times(1)).mgetJourneyIds(lookup.capture());
+        assertEquals(Set.of("CK1", "CK2", "CK3", "CK9"), new HashSet<>(lookup.getValue()));
+
+        ArgumentCaptor<Map<String, List<EventRecord>>> written = ArgumentCaptor.forClass(Map.class);
+        verify(journeyService, times(1)).bulkIndexAndUpsert(written.capture(), startsWith("events-"));
+        Map<String, List<EventRecord>> byJourney = written.getValue();
+
+        // E1 and E2 are chained through CK2 onto the existing journey, E3 starts a new one
+        assertEquals(2, byJourney.size());
+        assertEquals(List.of("E1", "E2"), byJourney.get("J-1").stream().map(EventRecord::getEventId).toList());
+        verify(ckMapService, never()).claimCk(anyString(), anyString());
+
+        // one change record per journey and poll
+        verify(changes).appended("J-1", byJourney.get("J-1"));
+        verify(changes).created(argThat(id -> !id.equals("J-1")), argThat(events -> events.size() == 1));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void consume_mergesJourneysBridgedWithinPoll_intoSmallestId() throws Exception {
+        when(ckMapService.mgetJourneyIds(anyCollection())).thenReturn(Map.of("CKA", "J-B", "CKB", "J-A"));
+
+        consumer.consume(List.of(record(0, "E1", "CKA", "CKB")));
+
+        ArgumentCaptor<Map<String, String>> redirects = ArgumentCaptor.forClass(Map.class);
+        verify(redirectService).setRedirects(redirects.capture());
+        assertEquals(Map.of("J-B", "J-A"), redirects.getValue());
+
+        ArgumentCaptor<Map<String, List<EventRecord>>> written = ArgumentCaptor.forClass(Map.class);
+        verify(journeyService).bulkIndexAndUpsert(written.capture(), anyString());
+        assertEquals(Set.of("J-A"), written.getValue().keySet());
+        verify(changes).merged(Map.of("J-B", "J-A"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void consume_mergesRootsOnly_whenAnOwnerWasRedirectedBefore() throws Exception {
+        when(ckMapService.mgetJourneyIds(anyCollection())).thenReturn(Map.of("CKA", "J-5", "CKB", "J-3"));
+        when(redirectService.resolveAll(anyCollection())).thenAnswer(inv -> {
+            Map<String, String> out = new HashMap<>();
+            for (Object id : inv.<Collection<?>>getArgument(0)) out.put((String) id, id.equals("J-5") ? "J-1" : (String) id);
+            return out;
+        });
+
+        consumer.consume(List.of(record(0, "E1", "CKA", "CKB")));
+
+        // J-5 -> J-1 stays as it is; J-3 joins J-1 rather than J-5 being pointed at J-3
+        ArgumentCaptor<Map<String, String>> redirects = ArgumentCaptor.forClass(Map.class);
+        verify(redirectService).setRedirects(redirects.capture());
+        assertEquals(Map.of("J-3", "J-1"), redirects.getValue());
+        verify(ckMapService).claimCks(Map.of("CKA", "J-1", "CKB", "J-1"));
+
+        ArgumentCaptor<Map<String, List<EventRecord>>> written = ArgumentCaptor.forClass(Map.class);
+        verify(journeyService).bulkIndexAndUpsert(written.capture(), anyString());
+        assertEquals(Set.of("J-1"), written.getValue().keySet());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void consume_mergesWithTheRootOfAConcurrentClaimWinner() throws Exception {
+        when(ckMapService.mgetJourneyIds(anyCollection())).thenReturn(Map.of("CK1", "J-9"));
+        when(ckMapService.claimCks(anyMap())).thenReturn(Map.of("CK1", "J-9", "CK2", "J-7"));
+        when(redirectService.resolveAll(anyCollection())).thenAnswer(inv -> {
+            Map<String, String> out = new HashMap<>();
+            for (Object id : inv.<Collection<?>>getArgument(0)) out.put((String) id, id.equals("J-7") ? "J-0" : (String) id);
+            return out;
+        });
+
+        consumer.consume(List.of(record(0, "E1", "CK1", "CK2")));
+
+        ArgumentCaptor<Map<String, String>> redirects = ArgumentCaptor.forClass(Map.class);
+        verify(redirectService).setRedirects(redirects.capture());
+        assertEquals(Map.of("J-9", "J-0"), redirects.getValue());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void consume_mergesWithConcurrentClaimWinner() throws Exception {
+        when(ckMapService.mgetJourneyIds(anyCollection())).thenReturn(Map.of("CK1", "J-9"));
+        when(ckMapService.claimCks(anyMap())).thenReturn(Map.of("CK1", "J-9", "CK2", "J-0"));
+
+        consumer.consume(List.of(record(0, "E1", "CK1", "CK2")));
+
+        ArgumentCaptor<Map<String, String>> redirects = ArgumentCaptor.forClass(Map.class);
+        verify(redirectService).setRedirects(redirects.capture());
+        assertEquals(Map.of("J-9", "J-0"), redirects.getValue());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void consume_deadLettersInvalidRecord_andStitchesTheRest() throws Exception {
+        when(ckMapService.mgetJourneyIds(anyCollection())).thenReturn(Map.of());
+        when(router.deadLetter(any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+        EventRecord noCks = new EventRecord("E2", "X", null, Instant.parse("2025-01-01T00:00:00Z"));
+        ConsumerRecord<String, EventRecord> invalid = new ConsumerRecord<>("events.raw", 0, 1, null, noCks);
+
+        consumer.consume(List.of(record(0, "E1", "CK1"), invalid));
+
+        verify(router).deadLetter(same(invalid), isA(IllegalArgumentException.class));
+        ArgumentCaptor<Map<String, List<EventRecord>>> written = ArgumentCaptor.forClass(Map.class);
+        verify(journeyService).bulkIndexAndUpsert(written.capture(), anyString());
+        assertEquals(List.of("E1"), written.getValue().values().stream().flatMap(List::stream)
+                .map(EventRecord::getEventId).toList());
+    }
+
+    @Test
+    void consume_routesWholePollForRetry_whenElasticsearchFails() throws Exception {
+        when(ckMapService.mgetJourneyIds(anyCollection())).thenThrow(new IOException("es down"));
+        when(router.route(any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        assertDoesNotThrow(() -> consumer.consume(List.of(record(0, "E1", "CK1"), record(1, "E2", "CK2"))));
+
+        verify(router, times(2)).route(any(), isA(IOException.class));
+        verifyNoInteractions(journeyService);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void consume_skipsRedeliveredAndRepeatedEvents() throws Exception {
+        when(ckMapService.mgetJourneyIds(anyCollection())).thenReturn(Map.of());
+        consumer.consume(List.of(record(0, "E1", "CK1")));
+
+        // E1 redelivered, E2 twice in the same poll
+        consumer.consume(List.of(record(0, "E1", "CK1"), record(1, "E2", "CK2"), record(2, "E2", "CK2")));
+
+        ArgumentCaptor<Map<String, List<EventRecord>>> written = ArgumentCaptor.forClass(Map.class);
+        verify(journeyService, times(2)).bulkIndexAndUpsert(written.capture(), anyString());
+        assertEquals(List.of("E2"), written.getValue().values().stream().flatMap(List::stream)
+                .map(EventRecord::getEventId).toList());
+    }
+
+    private static ConsumerRecord<String, EventRecord> record(long offset, String eventId, String... cks) {
+        EventRecord event = new EventRecord(eventId, "Step", List.of(cks), Instant.parse("2025-01-01T00:00:00Z"));
+        return new ConsumerRecord<>("events.raw", 0, offset, null, event);
+    }
+}
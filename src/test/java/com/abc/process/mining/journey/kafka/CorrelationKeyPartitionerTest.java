@@ -0,0 +1,71 @@
+package com.abc.process.mining.journey.kafka;
+
+import com.abc.process.mining.journey.model.EventRecord;
+import com.abc.process.mining.journey.util.Hashing;
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.PartitionInfo;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link CorrelationKeyPartitioner}.
+ */
+class CorrelationKeyPartitionerTest {
+
+    private final CorrelationKeyPartitioner partitioner = new CorrelationKeyPartitioner();
+    private final Cluster cluster = cluster("events.raw", 6);
+
+    @Test
+    void canonicalKey_ignoresKeyOrder() {
+        assertEquals(Hashing.canonicalKey(List.of("order:1", "cust:7", "ship:3")),
+                Hashing.canonicalKey(List.of("ship:3", "order:1", "cust:7")));
+        assertNull(Hashing.canonicalKey(List.of()));
+    }
+
+    @Test
+    void partition_keyedRecord_matchesDefaultMurmurPlacement() {
+        byte[] key = "CK1".getBytes(StandardCharsets.UTF_8);
+
+        int partition = partitioner.partition("events.raw", "CK1", key, "{}", null, cluster);
+
+        assertEquals(CorrelationKeyPartitioner.partition(key, 6), partition);
+    }
+
+    @Test
+    void partition_keylessEvent_usesCanonicalKeyOfPayload() {
+        String json = "{\"eventId\":\"E1\",\"correlationKeys\":[\"b\",\"a\"]}";
+        String ck = Hashing.canonicalKey(List.of("a", "b"));
+        int expected = CorrelationKeyPartitioner.partition(ck.getBytes(StandardCharsets.UTF_8), 6);
+
+        assertEquals(expected, partitioner.partition("events.raw", null, null, json,
+                json.getBytes(StandardCharsets.UTF_8), cluster));
+        EventRecord event = new EventRecord("E1", "X", List.of("a", "b"), Instant.EPOCH);
+        assertEquals(expected, partitioner.partition("events.raw", null, null, event, null, cluster));
+    }
+
+    @Test
+    void partition_keylessGarbage_staysInRange() {
+        byte[] garbage = "not json".getBytes(StandardCharsets.UTF_8);
+
+        int partition = partitioner.partition("events.raw", null, null, "not json", garbage, cluster);
+
+        assertTrue(partition >= 0 && partition < 6);
+    }
+
+    private static Cluster cluster(String topic, int partitions) {
+        Node node = new Node(0, "localhost", 9092);
+        List<PartitionInfo> infos = new ArrayList<>();
+        for (int p = 0; p < partitions; p++) {
+            infos.add(new PartitionInfo(topic, p, node, new Node[]{node}, new Node[]{node}));
+        }
+        return new Cluster("test", List.of(node), infos, Set.of(), Set.of());
+    }
+}
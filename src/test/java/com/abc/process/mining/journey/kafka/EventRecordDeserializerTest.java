@@ -0,0 +1,69 @@
+package com.abc.process.mining.journey.kafka;
+
+import com.abc.process.mining.journey.model.EventRecord;
+import org.apache.kafka.common.errors.SerializationException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link EventRecordDeserializer}.
+ */
+class EventRecordDeserializerTest {
+
+    private final EventRecordDeserializer deserializer = new EventRecordDeserializer();
+
+    @Test
+    void deserialize_readsAllFields_andSkipsUnknownOnes() {
+        EventRecord event = read("""
+                {"eventId":"E1","extra":{"nested":[1,2,{"x":null}]},"activity":"Credit Check 1",
+                 "correlationKeys":["CK11","CK12"],"timestamp":"2025-08-15T20:10:00Z","n":42}
+                """);
+
+        assertEquals("E1", event.getEventId());
+        assertEquals("Credit Check 1", event.getActivity());
+        assertEquals(List.of("CK11", "CK12"), event.getCorrelationKeys());
+        assertEquals(Instant.parse("2025-08-15T20:10:00Z"), event.getTimestamp());
+    }
+
+    @Test
+    void deserialize_growsKeyBuffer_andKeepsPreviousListsIntact() {
+        StringBuilder keys = new StringBuilder();
+        for (int i = 0; i < 20; i++) keys.append(i == 0 ? "" : ",").append("\"CK").append(i).append('"');
+        EventRecord first = read("{\"eventId\":\"E1\",\"correlationKeys\":[" + keys + "]}");
+        EventRecord second = read("{\"eventId\":\"E2\",\"correlationKeys\":[\"A\",null,\"B\"]}");
+
+        assertEquals(20, first.getCorrelationKeys().size());
+        assertEquals("CK19", first.getCorrelationKeys().get(19));
+        assertEquals(List.of("A", "B"), second.getCorrelationKeys());
+    }
+
+    @Test
+    void deserialize_leavesMissingFieldsNull() {
+        EventRecord event = read("{\"activity\":\"X\",\"eventId\":null}");
+
+        assertNull(event.getEventId());
+        assertNull(event.getCorrelationKeys());
+        assertNull(event.getTimestamp());
+    }
+
+    @Test
+    void deserialize_returnsNull_forTombstone() {
+        assertNull(deserializer.deserialize("events.raw", null));
+    }
+
+    @Test
+    void deserialize_throws_onMalformedPayload() {
+        assertThrows(SerializationException.class, () -> read("{\"eventId\":"));
+        assertThrows(SerializationException.class, () -> read("[1,2]"));
+        assertThrows(SerializationException.class, () -> read("{\"timestamp\":\"yesterday\"}"));
+    }
+
+    private EventRecord read(String json) {
+        return deserializer.deserialize("events.raw", json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,106 @@
+package com.abc.process.mining.journey.kafka;
+
+import com.abc.process.mining.journey.model.EventRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link FailedEventRouter}.
+ */
+class FailedEventRouterTest {
+
+    private KafkaTemplate<String, String> kafkaTemplate;
+    private FailedEventRouter router;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setup() {
+        kafkaTemplate = mock(KafkaTemplate.class);
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(CompletableFuture.completedFuture(null));
+        router = new FailedEventRouter(kafkaTemplate, List.of(Duration.ofSeconds(1), Duration.ofSeconds(10)));
+    }
+
+    @Test
+    void retryTopics_oneTopicPerTier() {
+        assertEquals(List.of("events.raw.retry-1", "events.raw.retry-2"), router.retryTopics());
+    }
+
+    @Test
+    void route_sendsFreshFailureToFirstTier_withDueTime() {
+        long before = System.currentTimeMillis();
+
+        router.route(record(), new IOException("es down"));
+
+        ProducerRecord<String, String> sent = sent();
+        assertEquals("events.raw.retry-1", sent.topic());
+        assertEquals("CK1", sent.key());
+        assertTrue(sent.value().contains("\"eventId\":\"E1\""));
+        assertEquals(1, ByteBuffer.wrap(sent.headers().lastHeader(FailedEventRouter.ATTEMPT_HEADER).value()).getInt());
+        long dueAt = ByteBuffer.wrap(sent.headers().lastHeader(FailedEventRouter.DUE_AT_HEADER).value()).getLong();
+        assertTrue(dueAt >= before + 1000);
+        assertEquals("events.raw-0@5",
+                new String(sent.headers().lastHeader(FailedEventRouter.ORIGIN_HEADER).value(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void route_movesRetriedRecordToNextTier_andThenToDlq() {
+        ConsumerRecord<String, EventRecord> second = retried(1);
+        router.route(second, new IOException("es down"));
+        assertEquals("events.raw.retry-2", sent().topic());
+
+        reset(kafkaTemplate);
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(CompletableFuture.completedFuture(null));
+        router.route(retried(2), new IOException("es down"));
+        assertEquals(FailedEventRouter.DLQ_TOPIC, sent().topic());
+    }
+
+    @Test
+    void route_deadLettersInvalidEvents_immediately() {
+        router.route(record(), new IllegalArgumentException("correlationKeys missing"));
+
+        assertEquals(FailedEventRouter.DLQ_TOPIC, sent().topic());
+    }
+
+    @Test
+    void route_deadLettersUndeserializableRecords() {
+        router.route(new ConsumerRecord<>("events.raw", 0, 7, "k", null), new IOException("ignored"));
+
+        ProducerRecord<String, String> sent = sent();
+        assertEquals(FailedEventRouter.DLQ_TOPIC, sent.topic());
+        assertNull(sent.value());
+    }
+
+    @SuppressWarnings("unchecked")
+    private ProducerRecord<String, String> sent() {
+        ArgumentCaptor<ProducerRecord<String, String>> captor = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(kafkaTemplate).send(captor.capture());
+        return captor.getValue();
+    }
+
+    private static ConsumerRecord<String, EventRecord> record() {
+        EventRecord event = new EventRecord("E1", "Step", List.of("CK1"), Instant.parse("2025-01-01T00:00:00Z"));
+        return new ConsumerRecord<>("events.raw", 0, 5, "CK1", event);
+    }
+
+    private static ConsumerRecord<String, EventRecord> retried(int attempt) {
+        ConsumerRecord<String, EventRecord> record = record();
+        record.headers().add(FailedEventRouter.ATTEMPT_HEADER, ByteBuffer.allocate(Integer.BYTES).putInt(attempt).array());
+        return record;
+    }
+}
@@ -0,0 +1,87 @@
+package com.abc.process.mining.journey.kafka;
+
+import com.abc.process.mining.journey.model.EventRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link JourneyChangePublisher}.
+ */
+class JourneyChangePublisherTest {
+
+    private KafkaTemplate<String, String> kafkaTemplate;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        kafkaTemplate = mock(KafkaTemplate.class);
+        when(kafkaTemplate.send(anyString(), anyString(), anyString()))
+                .thenReturn(CompletableFuture.completedFuture(mock(SendResult.class)));
+    }
+
+    @Test
+    void appended_publishesOneRecordPerEvent_keyedByJourneyAndEvent() {
+        JourneyChangePublisher publisher = new JourneyChangePublisher(kafkaTemplate, true, "journeys.changes");
+
+        publisher.appended("J-1", List.of(event("E1", "Start"), event("E2", "Pay")));
+
+        // distinct keys: compaction must not drop the earlier event of the journey
+        verify(kafkaTemplate).send("journeys.changes", "J-1:E1",
+                "{\"type\":\"appended\",\"journeyId\":\"J-1\",\"eventId\":\"E1\",\"activity\":\"Start\","
+                        + "\"timestamp\":\"2025-01-01T00:00:00Z\"}");
+        verify(kafkaTemplate).send("journeys.changes", "J-1:E2",
+                "{\"type\":\"appended\",\"journeyId\":\"J-1\",\"eventId\":\"E2\",\"activity\":\"Pay\","
+                        + "\"timestamp\":\"2025-01-01T00:00:00Z\"}");
+        assertEquals(2L, publisher.stats().get("published"));
+    }
+
+    @Test
+    void merged_publishesOneRecordPerMergedJourney() {
+        JourneyChangePublisher publisher = new JourneyChangePublisher(kafkaTemplate, true, "journeys.changes");
+        Map<String, String> merges = new LinkedHashMap<>();
+        merges.put("J-B", "J-A");
+        merges.put("J-C", "J-A");
+
+        publisher.merged(merges);
+
+        verify(kafkaTemplate).send("journeys.changes", "J-B", "{\"type\":\"merged\",\"journeyId\":\"J-B\",\"into\":\"J-A\"}");
+        verify(kafkaTemplate).send("journeys.changes", "J-C", "{\"type\":\"merged\",\"journeyId\":\"J-C\",\"into\":\"J-A\"}");
+    }
+
+    @Test
+    void failedSends_areCounted() {
+        when(kafkaTemplate.send(anyString(), anyString(), anyString()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("broker down")));
+        JourneyChangePublisher publisher = new JourneyChangePublisher(kafkaTemplate, true, "journeys.changes");
+
+        assertDoesNotThrow(() -> publisher.created("J-1", List.of(event("E1", "Start"))));
+
+        assertEquals(1L, publisher.stats().get("failed"));
+    }
+
+    @Test
+    void disabled_publishesNothing() {
+        JourneyChangePublisher publisher = new JourneyChangePublisher(kafkaTemplate, false, "journeys.changes");
+
+        publisher.created("J-1", List.of(event("E1", "Start")));
+        publisher.merged(Map.of("J-B", "J-A"));
+
+        verifyNoInteractions(kafkaTemplate);
+    }
+
+    private static EventRecord event(String eventId, String activity) {
+        return new EventRecord(eventId, activity, List.of("CK1"), Instant.parse("2025-01-01T00:00:00Z"));
+    }
+}
@@ -0,0 +1,70 @@
+package com.abc.process.mining.journey.kafka;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link KeyOrderedExecutor}.
+ */
+class KeyOrderedExecutorTest {
+
+    private final KeyOrderedExecutor executor = new KeyOrderedExecutor(16);
+
+    @AfterEach
+    void tearDown() {
+        executor.close();
+    }
+
+    @Test
+    void tasksSharingAKey_runInSubmissionOrder() {
+        List<Integer> seen = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            int n = i;
+            // alternate keys so every task overlaps its predecessor through "shared"
+            List<String> keys = List.of("shared", "k" + (i % 3));
+            futures.add(executor.submit(keys, () -> {
+                Thread.sleep(1);
+                seen.add(n);
+                return n;
+            }));
+        }
+        futures.forEach(CompletableFuture::join);
+
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 50; i++) expected.add(i);
+        assertEquals(expected, seen);
+        assertEquals(0, executor.pendingKeys());
+    }
+
+    @Test
+    void tasksWithDisjointKeys_runConcurrently() throws Exception {
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        Callable<Boolean> task = () -> {
+            bothStarted.countDown();
+            return bothStarted.await(5, TimeUnit.SECONDS);
+        };
+
+        CompletableFuture<Boolean> a = executor.submit(List.of("A"), task);
+        CompletableFuture<Boolean> b = executor.submit(List.of("B"), task);
+
+        assertTrue(a.get(10, TimeUnit.SECONDS));
+        assertTrue(b.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void failedTask_doesNotBlockItsSuccessors() {
+        CompletableFuture<String> failing = executor.submit(List.of("K"), () -> {
+            throw new IllegalStateException("boom");
+        });
+        CompletableFuture<String> next = executor.submit(List.of("K"), () -> "ok");
+
+        assertThrows(CompletionException.class, failing::join);
+        assertEquals("ok", next.join());
+    }
+}
@@ -0,0 +1,77 @@
+package com.abc.process.mining.journey.kafka;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link OffsetTracker}.
+ */
+class OffsetTrackerTest {
+
+    private static final TopicPartition P0 = new TopicPartition("events.raw", 0);
+    private static final TopicPartition P1 = new TopicPartition("events.raw", 1);
+
+    private OffsetTracker tracker;
+
+    @BeforeEach
+    void setup() {
+        tracker = new OffsetTracker();
+    }
+
+    @Test
+    void committable_stopsAtLowestPendingOffset_whenCompletedOutOfOrder() {
+        for (long offset = 10; offset < 14; offset++) tracker.track(record(0, offset));
+
+        tracker.complete(record(0, 12));
+        tracker.complete(record(0, 13));
+        assertTrue(tracker.committable(List.of(P0)).isEmpty());
+
+        tracker.complete(record(0, 10));
+        assertEquals(Map.of(P0, new OffsetAndMetadata(11)), tracker.committable(List.of(P0)));
+
+        tracker.complete(record(0, 11));
+        assertEquals(Map.of(P0, new OffsetAndMetadata(14)), tracker.committable(List.of(P0)));
+        assertEquals(0, tracker.pending());
+    }
+
+    @Test
+    void committable_onlyReportsAdvancedPartitions() {
+        tracker.track(record(0, 0));
+        tracker.track(record(1, 5));
+        tracker.complete(record(0, 0));
+
+        // P1 has not moved past its first record yet
+        assertEquals(Map.of(P0, new OffsetAndMetadata(1)), tracker.committable(List.of(P0, P1)));
+        // Nothing moved since the last commit
+        assertTrue(tracker.committable(List.of(P0, P1)).isEmpty());
+    }
+
+    @Test
+    void revocation_commitsSynchronously_andIgnoresLateCompletions() {
+        Consumer<?, ?> consumer = mock(Consumer.class);
+        tracker.track(record(0, 0));
+        tracker.track(record(0, 1));
+        tracker.complete(record(0, 0));
+
+        tracker.onPartitionsRevokedBeforeCommit(consumer, List.of(P0));
+
+        verify(consumer).commitSync(Map.of(P0, new OffsetAndMetadata(1)));
+        tracker.complete(record(0, 1));
+        assertEquals(0, tracker.pending());
+        assertTrue(tracker.committable(List.of(P0)).isEmpty());
+    }
+
+    private static ConsumerRecord<String, String> record(int partition, long offset) {
+        return new ConsumerRecord<>("events.raw", partition, offset, null, "{}");
+    }
+}
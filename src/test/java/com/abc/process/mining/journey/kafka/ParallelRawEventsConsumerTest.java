@@ -0,0 +1,120 @@
+package com.abc.process.mining.journey.kafka;
+
+import com.abc.process.mining.journey.model.EventRecord;
+import com.abc.process.mining.journey.stitch.JourneyStitcher;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.event.ListenerContainerIdleEvent;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link ParallelRawEventsConsumer}.
+ */
+class ParallelRawEventsConsumerTest {
+
+    private JourneyStitcher stitcher;
+    private FailedEventRouter router;
+    private OffsetTracker offsets;
+    private Consumer<?, ?> kafkaConsumer;
+    private ParallelRawEventsConsumer consumer;
+
+    @BeforeEach
+    void setup() {
+        stitcher = mock(JourneyStitcher.class);
+        router = mock(FailedEventRouter.class);
+        when(router.route(any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+        offsets = new OffsetTracker();
+        kafkaConsumer = mock(Consumer.class);
+        doReturn(Set.of(new TopicPartition("events.raw", 0))).when(kafkaConsumer).assignment();
+        consumer = new ParallelRawEventsConsumer(stitcher, router, offsets, 8, 16);
+    }
+
+    @AfterEach
+    void tearDown() {
+        consumer.close();
+    }
+
+    @Test
+    void consume_stitchesEveryRecord() throws Exception {
+        when(stitcher.stitch(any(EventRecord.class))).thenReturn("J-1");
+
+        consumer.consume(List.of(record(0, "E1", "CK1"), record(1, "E2", "CK2"), record(2, "E3", "CK1")), kafkaConsumer);
+        drain(0);
+
+        verify(stitcher, times(3)).stitch(any(EventRecord.class));
+        // Completions after the poll are committed on the next poll or idle event
+        consumer.onIdle(idleEvent());
+        verify(kafkaConsumer).commitAsync(eq(Map.of(new TopicPartition("events.raw", 0), new OffsetAndMetadata(3))), any());
+    }
+
+    @Test
+    void consume_routesOnlyFailedRecord() throws Exception {
+        when(stitcher.stitch(any(EventRecord.class))).thenAnswer(inv -> {
+            EventRecord event = inv.getArgument(0);
+            if (event.getEventId().equals("E2")) throw new IOException("es down");
+            return "J-1";
+        });
+        ConsumerRecord<String, EventRecord> failing = record(1, "E2", "CK2");
+
+        assertDoesNotThrow(() -> consumer.consume(List.of(record(0, "E1", "CK1"), failing, record(2, "E3", "CK3")), kafkaConsumer));
+        drain(0);
+
+        verify(router, times(1)).route(same(failing), isA(IOException.class));
+    }
+
+    @Test
+    void consume_routesInvalidRecord_withoutStitchingIt() throws Exception {
+        ConsumerRecord<String, EventRecord> noCks = new ConsumerRecord<>("events.raw", 0, 0, null,
+                new EventRecord("E0", "X", null, Instant.parse("2025-01-01T00:00:00Z")));
+
+        consumer.consume(List.of(noCks, record(1, "E1", "CK1")), kafkaConsumer);
+        drain(0);
+
+        verify(router).route(same(noCks), isA(IllegalArgumentException.class));
+        verify(stitcher, times(1)).stitch(any(EventRecord.class));
+    }
+
+    @Test
+    void consume_keepsWatermarkBelowUnfinishedRouting() throws Exception {
+        when(stitcher.stitch(any(EventRecord.class))).thenThrow(new IOException("es down"));
+        when(router.route(any(), any())).thenReturn(new CompletableFuture<>());
+
+        consumer.consume(List.of(record(0, "E1", "CK1")), kafkaConsumer);
+        drain(1);
+
+        verify(kafkaConsumer, never()).commitAsync(anyMap(), any());
+    }
+
+    private void drain(int expectedPending) throws InterruptedException {
+        // closing waits for every submitted stitch; completion callbacks may still be finishing
+        consumer.close();
+        long deadline = System.currentTimeMillis() + 2000;
+        while (offsets.pending() != expectedPending && System.currentTimeMillis() < deadline) Thread.sleep(5);
+        assertEquals(expectedPending, offsets.pending());
+    }
+
+    private ListenerContainerIdleEvent idleEvent() {
+        return new ListenerContainerIdleEvent(this, this, 1000, "parallelRawEvents-0",
+                Set.of(new TopicPartition("events.raw", 0)), kafkaConsumer, false);
+    }
+
+    private static ConsumerRecord<String, EventRecord> record(long offset, String eventId, String ck) {
+        EventRecord event = new EventRecord(eventId, "Step", List.of(ck), Instant.parse("2025-01-01T00:00:00Z"));
+        return new ConsumerRecord<>("events.raw", 0, offset, null, event);
+    }
+}
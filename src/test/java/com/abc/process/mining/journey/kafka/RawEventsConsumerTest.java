@@ -3,14 +3,25 @@ package com.abc.process.mining.journey.kafka;
 import com.abc.process.mining.journey.es.CkMapService;
 import com.abc.process.mining.journey.es.JourneyService;
 import com.abc.process.mining.journey.es.RedirectService;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.abc.process.mining.journey.model.EventRecord;
+import com.abc.process.mining.journey.stitch.EventDeduplicator;
+import com.abc.process.mining.journey.stitch.JourneyStitcher;
+import com.abc.process.mining.journey.stitch.SuperNodeGuard;
+import com.abc.process.mining.journey.store.CkClaim;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.UUID;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -22,19 +33,21 @@ import static org.mockito.Mockito.*;
 @ExtendWith(MockitoExtension.class)
 class RawEventsConsumerTest {
 
-    private ObjectMapper mapper;
     private CkMapService ckMapService;
     private JourneyService journeyService;
     private RedirectService redirectService;
+    private FailedEventRouter router;
     private RawEventsConsumer consumer;
 
     @BeforeEach
     void setup() {
-        mapper = new ObjectMapper();
         ckMapService = mock(CkMapService.class);
         journeyService = mock(JourneyService.class);
         redirectService = mock(RedirectService.class);
-        consumer = new RawEventsConsumer(mapper, ckMapService, journeyService, redirectService);
+        router = mock(FailedEventRouter.class);
+        EventDeduplicator deduplicator = new EventDeduplicator(Duration.ofHours(1), 100, 100, Clock.systemUTC());
+        consumer = new RawEventsConsumer(
+                new JourneyStitcher(ckMapService, journeyService, redirectService, deduplicator), router);
     }
 
     @Test
@@ -45,14 +58,13 @@ class RawEventsConsumerTest {
             """.formatted(eventId);
 
         when(ckMapService.mgetJourneyIds(anyList())).thenReturn(Map.of());
-        when(ckMapService.claimCk(anyString(), anyString())).thenReturn(true);
+        when(ckMapService.claimAll(anyMap())).thenAnswer(inv -> claimedAll(inv.getArgument(0)));
         when(redirectService.resolve(anyString())).thenAnswer(inv -> inv.getArgument(0));
 
-        consumer.consume(json);
+        consumer.consume(event(json));
 
-        verify(ckMapService).claimCk(eq("CK1"), anyString());
-        verify(journeyService).indexEvent(anyMap(), eq("events-" + LocalDate.now()));
-        verify(journeyService).upsertJourney(anyString(), anyMap());
+        verify(ckMapService).claimAll(argThat(claims -> claims.keySet().equals(Set.of("CK1"))));
+        verify(journeyService).indexAndUpsert(anyString(), any(EventRecord.class), eq("events-" + LocalDate.now()));
     }
 
     @Test
@@ -62,58 +74,129 @@ class RawEventsConsumerTest {
             """;
 
         when(ckMapService.mgetJourneyIds(anyList())).thenReturn(Map.of("CK2", "J-123"));
-        when(ckMapService.claimCk("CK2", "J-123")).thenReturn(true);
+        when(ckMapService.claimAll(Map.of("CK2", "J-123"))).thenReturn(claimedAll(Map.of("CK2", "J-123")));
         when(redirectService.resolve(anyString())).thenAnswer(inv -> inv.getArgument(0));
 
-        consumer.consume(json);
+        consumer.consume(event(json));
 
-        verify(ckMapService).claimCk("CK2", "J-123");
-        verify(journeyService).upsertJourney(eq("J-123"), anyMap());
+        verify(ckMapService).claimAll(Map.of("CK2", "J-123"));
+        verify(journeyService).indexAndUpsert(eq("J-123"), any(EventRecord.class), anyString());
     }
 
     @Test
-    void consume_mergesJourneys_whenClaimFails() throws Exception {
+    void consume_skipsRedeliveredEvent() throws Exception {
         String json = """
-            {"eventId":"E3","activity":"MergeTest","timestamp":"2025-01-01T00:00:00Z","correlationKeys":["CK3"]}
+            {"eventId":"E2","activity":"Check","timestamp":"2025-01-01T00:00:00Z","correlationKeys":["CK2"]}
+            """;
+        when(ckMapService.mgetJourneyIds(anyList())).thenReturn(Map.of("CK2", "J-123"));
+        when(ckMapService.claimAll(Map.of("CK2", "J-123"))).thenReturn(claimedAll(Map.of("CK2", "J-123")));
+        when(redirectService.resolve(anyString())).thenAnswer(inv -> inv.getArgument(0));
+
+        consumer.consume(event(json));
+        consumer.consume(event(json));
+
+        verify(ckMapService, times(1)).mgetJourneyIds(anyList());
+        verify(journeyService, times(1)).indexAndUpsert(eq("J-123"), any(EventRecord.class), anyString());
+    }
+
+    @Test
+    void consume_mergesWithConcurrentOwner_whenClaimFails() throws Exception {
+        String json = """
+            {"eventId":"E3","activity":"MergeTest","timestamp":"2025-01-01T00:00:00Z","correlationKeys":["CK3","CK4"]}
             """;
+        consumer = new RawEventsConsumer(new JourneyStitcher(ckMapService, journeyService, redirectService,
+                new EventDeduplicator(Duration.ofHours(1), 100, 100, Clock.systemUTC()),
+                SuperNodeGuard.disabled(), (event, cks) -> "J-NEW", JourneyChangePublisher.disabled()), router);
 
-        // Pretend CK3 is already mapped to another journey
-        when(ckMapService.mgetJourneyIds(anyList())).thenReturn(Map.of("CK3", "J-OLD"));
-        when(ckMapService.claimCk("CK3", "J-NEW")).thenReturn(false);
+        // Both keys look new, but another consumer claims CK3 for J-OLD in the meantime
+        when(ckMapService.mgetJourneyIds(anyList())).thenReturn(Map.of());
+        when(ckMapService.claimAll(anyMap())).thenAnswer(inv -> {
+            Map<String, CkClaim> outcomes = claimedAll(inv.getArgument(0));
+            outcomes.put("CK3", new CkClaim("CK3", "J-NEW", "J-OLD"));
+            return outcomes;
+        });
+        when(redirectService.resolveAll(anyCollection())).thenAnswer(inv -> {
+            Map<String, String> out = new HashMap<>();
+            for (String id : inv.<java.util.Collection<String>>getArgument(0)) out.put(id, id);
+            return out;
+        });
         when(redirectService.resolve(anyString())).thenAnswer(inv -> inv.getArgument(0));
 
-        // Capture redirect call
-        doNothing().when(redirectService).setRedirect(anyString(), anyString());
+        consumer.consume(event(json));
 
-        // Use UUID random to produce J-NEW
-        try (var mocked = mockStatic(UUID.class)) {
-            mocked.when(UUID::randomUUID).thenReturn(UUID.fromString("00000000-0000-0000-0000-000000000001"));
+        verify(ckMapService).claimAll(Map.of("CK3", "J-NEW", "CK4", "J-NEW"));
+        verify(redirectService).setRedirects(Map.of("J-OLD", "J-NEW"));
+        verify(redirectService, never()).setRedirect(anyString(), anyString());
+        verify(journeyService).indexAndUpsert(eq("J-NEW"), any(EventRecord.class), anyString());
+    }
+
+    @Test
+    void consume_mergesAllBridgedJourneys_inOneWrite() throws Exception {
+        String json = """
+            {"eventId":"E6","activity":"Bridge","timestamp":"2025-01-01T00:00:00Z","correlationKeys":["CK1","CK2","CK3"]}
+            """;
+        when(ckMapService.mgetJourneyIds(anyList())).thenReturn(Map.of("CK1", "J-B", "CK2", "J-C", "CK3", "J-D"));
+        // J-D was merged into J-A earlier
+        when(redirectService.resolveAll(anyCollection())).thenAnswer(inv -> {
+            Map<String, String> out = new HashMap<>();
+            for (String id : inv.<java.util.Collection<String>>getArgument(0)) out.put(id, id.equals("J-D") ? "J-A" : id);
+            return out;
+        });
+        when(ckMapService.claimAll(anyMap())).thenAnswer(inv -> claimedAll(inv.getArgument(0)));
+        when(redirectService.resolve(anyString())).thenAnswer(inv -> inv.getArgument(0));
 
-            consumer.consume(json);
+        consumer.consume(event(json));
 
-            verify(redirectService).setRedirect(anyString(), anyString());
-            verify(journeyService).upsertJourney(anyString(), anyMap());
-        }
+        verify(redirectService).setRedirects(Map.of("J-B", "J-A", "J-C", "J-A"));
+        verify(redirectService, never()).setRedirect(anyString(), anyString());
+        verify(ckMapService).claimAll(Map.of("CK1", "J-A", "CK2", "J-A", "CK3", "J-A"));
+        verify(journeyService).indexAndUpsert(eq("J-A"), any(EventRecord.class), anyString());
     }
 
     @Test
-    void consume_throws_whenEventIdMissing() {
+    void consume_routesInvalidEvent_whenEventIdMissing() {
         String json = """
             {"activity":"X","timestamp":"2025-01-01T00:00:00Z","correlationKeys":["CKX"]}
             """;
+        when(router.route(any(), any())).thenReturn(CompletableFuture.completedFuture(null));
 
-        assertThrows(IllegalArgumentException.class, () -> consumer.consume(json));
+        assertDoesNotThrow(() -> consumer.consume(event(json)));
+        verify(router).route(any(), isA(IllegalArgumentException.class));
         verifyNoInteractions(journeyService);
     }
 
     @Test
-    void consume_throws_whenCorrelationKeysMissing() {
+    void consume_routesInvalidEvent_whenCorrelationKeysMissing() {
         String json = """
             {"eventId":"E4","activity":"Y","timestamp":"2025-01-01T00:00:00Z"}
             """;
+        when(router.route(any(), any())).thenReturn(CompletableFuture.completedFuture(null));
 
-        assertThrows(IllegalArgumentException.class, () -> consumer.consume(json));
+        assertDoesNotThrow(() -> consumer.consume(event(json)));
+        verify(router).route(any(), isA(IllegalArgumentException.class));
         verifyNoInteractions(journeyService);
     }
-}
 
+    @Test
+    void consume_routesEventForRetry_whenElasticsearchFails() throws Exception {
+        String json = """
+            {"eventId":"E5","activity":"Z","timestamp":"2025-01-01T00:00:00Z","correlationKeys":["CK5"]}
+            """;
+        when(ckMapService.mgetJourneyIds(anyList())).thenThrow(new IOException("es down"));
+        when(router.route(any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        assertDoesNotThrow(() -> consumer.consume(event(json)));
+        verify(router).route(any(), isA(IOException.class));
+    }
+
+    private static ConsumerRecord<String, EventRecord> event(String json) {
+        EventRecord event = new EventRecordDeserializer().deserialize("events.raw", json.getBytes(StandardCharsets.UTF_8));
+        return new ConsumerRecord<>("events.raw", 0, 0, null, event);
+    }
+
+    private static Map<String, CkClaim> claimedAll(Map<String, String> claims) {
+        Map<String, CkClaim> outcomes = new HashMap<>();
+        claims.forEach((ck, journeyId) -> outcomes.put(ck, new CkClaim(ck, journeyId, journeyId)));
+        return outcomes;
+    }
+}
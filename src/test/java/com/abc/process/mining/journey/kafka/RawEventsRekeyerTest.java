@@ -0,0 +1,56 @@
+package com.abc.process.mining.journey.kafka;
+
+import com.abc.process.mining.journey.model.EventRecord;
+import com.abc.process.mining.journey.util.Hashing;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link RawEventsRekeyer}.
+ */
+class RawEventsRekeyerTest {
+
+    private KafkaTemplate<String, String> kafkaTemplate;
+    private FailedEventRouter router;
+    private RawEventsRekeyer rekeyer;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setup() {
+        kafkaTemplate = mock(KafkaTemplate.class);
+        router = mock(FailedEventRouter.class);
+        when(kafkaTemplate.send(anyString(), anyString(), anyString())).thenReturn(CompletableFuture.completedFuture(null));
+        when(router.deadLetter(any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+        rekeyer = new RawEventsRekeyer(kafkaTemplate, router);
+    }
+
+    @Test
+    void consume_republishesKeyedByCanonicalCk() {
+        EventRecord event = new EventRecord("E1", "Step", List.of("x", "y"), Instant.parse("2025-01-01T00:00:00Z"));
+
+        rekeyer.consume(List.of(new ConsumerRecord<>("events.raw.external", 0, 0, "whatever", event)));
+
+        verify(kafkaTemplate).send(eq("events.raw"), eq(Hashing.canonicalKey(List.of("x", "y"))), contains("\"eventId\":\"E1\""));
+        verifyNoInteractions(router);
+    }
+
+    @Test
+    void consume_deadLettersEventsWithoutKeys() {
+        ConsumerRecord<String, EventRecord> noCks = new ConsumerRecord<>("events.raw.external", 0, 0, null,
+                new EventRecord("E1", "Step", null, Instant.parse("2025-01-01T00:00:00Z")));
+
+        rekeyer.consume(List.of(noCks, new ConsumerRecord<>("events.raw.external", 0, 1, null, null)));
+
+        verify(router, times(2)).deadLetter(any(), isA(IllegalArgumentException.class));
+        verify(kafkaTemplate, never()).send(anyString(), anyString(), anyString());
+    }
+}
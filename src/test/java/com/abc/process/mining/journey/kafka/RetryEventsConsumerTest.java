@@ -0,0 +1,79 @@
+package com.abc.process.mining.journey.kafka;
+
+import com.abc.process.mining.journey.model.EventRecord;
+import com.abc.process.mining.journey.stitch.JourneyStitcher;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.listener.BackOffHandler;
+import org.springframework.kafka.listener.ContainerPartitionPausingBackOffManager;
+import org.springframework.kafka.listener.KafkaBackoffException;
+import org.springframework.kafka.listener.ListenerContainerRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link RetryEventsConsumer}.
+ */
+class RetryEventsConsumerTest {
+
+    private static final TopicPartition TIER_3 = new TopicPartition("events.raw.retry-3", 2);
+
+    private JourneyStitcher stitcher;
+    private MessageListenerContainer container;
+    private BackOffHandler backOffHandler;
+    private Acknowledgment ack;
+    private RetryEventsConsumer consumer;
+
+    @BeforeEach
+    void setup() {
+        stitcher = mock(JourneyStitcher.class);
+        container = mock(MessageListenerContainer.class);
+        backOffHandler = mock(BackOffHandler.class);
+        ack = mock(Acknowledgment.class);
+        ListenerContainerRegistry registry = mock(ListenerContainerRegistry.class);
+        when(registry.getListenerContainer(RetryEventsConsumer.LISTENER_ID)).thenReturn(container);
+        consumer = new RetryEventsConsumer(stitcher, mock(FailedEventRouter.class),
+                new ContainerPartitionPausingBackOffManager(registry, backOffHandler));
+    }
+
+    @Test
+    void recordNotDueYet_pausesOnlyItsPartition() throws Exception {
+        long dueAt = System.currentTimeMillis() + 60_000;
+
+        KafkaBackoffException e = assertThrows(KafkaBackoffException.class,
+                () -> consumer.consume(record(dueAt), ack, mock(Consumer.class)));
+
+        assertEquals(TIER_3, e.getTopicPartition());
+        verify(container).pausePartition(TIER_3);
+        verify(container, never()).pause();
+        verify(backOffHandler).onNextBackOff(same(container), eq(TIER_3), longThat(ms -> ms > 50_000 && ms <= 60_000));
+        verifyNoInteractions(stitcher, ack);
+    }
+
+    @Test
+    void dueRecord_isStitchedAndAcknowledged() throws Exception {
+        consumer.consume(record(System.currentTimeMillis() - 1), ack, mock(Consumer.class));
+
+        verify(stitcher).stitch(any(EventRecord.class));
+        verify(ack).acknowledge();
+        verifyNoInteractions(container, backOffHandler);
+    }
+
+    private static ConsumerRecord<String, EventRecord> record(long dueAt) {
+        EventRecord event = new EventRecord("E1", "Pay", List.of("CK1"), Instant.parse("2025-01-01T00:00:00Z"));
+        ConsumerRecord<String, EventRecord> record = new ConsumerRecord<>(TIER_3.topic(), TIER_3.partition(), 7, "CK1", event);
+        record.headers().add(FailedEventRouter.DUE_AT_HEADER, ByteBuffer.allocate(Long.BYTES).putLong(dueAt).array());
+        return record;
+    }
+}
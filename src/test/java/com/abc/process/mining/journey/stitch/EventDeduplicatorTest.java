@@ -0,0 +1,80 @@
+package com.abc.process.mining.journey.stitch;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link EventDeduplicator}.
+ */
+class EventDeduplicatorTest {
+
+    private MutableClock clock;
+    private EventDeduplicator deduplicator;
+
+    @BeforeEach
+    void setup() {
+        clock = new MutableClock();
+        deduplicator = new EventDeduplicator(Duration.ofMinutes(10), 3, 1000, clock);
+    }
+
+    @Test
+    void isDuplicate_onlyAfterMarkSeen() {
+        assertFalse(deduplicator.isDuplicate("E1"));
+        deduplicator.markSeen("E1");
+
+        assertTrue(deduplicator.isDuplicate("E1"));
+        assertFalse(deduplicator.isDuplicate("E2"));
+        assertEquals(1L, deduplicator.stats().get("duplicates"));
+    }
+
+    @Test
+    void isDuplicate_forgetsIdsOlderThanWindow() {
+        deduplicator.markSeen("E1");
+        clock.advance(Duration.ofMinutes(9));
+        assertTrue(deduplicator.isDuplicate("E1"));
+
+        clock.advance(Duration.ofMinutes(2));
+        assertFalse(deduplicator.isDuplicate("E1"));
+    }
+
+    @Test
+    void markSeen_evictsEldestBeyondCapacity() {
+        for (String id : new String[]{"E1", "E2", "E3", "E4"}) deduplicator.markSeen(id);
+
+        // E1 may still pass the Bloom filter but is gone from the exact set
+        assertFalse(deduplicator.isDuplicate("E1"));
+        assertTrue(deduplicator.isDuplicate("E4"));
+        assertEquals(3, deduplicator.stats().get("recent"));
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now = Instant.parse("2025-01-01T00:00:00Z");
+
+        void advance(Duration d) {
+            now = now.plus(d);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
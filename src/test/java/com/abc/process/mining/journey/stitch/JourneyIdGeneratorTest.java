@@ -0,0 +1,66 @@
+package com.abc.process.mining.journey.stitch;
+
+import com.abc.process.mining.journey.model.EventRecord;
+import com.abc.process.mining.journey.util.Hashing;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link JourneyIdGenerator}.
+ */
+class JourneyIdGeneratorTest {
+
+    @Test
+    void random_generatesDistinctVersion4Uuids() {
+        JourneyIdGenerator generator = JourneyIdGenerator.of("random");
+        Set<String> ids = new HashSet<>();
+        for (int i = 0; i < 10_000; i++) {
+            String id = generator.newJourneyId(event("E" + i), List.of("CK1"));
+            UUID uuid = UUID.fromString(id);
+            assertEquals(4, uuid.version());
+            assertEquals(2, uuid.variant());
+            ids.add(id);
+        }
+        assertEquals(10_000, ids.size());
+    }
+
+    @Test
+    void deterministic_givesConcurrentFirstEventsOfAJourneyTheSameId() {
+        JourneyIdGenerator generator = JourneyIdGenerator.of("deterministic");
+        String canonical = Hashing.canonicalKey(List.of("CK1", "CK2"));
+
+        String first = generator.newJourneyId(event("E1"), List.of("CK2", "CK1"));
+        assertEquals(first, generator.newJourneyId(event("E2"), List.of(canonical)));
+        assertEquals(Hashing.journeyId(canonical), first);
+        assertNotEquals(first, generator.newJourneyId(event("E3"), List.of("CK3")));
+    }
+
+    @Test
+    void deterministic_fallsBackToTheEvent_whenAllKeysAreSuperNodes() {
+        JourneyIdGenerator generator = JourneyIdGenerator.of("deterministic");
+
+        assertEquals(Hashing.journeyId(List.of("CK1", "CK2"), "E1"), generator.newJourneyId(event("E1"), List.of()));
+        assertNotEquals(generator.newJourneyId(event("E1"), List.of()), generator.newJourneyId(event("E2"), List.of()));
+    }
+
+    @Test
+    void of_rejectsUnknownModes() {
+        assertThrows(IllegalArgumentException.class, () -> JourneyIdGenerator.of("sequential"));
+    }
+
+    private static EventRecord event(String eventId) {
+        EventRecord event = new EventRecord();
+        event.setEventId(eventId);
+        event.setActivity("Start");
+        event.setTimestamp(Instant.parse("2025-01-01T00:00:00Z"));
+        event.setCorrelationKeys(List.of("CK2", "CK1"));
+        return event;
+    }
+}
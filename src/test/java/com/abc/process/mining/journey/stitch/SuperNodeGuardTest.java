@@ -0,0 +1,116 @@
+package com.abc.process.mining.journey.stitch;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link SuperNodeGuard}.
+ */
+class SuperNodeGuardTest {
+
+    private MutableClock clock;
+    private SuperNodeGuard guard;
+
+    @BeforeEach
+    void setup() {
+        clock = new MutableClock();
+        guard = new SuperNodeGuard(3, Duration.ofMinutes(10), 1024, 4, 10, clock);
+    }
+
+    @Test
+    void stitchKeys_excludesKeysLinkingMoreKeysThanThreshold() {
+        for (int i = 0; i < 4; i++) {
+            List<String> cks = List.of("BRANCH-1", "CK" + i);
+            assertEquals(cks, guard.stitchKeys(cks));
+            guard.linked(cks, Map.of("BRANCH-1", "J0")::get);
+        }
+
+        assertEquals(List.of("CK4"), guard.stitchKeys(List.of("BRANCH-1", "CK4")));
+        guard.linked(List.of("BRANCH-1", "CK4"), ck -> null);
+        assertEquals(List.of(), guard.stitchKeys(List.of("BRANCH-1")));
+
+        @SuppressWarnings("unchecked")
+        Map<String, Long> superNodes = (Map<String, Long>) guard.stats().get("superNodes");
+        assertEquals(Map.of("BRANCH-1", 5L), superNodes);
+        assertEquals(2L, guard.stats().get("excluded"));
+    }
+
+    @Test
+    void busyJourney_staysStitched_onItsOwnKeys() {
+        Map<String, String> owners = Map.of("ORDER-7", "J1", "SESSION-1", "J1");
+        for (int i = 0; i < 10; i++) {
+            List<String> cks = i % 2 == 0 ? List.of("ORDER-7") : List.of("ORDER-7", "SESSION-1");
+            assertEquals(cks, guard.stitchKeys(cks));
+            guard.linked(cks, owners::get);
+        }
+        // a new session of the order is one link, not a super-node
+        guard.linked(List.of("ORDER-7", "SESSION-2"), owners::get);
+
+        assertEquals(List.of("ORDER-7", "SESSION-2"), guard.stitchKeys(List.of("ORDER-7", "SESSION-2")));
+        assertEquals(0L, guard.stats().get("excluded"));
+        assertTrue(((Map<?, ?>) guard.stats().get("superNodes")).isEmpty());
+    }
+
+    @Test
+    void keysBridgingJourneys_countAsLinks() {
+        for (int i = 0; i < 4; i++) {
+            guard.linked(List.of("BRANCH-1", "CK" + i), Map.of("BRANCH-1", "J0", "CK" + i, "J" + (i + 1))::get);
+        }
+
+        assertEquals(List.of("CK9"), guard.stitchKeys(List.of("BRANCH-1", "CK9")));
+    }
+
+    @Test
+    void superNodes_areReleased_afterAQuietWindow() {
+        for (int i = 0; i < 5; i++) guard.linked(List.of("BRANCH-1", "CK" + i), Map.of("BRANCH-1", "J0")::get);
+
+        clock.advance(Duration.ofMinutes(10));
+        // still counted from the previous window
+        assertEquals(List.of(), guard.stitchKeys(List.of("BRANCH-1")));
+
+        clock.advance(Duration.ofMinutes(20));
+        assertEquals(List.of("BRANCH-1"), guard.stitchKeys(List.of("BRANCH-1")));
+        assertTrue(((Map<?, ?>) guard.stats().get("superNodes")).isEmpty());
+    }
+
+    @Test
+    void disabled_neverExcludes() {
+        SuperNodeGuard disabled = SuperNodeGuard.disabled();
+        for (int i = 0; i < 10_000; i++) disabled.linked(List.of("BRANCH-1", "CK" + i), ck -> null);
+
+        assertEquals(List.of("BRANCH-1"), disabled.stitchKeys(List.of("BRANCH-1")));
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now = Instant.parse("2025-01-01T00:00:00Z");
+
+        void advance(Duration d) {
+            now = now.plus(d);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.abc.process.mining.journey.store;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link InMemoryCkMapStore}.
+ */
+class InMemoryCkMapStoreTest {
+
+    @Test
+    void claimAll_keepsTheFirstOwner() {
+        InMemoryCkMapStore store = new InMemoryCkMapStore();
+
+        Map<String, CkClaim> first = store.claimAll(Map.of("CK1", "J1", "CK2", "J1"));
+        Map<String, CkClaim> second = store.claimAll(Map.of("CK2", "J2", "CK3", "J2"));
+
+        assertTrue(first.get("CK1").claimed());
+        assertFalse(second.get("CK2").claimed());
+        assertEquals("J1", second.get("CK2").owner());
+        assertTrue(second.get("CK3").claimed());
+        assertEquals(Map.of("CK1", "J1", "CK3", "J2"), store.mgetJourneyIds(List.of("CK1", "CK3", "CK4")));
+        assertEquals(3, store.size());
+    }
+
+    @Test
+    void claimCk_andClaimCks_useTheSameOwners() throws Exception {
+        InMemoryCkMapStore store = new InMemoryCkMapStore();
+
+        assertTrue(store.claimCk("CK1", "J1"));
+        assertFalse(store.claimCk("CK1", "J2"));
+        assertEquals(Map.of("CK1", "J1", "CK2", "J2"), store.claimCks(Map.of("CK1", "J2", "CK2", "J2")));
+    }
+
+    @Test
+    void concurrentClaims_agreeOnOneOwner() throws Exception {
+        InMemoryCkMapStore store = new InMemoryCkMapStore();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<CkClaim>> claims = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                String journeyId = "J" + i;
+                claims.add(pool.submit(() -> store.claimAll(Map.of("CK", journeyId)).get("CK")));
+            }
+            Set<String> owners = new HashSet<>();
+            int claimed = 0;
+            for (Future<CkClaim> claim : claims) {
+                owners.add(claim.get().owner());
+                if (claim.get().claimed()) claimed++;
+            }
+            assertEquals(1, owners.size());
+            assertEquals(1, claimed);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.abc.process.mining.journey.store;
+
+import com.abc.process.mining.journey.model.EventRecord;
+import com.abc.process.mining.journey.model.JourneyProjection;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link InMemoryJourneyStore}.
+ */
+class InMemoryJourneyStoreTest {
+
+    @Test
+    void upsertJourney_widensTheTimeRangeAndCollectsKeys() {
+        InMemoryJourneyStore store = new InMemoryJourneyStore();
+
+        store.upsertJourney("J1", event("e1", "2024-01-01T10:00:00Z", "CK1"));
+        store.upsertJourney("J1", event("e2", "2024-01-01T09:00:00Z", "CK2"));
+        store.upsertJourney("J1", event("e3", "2024-01-01T11:00:00Z", "CK1"));
+
+        JourneyProjection journey = store.journey("J1");
+        assertEquals(Instant.parse("2024-01-01T09:00:00Z"), journey.getFirstSeenAt());
+        assertEquals(Instant.parse("2024-01-01T11:00:00Z"), journey.getLastSeenAt());
+        assertEquals(List.of("CK1", "CK2"), journey.getCks());
+        assertEquals(List.of("e1", "e2", "e3"), store.timeline("J1"));
+        assertEquals(3L, journey.getCounters().get("events"));
+    }
+
+    @Test
+    void upsertJourney_ignoresEventsAlreadyInTheJourney() {
+        InMemoryJourneyStore store = new InMemoryJourneyStore();
+
+        store.upsertJourney("J1", event("e1", "2024-01-01T10:00:00Z", "CK1"));
+        store.upsertJourney("J1", event("e1", "2024-01-01T10:00:00Z", "CK1"));
+
+        assertEquals(List.of("e1"), store.timeline("J1"));
+        assertEquals(1L, store.journey("J1").getCounters().get("events"));
+    }
+
+    @Test
+    void bulkIndexAndUpsert_writesEventsAndJourneys() throws Exception {
+        InMemoryJourneyStore store = new InMemoryJourneyStore();
+
+        store.bulkIndexAndUpsert(Map.of(
+                "J1", List.of(event("e1", "2024-01-01T10:00:00Z", "CK1"), event("e2", "2024-01-01T10:01:00Z", "CK1")),
+                "J2", List.of(event("e3", "2024-01-01T10:02:00Z", "CK2"))), "events-2024.01.01");
+
+        assertEquals(3, store.eventCount());
+        assertEquals(2, store.journeyCount());
+        assertEquals(List.of("e1", "e2"), store.timeline("J1"));
+        assertNull(store.journey("J3"));
+    }
+
+    @Test
+    void indexEvent_requiresAnEventId() {
+        InMemoryJourneyStore store = new InMemoryJourneyStore();
+
+        assertThrows(IllegalArgumentException.class,
+                () -> store.indexEvent(event(null, "2024-01-01T10:00:00Z", "CK1"), "events-2024.01.01"));
+    }
+
+    private static EventRecord event(String eventId, String timestamp, String ck) {
+        return new EventRecord(eventId, "activity", List.of(ck), Instant.parse(timestamp));
+    }
+}
@@ -0,0 +1,36 @@
+package com.abc.process.mining.journey.store;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link InMemoryRedirectStore}.
+ */
+class InMemoryRedirectStoreTest {
+
+    @Test
+    void resolve_followsChains() throws Exception {
+        InMemoryRedirectStore store = new InMemoryRedirectStore();
+
+        store.setRedirects(Map.of("J1", "J2", "J2", "J4"));
+
+        assertEquals("J4", store.resolve("J1"));
+        assertEquals("J3", store.resolve("J3"));
+        assertEquals(Map.of("J1", "J4", "J3", "J3"), store.resolveAll(List.of("J1", "J3")));
+    }
+
+    @Test
+    void setRedirect_notifiesListeners() {
+        InMemoryRedirectStore store = new InMemoryRedirectStore();
+        List<String> seen = new ArrayList<>();
+        store.addListener((from, to) -> seen.add(from + "->" + to));
+
+        store.setRedirect("J1", "J2");
+
+        assertEquals(List.of("J1->J2"), seen);
+        assertEquals(1, store.size());
+    }
+}
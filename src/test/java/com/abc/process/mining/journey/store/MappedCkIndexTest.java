@@ -0,0 +1,74 @@
+package com.abc.process.mining.journey.store;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link MappedCkIndex}.
+ */
+class MappedCkIndexTest {
+
+    @Test
+    void claimAll_keepsTheFirstOwner(@TempDir Path dir) throws IOException {
+        try (MappedCkIndex index = new MappedCkIndex(dir, 16, false)) {
+            assertEquals(Map.of("CK1", "J1", "CK2", "J1"), index.claimAll(Map.of("CK1", "J1", "CK2", "J1")));
+            assertEquals(Map.of("CK2", "J1", "CK3", "J2"), index.claimAll(Map.of("CK2", "J2", "CK3", "J2")));
+
+            assertEquals("J1", index.get("CK2"));
+            assertNull(index.get("CK4"));
+            assertEquals(Map.of("CK1", "J1", "CK3", "J2"), index.getAll(List.of("CK1", "CK3", "CK4")));
+            assertEquals(3, index.size());
+        }
+    }
+
+    @Test
+    void grows_pastItsInitialSlots(@TempDir Path dir) throws IOException {
+        try (MappedCkIndex index = new MappedCkIndex(dir, 16, false)) {
+            for (int i = 0; i < 10_000; i++) index.claimAll(Map.of("ck-" + i, "J" + (i % 7)));
+
+            assertEquals(10_000, index.size());
+            for (int i = 0; i < 10_000; i++) assertEquals("J" + (i % 7), index.get("ck-" + i));
+        }
+    }
+
+    @Test
+    void reopen_afterClose_keepsEverything(@TempDir Path dir) throws IOException {
+        try (MappedCkIndex index = new MappedCkIndex(dir, 16, true)) {
+            for (int i = 0; i < 100; i++) index.claimAll(Map.of("ck-" + i, "J" + i));
+            index.markMirrored(index.readLog(0, 10, (ck, j) -> { }));
+        }
+        try (MappedCkIndex index = new MappedCkIndex(dir, 16, true)) {
+            assertEquals(100, index.size());
+            assertEquals("J42", index.get("ck-42"));
+            List<String> pending = new ArrayList<>();
+            index.readLog(index.mirroredPosition(), 1_000, (ck, j) -> pending.add(ck));
+            assertEquals(90, pending.size());
+            assertEquals("ck-10", pending.get(0));
+        }
+    }
+
+    @Test
+    void reopen_afterCrash_rebuildsFromTheLogAndDropsATornRecord(@TempDir Path dir) throws IOException {
+        MappedCkIndex crashed = new MappedCkIndex(dir, 16, true);
+        for (int i = 0; i < 100; i++) crashed.claimAll(Map.of("ck-" + i, "J" + i));
+        // never closed; simulate a half-written last record
+        try (FileChannel log = FileChannel.open(dir.resolve("ck.log"), StandardOpenOption.WRITE)) {
+            log.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 40, 1, 2}), log.size());
+        }
+
+        try (MappedCkIndex index = new MappedCkIndex(dir, 16, true)) {
+            assertEquals(100, index.size());
+            assertEquals("J99", index.get("ck-99"));
+            assertEquals(Map.of("ck-100", "J100"), index.claimAll(Map.of("ck-100", "J100")));
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.abc.process.mining.journey.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link BloomFilter}.
+ */
+class BloomFilterTest {
+
+    @Test
+    void mightContain_neverMissesAddedValues() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) filter.put("event-" + i);
+
+        for (int i = 0; i < 10_000; i++) assertTrue(filter.mightContain("event-" + i));
+        assertEquals(10_000, filter.count());
+    }
+
+    @Test
+    void mightContain_falsePositiveRateNearTarget() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) filter.put("event-" + i);
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("other-" + i)) falsePositives++;
+        }
+        assertTrue(falsePositives < 2_000, "false positives: " + falsePositives);
+    }
+
+    @Test
+    void clear_forgetsEverything() {
+        BloomFilter filter = new BloomFilter(100, 0.01);
+        filter.put("E1");
+
+        filter.clear();
+
+        assertFalse(filter.mightContain("E1"));
+        assertEquals(0, filter.count());
+    }
+}
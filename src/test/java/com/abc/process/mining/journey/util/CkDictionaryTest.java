@@ -0,0 +1,38 @@
+package com.abc.process.mining.journey.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link CkDictionary}.
+ */
+class CkDictionaryTest {
+
+    @Test
+    void intern_assignsStableUniqueIds() {
+        CkDictionary dictionary = new CkDictionary();
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < 10_000; i++) ids.add(dictionary.intern("ck-" + i));
+
+        assertEquals(10_000, ids.size());
+        assertEquals(dictionary.intern("ck-42"), new CkDictionary().intern("ck-42"));
+        assertEquals(Hashing.hash64("ck-42"), dictionary.intern("ck-42"));
+        assertEquals(10_000, dictionary.size());
+    }
+
+    @Test
+    void key_returnsTheInternedKey() {
+        CkDictionary dictionary = new CkDictionary();
+        long[] ids = dictionary.intern(List.of("CK1", "CK2", "CK1"));
+
+        assertEquals(ids[0], ids[2]);
+        assertEquals("CK2", dictionary.key(ids[1]));
+        assertEquals(List.of("CK1", "CK2"), dictionary.keys());
+        assertNull(dictionary.key(ids[1] + 1));
+    }
+}
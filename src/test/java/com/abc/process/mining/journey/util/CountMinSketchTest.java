@@ -0,0 +1,33 @@
+package com.abc.process.mining.journey.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link CountMinSketch}.
+ */
+class CountMinSketchTest {
+
+    @Test
+    void estimate_neverUndercounts_andStaysCloseForHeavyHitters() {
+        CountMinSketch sketch = new CountMinSketch(2048, 4);
+        for (int i = 0; i < 20_000; i++) sketch.add("ck-" + i);
+        for (int i = 0; i < 5_000; i++) sketch.add("hot");
+
+        int hot = sketch.estimate("hot");
+        assertTrue(hot >= 5_000 && hot < 5_100, "estimate: " + hot);
+        for (int i = 0; i < 1_000; i++) assertTrue(sketch.estimate("ck-" + i) >= 1);
+        assertEquals(25_000, sketch.total());
+    }
+
+    @Test
+    void clear_resetsCounts() {
+        CountMinSketch sketch = new CountMinSketch(64, 2);
+        sketch.add("hot");
+
+        sketch.clear();
+
+        assertEquals(0, sketch.estimate("hot"));
+    }
+}
@@ -0,0 +1,53 @@
+package com.abc.process.mining.journey.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link DisjointSets}.
+ */
+class DisjointSetsTest {
+
+    @Test
+    void find_returnsUnknownIdsUnchanged() {
+        assertEquals("J1", new DisjointSets().find("J1"));
+    }
+
+    @Test
+    void union_followsChainsToTheLastTarget() {
+        DisjointSets sets = new DisjointSets();
+
+        assertTrue(sets.union("A", "B"));
+        assertTrue(sets.union("B", "C"));
+        assertTrue(sets.union("D", "A"));
+
+        for (String id : new String[] {"A", "B", "C", "D"}) assertEquals("C", sets.find(id));
+        assertFalse(sets.union("A", "D"));
+        assertEquals(4, sets.size());
+        assertEquals(3, sets.unions());
+    }
+
+    @Test
+    void union_keepsTheTargetLabel_whicheverRootSurvives() {
+        DisjointSets sets = new DisjointSets();
+        // a deep set merged into a single ID: rank keeps the deep root, the label must still move
+        sets.union("A", "B");
+        sets.union("C", "B");
+        sets.union("D", "B");
+
+        sets.union("B", "X");
+
+        assertEquals("X", sets.find("A"));
+        assertEquals("X", sets.find("X"));
+    }
+
+    @Test
+    void manyUnions_growTheArrays() {
+        DisjointSets sets = new DisjointSets();
+        for (int i = 0; i < 10_000; i++) sets.union("J" + i, "J" + (i + 1));
+
+        assertEquals("J10000", sets.find("J0"));
+        assertEquals(10_001, sets.size());
+    }
+}
@@ -0,0 +1,51 @@
+package com.abc.process.mining.journey.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link Hashing}.
+ */
+class HashingTest {
+
+    @Test
+    void journeyId_isTheSha256OfTheSortedKeysAndEventId() {
+        // sha256("a|b|e1") and sha256("|e1")
+        assertEquals("b82765b653ba49c800ecb94ae891bdf7fa55e1b99fc844f637371220cb042cf3",
+                Hashing.journeyId(List.of("b", "a"), "e1"));
+        assertEquals(Hashing.journeyId(List.of("a", "b"), "e1"), Hashing.journeyId(List.of("b", "a"), "e1"));
+        assertEquals("2ceecd408fd5b291d56cf2500b692b73c208d4e795f3795a0a0b63ab3cc8ffad",
+                Hashing.journeyId(List.of(), "e1"));
+    }
+
+    @Test
+    void journeyId_ofOneKey_isItsSha256() {
+        // sha256("a")
+        assertEquals("ca978112ca1bbdcafac231b39a23dc4da786eff8147c4e72b9807785afee48bb", Hashing.journeyId("a"));
+    }
+
+    @Test
+    void journeyId_isStableAcrossThreads() throws InterruptedException {
+        String expected = Hashing.journeyId(List.of("ck-1", "ck-2"), "e1");
+        String[] seen = new String[8];
+        Thread[] threads = new Thread[seen.length];
+        for (int t = 0; t < threads.length; t++) {
+            int slot = t;
+            threads[t] = Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 1_000; i++) seen[slot] = Hashing.journeyId(List.of("ck-2", "ck-1"), "e1");
+            });
+        }
+        for (Thread thread : threads) thread.join();
+
+        for (String id : seen) assertEquals(expected, id);
+    }
+
+    @Test
+    void canonicalKey_ignoresOrder() {
+        assertEquals(Hashing.canonicalKey(List.of("x", "y", "z")), Hashing.canonicalKey(List.of("z", "x", "y")));
+        assertNull(Hashing.canonicalKey(null));
+    }
+}
@@ -0,0 +1,53 @@
+package com.abc.process.mining.journey.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link LongObjectHashMap}.
+ */
+class LongObjectHashMapTest {
+
+    @Test
+    void behavesLikeAHashMap_underRandomOperations() {
+        LongObjectHashMap<String> map = new LongObjectHashMap<>(4);
+        Map<Long, String> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            // a small key range forces collisions, removals in probe chains and the zero key
+            long key = random.nextInt(2_000) - 10;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                String value = "v" + i;
+                assertEquals(expected.put(key, value), map.put(key, value));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (long key = -10; key < 1_990; key++) {
+            assertEquals(expected.get(key), map.get(key));
+            assertEquals(expected.containsKey(key), map.containsKey(key));
+        }
+        Map<Long, String> visited = new HashMap<>();
+        map.forEach((value, key) -> visited.put(key, value));
+        assertEquals(expected, visited);
+    }
+
+    @Test
+    void clear_removesEverything() {
+        LongObjectHashMap<String> map = new LongObjectHashMap<>();
+        map.put(0L, "zero");
+        map.put(7L, "seven");
+
+        map.clear();
+
+        assertTrue(map.isEmpty());
+        assertNull(map.get(0L));
+        assertNull(map.get(7L));
+    }
+}
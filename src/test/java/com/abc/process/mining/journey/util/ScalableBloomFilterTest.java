@@ -0,0 +1,54 @@
+package com.abc.process.mining.journey.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link ScalableBloomFilter}.
+ */
+class ScalableBloomFilterTest {
+
+    @Test
+    void grows_beyondInitialCapacity_keepingFalsePositivesLow() {
+        ScalableBloomFilter filter = new ScalableBloomFilter(1_000, 0.01, 1 << 20);
+        for (int i = 0; i < 20_000; i++) filter.put("ck-" + i);
+
+        for (int i = 0; i < 20_000; i++) assertTrue(filter.mightContain("ck-" + i));
+        assertTrue(filter.stageCount() > 1);
+        assertEquals(20_000, filter.count());
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("other-" + i)) falsePositives++;
+        }
+        assertTrue(falsePositives < 2_000, "false positives: " + falsePositives);
+    }
+
+    @Test
+    void stopsGrowing_atMemoryBudget() {
+        ScalableBloomFilter filter = new ScalableBloomFilter(1_000, 0.01, 4_096);
+        for (int i = 0; i < 50_000; i++) filter.put("ck-" + i);
+
+        assertTrue(filter.sizeInBytes() <= 4_096, "bytes: " + filter.sizeInBytes());
+        for (int i = 0; i < 50_000; i++) assertTrue(filter.mightContain("ck-" + i));
+    }
+
+    @Test
+    void writeTo_readFrom_roundTrips() throws IOException {
+        ScalableBloomFilter filter = new ScalableBloomFilter(100, 0.01, 1 << 20);
+        for (int i = 0; i < 1_000; i++) filter.put("ck-" + i);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        filter.writeTo(new DataOutputStream(bytes));
+
+        ScalableBloomFilter copy = new ScalableBloomFilter(100, 0.01, 1 << 20);
+        copy.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        for (int i = 0; i < 1_000; i++) assertTrue(copy.mightContain("ck-" + i));
+        assertEquals(filter.count(), copy.count());
+        assertEquals(filter.stageCount(), copy.stageCount());
+        assertFalse(copy.mightContain("unknown"));
+    }
+}
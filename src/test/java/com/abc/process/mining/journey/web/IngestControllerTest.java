@@ -0,0 +1,105 @@
+package com.abc.process.mining.journey.web;
+
+import com.abc.process.mining.journey.util.Hashing;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link IngestController}.
+ */
+class IngestControllerTest {
+
+    private static final String E1 = "{\"eventId\":\"E1\",\"activity\":\"A\",\"timestamp\":\"2025-01-01T00:00:00Z\",\"correlationKeys\":[\"CK1\"]}";
+    private static final String E2 = "{\"eventId\":\"E2\",\"activity\":\"B\",\"timestamp\":\"2025-01-01T00:00:01Z\",\"correlationKeys\":[\"CK2\",\"CK1\"]}";
+
+    private KafkaTemplate<String, String> kafkaTemplate;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setup() {
+        kafkaTemplate = mock(KafkaTemplate.class);
+        when(kafkaTemplate.send(anyString(), any(), anyString())).thenReturn(CompletableFuture.completedFuture(null));
+    }
+
+    @Test
+    void ingest_publishesEveryValidLine_keyedByCanonicalCk() throws Exception {
+        ResponseEntity<Map<String, Object>> response = new IngestController(kafkaTemplate, 10, 0)
+                .ingest(body(E1 + "\n" + E2 + "\n"));
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(2, response.getBody().get("accepted"));
+        verify(kafkaTemplate).send(eq("events.raw"), eq("CK1"), contains("\"E1\""));
+        verify(kafkaTemplate).send(eq("events.raw"), eq(Hashing.canonicalKey(List.of("CK1", "CK2"))), contains("\"E2\""));
+    }
+
+    @Test
+    void ingest_reportsInvalidLines_andKeepsGoing() throws Exception {
+        String noCks = "{\"eventId\":\"E3\",\"timestamp\":\"2025-01-01T00:00:00Z\"}";
+        String badTs = "{\"eventId\":\"E4\",\"timestamp\":\"yesterday\",\"correlationKeys\":[\"CK4\"],\"x\":{\"y\":1}}";
+
+        ResponseEntity<Map<String, Object>> response = new IngestController(kafkaTemplate, 10, 0)
+                .ingest(body(noCks + "\n" + badTs + "\n[1]\n" + E1 + "\n"));
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(1, response.getBody().get("accepted"));
+        assertEquals(3, response.getBody().get("rejected"));
+        assertEquals(4, response.getBody().get("lines"));
+    }
+
+    @Test
+    void ingest_answers400_onMalformedJson() throws Exception {
+        ResponseEntity<Map<String, Object>> response = new IngestController(kafkaTemplate, 10, 0)
+                .ingest(body(E1 + "\n{\"eventId\": oops}\n"));
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertEquals(1, response.getBody().get("accepted"));
+    }
+
+    @Test
+    void ingest_answers429_whenInFlightLimitReached() throws Exception {
+        // Kafka does not acknowledge the first request yet, so the single permit stays taken
+        CompletableFuture<SendResult<String, String>> unacked = new CompletableFuture<>();
+        when(kafkaTemplate.send(anyString(), any(), anyString())).thenReturn(unacked);
+        IngestController controller = new IngestController(kafkaTemplate, 1, 0);
+        CompletableFuture<ResponseEntity<Map<String, Object>>> first =
+                CompletableFuture.supplyAsync(() -> ingestUnchecked(controller, E1));
+        verify(kafkaTemplate, timeout(1000)).send(anyString(), any(), anyString());
+
+        ResponseEntity<Map<String, Object>> response = controller.ingest(body(E2 + "\n" + E1));
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, response.getStatusCode());
+        assertEquals(0, response.getBody().get("lines"));
+        assertEquals("1", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        assertFalse(first.isDone());
+
+        unacked.complete(null);
+        assertEquals(HttpStatus.OK, first.join().getStatusCode());
+    }
+
+    private static ResponseEntity<Map<String, Object>> ingestUnchecked(IngestController controller, String ndjson) {
+        try {
+            return controller.ingest(body(ndjson));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static ByteArrayInputStream body(String ndjson) {
+        return new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8));
+    }
+}